@@ -0,0 +1,82 @@
+package org.pops.et4.jvm.project.allinone;
+
+import org.pops.et4.jvm.project.schemas.logging.EventLog;
+import org.pops.et4.jvm.project.schemas.logging.EventLogger;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the publisher, distributor and player services in one JVM, with the "inmemory" profile:
+ * records go through the in-memory bus and each service has its own H2 database.
+ * <p>
+ * Usage: {@code AllInOneLauncher [--cli=publisher|distributor|player|none] [spring arguments...]}
+ * <ul>
+ *     <li>{@code --cli}: service whose command line reads stdin, {@code player} by default</li>
+ *     <li>other arguments are given to the three services, e.g. {@code --warmup.enabled=false}</li>
+ * </ul>
+ */
+public final class AllInOneLauncher {
+
+    public static final String IN_MEMORY_PROFILE = "inmemory";
+
+    private static final EventLogger LOG = EventLog.logger("AllInOne");
+
+    private static final String CLI_OPTION = "--cli=";
+    private static final String DEFAULT_CLI = "player";
+
+    private AllInOneLauncher() {}
+
+    public static void main(String[] args) {
+        String cli = DEFAULT_CLI;
+        List<String> springArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith(CLI_OPTION)) cli = arg.substring(CLI_OPTION.length());
+            else springArgs.add(arg);
+        }
+
+        String cliPrefix = cli;
+        Service cliService = Arrays.stream(Service.values()).filter(service -> service.prefix.equals(cliPrefix)).findFirst().orElse(null);
+        if (cliService == null && !cli.equals("none"))
+            throw new IllegalArgumentException("Unknown service for --cli: " + cli);
+
+        String[] forwarded = springArgs.toArray(String[]::new);
+        long start = System.nanoTime();
+
+        // The service owning the CLI is started last: its command line blocks the main thread
+        for (Service service : Service.values())
+            if (service != cliService) launch(service, false, forwarded);
+        LOG.info("Services without CLI started in {} ms", (System.nanoTime() - start) / 1_000_000);
+
+        if (cliService != null) launch(cliService, true, forwarded);
+    }
+
+    private static ConfigurableApplicationContext launch(Service service, boolean withCli, String[] args) {
+        return new SpringApplicationBuilder(service.application)
+                .profiles(IN_MEMORY_PROFILE)
+                .properties(
+                        "spring.config.location=classpath:/config/" + service.serviceName + "/",
+                        "cli.enabled=" + withCli
+                )
+                .run(args);
+    }
+
+    private enum Service {
+        PUBLISHER("publisher", "publisher-service", org.pops.et4.jvm.project.publisher.App.class),
+        DISTRIBUTOR("distributor", "distributor-service", org.pops.et4.jvm.project.distributor.App.class),
+        PLAYER("player", "player-service", org.pops.et4.jvm.project.player.App.class);
+
+        private final String prefix;
+        private final String serviceName;
+        private final Class<?> application;
+
+        Service(String prefix, String serviceName, Class<?> application) {
+            this.prefix = prefix;
+            this.serviceName = serviceName;
+            this.application = application;
+        }
+    }
+}
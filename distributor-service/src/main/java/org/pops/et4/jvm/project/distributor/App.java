@@ -1,34 +1,80 @@
 package org.pops.et4.jvm.project.distributor;
 
+import org.pops.et4.jvm.project.distributor.archive.ArchiveService;
+import org.pops.et4.jvm.project.distributor.content.ContentStore;
+import org.pops.et4.jvm.project.distributor.db.DistributorDbConfig;
+import org.pops.et4.jvm.project.distributor.db.PartitionMaintenanceService;
+import org.pops.et4.jvm.project.distributor.dedup.ProcessedEventService;
+import org.pops.et4.jvm.project.distributor.entitlement.OwnershipIndex;
+import org.pops.et4.jvm.project.distributor.kafka.KafkaConfig;
 import org.pops.et4.jvm.project.distributor.kafka.KafkaLifecycleService;
 import org.pops.et4.jvm.project.distributor.kafka.KafkaProducerService;
+import org.pops.et4.jvm.project.distributor.outbox.OutboxRelay;
+import org.pops.et4.jvm.project.distributor.recommend.RecommendationService;
+import org.pops.et4.jvm.project.distributor.search.ReviewIndex;
+import org.pops.et4.jvm.project.distributor.timeseries.PlaytimeSeries;
+import org.pops.et4.jvm.project.migrations.SchemaMigrations;
+import org.pops.et4.jvm.project.schemas.archive.ArchiveReader;
+import org.pops.et4.jvm.project.schemas.cli.BatchRunner;
+import org.pops.et4.jvm.project.schemas.kafka.DeadLetterTool;
+import org.pops.et4.jvm.project.schemas.kafka.RetryTopics;
+import org.pops.et4.jvm.project.schemas.sql.SqlBudget;
 import org.pops.et4.jvm.project.schemas.models.distributor.Distributor;
 import org.pops.et4.jvm.project.schemas.repositories.distributor.DistributedGameRepository;
 import org.pops.et4.jvm.project.schemas.repositories.distributor.DistributorRepository;
 import org.pops.et4.jvm.project.schemas.repositories.distributor.OwnedGameRepository;
 import org.pops.et4.jvm.project.schemas.repositories.distributor.PlayerRepository;
 import org.pops.et4.jvm.project.schemas.repositories.distributor.ReviewRepository;
+import org.pops.et4.jvm.project.schemas.threads.ThreadBenchmark;
+import org.pops.et4.jvm.project.schemas.threads.VirtualThreads;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Scanner;
+import java.util.concurrent.ThreadLocalRandom;
 
 @SpringBootApplication
+@EnableScheduling
 public class App {
 
     public static final String CLI_BEAN_NAME = "distributorServiceCLI";
+    public static final String VIRTUAL_THREADS_BEAN_NAME = "distributorServiceVirtualThreads";
 
     public static void main(String[] args) {
         SpringApplication.run(App.class, args);
     }
 
+    /**
+     * Virtual-thread mode of the service, watching for pinned virtual threads when enabled.
+     */
+    @Bean(name = App.VIRTUAL_THREADS_BEAN_NAME, destroyMethod = "close")
+    public VirtualThreads virtualThreads(
+            @Value("${spring.threads.virtual.enabled:false}") boolean enabled,
+            @Value("${threads.pinning.enabled:true}") boolean pinningEnabled,
+            @Value("${threads.pinning.threshold-ms:20}") long pinningThresholdMs
+    ) {
+        return new VirtualThreads(enabled, pinningEnabled, Duration.ofMillis(pinningThresholdMs));
+    }
+
     @Bean(name = App.CLI_BEAN_NAME)
+    @ConditionalOnProperty(name = "cli.enabled", havingValue = "true", matchIfMissing = true)
     public CommandLineRunner interactiveTestRunner(
             @Qualifier(KafkaProducerService.BEAN_NAME) KafkaProducerService producer,
             @Qualifier(KafkaLifecycleService.BEAN_NAME) KafkaLifecycleService lifecycle,
@@ -37,9 +83,401 @@ public class App {
             @Qualifier(DistributedGameRepository.BEAN_NAME) DistributedGameRepository distributedGameRepository,
             @Qualifier(PlayerRepository.BEAN_NAME) PlayerRepository playerRepository,
             @Qualifier(OwnedGameRepository.BEAN_NAME) OwnedGameRepository ownedGameRepository,
-            @Qualifier(ReviewRepository.BEAN_NAME) ReviewRepository reviewRepository
+            @Qualifier(ReviewRepository.BEAN_NAME) ReviewRepository reviewRepository,
+            @Qualifier(OutboxRelay.BEAN_NAME) OutboxRelay outboxRelay,
+            @Qualifier(ProcessedEventService.BEAN_NAME) ProcessedEventService processedEventService,
+            @Qualifier(KafkaConfig.DEAD_LETTER_TOOL_BEAN_NAME) DeadLetterTool deadLetterTool,
+            @Qualifier(ContentStore.BEAN_NAME) ContentStore contentStore,
+            @Qualifier(ReviewIndex.BEAN_NAME) ReviewIndex reviewIndex,
+            @Qualifier(RecommendationService.BEAN_NAME) RecommendationService recommendationService,
+            @Qualifier(OwnershipIndex.BEAN_NAME) OwnershipIndex ownershipIndex,
+            @Qualifier(PlaytimeSeries.BEAN_NAME) PlaytimeSeries playtimeSeries,
+            @Qualifier(App.VIRTUAL_THREADS_BEAN_NAME) VirtualThreads virtualThreads,
+            @Qualifier(DistributorDbConfig.MIGRATIONS_BEAN_NAME) SchemaMigrations migrations,
+            @Qualifier(PartitionMaintenanceService.BEAN_NAME) PartitionMaintenanceService partitionMaintenance,
+            @Qualifier(ArchiveService.BEAN_NAME) ArchiveService archiveService,
+            @Qualifier(DistributorDbConfig.TRANSACTION_MANAGER_BEAN_NAME) PlatformTransactionManager transactionManager,
+            @Value("${cli.batch.script:}") String batchScript,
+            @Value("${cli.batch.parallelism:8}") int batchParallelism,
+            @Value("${cli.batch.echo:true}") boolean batchEcho
     ) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        BatchRunner.Handler commands = cmd -> {
+            String[] args = Arrays.copyOfRange(cmd, 1, cmd.length);
+
+            switch (cmd[0]) {
+                case "exit":
+                case "quit":
+                    System.out.println("Exiting Manual Test Mode...");
+                    System.exit(0);
+                    break;
+
+                case "start":
+                    System.out.println("> Starting Listener(s)");
+                    for (String listenerId: args)
+                        lifecycle.startListener(listenerId);
+                    break;
+
+                case "stop":
+                    System.out.println("> Stopping Listener(s)");
+                    for (String listenerId: args)
+                        lifecycle.stopListener(listenerId);
+                    break;
+
+                case "add-distributor":
+                System.out.println("> Adding new distributor...");
+                if (args.length < 1) {
+                    System.err.println("Error: Too few arguments, required: 1 (name)");
+                    break;
+                }
+                try {
+                    Distributor entity = Distributor.newBuilder()
+                            .setId(null)
+                            .setName(args[0])
+                            .build();
+                    Distributor distributor1 = distributorRepository.save(entity);
+                    System.out.println("Added distributor: " + distributor1);
+                } catch (Exception e) {
+                    System.err.println("Error adding distributor: " + e.getMessage());
+                }
+                break;
+
+            case "remove-distributor":
+                System.out.println("> Removing distributor(s)...");
+                for (String distributorId: args) {
+                    try {
+                        Long id = Long.parseLong(distributorId);
+                        Optional<Distributor> distributorOpt = distributorRepository.findById(id);
+                        if (distributorOpt.isEmpty()) {
+                            System.err.println("Error: Distributor with ID '" + distributorId + "' not found.");
+                            continue;
+                        }
+                        Distributor distributor2 = distributorOpt.get();
+                        distributorRepository.delete(distributor2);
+                        System.out.println("Removed distributor: " + distributor2);
+                    } catch (NumberFormatException e) {
+                        try {
+                            Optional<Distributor> distributorOpt = distributorRepository.findFirstByName(distributorId);
+                            if (distributorOpt.isEmpty()) {
+                                System.err.println("Error: Distributor with name '" + distributorId + "' not found.");
+                                continue;
+                            }
+                            Distributor distributor2 = distributorOpt.get();
+                            distributorRepository.delete(distributor2);
+                            System.out.println("Removed distributor: " + distributor2);
+                        } catch (Exception ex) {
+                            System.err.println("Error removing distributor '" + distributorId + "': " + ex.getMessage());
+                        }
+                    } catch (Exception e) {
+                        System.err.println("Error removing distributor '" + distributorId + "': " + e.getMessage());
+                    }
+                }
+                break;
+
+            case "start-sale":
+                System.out.println("> Starting sale...");
+                if (args.length < 3) {
+                    System.err.println("Error: Too few arguments, required: 3 (distributorId gameId salePercentage)");
+                    break;
+                }
+                try {
+                    Long distId = Long.parseLong(args[0]);
+                    Long gId = Long.parseLong(args[1]);
+                    Float salePerc = Float.parseFloat(args[2]);
+                    transactionTemplate.executeWithoutResult(status -> {
+                        distributorService.startSale(distId, gId, salePerc);
+                        String gameName = distributorService.getGameName(gId);
+                        producer.sendSaleStarted(distId, gId, salePerc, gameName);
+                    });
+                    System.out.println("Sale started: " + salePerc * 100 + "% off on game " + gId);
+                } catch (NumberFormatException e) {
+                    System.err.println("Error: Invalid number format for arguments");
+                } catch (Exception e) {
+                    System.err.println("Error starting sale: " + e.getMessage());
+                }
+                break;
+
+            case "list-games":
+                System.out.println("> Listing distributed games...");
+                try {
+                    if (args.length < 1) {
+                        System.out.println("All distributed games:");
+                        for (var game: distributedGameRepository.findAll())
+                            System.out.println(game);
+                    } else {
+                        try {
+                            Long distId = Long.parseLong(args[0]);
+                            System.out.println("Games for distributor " + distId + ":");
+                            for (var game: distributedGameRepository.findAll())
+                                if (game.getDistributor() != null && Objects.equals(game.getDistributor().getId(), distId))
+                                    System.out.println(game);
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid distributor ID format");
+                        }
+                    }
+                } catch (Exception e) {
+                    System.err.println("Error listing games: " + e.getMessage());
+                }
+                break;
+
+            case "list-players":
+                System.out.println("> Listing players...");
+                try {
+                    for (var player: playerRepository.findAll())
+                        System.out.println(player);
+                } catch (Exception e) {
+                    System.err.println("Error listing players: " + e.getMessage());
+                }
+                break;
+
+            case "list-owned-games":
+                System.out.println("> Listing owned games...");
+                try {
+                    if (args.length < 1) {
+                        System.out.println("All owned games:");
+                        for (var owned: ownedGameRepository.findAll())
+                            System.out.println(owned);
+                    } else {
+                        try {
+                            Long playerId = Long.parseLong(args[0]);
+                            System.out.println("Games owned by player " + playerId + ":");
+                            for (var owned: ownedGameRepository.findAll())
+                                if (owned.getPlayer() != null && Objects.equals(owned.getPlayer().getId(), playerId))
+                                    System.out.println(owned);
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid player ID format");
+                        }
+                    }
+                } catch (Exception e) {
+                    System.err.println("Error listing owned games: " + e.getMessage());
+                }
+                break;
+
+            case "list-reviews":
+                System.out.println("> Listing reviews...");
+                try {
+                    if (args.length < 1) {
+                        System.out.println("All reviews:");
+                        for (var review: reviewRepository.findAll())
+                            System.out.println(review);
+                    } else {
+                        try {
+                            Long gameId = Long.parseLong(args[0]);
+                            System.out.println("Reviews for game " + gameId + ":");
+                            for (var review: reviewRepository.findAll())
+                                if (review.getGameId() == gameId)
+                                    System.out.println(review);
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid game ID format");
+                        }
+                    }
+                } catch (Exception e) {
+                    System.err.println("Error listing reviews: " + e.getMessage());
+                }
+                break;
+
+            case "search-reviews":
+                System.out.println("> Searching reviews (" + reviewIndex + ")...");
+                if (args.length < 2) {
+                    System.err.println("Error: Too few arguments, required: 2 (gameId keywords...)");
+                    break;
+                }
+                long start = System.nanoTime();
+                var hits = reviewIndex.search(Long.parseLong(args[0]), String.join(" ", Arrays.copyOfRange(args, 1, args.length)));
+                System.out.println(hits.size() + " hit(s) in " + (System.nanoTime() - start) / 1000 + " µs");
+                for (ReviewIndex.Hit hit : hits)
+                    System.out.printf("Review %d: %.3f%n", hit.reviewId(), hit.score());
+                break;
+
+            case "ownership":
+                System.out.println("> Ownership index (" + ownershipIndex + ")");
+                if (args.length < 1) break;
+                long ownershipStart = System.nanoTime();
+                long ownershipGameId = Long.parseLong(args[0]);
+                if (args.length > 1) {
+                    long ownershipPlayerId = Long.parseLong(args[1]);
+                    System.out.println("Player " + ownershipPlayerId + (ownershipIndex.owns(ownershipPlayerId, ownershipGameId) ? " owns" : " does not own") + " game " + ownershipGameId);
+                }
+                System.out.println("Game " + ownershipGameId + ": " + ownershipIndex.ownerCount(ownershipGameId) + " owner(s), answered in "
+                        + (System.nanoTime() - ownershipStart) / 1000 + " µs");
+                break;
+
+            case "playtime-peak":
+                System.out.println("> Play time peak (" + playtimeSeries + ")...");
+                if (args.length < 1) {
+                    System.err.println("Error: Too few arguments, required: 1 (gameId [days])");
+                    break;
+                }
+                long peakStart = System.nanoTime();
+                Instant peakTo = Instant.now();
+                Instant peakFrom = peakTo.minus(Duration.ofDays(args.length > 1 ? Long.parseLong(args[1]) : 7));
+                PlaytimeSeries.Bucket peak = playtimeSeries.peakHour(Long.parseLong(args[0]), peakFrom, peakTo);
+                System.out.println("Answered in " + (System.nanoTime() - peakStart) / 1000 + " µs");
+                if (peak == null) System.out.println("Not played since " + peakFrom);
+                else System.out.printf("Peak at %s: %.2f players on average, %d session(s)%n", peak.start(), peak.averageConcurrent(), peak.sessions());
+                break;
+
+            case "playtime-player":
+                System.out.println("> Player play time per day (" + playtimeSeries + ")...");
+                if (args.length < 1) {
+                    System.err.println("Error: Too few arguments, required: 1 (playerId [days])");
+                    break;
+                }
+                Instant daysTo = Instant.now();
+                Instant daysFrom = daysTo.minus(Duration.ofDays(args.length > 1 ? Long.parseLong(args[1]) : 7));
+                for (PlaytimeSeries.Bucket day : playtimeSeries.playerDays(Long.parseLong(args[0]), daysFrom, daysTo))
+                    System.out.printf("%s: %d min, %d session(s)%n", day.start(), day.seconds() / 60, day.sessions());
+                break;
+
+            case "recommend":
+                System.out.println("> Recommending games (" + recommendationService + ")...");
+                if (args.length < 2) {
+                    System.err.println("Error: Too few arguments, required: 2 (distributorId ownedGameId [limit])");
+                    break;
+                }
+                long recommendStart = System.nanoTime();
+                var recommendations = recommendationService.recommend(Long.parseLong(args[0]), Long.parseLong(args[1]),
+                        args.length > 2 ? Integer.parseInt(args[2]) : 10);
+                System.out.println(recommendations.size() + " game(s) in " + (System.nanoTime() - recommendStart) / 1000 + " µs");
+                for (RecommendationService.Recommendation recommendation : recommendations)
+                    System.out.printf("Game %d: %d co-owner(s), %.3f%n", recommendation.gameId(), recommendation.coOwners(), recommendation.score());
+                break;
+
+            case "bench-threads":
+                System.out.println("> Benchmarking platform against virtual threads (" + virtualThreads + ")...");
+                int benchHandlers = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+                int benchPlatformThreads = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+                String benchMode = args.length > 2 ? args[2] : "db";
+                // db: one query per handler, so the connection pool is shared by both modes; <ms>: a blocking wait of that length
+                ThreadBenchmark.Handler benchHandler = benchMode.equals("db")
+                        ? () -> ownedGameRepository.findGameIdsByPlayerId(ThreadLocalRandom.current().nextLong(1, 1000))
+                        : () -> Thread.sleep(Long.parseLong(benchMode));
+                for (ThreadBenchmark.Result result : ThreadBenchmark.compare(benchHandlers, benchPlatformThreads, benchHandler))
+                    System.out.println(result);
+                if (virtualThreads.getPinningMonitor() != null)
+                    virtualThreads.getPinningMonitor().report().forEach(System.out::println);
+                break;
+
+            case "get-distributor":
+                System.out.println("> Get distributors...");
+                try {
+                    for (Distributor distributor: distributorRepository.findAll())
+                        System.out.println(distributor);
+                } catch (Exception e) {
+                    System.err.println("Error getting distributors: " + e.getMessage());
+                }
+                break;
+
+            case "producer-stats":
+                System.out.println("> Producer statistics (" + producer.getPipeline().getInFlight() + " in flight)");
+                producer.getPipeline().getStats().forEach((topic, stats) -> System.out.println(topic + ": " + stats));
+                break;
+
+            case "outbox-stats":
+                System.out.println("> Outbox relay statistics");
+                System.out.println(outboxRelay.getStats());
+                break;
+
+            case "dedup-stats":
+                System.out.println("> Deduplication statistics");
+                System.out.println(processedEventService);
+                break;
+
+            case "sql-budget":
+                System.out.println("> SQL statements per handler");
+                SqlBudget.INSTANCE.report().forEach(System.out::println);
+                if (args.length > 0 && args[0].equals("reset")) SqlBudget.INSTANCE.reset();
+                break;
+
+            case "access-paths":
+                System.out.println("> Access paths of the hot queries (PostgreSQL only)");
+                migrations.checkAccessPaths().forEach(System.out::println);
+                break;
+
+            case "partitions":
+                System.out.println("> Monthly partitions (PostgreSQL only)");
+                if (args.length > 0 && args[0].equals("run")) partitionMaintenance.run().forEach(System.out::println);
+                System.out.println(partitionMaintenance.partitions());
+                break;
+
+            case "archive-run":
+                System.out.println("> Archiving the old consume logs");
+                System.out.println(archiveService.archiveConsumeLogs() + " log(s) archived");
+                break;
+
+            case "archive-list":
+                System.out.println("> Archived datasets (" + archiveService.getArchive().getRoot() + ")");
+                archiveService.getArchive().datasets().forEach(System.out::println);
+                break;
+
+            case "archive-scan":
+                System.out.println("> Scanning the archive...");
+                handleArchiveScan(archiveService.getReader(), args);
+                break;
+
+            case "dlt-list":
+                System.out.println("> Listing dead letters...");
+                if (args.length < 1) {
+                    System.err.println("Error: Too few arguments, required: 1 (topic [max])");
+                    break;
+                }
+                deadLetterTool.list(dltTopicOf(args[0]), args.length > 1 ? Integer.parseInt(args[1]) : 20)
+                        .forEach(System.out::println);
+                break;
+
+            case "dlt-redrive":
+                System.out.println("> Re-driving dead letters...");
+                if (args.length < 1) {
+                    System.err.println("Error: Too few arguments, required: 1 (topic [max])");
+                    break;
+                }
+                int redriven = deadLetterTool.redrive(dltTopicOf(args[0]), args.length > 1 ? Integer.parseInt(args[1]) : 100);
+                System.out.println(redriven + " record(s) sent back to " + args[0]);
+                break;
+
+            case "content-import":
+                System.out.println("> Importing build...");
+                if (args.length < 4) {
+                    System.err.println("Error: Too few arguments, required: 4 (gameId version platform file)");
+                    break;
+                }
+                contentStore.importBuild(Long.parseLong(args[0]), args[1], args[2], Path.of(args[3]));
+                System.out.println(contentStore.manifest(Long.parseLong(args[0]), args[1], args[2]).toText());
+                break;
+
+            case "content-delta":
+                System.out.println("> Computing build delta...");
+                if (args.length < 4) {
+                    System.err.println("Error: Too few arguments, required: 4 (gameId baseVersion version platform)");
+                    break;
+                }
+                ContentStore.Delta delta = contentStore.delta(Long.parseLong(args[0]), args[1], args[2], args[3]);
+                System.out.println(delta.reusedChunks() + " of " + delta.target().chunkCount() + " chunk(s) reused, "
+                        + delta.patchSize() + " of " + delta.target().size() + " bytes to send");
+                break;
+
+            case "send":
+                System.out.println("> Sending 'ExampleEvent'...");
+                try {
+                    producer.sendExampleEvent(String.join(" ", args));
+                } catch (Exception e) {
+                    System.err.println("Error sending event: " + e.getMessage());
+                }
+                break;
+
+            default:
+                System.out.println("Invalid option. Please try again.");
+            }
+        };
+
         return ignored -> {
+            // Script mode: no pauses, independent commands run concurrently
+            if (!batchScript.isEmpty()) {
+                BatchRunner.Summary summary = this.runBatch(commands, batchScript, batchParallelism, batchEcho);
+                System.exit(summary == null || summary.getFailed() > 0 ? 1 : 0);
+            }
+
             Thread.sleep(1000);
 
             try (Scanner scanner = new Scanner(System.in)) {
@@ -50,201 +488,15 @@ public class App {
                     String input = scanner.nextLine().trim();
                     if (input.isEmpty()) continue;
                     String[] cmd = input.split("\\s+");
-                    String[] args = Arrays.copyOfRange(cmd, 1, cmd.length);
 
                     System.out.println("---------------------------------");
 
                     try {
-                        switch (cmd[0]) {
-                            case "exit":
-                            case "quit":
-                                System.out.println("Exiting Manual Test Mode...");
-                                System.exit(0);
-                                break;
-
-                            case "start":
-                                System.out.println("> Starting Listener(s)");
-                                for (String listenerId: args)
-                                    lifecycle.startListener(listenerId);
-                                break;
-
-                            case "stop":
-                                System.out.println("> Stopping Listener(s)");
-                                for (String listenerId: args)
-                                    lifecycle.stopListener(listenerId);
-                                break;
-
-                            case "add-distributor":
-                            System.out.println("> Adding new distributor...");
-                            if (args.length < 1) {
-                                System.err.println("Error: Too few arguments, required: 1 (name)");
-                                break;
-                            }
-                            try {
-                                Distributor entity = Distributor.newBuilder()
-                                        .setId(null)
-                                        .setName(args[0])
-                                        .build();
-                                Distributor distributor1 = distributorRepository.save(entity);
-                                System.out.println("Added distributor: " + distributor1);
-                            } catch (Exception e) {
-                                System.err.println("Error adding distributor: " + e.getMessage());
-                            }
-                            break;
-
-                        case "remove-distributor":
-                            System.out.println("> Removing distributor(s)...");
-                            for (String distributorId: args) {
-                                try {
-                                    Long id = Long.parseLong(distributorId);
-                                    Optional<Distributor> distributorOpt = distributorRepository.findById(id);
-                                    if (distributorOpt.isEmpty()) {
-                                        System.err.println("Error: Distributor with ID '" + distributorId + "' not found.");
-                                        continue;
-                                    }
-                                    Distributor distributor2 = distributorOpt.get();
-                                    distributorRepository.delete(distributor2);
-                                    System.out.println("Removed distributor: " + distributor2);
-                                } catch (NumberFormatException e) {
-                                    try {
-                                        Optional<Distributor> distributorOpt = distributorRepository.findFirstByName(distributorId);
-                                        if (distributorOpt.isEmpty()) {
-                                            System.err.println("Error: Distributor with name '" + distributorId + "' not found.");
-                                            continue;
-                                        }
-                                        Distributor distributor2 = distributorOpt.get();
-                                        distributorRepository.delete(distributor2);
-                                        System.out.println("Removed distributor: " + distributor2);
-                                    } catch (Exception ex) {
-                                        System.err.println("Error removing distributor '" + distributorId + "': " + ex.getMessage());
-                                    }
-                                } catch (Exception e) {
-                                    System.err.println("Error removing distributor '" + distributorId + "': " + e.getMessage());
-                                }
-                            }
-                            break;
-
-                        case "start-sale":
-                            System.out.println("> Starting sale...");
-                            if (args.length < 3) {
-                                System.err.println("Error: Too few arguments, required: 3 (distributorId gameId salePercentage)");
-                                break;
-                            }
-                            try {
-                                Long distId = Long.parseLong(args[0]);
-                                Long gId = Long.parseLong(args[1]);
-                                Float salePerc = Float.parseFloat(args[2]);
-                                distributorService.startSale(distId, gId, salePerc);
-                                String gameName = distributorService.getGameName(gId);
-                                producer.sendSaleStarted(distId, gId, salePerc, gameName);
-                                System.out.println("Sale started: " + salePerc * 100 + "% off on game " + gId);
-                            } catch (NumberFormatException e) {
-                                System.err.println("Error: Invalid number format for arguments");
-                            } catch (Exception e) {
-                                System.err.println("Error starting sale: " + e.getMessage());
-                            }
-                            break;
-
-                        case "list-games":
-                            System.out.println("> Listing distributed games...");
-                            try {
-                                if (args.length < 1) {
-                                    System.out.println("All distributed games:");
-                                    for (var game: distributedGameRepository.findAll())
-                                        System.out.println(game);
-                                } else {
-                                    try {
-                                        Long distId = Long.parseLong(args[0]);
-                                        System.out.println("Games for distributor " + distId + ":");
-                                        for (var game: distributedGameRepository.findAll())
-                                            if (game.getDistributor() != null && Objects.equals(game.getDistributor().getId(), distId))
-                                                System.out.println(game);
-                                    } catch (NumberFormatException e) {
-                                        System.err.println("Error: Invalid distributor ID format");
-                                    }
-                                }
-                            } catch (Exception e) {
-                                System.err.println("Error listing games: " + e.getMessage());
-                            }
-                            break;
-
-                        case "list-players":
-                            System.out.println("> Listing players...");
-                            try {
-                                for (var player: playerRepository.findAll())
-                                    System.out.println(player);
-                            } catch (Exception e) {
-                                System.err.println("Error listing players: " + e.getMessage());
-                            }
-                            break;
-
-                        case "list-owned-games":
-                            System.out.println("> Listing owned games...");
-                            try {
-                                if (args.length < 1) {
-                                    System.out.println("All owned games:");
-                                    for (var owned: ownedGameRepository.findAll())
-                                        System.out.println(owned);
-                                } else {
-                                    try {
-                                        Long playerId = Long.parseLong(args[0]);
-                                        System.out.println("Games owned by player " + playerId + ":");
-                                        for (var owned: ownedGameRepository.findAll())
-                                            if (owned.getPlayer() != null && Objects.equals(owned.getPlayer().getId(), playerId))
-                                                System.out.println(owned);
-                                    } catch (NumberFormatException e) {
-                                        System.err.println("Error: Invalid player ID format");
-                                    }
-                                }
-                            } catch (Exception e) {
-                                System.err.println("Error listing owned games: " + e.getMessage());
-                            }
-                            break;
-
-                        case "list-reviews":
-                            System.out.println("> Listing reviews...");
-                            try {
-                                if (args.length < 1) {
-                                    System.out.println("All reviews:");
-                                    for (var review: reviewRepository.findAll())
-                                        System.out.println(review);
-                                } else {
-                                    try {
-                                        Long gameId = Long.parseLong(args[0]);
-                                        System.out.println("Reviews for game " + gameId + ":");
-                                        for (var review: reviewRepository.findAll())
-                                            if (review.getGameId() == gameId)
-                                                System.out.println(review);
-                                    } catch (NumberFormatException e) {
-                                        System.err.println("Error: Invalid game ID format");
-                                    }
-                                }
-                            } catch (Exception e) {
-                                System.err.println("Error listing reviews: " + e.getMessage());
-                            }
-                            break;
-
-                        case "get-distributor":
-                            System.out.println("> Get distributors...");
-                            try {
-                                for (Distributor distributor: distributorRepository.findAll())
-                                    System.out.println(distributor);
-                            } catch (Exception e) {
-                                System.err.println("Error getting distributors: " + e.getMessage());
-                            }
-                            break;
-
-                        case "send":
-                            System.out.println("> Sending 'ExampleEvent'...");
-                            try {
-                                producer.sendExampleEvent(String.join(" ", args));
-                            } catch (Exception e) {
-                                System.err.println("Error sending event: " + e.getMessage());
-                            }
-                            break;
-
-                        default:
-                            System.out.println("Invalid option. Please try again.");
+                        if (cmd[0].equals("batch")) {
+                            if (cmd.length < 2) System.err.println("Error: Too few arguments, required: 1 (file [parallelism])");
+                            else this.runBatch(commands, cmd[1], cmd.length > 2 ? Integer.parseInt(cmd[2]) : batchParallelism, batchEcho);
+                        } else {
+                            commands.execute(cmd);
                         }
                     } catch (Exception e) {
                         System.err.println("Error executing command: " + e.getMessage());
@@ -257,15 +509,39 @@ public class App {
         };
     }
 
+    private BatchRunner.Summary runBatch(BatchRunner.Handler commands, String script, int parallelism, boolean echo) {
+        System.out.println("> Running batch '" + script + "' with parallelism " + parallelism + "...");
+        try {
+            BatchRunner.Summary summary = new BatchRunner(commands, parallelism, echo).run(script);
+            System.out.print(summary);
+            return summary;
+        } catch (Exception e) {
+            System.err.println("Error running batch: " + e.getMessage());
+            return null;
+        }
+    }
+
     private void printMenu() {
         System.out.println();
         System.out.println("=================================");
         System.out.println("       Distributor Service       ");
         System.out.println("=================================");
         System.out.println("* Exit                  exit/quit");
+        System.out.println("* Run Script            batch [file|-] [parallelism?]");
         System.out.println("* Start Listener        start [listenerId...]");
         System.out.println("* Stop Listener         stop [listenerId...]");
         System.out.println("* Send Payload          send [payload]");
+        System.out.println("* Producer Stats        producer-stats");
+        System.out.println("* Outbox Stats          outbox-stats");
+        System.out.println("* Dedup Stats           dedup-stats");
+        System.out.println("* SQL Budget            sql-budget [reset?]");
+        System.out.println("* Access Paths          access-paths");
+        System.out.println("* Partitions            partitions [run?]");
+        System.out.println("* Archive Logs          archive-run");
+        System.out.println("* Archived Datasets     archive-list");
+        System.out.println("* Scan Archive          archive-scan [dataset] [from|*] [to|*] [fields|*] [max?]");
+        System.out.println("* List Dead Letters     dlt-list [topic] [max?]");
+        System.out.println("* Re-drive Dead Letters dlt-redrive [topic] [max?]");
         System.out.println();
         System.out.println("--- Distributors ---");
         System.out.println("* Get Distributors      get-distributor");
@@ -275,13 +551,44 @@ public class App {
         System.out.println("--- Games & Sales ---");
         System.out.println("* List Games            list-games [distributorId?]");
         System.out.println("* Start Sale            start-sale [distributorId] [gameId] [salePercentage]");
+        System.out.println("* Import Build          content-import [gameId] [version] [platform] [file]");
+        System.out.println("* Build Delta           content-delta [gameId] [baseVersion] [version] [platform]");
         System.out.println();
         System.out.println("--- Players & Reviews ---");
         System.out.println("* List Players          list-players");
         System.out.println("* List Owned Games      list-owned-games [playerId?]");
         System.out.println("* List Reviews          list-reviews [gameId?]");
+        System.out.println("* Search Reviews        search-reviews [gameId] [keywords...]");
+        System.out.println("* Recommend Games       recommend [distributorId] [gameId] [limit?]");
+        System.out.println("* Ownership Index       ownership [gameId?] [playerId?]");
+        System.out.println("* Play Time Peak        playtime-peak [gameId] [days?]");
+        System.out.println("* Player Play Time      playtime-player [playerId] [days?]");
+        System.out.println("* Bench Threads         bench-threads [handlers?] [platformThreads?] [db|sleepMs]");
         System.out.println();
         System.out.print("> ");
     }
 
+    /**
+     * archive-scan [dataset] [from|*] [to|*] [fields|*] [max?]: UTC days, both included, fields separated by commas (e.g. key,event.gameId)
+     */
+    private static void handleArchiveScan(ArchiveReader reader, String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: archive-scan [dataset] [from(yyyy-MM-dd)|*] [to(yyyy-MM-dd)|*] [fields|*] [max?]");
+            return;
+        }
+        try {
+            Instant from = args.length > 1 && !args[1].equals("*") ? LocalDate.parse(args[1]).atStartOfDay(ZoneOffset.UTC).toInstant() : null;
+            Instant to = args.length > 2 && !args[2].equals("*") ? LocalDate.parse(args[2]).plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant() : null;
+            List<String> fields = args.length > 3 && !args[3].equals("*") ? Arrays.asList(args[3].split(",")) : List.of();
+            int max = args.length > 4 ? Integer.parseInt(args[4]) : 20;
+            System.out.println(reader.scan(args[0], from, to, fields, max, System.out::println));
+        } catch (Exception e) {
+            System.err.println("Error scanning the archive: " + e.getMessage());
+        }
+    }
+
+    private static String dltTopicOf(String topic) {
+        return topic.endsWith(RetryTopics.DLT_SUFFIX) ? topic : RetryTopics.dltOf(topic);
+    }
+
 }
\ No newline at end of file
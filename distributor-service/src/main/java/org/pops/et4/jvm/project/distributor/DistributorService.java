@@ -1,53 +1,106 @@
 package org.pops.et4.jvm.project.distributor;
 
+import org.pops.et4.jvm.project.distributor.entitlement.OwnershipIndex;
+import org.pops.et4.jvm.project.distributor.ranking.Board;
+import org.pops.et4.jvm.project.distributor.ranking.RankingService;
+import org.pops.et4.jvm.project.distributor.recommend.RecommendationService;
+import org.pops.et4.jvm.project.distributor.search.ReviewIndex;
+import org.pops.et4.jvm.project.distributor.search.Tokenizer;
+import org.pops.et4.jvm.project.distributor.timeseries.PlaytimeSeries;
 import org.pops.et4.jvm.project.schemas.events.RegisterPlayer;
 import org.pops.et4.jvm.project.schemas.events.ReviewGame;
 import org.pops.et4.jvm.project.schemas.events.GamePublished;
 import org.pops.et4.jvm.project.schemas.events.PatchPublished;
 import org.pops.et4.jvm.project.schemas.events.*;
+import org.pops.et4.jvm.project.schemas.events.pages.GameEntry;
+import org.pops.et4.jvm.project.schemas.events.pages.LeaderboardEntry;
+import org.pops.et4.jvm.project.schemas.events.pages.PlayerEntry;
+import org.pops.et4.jvm.project.schemas.events.pages.RecommendationEntry;
+import org.pops.et4.jvm.project.schemas.events.pages.ReviewEntry;
+import org.pops.et4.jvm.project.schemas.events.updates.InstalledGameVersion;
+import org.pops.et4.jvm.project.schemas.events.updates.OutdatedGame;
+import org.pops.et4.jvm.project.schemas.logging.EventLog;
+import org.pops.et4.jvm.project.schemas.logging.EventLogger;
 import org.pops.et4.jvm.project.schemas.models.distributor.Distributor;
 import org.pops.et4.jvm.project.schemas.models.distributor.DistributedGame;
 import org.pops.et4.jvm.project.schemas.models.distributor.OwnedGame;
 import org.pops.et4.jvm.project.schemas.models.distributor.Player;
 import org.pops.et4.jvm.project.schemas.models.distributor.Review;
+import org.pops.et4.jvm.project.schemas.models.distributor.ReviewKey;
 import org.pops.et4.jvm.project.schemas.repositories.distributor.DistributedGameRepository;
 import org.pops.et4.jvm.project.schemas.repositories.distributor.DistributorRepository;
 import org.pops.et4.jvm.project.schemas.repositories.distributor.OwnedGameRepository;
 import org.pops.et4.jvm.project.schemas.repositories.distributor.PlayerRepository;
+import org.pops.et4.jvm.project.schemas.repositories.distributor.ReviewKeyRepository;
 import org.pops.et4.jvm.project.schemas.repositories.distributor.ReviewRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service(DistributorService.BEAN_NAME)
 public class DistributorService {
     
     public static final String BEAN_NAME = "distributorService";
 
+    private static final EventLogger LOG = EventLog.logger("Service");
+
     private final PlayerRepository playerRepository;
     private final DistributorRepository distributorRepository;
     private final ReviewRepository reviewRepository;
+    private final ReviewKeyRepository reviewKeyRepository;
     private final DistributedGameRepository distributedGameRepository;
     private final OwnedGameRepository ownedGameRepository;
+    private final ReviewIndex reviewIndex;
+    private final RankingService rankingService;
+    private final RecommendationService recommendationService;
+    private final OwnershipIndex ownershipIndex;
+    private final PlaytimeSeries playtimeSeries;
+
+    @Value("${reviews.page.max-age-days:365}")
+    private long reviewsPageMaxAgeDays;
+
+    @Value("${reviews.page.size:100}")
+    private int reviewsPageSize;
 
     @Autowired
     public DistributorService(
             @Qualifier(PlayerRepository.BEAN_NAME) PlayerRepository playerRepository,
             @Qualifier(DistributorRepository.BEAN_NAME) DistributorRepository distributorRepository,
             @Qualifier(ReviewRepository.BEAN_NAME) ReviewRepository reviewRepository,
+            @Qualifier(ReviewKeyRepository.BEAN_NAME) ReviewKeyRepository reviewKeyRepository,
             @Qualifier(DistributedGameRepository.BEAN_NAME) DistributedGameRepository distributedGameRepository,
-            @Qualifier(OwnedGameRepository.BEAN_NAME) OwnedGameRepository ownedGameRepository
+            @Qualifier(OwnedGameRepository.BEAN_NAME) OwnedGameRepository ownedGameRepository,
+            @Qualifier(ReviewIndex.BEAN_NAME) ReviewIndex reviewIndex,
+            @Qualifier(RankingService.BEAN_NAME) RankingService rankingService,
+            @Qualifier(RecommendationService.BEAN_NAME) RecommendationService recommendationService,
+            @Qualifier(OwnershipIndex.BEAN_NAME) OwnershipIndex ownershipIndex,
+            @Qualifier(PlaytimeSeries.BEAN_NAME) PlaytimeSeries playtimeSeries
     ) {
         this.playerRepository = playerRepository;
         this.distributorRepository = distributorRepository;
         this.reviewRepository = reviewRepository;
+        this.reviewKeyRepository = reviewKeyRepository;
         this.distributedGameRepository = distributedGameRepository;
         this.ownedGameRepository = ownedGameRepository;
+        this.reviewIndex = reviewIndex;
+        this.rankingService = rankingService;
+        this.recommendationService = recommendationService;
+        this.ownershipIndex = ownershipIndex;
+        this.playtimeSeries = playtimeSeries;
     }
 
     /**
@@ -86,14 +139,19 @@ public class DistributorService {
                 .orElseThrow(() -> new RuntimeException("Player not found: " + event.getPlayerId()));
 
         // Check if player owns the game and has sufficient playtime (minimum 15 seconds = 0.25 minutes)
-        OwnedGame ownedGame = ownedGameRepository.findByPlayerIdAndGameId(event.getPlayerId(), event.getGameId())
-                .orElse(null);
+        // Read from the database: the play time is needed, and the ownership index may miss a purchase made on another instance
+        OwnedGame ownedGame = ownedGameRepository.findByPlayerIdAndGameId(event.getPlayerId(), event.getGameId()).orElse(null);
 
         if (ownedGame == null || ownedGame.getPlayTime() < 0.25) {
             // Review refused - player doesn't own the game or has less than 15 seconds playtime
             throw new IllegalStateException("Review refused: Player must have at least 15 seconds of playtime on the game");
         }
 
+        // One review per player and game, enforced by the unique key of ReviewKeys since the Reviews table is partitioned on PostgreSQL
+        if (reviewKeyRepository.existsByPlayerIdAndGameId(event.getPlayerId(), event.getGameId())) {
+            throw new IllegalStateException("Review refused: Player already reviewed the game");
+        }
+
         Review review = Review.newBuilder()
                 .setId(null)
                 .setPlayer(player)
@@ -105,7 +163,17 @@ public class DistributorService {
                 .setNegativeReactions(Collections.emptyList())
                 .build();
 
-        return reviewRepository.save(review);
+        Review savedReview = reviewRepository.save(review);
+        // A concurrent review of the same player and game fails here and rolls back: retried, it is refused by the check above
+        reviewKeyRepository.save(ReviewKey.newBuilder()
+                .setId(null)
+                .setReviewId(savedReview.getId())
+                .setPlayerId(event.getPlayerId())
+                .setGameId(event.getGameId())
+                .build());
+        reviewIndex.addAfterCommit(savedReview.getId(), savedReview.getGameId(), savedReview.getComment());
+        rankingService.reviewed(player.getDistributor().getId(), savedReview.getGameId(), savedReview.getRating());
+        return savedReview;
     }
 
     /**
@@ -148,26 +216,22 @@ public class DistributorService {
      * @return List of updated DistributedGame entities (one per distributor)
      */
     public List<DistributedGame> patchPublished(PatchPublished event) {
-        // Fetch ALL distributors
-        List<Distributor> distributors = distributorRepository.findAll();
-        
-        if (distributors.isEmpty()) {
+        // Fetch every distribution of the game with its distributor in one select, instead of one select per distributor
+        List<DistributedGame> distributedGames = distributedGameRepository.findByGameIdWithDistributor(event.getGameId());
+
+        if (distributedGames.isEmpty() && distributorRepository.count() == 0) {
             throw new RuntimeException("No distributors found in database");
         }
 
         List<DistributedGame> updatedGames = new ArrayList<>();
-        
-        for (Distributor distributor : distributors) {
-            // Find the DistributedGame by distributor and gameId
-            distributedGameRepository.findByDistributorIdAndGameId(distributor.getId(), event.getGameId())
-                    .ifPresent(distributedGame -> {
-                        // Update the version
-                        DistributedGame updatedGame = DistributedGame.newBuilder(distributedGame)
-                                .setVersion(event.getVersion())
-                                .build();
-
-                        updatedGames.add(distributedGameRepository.save(updatedGame));
-                    });
+
+        for (DistributedGame distributedGame : distributedGames) {
+            // Update the version
+            DistributedGame updatedGame = DistributedGame.newBuilder(distributedGame)
+                    .setVersion(event.getVersion())
+                    .build();
+
+            updatedGames.add(distributedGameRepository.save(updatedGame));
         }
 
         return updatedGames;
@@ -204,8 +268,7 @@ public class DistributorService {
      */
     public DistributedGame processInstallGame(Long playerId, Long gameId) {
         // Verify player owns the game
-        OwnedGame ownedGame = ownedGameRepository.findByPlayerIdAndGameId(playerId, gameId)
-                .orElseThrow(() -> new IllegalStateException("Player does not own this game"));
+        if (!owns(playerId, gameId)) throw new IllegalStateException("Player does not own this game");
 
         // Get the distributed game to retrieve version and distributor info
         Player player = playerRepository.findById(playerId)
@@ -228,8 +291,7 @@ public class DistributorService {
      */
     public DistributedGame processUpdateGame(Long playerId, Long gameId, String installedVersion) {
         // Verify player owns the game
-        OwnedGame ownedGame = ownedGameRepository.findByPlayerIdAndGameId(playerId, gameId)
-                .orElseThrow(() -> new IllegalStateException("Player does not own this game"));
+        if (!owns(playerId, gameId)) throw new IllegalStateException("Player does not own this game");
 
         // Get the distributed game to retrieve latest version
         Player player = playerRepository.findById(playerId)
@@ -247,6 +309,52 @@ public class DistributorService {
         return distributedGame;
     }
 
+    /**
+     * Processes a library update check.
+     * The owned games and their distributed versions are fetched with a single join, the diff is computed in memory.
+     * @param playerId ID of the player
+     * @param installedGames Installed games of the player, one per game and platform
+     * @return The answer to send, and the player name for the SendGameFile events of the outdated games
+     */
+    public UpdateCheck processCheckUpdates(Long playerId, List<InstalledGameVersion> installedGames) {
+        Set<Long> gameIds = new LinkedHashSet<>();
+        for (InstalledGameVersion installed : installedGames) gameIds.add(installed.getGameId());
+
+        Map<Long, OwnedGameRepository.OwnedGameVersion> owned = new HashMap<>();
+        String playerName = null;
+        if (!gameIds.isEmpty()) {
+            for (OwnedGameRepository.OwnedGameVersion version : ownedGameRepository.findOwnedGameVersions(playerId, gameIds)) {
+                owned.put(version.getGameId(), version);
+                playerName = version.getPlayerName();
+            }
+        }
+
+        List<Long> notOwned = new ArrayList<>();
+        List<OutdatedGame> outdated = new ArrayList<>();
+        for (InstalledGameVersion installed : installedGames) {
+            OwnedGameRepository.OwnedGameVersion version = owned.get(installed.getGameId());
+            if (version == null) {
+                if (!notOwned.contains(installed.getGameId())) notOwned.add(installed.getGameId());
+            } else if (!installed.getInstalledVersion().equals(version.getLatestVersion())) {
+                outdated.add(OutdatedGame.newBuilder()
+                        .setGameId(installed.getGameId())
+                        .setGameName(version.getGameName())
+                        .setPlatform(installed.getPlatform())
+                        .setInstalledVersion(installed.getInstalledVersion())
+                        .setLatestVersion(version.getLatestVersion())
+                        .build());
+            }
+        }
+
+        UpdatesAvailable answer = UpdatesAvailable.newBuilder()
+                .setPlayerId(playerId)
+                .setCheckedGames(installedGames.size())
+                .setNotOwnedGameIds(notOwned)
+                .setOutdatedGames(outdated)
+                .build();
+        return new UpdateCheck(answer, playerName);
+    }
+
     /**
      * Processes a crash report from a player.
      * Retrieves the distributor ID based on the player who reported the crash.
@@ -263,9 +371,7 @@ public class DistributorService {
         }
 
         // Log the crash for tracking
-        System.out.println("[Service] Crash reported for game " + event.getGameId() + 
-                          " on platform " + event.getPlatform() + 
-                          " with error code " + event.getErrorCode());
+        LOG.event("Crash reported for game {} on platform {} with error code {}", event.getGameId(), event.getPlatform(), event.getErrorCode());
 
         return player.getDistributor().getId();
     }
@@ -281,6 +387,9 @@ public class DistributorService {
         Player player = playerRepository.findById(event.getPlayerId())
                 .orElseThrow(() -> new RuntimeException("Player not found: " + event.getPlayerId()));
 
+        // Library before the purchase, each game becomes a co-owned pair with the new one
+        List<Long> library = ownedGameRepository.findGameIdsByPlayerId(event.getPlayerId());
+
         // Create OwnedGame entry
         OwnedGame ownedGame = OwnedGame.newBuilder()
                 .setId(null)
@@ -290,18 +399,24 @@ public class DistributorService {
                 .setPlayTime(0)
                 .build();
 
-        return ownedGameRepository.save(ownedGame);
+        OwnedGame savedGame = ownedGameRepository.save(ownedGame);
+        ownershipIndex.purchased(savedGame.getId(), player.getId(), savedGame.getGameId());
+        rankingService.purchased(player.getDistributor().getId(), savedGame.getGameId());
+        recommendationService.purchased(player.getDistributor().getId(), savedGame.getId(), savedGame.getGameId(), library);
+        return savedGame;
     }
 
     /**
      * Adds playtime to a game that the player owns.
-     * Updates the playTime field in OwnedGame.
+     * Updates the playTime field in OwnedGame, and records the session in the play time history.
      * @param event The AddPlayTime event containing playtime information
+     * @param sessionEnd End of the session, when the event was produced
      * @return The updated OwnedGame entity
      */
-    public OwnedGame addPlayTime(org.pops.et4.jvm.project.schemas.events.AddPlayTime event) {
+    public OwnedGame addPlayTime(org.pops.et4.jvm.project.schemas.events.AddPlayTime event, Instant sessionEnd) {
         // Find the OwnedGame entry
-        OwnedGame ownedGame = ownedGameRepository.findByPlayerIdAndGameId(event.getPlayerId(), event.getGameId())
+        // The player is fetched with it: its distributor is needed by the leaderboards
+        OwnedGame ownedGame = ownedGameRepository.findWithPlayerByPlayerIdAndGameId(event.getPlayerId(), event.getGameId())
                 .orElseThrow(() -> new RuntimeException("OwnedGame not found for player: " + 
                                                        event.getPlayerId() + " and game: " + event.getGameId()));
 
@@ -311,7 +426,10 @@ public class DistributorService {
                 .setPlayTime(ownedGame.getPlayTime() + additionalPlayTimeMinutes)
                 .build();
 
-        return ownedGameRepository.save(updatedGame);
+        OwnedGame savedGame = ownedGameRepository.save(updatedGame);
+        rankingService.played(ownedGame.getPlayer().getDistributor().getId(), savedGame.getGameId(), additionalPlayTimeMinutes);
+        playtimeSeries.played(savedGame.getGameId(), event.getPlayerId(), event.getTime(), sessionEnd);
+        return savedGame;
     }
 
     /**
@@ -321,9 +439,10 @@ public class DistributorService {
      * @return The updated Review entity
      */
     public Review reactReview(org.pops.et4.jvm.project.schemas.events.ReactReview event) {
-        // Fetch the review
-        Review review = reviewRepository.findById(event.getReviewId())
+        // Fetch the review with both reaction lists, one join per list
+        Review review = reviewRepository.findWithPositiveReactionsById(event.getReviewId())
                 .orElseThrow(() -> new RuntimeException("Review not found: " + event.getReviewId()));
+        reviewRepository.fetchNegativeReactions(event.getReviewId());
 
         // Fetch the player
         Player player = playerRepository.findById(event.getPlayerId())
@@ -421,116 +540,96 @@ public class DistributorService {
      * @return The game name
      */
     public String getGameName(Long gameId) {
-        // Get the current distributor
-        Distributor distributor = distributorRepository.findAll().stream()
+        // Name distributed by the first distributor, without loading every distributor
+        return distributedGameRepository.findGameNamesByGameId(gameId, PageRequest.of(0, 1)).stream()
                 .findFirst()
-                .orElseThrow(() -> new RuntimeException("No distributor found in database"));
-        
-        DistributedGame game = distributedGameRepository.findByDistributorIdAndGameId(distributor.getId(), gameId)
                 .orElseThrow(() -> new RuntimeException("Game not found in distributor catalog: " + gameId));
-        return game.getGameName();
     }
 
     /**
-     * Generates a formatted player page for the distributor.
+     * Builds the player directory of a distributor.
+     * Library statistics are aggregated in the database, rendering is left to the player client.
      * @param distributorId ID of the distributor
-     * @return Formatted player page as string
+     * @return The SendPlayerPage event holding one entry per player
      */
-    public String generatePlayerPage(Long distributorId) {
-        // Find all players for this distributor
-        java.util.List<Player> players = playerRepository.findAll().stream()
-                .filter(p -> p.getDistributor() != null && p.getDistributor().getId().equals(distributorId))
-                .toList();
-        
-        if (players.isEmpty()) {
-            return "No players registered with this distributor.";
+    public SendPlayerPage buildPlayerPage(Long distributorId) {
+        // Aggregate owned games and playtime per player in a single query
+        Map<Long, OwnedGameRepository.LibraryStats> statsByPlayer = new HashMap<>();
+        for (OwnedGameRepository.LibraryStats stats : ownedGameRepository.findLibraryStatsByDistributorId(distributorId)) {
+            statsByPlayer.put(stats.getPlayerId(), stats);
         }
-        
-        StringBuilder page = new StringBuilder();
-        page.append("=================================\n");
-        page.append("      PLAYERS DIRECTORY\n");
-        page.append("=================================\n\n");
-        
-        for (Player player : players) {
-            page.append("Player ID: ").append(player.getId()).append("\n");
-            page.append("Name: ").append(player.getFirstName()).append(" ").append(player.getLastName()).append("\n");
-            page.append("Pseudo: ").append(player.getPseudo()).append("\n");
-            page.append("Registration Date: ").append(player.getRegistrationDate()).append("\n");
-            
-            // Get owned games count
-            long ownedGamesCount = ownedGameRepository.findAll().stream()
-                    .filter(og -> og.getPlayer().getId().equals(player.getId()))
-                    .count();
-            page.append("Owned Games: ").append(ownedGamesCount).append("\n");
-            
-            // Get total playtime
-            int totalPlaytime = ownedGameRepository.findAll().stream()
-                    .filter(og -> og.getPlayer().getId().equals(player.getId()))
-                    .mapToInt(og -> og.getPlayTime())
-                    .sum();
-            page.append("Total Playtime: ").append(totalPlaytime).append(" minutes\n");
-            
-            // Get wishlist count
-            int wishlistCount = player.getWishedGames() != null ? player.getWishedGames().size() : 0;
-            page.append("Wishlist: ").append(wishlistCount).append(" games\n");
-            
-            page.append("---------------------------------\n");
+
+        List<PlayerEntry> entries = new ArrayList<>();
+        for (Player player : playerRepository.findByDistributorId(distributorId)) {
+            OwnedGameRepository.LibraryStats stats = statsByPlayer.get(player.getId());
+            entries.add(PlayerEntry.newBuilder()
+                    .setPlayerId(player.getId())
+                    .setPseudo(player.getPseudo())
+                    .setFirstName(player.getFirstName())
+                    .setLastName(player.getLastName())
+                    .setRegistrationDate(player.getRegistrationDate())
+                    .setOwnedGames(stats != null ? stats.getOwnedGames().intValue() : 0)
+                    .setTotalPlayTime(stats != null ? stats.getTotalPlayTime().intValue() : 0)
+                    .setWishlistSize(player.getWishedGames() != null ? player.getWishedGames().size() : 0)
+                    .build());
         }
-        
-        return page.toString();
+
+        return SendPlayerPage.newBuilder()
+                .setDistributorId(distributorId)
+                .setPlayers(entries)
+                .build();
     }
 
     /**
-     * Generates a JSON string containing all available games for a given platform from a distributor.
+     * Builds the page of games available from a distributor for a given platform.
      * @param distributorId The distributor ID
-     * @param platform The platform to filter games
-     * @return JSON string with games information
+     * @param platform The platform the page is requested for
+     * @return The SendGamesPage event holding one entry per distributed game
      */
-    public String buildGamesPage(Long distributorId, Platform platform) {
+    public SendGamesPage buildGamesPage(Long distributorId, Platform platform) {
         // Verify distributor exists
         Distributor distributor = distributorRepository.findById(distributorId)
                 .orElseThrow(() -> new RuntimeException("Distributor not found: " + distributorId));
 
-        // Get all distributed games for this distributor and platform
-        List<DistributedGame> games = distributedGameRepository.findAll().stream()
-                .filter(game -> game.getDistributor().getId().equals(distributorId))
-                .toList();
-
-        StringBuilder page = new StringBuilder();
-        page.append("=================================\n");
-        page.append("   AVAILABLE GAMES - ").append(platform).append("\n");
-        page.append("   Distributor: ").append(distributor.getName()).append("\n");
-        page.append("=================================\n\n");
-
-        if (games.isEmpty()) {
-            page.append("No games available for this platform.\n");
-        } else {
-            for (DistributedGame game : games) {
-                page.append("Game ID: ").append(game.getGameId()).append("\n");
-                page.append("Name: ").append(game.getGameName()).append("\n");
-                page.append("Version: ").append(game.getVersion()).append("\n");
-                page.append("Price: $").append(game.getPrice()).append("\n");
-                
-                if (game.getSale() != null) {
-                    float discountedPrice = game.getPrice() * (1 - game.getSale());
-                    page.append("SALE! ").append((int)(game.getSale() * 100)).append("% OFF - ");
-                    page.append("Now: $").append(String.format("%.2f", discountedPrice)).append("\n");
-                }
-                
-                page.append("---------------------------------\n");
-            }
+        // Get all distributed games for this distributor
+        List<GameEntry> entries = new ArrayList<>();
+        for (DistributedGame game : distributedGameRepository.findByDistributorId(distributorId)) {
+            entries.add(GameEntry.newBuilder()
+                    .setGameId(game.getGameId())
+                    .setGameName(game.getGameName())
+                    .setVersion(game.getVersion())
+                    .setPrice(game.getPrice())
+                    .setSale(game.getSale())
+                    .build());
         }
 
-        return page.toString();
+        return SendGamesPage.newBuilder()
+                .setDistributorId(distributorId)
+                .setDistributorName(distributor.getName())
+                .setPlatform(platform.toString())
+                .setGames(entries)
+                .build();
     }
 
     /**
-     * Generates a JSON string containing all reviews for a specific game from a distributor.
+     * Builds the page of reviews published for a game of a distributor.
      * @param distributorId The distributor ID
      * @param gameId The game ID
-     * @return JSON string with reviews information
+     * @return The SendGameReviews event holding one entry per review
      */
-    public String buildGameReviewsPage(Long distributorId, Long gameId) {
+    public SendGameReviews buildGameReviewsPage(Long distributorId, Long gameId) {
+        return buildGameReviewsPage(distributorId, gameId, null);
+    }
+
+    /**
+     * Builds the page of reviews of a game of a distributor, or of the reviews matching a keyword search.
+     * Without a search, only the latest {@code reviews.page.size} reviews of the last {@code reviews.page.max-age-days} days are listed.
+     * @param distributorId The distributor ID
+     * @param gameId The game ID
+     * @param query Keywords to search in the comments, null or blank for every review
+     * @return The SendGameReviews event holding one entry per review, best matches first for a search
+     */
+    public SendGameReviews buildGameReviewsPage(Long distributorId, Long gameId, String query) {
         // Verify distributor exists
         Distributor distributor = distributorRepository.findById(distributorId)
                 .orElseThrow(() -> new RuntimeException("Distributor not found: " + distributorId));
@@ -539,46 +638,162 @@ public class DistributorService {
         DistributedGame game = distributedGameRepository.findByDistributorIdAndGameId(distributorId, gameId)
                 .orElseThrow(() -> new RuntimeException("Game not found for distributor " + distributorId + " and game " + gameId));
 
-        // Get all reviews for this game
-        List<Review> reviews = reviewRepository.findAll().stream()
-                .filter(review -> review.getGameId() == gameId)
-                .toList();
-
-        StringBuilder page = new StringBuilder();
-        page.append("=================================\n");
-        page.append("   GAME REVIEWS\n");
-        page.append("   Game: ").append(game.getGameName()).append("\n");
-        page.append("   Distributor: ").append(distributor.getName()).append("\n");
-        page.append("=================================\n\n");
-
-        if (reviews.isEmpty()) {
-            page.append("No reviews yet for this game.\n");
-        } else {
-            page.append("Total Reviews: ").append(reviews.size()).append("\n");
-            
-            // Calculate average rating
-            double avgRating = reviews.stream()
-                    .mapToInt(Review::getRating)
-                    .average()
-                    .orElse(0.0);
-            page.append("Average Rating: ").append(String.format("%.1f", avgRating)).append("/10\n\n");
-
-            for (Review review : reviews) {
-                page.append("Review ID: ").append(review.getId()).append("\n");
-                page.append("Rating: ").append(review.getRating()).append("/10\n");
-                page.append("Comment: ").append(review.getComment()).append("\n");
-                page.append("Date: ").append(review.getPublicationDate()).append("\n");
-                
-                int positiveReactions = review.getPositiveReactions() != null ? review.getPositiveReactions().size() : 0;
-                int negativeReactions = review.getNegativeReactions() != null ? review.getNegativeReactions().size() : 0;
-                page.append("Reactions: 👍 ").append(positiveReactions)
-                    .append(" | 👎 ").append(negativeReactions).append("\n");
-                
-                page.append("---------------------------------\n");
+        // Reaction counts are computed by the database, reacting players are never loaded
+        boolean search = query != null && !query.isBlank();
+        List<ReviewEntry> entries = new ArrayList<>();
+        List<ReviewRepository.ReviewSummary> reviews = search
+                ? searchReviews(gameId, query)
+                : reviewRepository.findSummariesByGameIdSince(gameId, reviewsPageSince(), PageRequest.of(0, reviewsPageSize));
+        for (ReviewRepository.ReviewSummary review : reviews) {
+            entries.add(ReviewEntry.newBuilder()
+                    .setReviewId(review.getReviewId())
+                    .setRating(review.getRating())
+                    .setComment(review.getComment())
+                    .setPublicationDate(review.getPublicationDate())
+                    .setPositiveReactions(review.getPositiveReactions())
+                    .setNegativeReactions(review.getNegativeReactions())
+                    .build());
+        }
+
+        return SendGameReviews.newBuilder()
+                .setDistributorId(distributorId)
+                .setDistributorName(distributor.getName())
+                .setGameId(gameId)
+                .setGameName(game.getGameName())
+                .setQuery(search ? query : null)
+                .setReviews(entries)
+                .build();
+    }
+
+    /**
+     * Ranks the reviews with the search index, then reads only the best ones from the database.
+     * Until the index is built, the reviews of the game in the window of the reviews page are filtered in memory instead, by publication date.
+     */
+    private List<ReviewRepository.ReviewSummary> searchReviews(Long gameId, String query) {
+        if (!reviewIndex.isReady()) {
+            Set<String> terms = new HashSet<>(Tokenizer.tokenize(query));
+            List<ReviewRepository.ReviewSummary> matches = new ArrayList<>();
+            for (ReviewRepository.ReviewSummary review : reviewRepository.findSummariesByGameIdSince(gameId, reviewsPageSince(), Pageable.unpaged())) {
+                if (!Collections.disjoint(terms, Tokenizer.tokenize(review.getComment()))) matches.add(review);
             }
+            return matches;
         }
 
-        return page.toString();
+        List<ReviewIndex.Hit> hits = reviewIndex.search(gameId, query);
+        if (hits.isEmpty()) return Collections.emptyList();
+
+        Map<Long, ReviewRepository.ReviewSummary> byId = new HashMap<>();
+        for (ReviewIndex.Hit hit : hits) byId.put(hit.reviewId(), null);
+        for (ReviewRepository.ReviewSummary review : reviewRepository.findSummariesByIds(byId.keySet())) byId.put(review.getReviewId(), review);
+
+        List<ReviewRepository.ReviewSummary> ranked = new ArrayList<>(hits.size());
+        for (ReviewIndex.Hit hit : hits) {
+            ReviewRepository.ReviewSummary review = byId.get(hit.reviewId());
+            if (review != null) ranked.add(review);
+        }
+        return ranked;
     }
-}
 
+    /**
+     * @return Oldest publication date listed by the reviews page, which bounds the partitions it reads
+     */
+    private Instant reviewsPageSince() {
+        return Instant.now().minus(Duration.ofDays(reviewsPageMaxAgeDays));
+    }
+
+    /**
+     * Builds a leaderboard page of a distributor from the maintained rankings, reading only the names of the listed games.
+     * @param distributorId The distributor ID
+     * @param boardName most-owned, most-played, top-rated or trending
+     * @param limit Number of games requested
+     * @return The SendLeaderboard event holding the best games, best first
+     */
+    public SendLeaderboard buildLeaderboardPage(Long distributorId, String boardName, int limit) {
+        Distributor distributor = distributorRepository.findById(distributorId)
+                .orElseThrow(() -> new RuntimeException("Distributor not found: " + distributorId));
+        Board board = Board.of(boardName);
+
+        List<RankingService.Ranked> ranked = rankingService.top(distributorId, board, limit);
+        Map<Long, String> names = new HashMap<>();
+        if (!ranked.isEmpty()) {
+            List<Long> gameIds = ranked.stream().map(RankingService.Ranked::gameId).toList();
+            for (DistributedGame game : distributedGameRepository.findByDistributorIdAndGameIdIn(distributorId, gameIds))
+                names.put(game.getGameId(), game.getGameName());
+        }
+
+        List<LeaderboardEntry> entries = new ArrayList<>(ranked.size());
+        for (RankingService.Ranked game : ranked) {
+            entries.add(LeaderboardEntry.newBuilder()
+                    .setRank(entries.size() + 1)
+                    .setGameId(game.gameId())
+                    .setGameName(names.getOrDefault(game.gameId(), "Game " + game.gameId()))
+                    .setScore(game.score())
+                    .build());
+        }
+
+        return SendLeaderboard.newBuilder()
+                .setDistributorId(distributorId)
+                .setDistributorName(distributor.getName())
+                .setBoard(board.eventName())
+                .setEntries(entries)
+                .build();
+    }
+
+    /**
+     * Builds the "players who bought this also bought" page of a game from the in-memory co-ownership model,
+     * reading only the names of the listed games.
+     * @param distributorId The distributor ID
+     * @param gameId The game ID
+     * @param limit Number of games requested
+     * @return The SendRecommendations event holding the recommended games, best first
+     */
+    public SendRecommendations buildRecommendationsPage(Long distributorId, Long gameId, int limit) {
+        Distributor distributor = distributorRepository.findById(distributorId)
+                .orElseThrow(() -> new RuntimeException("Distributor not found: " + distributorId));
+
+        List<RecommendationService.Recommendation> recommendations = recommendationService.recommend(distributorId, gameId, limit);
+        List<Long> gameIds = new ArrayList<>(recommendations.size() + 1);
+        gameIds.add(gameId);
+        for (RecommendationService.Recommendation recommendation : recommendations) gameIds.add(recommendation.gameId());
+        Map<Long, String> names = new HashMap<>();
+        for (DistributedGame game : distributedGameRepository.findByDistributorIdAndGameIdIn(distributorId, gameIds))
+            names.put(game.getGameId(), game.getGameName());
+
+        List<RecommendationEntry> entries = new ArrayList<>(recommendations.size());
+        for (RecommendationService.Recommendation recommendation : recommendations) {
+            entries.add(RecommendationEntry.newBuilder()
+                    .setGameId(recommendation.gameId())
+                    .setGameName(names.getOrDefault(recommendation.gameId(), "Game " + recommendation.gameId()))
+                    .setCoOwners(recommendation.coOwners())
+                    .setScore(recommendation.score())
+                    .build());
+        }
+
+        return SendRecommendations.newBuilder()
+                .setDistributorId(distributorId)
+                .setDistributorName(distributor.getName())
+                .setGameId(gameId)
+                .setGameName(names.getOrDefault(gameId, "Game " + gameId))
+                .setEntries(entries)
+                .build();
+    }
+
+    /**
+     * Entitlement check, answered by the ownership index when it knows the purchase, by the database otherwise.
+     * The index only learns the purchases committed on this instance, so its misses are confirmed in the database.
+     * @param playerId ID of the player
+     * @param gameId ID of the game
+     * @return true if the player owns the game
+     */
+    public boolean owns(Long playerId, Long gameId) {
+        if (ownershipIndex.isReady() && ownershipIndex.owns(playerId, gameId)) return true;
+        return ownedGameRepository.findByPlayerIdAndGameId(playerId, gameId).isPresent();
+    }
+
+    /**
+     * Result of a library update check.
+     * @param answer Event answering the player
+     * @param playerName Name of the player, null if the player owns none of the checked games
+     */
+    public record UpdateCheck(UpdatesAvailable answer, String playerName) {}
+}
@@ -0,0 +1,115 @@
+package org.pops.et4.jvm.project.distributor.archive;
+
+import org.pops.et4.jvm.project.migrations.PartitionMaintenance;
+import org.pops.et4.jvm.project.distributor.kafka.KafkaConsumerService;
+import org.pops.et4.jvm.project.schemas.archive.ArchiveReader;
+import org.pops.et4.jvm.project.schemas.archive.ArchivedEvent;
+import org.pops.et4.jvm.project.schemas.archive.Archiver;
+import org.pops.et4.jvm.project.schemas.archive.EventArchive;
+import org.pops.et4.jvm.project.schemas.events.ConsumeLog;
+import org.pops.et4.jvm.project.schemas.events.GameReviewed;
+import org.pops.et4.jvm.project.schemas.events.KafkaEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Cold tier of the distributor: what ages out of memory and of distributor_db is kept in an {@link EventArchive} for audits.
+ * <ul>
+ *     <li>the consume logs older than {@code archive.consume-logs.max-age-minutes}, one dataset per topic ({@code consume-logs/<topic>})</li>
+ *     <li>the reviews of an expired partition, with their reactions, as GameReviewed events keyed by player id ({@code reviews}),
+ *     before {@link org.pops.et4.jvm.project.distributor.db.PartitionMaintenanceService} drops it</li>
+ * </ul>
+ */
+@Component(ArchiveService.BEAN_NAME)
+public class ArchiveService {
+
+    public static final String BEAN_NAME = "distributorServiceArchiveService";
+
+    public static final String REVIEWS_DATASET = "reviews";
+
+    private final KafkaConsumerService consumerService;
+    private final EventArchive archive;
+    private final ArchiveReader reader;
+    private final Archiver archiver;
+
+    @Value("${archive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${archive.consume-logs.max-age-minutes:60}")
+    private long consumeLogsMaxAgeMinutes;
+
+    @Autowired
+    public ArchiveService(
+            @Qualifier(KafkaConsumerService.BEAN_NAME) KafkaConsumerService consumerService,
+            @Value("${archive.path:./data/distributor-archive}") String path,
+            @Value("${archive.codec:deflate}") String codec
+    ) {
+        this.consumerService = consumerService;
+        this.archive = new EventArchive(Path.of(path), codec);
+        this.reader = new ArchiveReader(this.archive);
+        this.archiver = new Archiver(this.archive);
+    }
+
+    public EventArchive getArchive() {
+        return this.archive;
+    }
+
+    public ArchiveReader getReader() {
+        return this.reader;
+    }
+
+    @Scheduled(fixedDelayString = "${archive.interval-ms:600000}", initialDelayString = "${archive.interval-ms:600000}")
+    public void scheduledRun() {
+        if (this.enabled) this.archiveConsumeLogs();
+    }
+
+    /**
+     * Moves the old consume logs to the archive, they stay in memory if they cannot be written.
+     * @return Number of archived logs
+     */
+    public synchronized int archiveConsumeLogs() {
+        List<ConsumeLog<? extends KafkaEvent>> logs = this.consumerService.getLogsBefore(Instant.now().minus(Duration.ofMinutes(this.consumeLogsMaxAgeMinutes)));
+        return this.archiver.archiveConsumeLogs(logs, this.consumerService::removeLogs);
+    }
+
+    /**
+     * {@link PartitionMaintenance.BeforeDrop} of the Reviews table: streams the reviews of the partition and their reactions to the archive.
+     */
+    public void archivePartition(Connection connection, PartitionMaintenance.PartitionedTable table, String partition) throws SQLException, IOException {
+        this.archiver.archivePartition(connection, partition, REVIEWS_DATASET,
+                "SELECT r.id, r.player_id, r.game_id, p.distributor_id, r.rating, r.comment, r.publication_date, " +
+                "ARRAY(SELECT player_id FROM positive_reactions WHERE review_id = r.id) AS positive_reactions, " +
+                "ARRAY(SELECT player_id FROM negative_reactions WHERE review_id = r.id) AS negative_reactions " +
+                "FROM " + partition + " r JOIN players p ON p.id = r.player_id",
+                row -> {
+                    GameReviewed event = GameReviewed.newBuilder()
+                            .setReviewId(row.getLong("id"))
+                            .setGameId(row.getLong("game_id"))
+                            .setDistributorId(row.getLong("distributor_id"))
+                            .setRating(row.getInt("rating"))
+                            .setComment(row.getString("comment"))
+                            .setPublicationDate(row.getTimestamp("publication_date").toInstant())
+                            .setPositiveReactionPlayerIds(playerIds(row.getArray("positive_reactions")))
+                            .setNegativeReactionPlayerIds(playerIds(row.getArray("negative_reactions")))
+                            .build();
+                    return new ArchivedEvent<>(table.name(), event.getPublicationDate(), String.valueOf(row.getLong("player_id")), event);
+                });
+    }
+
+    private static List<Long> playerIds(Array array) throws SQLException {
+        return Arrays.asList((Long[]) array.getArray());
+    }
+}
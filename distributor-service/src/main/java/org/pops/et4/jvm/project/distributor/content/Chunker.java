@@ -0,0 +1,78 @@
+package org.pops.et4.jvm.project.distributor.content;
+
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+
+/**
+ * Content-defined chunking with a gear rolling hash (FastCDC).
+ * <ul>
+ *     <li>a chunk ends where the hash of its last bytes matches a mask, so an insertion only moves the boundaries around it,
+ *     the chunks after it are found again at their new offset</li>
+ *     <li>no cut before the minimum size, a forced cut at the maximum size</li>
+ *     <li>a stricter mask before the average size and a looser one after keep most chunks close to the average</li>
+ * </ul>
+ * Bit k of the gear hash only depends on the last k + 1 bytes, the masks keep the highest bits.
+ */
+public final class Chunker {
+
+    // Fixed seed: the boundaries of a build must not change between two runs, or two versions would share no chunk
+    private static final long[] GEAR = new SplittableRandom(0x5EED_CDC0_2025L).longs(256).toArray();
+
+    private final int minSize;
+    private final int averageSize;
+    private final int maxSize;
+    private final long strictMask;
+    private final long looseMask;
+
+    /**
+     * @throws IllegalArgumentException unless minSize <= averageSize <= maxSize and averageSize is a power of two
+     */
+    public Chunker(int minSize, int averageSize, int maxSize) {
+        if (minSize <= 0 || minSize > averageSize || averageSize > maxSize || Integer.bitCount(averageSize) != 1)
+            throw new IllegalArgumentException("Invalid chunk sizes: " + minSize + "/" + averageSize + "/" + maxSize);
+        this.minSize = minSize;
+        this.averageSize = averageSize;
+        this.maxSize = maxSize;
+
+        int bits = Integer.numberOfTrailingZeros(averageSize);
+        this.strictMask = -1L << (64 - bits - 1);
+        this.looseMask = -1L << (64 - Math.max(1, bits - 1));
+    }
+
+    public int maxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * @param data Bytes from the start of the chunk, up to {@link #maxSize()} of them, or up to the end of the build
+     * @return Length of the chunk starting at the position of data
+     */
+    public int cut(ByteBuffer data) {
+        int base = data.position();
+        int length = data.remaining();
+        if (length <= this.minSize) return length;
+
+        int normal = Math.min(this.averageSize, length);
+        int limit = Math.min(this.maxSize, length);
+        long hash = 0;
+        int i = this.minSize;
+
+        for (; i < normal; i++) {
+            hash = (hash << 1) + GEAR[data.get(base + i) & 0xff];
+            if ((hash & this.strictMask) == 0) return i + 1;
+        }
+        for (; i < limit; i++) {
+            hash = (hash << 1) + GEAR[data.get(base + i) & 0xff];
+            if ((hash & this.looseMask) == 0) return i + 1;
+        }
+        return limit;
+    }
+
+    /**
+     * Written in the chunk index, an index computed with other sizes is computed again.
+     */
+    @Override
+    public String toString() {
+        return this.minSize + "/" + this.averageSize + "/" + this.maxSize;
+    }
+}
@@ -0,0 +1,152 @@
+package org.pops.et4.jvm.project.distributor.content;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Serves the builds of the {@link ContentStore}.
+ * <ul>
+ *     <li>{@code GET <base>/manifest}: the chunk list, see {@link ContentStore.Manifest#toText()}</li>
+ *     <li>{@code GET <base>/manifest?base=<version>}: the chunk list against an installed version, see {@link ContentStore.Delta#toText()},
+ *     or the plain chunk list if the store does not have that version</li>
+ *     <li>{@code GET <base>/chunks/<index>}: the bytes of one chunk, its CRC32C in {@value #CHECKSUM_HEADER},
+ *     a {@code Range} header (relative to the chunk) resumes an interrupted transfer</li>
+ * </ul>
+ * Chunks go from the file to the socket with sendfile when the connector supports it, else with {@link FileChannel#transferTo}.
+ */
+@RestController(ContentController.BEAN_NAME)
+@RequestMapping(ContentController.BASE_PATH + "/{gameId}/{version}/{platform}")
+public class ContentController {
+
+    public static final String BEAN_NAME = "distributorServiceContentController";
+
+    public static final String BASE_PATH = "/content";
+    public static final String CHECKSUM_HEADER = "X-Chunk-Crc32c";
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final ContentStore contentStore;
+
+    @Autowired
+    public ContentController(@Qualifier(ContentStore.BEAN_NAME) ContentStore contentStore) {
+        this.contentStore = contentStore;
+    }
+
+    @GetMapping(value = "/manifest", produces = MediaType.TEXT_PLAIN_VALUE)
+    public String manifest(
+            @PathVariable long gameId,
+            @PathVariable String version,
+            @PathVariable String platform,
+            @RequestParam(required = false) String base
+    ) throws IOException {
+        ContentStore.Manifest manifest = this.manifestOf(gameId, version, platform);
+        if (base == null || base.equals(version) || !this.contentStore.hasBuild(gameId, base, platform)) return manifest.toText();
+        return this.contentStore.delta(gameId, base, version, platform).toText();
+    }
+
+    @GetMapping("/chunks/{index}")
+    public void chunk(
+            @PathVariable long gameId,
+            @PathVariable String version,
+            @PathVariable String platform,
+            @PathVariable int index,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws IOException {
+        ContentStore.Manifest manifest = this.manifestOf(gameId, version, platform);
+        if (index < 0 || index >= manifest.chunkCount())
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No chunk " + index + ", the build has " + manifest.chunkCount());
+
+        long chunkOffset = manifest.offsetOf(index);
+        long chunkLength = manifest.lengthOf(index);
+        long[] range = parseRange(request.getHeader(HttpHeaders.RANGE), chunkLength);
+        if (range == null) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + chunkLength);
+            response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            return;
+        }
+        long start = range[0];
+        long length = range[1] - range[0] + 1;
+
+        response.setStatus(length == chunkLength ? HttpStatus.OK.value() : HttpStatus.PARTIAL_CONTENT.value());
+        if (length != chunkLength)
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + range[0] + "-" + range[1] + "/" + chunkLength);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(ContentController.CHECKSUM_HEADER, Long.toHexString(manifest.checksums()[index]));
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setContentLengthLong(length);
+
+        Path path = this.contentStore.buildPath(gameId, version, platform);
+        long position = chunkOffset + start;
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // The connector writes the file region to the socket once the request returns
+            request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, position);
+            request.setAttribute(SENDFILE_END, position + length);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long remaining = length;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, out);
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+
+    private ContentStore.Manifest manifestOf(long gameId, String version, String platform) throws IOException {
+        try {
+            return this.contentStore.manifest(gameId, version, platform);
+        } catch (NoSuchFileException | IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No build " + gameId + "/" + version + "/" + platform);
+        }
+    }
+
+    /**
+     * Parses a single "bytes=start-end", "bytes=start-" or "bytes=-suffix" range.
+     * @return The first and last byte, the whole chunk without header, null if the range is not satisfiable
+     */
+    static long[] parseRange(String header, long length) {
+        if (header == null || !header.startsWith("bytes=") || header.contains(",")) return new long[] { 0, length - 1 };
+
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) return null;
+
+        try {
+            long start, end;
+            if (dash == 0) {
+                long suffix = Long.parseLong(spec.substring(1));
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash));
+                end = dash == spec.length() - 1 ? length - 1 : Math.min(Long.parseLong(spec.substring(dash + 1)), length - 1);
+            }
+            return start <= end && start < length ? new long[] { start, end } : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
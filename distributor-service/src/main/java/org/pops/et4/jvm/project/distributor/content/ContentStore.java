@@ -0,0 +1,350 @@
+package org.pops.et4.jvm.project.distributor.content;
+
+import org.pops.et4.jvm.project.schemas.logging.EventLog;
+import org.pops.et4.jvm.project.schemas.logging.EventLogger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+
+/**
+ * Local store of the game builds, one file per game, version and platform: {@code <root>/<gameId>/<version>/<platform>.build}.
+ * <ul>
+ *     <li>a build is split into content-defined chunks (see {@link Chunker}), so two versions of a game share every chunk
+ *     the patch did not touch, even when it moved them</li>
+ *     <li>the chunk index (offset, size, CRC32C and SHA-256 of every chunk) is computed once per build from memory-mapped windows,
+ *     then written next to the build as {@code <platform>.index} and cached</li>
+ *     <li>the delta between two versions lists the chunks of the base version a player can copy locally, only the others are sent</li>
+ *     <li>builds are imported with {@link FileChannel#transferFrom}, the bytes never go through the heap</li>
+ * </ul>
+ */
+@Component(ContentStore.BEAN_NAME)
+public class ContentStore {
+
+    public static final String BEAN_NAME = "distributorServiceContentStore";
+
+    private static final EventLogger LOG = EventLog.logger("Content");
+    private static final Pattern SEGMENT = Pattern.compile("[A-Za-z0-9._-]+");
+    private static final String BUILD_EXTENSION = ".build";
+    private static final String INDEX_EXTENSION = ".index";
+    private static final long MAP_WINDOW = 64L * 1024 * 1024;
+
+    @Value("${content.root:./data/content}")
+    private String root;
+
+    @Value("${content.chunking.min-size:262144}")
+    private int minChunkSize;
+
+    @Value("${content.chunking.average-size:1048576}")
+    private int averageChunkSize;
+
+    @Value("${content.chunking.max-size:4194304}")
+    private int maxChunkSize;
+
+    @Value("${content.public-url:http://localhost:${server.port}}")
+    private String publicUrl;
+
+    private final ConcurrentMap<Path, Manifest> manifests = new ConcurrentHashMap<>();
+
+    /**
+     * @throws IllegalArgumentException if the version or the platform could escape the store directory
+     */
+    public Path buildPath(long gameId, String version, String platform) {
+        if (!SEGMENT.matcher(version).matches() || version.startsWith(".") || !SEGMENT.matcher(platform).matches())
+            throw new IllegalArgumentException("Invalid build: " + gameId + "/" + version + "/" + platform);
+        return Path.of(this.root, Long.toString(gameId), version, platform + BUILD_EXTENSION);
+    }
+
+    public boolean hasBuild(long gameId, String version, String platform) {
+        try {
+            return Files.isRegularFile(this.buildPath(gameId, version, platform));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return Base URL of the build for the players, null if the store does not have it
+     */
+    public String downloadUrl(long gameId, String version, String platform) {
+        if (!this.hasBuild(gameId, version, platform)) return null;
+        return this.publicUrl + ContentController.BASE_PATH + "/" + gameId + "/" + version + "/" + platform;
+    }
+
+    /**
+     * Copies a build file into the store, replacing the previous build of the same game, version and platform.
+     * @return Path of the build in the store
+     */
+    public Path importBuild(long gameId, String version, String platform, Path source) throws IOException {
+        Path target = this.buildPath(gameId, version, platform);
+        Files.createDirectories(target.getParent());
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) position += out.transferFrom(in, position, size - position);
+            out.force(true);
+        }
+
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.manifests.remove(target);
+        LOG.info("Imported build {} ({} bytes)", target, Files.size(target));
+        return target;
+    }
+
+
+    /**
+     * @return The manifest of the build: cached, else read from its chunk index, else computed and written to its chunk index
+     * @throws java.nio.file.NoSuchFileException if the store does not have the build
+     */
+    public Manifest manifest(long gameId, String version, String platform) throws IOException {
+        Path path = this.buildPath(gameId, version, platform);
+        long size = Files.size(path);
+        long lastModified = Files.getLastModifiedTime(path).toMillis();
+
+        Manifest cached = this.manifests.get(path);
+        if (cached != null && this.isCurrent(cached, size, lastModified)) return cached;
+
+        Path indexPath = path.resolveSibling(platform + INDEX_EXTENSION);
+        Manifest manifest = this.readIndex(indexPath, gameId, version, platform);
+        if (manifest == null || !this.isCurrent(manifest, size, lastModified)) {
+            manifest = this.computeManifest(path, gameId, version, platform, size, lastModified);
+            this.writeIndex(indexPath, manifest);
+        }
+        this.manifests.put(path, manifest);
+        return manifest;
+    }
+
+    /**
+     * Chunks of a version, each marked with its offset in the base version when the base has the same chunk.
+     * @throws java.nio.file.NoSuchFileException if the store does not have one of the two builds
+     */
+    public Delta delta(long gameId, String baseVersion, String version, String platform) throws IOException {
+        Manifest target = this.manifest(gameId, version, platform);
+        Manifest base = this.manifest(gameId, baseVersion, platform);
+
+        Map<String, Long> baseChunks = new HashMap<>(base.chunkCount() * 2);
+        for (int i = 0; i < base.chunkCount(); i++) baseChunks.putIfAbsent(base.digests()[i], base.offsetOf(i));
+
+        long[] baseOffsets = new long[target.chunkCount()];
+        for (int i = 0; i < target.chunkCount(); i++) baseOffsets[i] = baseChunks.getOrDefault(target.digests()[i], -1L);
+
+        Delta delta = new Delta(target, baseVersion, baseOffsets);
+        LOG.info("Delta of {}/{}/{} from {}: {} of {} chunk(s) to send, {} of {} bytes", gameId, version, platform, baseVersion,
+                target.chunkCount() - delta.reusedChunks(), target.chunkCount(), delta.patchSize(), target.size());
+        return delta;
+    }
+
+    /**
+     * @return Bytes a player with the base version has to download, null if the store does not have both builds
+     */
+    public Long patchSize(long gameId, String baseVersion, String version, String platform) {
+        if (!this.hasBuild(gameId, baseVersion, platform) || !this.hasBuild(gameId, version, platform)) return null;
+        try {
+            return this.delta(gameId, baseVersion, version, platform).patchSize();
+        } catch (IOException e) {
+            LOG.warn("No delta of {}/{}/{} from {}: {}", gameId, version, platform, baseVersion, e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean isCurrent(Manifest manifest, long size, long lastModified) {
+        return manifest.size() == size && manifest.lastModified() == lastModified && manifest.chunking().equals(this.chunker().toString());
+    }
+
+    private Manifest computeManifest(Path path, long gameId, String version, String platform, long size, long lastModified) throws IOException {
+        Chunker chunker = this.chunker();
+        List<Long> offsets = new ArrayList<>();
+        List<Long> checksums = new ArrayList<>();
+        List<String> digests = new ArrayList<>();
+        long start = System.nanoTime();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            CRC32C crc = new CRC32C();
+            MessageDigest sha256 = sha256();
+            long windowSize = Math.max(MAP_WINDOW, chunker.maxSize());
+            MappedByteBuffer window = null;
+            long windowStart = 0;
+            long offset = 0;
+
+            while (offset < size) {
+                // A chunk may end up to maxSize bytes after its start, the window is mapped again before it could cut a chunk short
+                long windowEnd = window == null ? 0 : windowStart + window.capacity();
+                if (window == null || (offset + chunker.maxSize() > windowEnd && windowEnd < size)) {
+                    windowStart = offset;
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(windowSize, size - offset));
+                    windowEnd = windowStart + window.capacity();
+                }
+
+                ByteBuffer data = window.slice((int) (offset - windowStart), (int) Math.min(chunker.maxSize(), windowEnd - offset));
+                int length = chunker.cut(data);
+                ByteBuffer chunk = data.slice(0, length);
+
+                crc.reset();
+                crc.update(chunk.duplicate());
+                sha256.update(chunk);
+                offsets.add(offset);
+                checksums.add(crc.getValue());
+                digests.add(HexFormat.of().formatHex(sha256.digest()));
+                offset += length;
+            }
+        }
+
+        LOG.info("Chunk index of {}: {} chunk(s) in {} ms", path, offsets.size(), (System.nanoTime() - start) / 1_000_000);
+        return new Manifest(gameId, version, platform, size, lastModified, chunker.toString(),
+                offsets.stream().mapToLong(Long::longValue).toArray(), checksums.stream().mapToLong(Long::longValue).toArray(), digests.toArray(String[]::new));
+    }
+
+    private Manifest readIndex(Path indexPath, long gameId, String version, String platform) {
+        if (!Files.isRegularFile(indexPath)) return null;
+        try {
+            return Manifest.parse(gameId, version, platform, Files.readAllLines(indexPath));
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Ignoring chunk index {}: {}", indexPath, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeIndex(Path indexPath, Manifest manifest) {
+        Path tmp = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        try {
+            Files.writeString(tmp, manifest.toText());
+            Files.move(tmp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The manifest stays cached, the index is only computed again after a restart
+            LOG.warn("Failed to write the chunk index {}: {}", indexPath, e.getMessage());
+        }
+    }
+
+    private Chunker chunker() {
+        return new Chunker(this.minChunkSize, this.averageChunkSize, this.maxChunkSize);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Content-defined chunk list of a build, also its chunk index on disk.
+     * @param chunking Chunk sizes the index was computed with, see {@link Chunker#toString()}
+     * @param offsets Offset of each chunk, in order
+     * @param checksums CRC32C of each chunk, checked by the players on every transfer
+     * @param digests SHA-256 of each chunk, identifies the chunks shared by two versions
+     */
+    public record Manifest(long gameId, String version, String platform, long size, long lastModified, String chunking,
+                           long[] offsets, long[] checksums, String[] digests) {
+
+        public int chunkCount() {
+            return this.offsets.length;
+        }
+
+        public long offsetOf(int chunk) {
+            return this.offsets[chunk];
+        }
+
+        public long lengthOf(int chunk) {
+            return (chunk + 1 < this.offsets.length ? this.offsets[chunk + 1] : this.size) - this.offsets[chunk];
+        }
+
+        /**
+         * Plain text form sent to the players: a header of "key value" lines, then one "index offset length crc32c sha256" line per chunk.
+         */
+        public String toText() {
+            return this.toText(null, null);
+        }
+
+        String toText(String baseVersion, long[] baseOffsets) {
+            StringBuilder text = new StringBuilder()
+                    .append("game ").append(this.gameId).append('\n')
+                    .append("version ").append(this.version).append('\n')
+                    .append("platform ").append(this.platform).append('\n')
+                    .append("size ").append(this.size).append('\n')
+                    .append("modified ").append(this.lastModified).append('\n')
+                    .append("chunking ").append(this.chunking).append('\n')
+                    .append("chunks ").append(this.chunkCount()).append('\n');
+            if (baseVersion != null) text.append("base ").append(baseVersion).append('\n');
+            for (int i = 0; i < this.chunkCount(); i++) {
+                text.append(i).append(' ').append(this.offsetOf(i)).append(' ').append(this.lengthOf(i)).append(' ')
+                        .append(Long.toHexString(this.checksums[i])).append(' ').append(this.digests[i]);
+                if (baseOffsets != null) text.append(' ').append(baseOffsets[i] < 0 ? "-" : Long.toString(baseOffsets[i]));
+                text.append('\n');
+            }
+            return text.toString();
+        }
+
+        /**
+         * Reads back the text form, without base offsets.
+         * @return null if the header is incomplete
+         */
+        static Manifest parse(long gameId, String version, String platform, List<String> lines) {
+            Map<String, String> header = new HashMap<>();
+            List<Long> offsets = new ArrayList<>();
+            List<Long> checksums = new ArrayList<>();
+            List<String> digests = new ArrayList<>();
+
+            for (String line : lines) {
+                String[] parts = line.trim().split(" ");
+                if (parts.length == 2) header.put(parts[0], parts[1]);
+                else if (parts.length == 5) {
+                    offsets.add(Long.parseLong(parts[1]));
+                    checksums.add(Long.parseUnsignedLong(parts[3], 16));
+                    digests.add(parts[4]);
+                }
+            }
+
+            if (!header.containsKey("size") || !header.containsKey("modified") || !header.containsKey("chunking")) return null;
+            if (!Integer.toString(offsets.size()).equals(header.get("chunks"))) return null;
+            return new Manifest(gameId, version, platform, Long.parseLong(header.get("size")), Long.parseLong(header.get("modified")), header.get("chunking"),
+                    offsets.stream().mapToLong(Long::longValue).toArray(), checksums.stream().mapToLong(Long::longValue).toArray(), digests.toArray(String[]::new));
+        }
+    }
+
+    /**
+     * Chunks of a version against a base version.
+     * @param baseOffsets Offset in the base build of each chunk of the target, -1 for the chunks to send
+     */
+    public record Delta(Manifest target, String baseVersion, long[] baseOffsets) {
+
+        public int reusedChunks() {
+            int reused = 0;
+            for (long offset : this.baseOffsets) if (offset >= 0) reused++;
+            return reused;
+        }
+
+        /**
+         * @return Bytes of the chunks missing from the base version
+         */
+        public long patchSize() {
+            long bytes = 0;
+            for (int i = 0; i < this.baseOffsets.length; i++) if (this.baseOffsets[i] < 0) bytes += this.target.lengthOf(i);
+            return bytes;
+        }
+
+        /**
+         * The manifest text with a "base" header line and the offset in the base build ("-" if missing) at the end of each chunk line.
+         */
+        public String toText() {
+            return this.target.toText(this.baseVersion, this.baseOffsets);
+        }
+    }
+}
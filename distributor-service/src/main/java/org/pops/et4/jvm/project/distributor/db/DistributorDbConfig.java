@@ -1,7 +1,13 @@
 package org.pops.et4.jvm.project.distributor.db;
 
 import jakarta.persistence.EntityManagerFactory;
+import org.pops.et4.jvm.project.migrations.Database;
+import org.pops.et4.jvm.project.migrations.SchemaMigrations;
+import org.pops.et4.jvm.project.schemas.logging.EventLog;
+import org.pops.et4.jvm.project.schemas.logging.EventLogger;
+import org.pops.et4.jvm.project.schemas.sql.SqlBudget;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
 import org.springframework.boot.jpa.EntityManagerFactoryBuilder;
@@ -14,6 +20,7 @@ import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
 import javax.sql.DataSource;
+import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -32,6 +39,7 @@ public class DistributorDbConfig {
     public static final String DATA_SOURCE_PROPS_BEAN_NAME = "distributorServiceDistributorDbDataSourceProperties";
     public static final String ENTITY_MANAGER_FACTORY_BEAN_NAME = "distributorServiceDistributorDbEntityManagerFactory";
     public static final String TRANSACTION_MANAGER_BEAN_NAME = "distributorServiceDistributorDbTransactionManager";
+    public static final String MIGRATIONS_BEAN_NAME = "distributorServiceDistributorDbMigrations";
 
     public static final String REPOSITORIES_PACKAGE = "org.pops.et4.jvm.project.schemas.repositories.distributor";
     public static final String MODELS_PACKAGE = "org.pops.et4.jvm.project.schemas.models.distributor";
@@ -39,6 +47,8 @@ public class DistributorDbConfig {
     public static final String ENTITY_MANAGER_PERSISTENCE = "distributor";
     public static final String DB_MODE = "update";
 
+    private static final EventLogger LOG = EventLog.logger("Db");
+
     @Bean(name = DistributorDbConfig.DATA_SOURCE_PROPS_BEAN_NAME)
     @ConfigurationProperties(prefix = DistributorDbConfig.DATA_SOURCE_CONFIG)
     public DataSourceProperties dataSourceProperties() {
@@ -59,6 +69,10 @@ public class DistributorDbConfig {
     ) {
         Map<String, Object> props = new HashMap<>();
         props.put("hibernate.hbm2ddl.auto", DistributorDbConfig.DB_MODE);
+        // Counts the statements of each handler, see SqlBudget
+        props.put(SqlBudget.STATEMENT_INSPECTOR_PROPERTY, SqlBudget.INSTANCE);
+        // Reviews is partitioned on PostgreSQL: without this, Hibernate does not see it and tries to create it again
+        props.put("hibernate.hbm2ddl.extra_physical_table_types", "PARTITIONED TABLE");
 
         return builder
                 .dataSource(dataSource)
@@ -74,4 +88,26 @@ public class DistributorDbConfig {
     ) {
         return new JpaTransactionManager(emf);
     }
+
+    /**
+     * Versioned migrations of the database (indexes...), once Hibernate has created the tables.
+     */
+    @Bean(name = DistributorDbConfig.MIGRATIONS_BEAN_NAME)
+    public SchemaMigrations migrations(
+            @Qualifier(DistributorDbConfig.DATA_SOURCE_BEAN_NAME) DataSource dataSource,
+            @Qualifier(DistributorDbConfig.ENTITY_MANAGER_FACTORY_BEAN_NAME) EntityManagerFactory emf,
+            @Value("${migrations.enabled:true}") boolean enabled,
+            @Value("${migrations.check-access-paths:true}") boolean checkAccessPaths
+    ) {
+        SchemaMigrations migrations = new SchemaMigrations(dataSource, Database.DISTRIBUTOR);
+        if (enabled) migrations.migrate();
+        if (checkAccessPaths) {
+            try {
+                migrations.logAccessPaths();
+            } catch (SQLException e) {
+                LOG.warn("Could not check the access paths of distributor_db: {}", e.getMessage());
+            }
+        }
+        return migrations;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,46 @@
+package org.pops.et4.jvm.project.distributor.db;
+
+import org.pops.et4.jvm.project.migrations.SchemaMigrations;
+import org.pops.et4.jvm.project.schemas.repositories.distributor.OwnedGameRepository;
+
+import java.time.Instant;
+
+/**
+ * State of the owned games a snapshot was built from, stored with it and checked before it is loaded again.
+ * A database reset or restored reuses the ids of the owned games: a snapshot of the previous one would keep
+ * the ownerships it lost, and the catch-up after its last owned game would skip the new ones.
+ * @param epoch Epoch of distributor_db, see {@link SchemaMigrations#getEpoch()}
+ * @param lastOwnedGameId Highest owned game applied
+ * @param ownerships Number of owned games applied
+ */
+public record OwnedGamesState(long epoch, long lastOwnedGameId, long ownerships) {
+
+    public static final long UNKNOWN_EPOCH = 0;
+
+    /**
+     * @return Epoch of the database in milliseconds, {@link #UNKNOWN_EPOCH} if it was never migrated
+     */
+    public static long epochOf(SchemaMigrations migrations) {
+        return migrations.getEpoch().map(Instant::toEpochMilli).orElse(UNKNOWN_EPOCH);
+    }
+
+    /**
+     * The snapshot matches if the database has the same epoch, still holds its last owned game,
+     * and holds every owned game it applied up to it, plus at most {@code missing} ones.
+     * @param epoch Epoch of the database now
+     * @param missing Owned games the snapshot may lack before its last one, e.g. committed out of order
+     * @return Why the snapshot does not match the database, null if it does
+     */
+    public String mismatch(long epoch, OwnedGameRepository repository, long missing) {
+        if (epoch == UNKNOWN_EPOCH) return "epoch of distributor_db unknown, migrations disabled";
+        if (this.epoch != epoch) return "taken on another distributor_db (epoch " + this.epoch + ", now " + epoch + ")";
+        if (this.lastOwnedGameId == 0) return null;
+
+        long last = repository.findLastId().orElse(0L);
+        if (last < this.lastOwnedGameId) return "last owned game #" + this.lastOwnedGameId + " but the database ends at #" + last;
+        long rows = repository.countUpTo(this.lastOwnedGameId);
+        if (rows < this.ownerships || rows > this.ownerships + missing)
+            return this.ownerships + " owned game(s) up to #" + this.lastOwnedGameId + " but the database holds " + rows;
+        return null;
+    }
+}
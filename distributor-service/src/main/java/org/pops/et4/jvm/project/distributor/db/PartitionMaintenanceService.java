@@ -0,0 +1,105 @@
+package org.pops.et4.jvm.project.distributor.db;
+
+import org.pops.et4.jvm.project.migrations.PartitionMaintenance;
+import org.pops.et4.jvm.project.migrations.SchemaMigrations;
+import org.pops.et4.jvm.project.distributor.archive.ArchiveService;
+import org.pops.et4.jvm.project.distributor.ranking.RankingService;
+import org.pops.et4.jvm.project.distributor.search.ReviewIndex;
+import org.pops.et4.jvm.project.schemas.logging.EventLog;
+import org.pops.et4.jvm.project.schemas.logging.EventLogger;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Monthly partitions of the Reviews table (PostgreSQL only, see the V2 migration of distributor_db).
+ * The reviews of an expired partition are archived by the {@link ArchiveService} before it is dropped.
+ * Runs once every bean is created, so the partitions of the coming months exist before the listeners start, then periodically.
+ */
+@Component(PartitionMaintenanceService.BEAN_NAME)
+public class PartitionMaintenanceService implements SmartInitializingSingleton {
+
+    public static final String BEAN_NAME = "distributorServicePartitionMaintenanceService";
+
+    private static final EventLogger LOG = EventLog.logger("Partitions");
+
+    private final PartitionMaintenance maintenance;
+    private final ReviewIndex reviewIndex;
+    private final RankingService rankingService;
+
+    @Value("${partitioning.enabled:true}")
+    private boolean enabled;
+
+    private List<PartitionMaintenance.Result> lastResults = List.of();
+
+    @Autowired
+    public PartitionMaintenanceService(
+            @Qualifier(DistributorDbConfig.DATA_SOURCE_BEAN_NAME) DataSource dataSource,
+            // The table is only partitioned once the migrations ran
+            @Qualifier(DistributorDbConfig.MIGRATIONS_BEAN_NAME) SchemaMigrations migrations,
+            @Qualifier(ReviewIndex.BEAN_NAME) ReviewIndex reviewIndex,
+            @Qualifier(RankingService.BEAN_NAME) RankingService rankingService,
+            @Qualifier(ArchiveService.BEAN_NAME) ArchiveService archiveService,
+            @Value("${archive.enabled:true}") boolean archive,
+            @Value("${partitioning.reviews.premake-months:3}") int premakeMonths,
+            @Value("${partitioning.reviews.retention-months:0}") int retentionMonths
+    ) {
+        this.maintenance = new PartitionMaintenance(dataSource, List.of(
+                // The reactions lost their foreign key to the partitioned table, the review keys never had one
+                new PartitionMaintenance.PartitionedTable("reviews", "publication_date", premakeMonths, retentionMonths, List.of(
+                        new PartitionMaintenance.Dependent("positive_reactions", "review_id"),
+                        new PartitionMaintenance.Dependent("negative_reactions", "review_id"),
+                        new PartitionMaintenance.Dependent("review_keys", "review_id")
+                ))
+        ), archive ? archiveService::archivePartition : (connection, table, partition) -> {});
+        this.reviewIndex = reviewIndex;
+        this.rankingService = rankingService;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (this.enabled) this.run();
+    }
+
+    @Scheduled(fixedDelayString = "${partitioning.maintenance-interval-ms:3600000}", initialDelayString = "${partitioning.maintenance-interval-ms:3600000}")
+    public void scheduledRun() {
+        if (this.enabled) this.run();
+    }
+
+    /**
+     * Creates the coming partitions and drops the expired ones, then rebuilds the search index and the leaderboards if reviews were dropped.
+     */
+    public synchronized List<PartitionMaintenance.Result> run() {
+        try {
+            this.lastResults = this.maintenance.run(YearMonth.now(ZoneOffset.UTC));
+        } catch (SQLException e) {
+            LOG.error("Partition maintenance of distributor_db failed: {}", e.getMessage());
+            return List.of();
+        }
+        if (this.lastResults.stream().anyMatch(result -> result.dropped() > 0)) {
+            if (this.reviewIndex.isReady()) this.reviewIndex.rebuild();
+            if (this.rankingService.isReady()) this.rankingService.rebuild();
+        }
+        return this.lastResults;
+    }
+
+    /**
+     * @return Months of the partitions of the Reviews table, empty if it is not partitioned
+     */
+    public List<YearMonth> partitions() throws SQLException {
+        return this.maintenance.partitions("reviews");
+    }
+
+    public List<PartitionMaintenance.Result> getLastResults() {
+        return this.lastResults;
+    }
+}
@@ -0,0 +1,84 @@
+package org.pops.et4.jvm.project.distributor.dedup;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.pops.et4.jvm.project.distributor.db.DistributorDbConfig;
+import org.pops.et4.jvm.project.schemas.dedup.ProcessedEvents;
+import org.pops.et4.jvm.project.schemas.repositories.distributor.ProcessedEventRepository;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+
+/**
+ * Deduplication of the events consumed by the distributor, see {@link ProcessedEvents}: runs it in the transactions of distributor_db.
+ */
+@Service(ProcessedEventService.BEAN_NAME)
+public class ProcessedEventService implements InitializingBean {
+
+    public static final String BEAN_NAME = "distributorServiceProcessedEventService";
+
+    private final ProcessedEventRepository processedEventRepository;
+    private final TransactionTemplate readOnlyTransaction;
+
+    @Value("${dedup.retention-hours:168}")
+    private long retentionHours;
+
+    @Value("${dedup.bloom.generations:4}")
+    private int generations;
+
+    @Value("${dedup.bloom.initial-capacity:100000}")
+    private int initialCapacity;
+
+    @Value("${dedup.bloom.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    private ProcessedEvents processedEvents;
+
+    @Autowired
+    public ProcessedEventService(
+            @Qualifier(ProcessedEventRepository.BEAN_NAME) ProcessedEventRepository processedEventRepository,
+            @Qualifier(DistributorDbConfig.TRANSACTION_MANAGER_BEAN_NAME) PlatformTransactionManager transactionManager
+    ) {
+        this.processedEventRepository = processedEventRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Fills the bloom filter with the ids still in the retention window, before the listeners start.
+     */
+    @Override
+    public void afterPropertiesSet() {
+        this.processedEvents = new ProcessedEvents(this.processedEventRepository, Duration.ofHours(this.retentionHours),
+                this.generations, this.initialCapacity, this.falsePositiveRate);
+        this.readOnlyTransaction.executeWithoutResult(status -> this.processedEvents.load());
+    }
+
+    /**
+     * Records the event as processed by the given consumer, in the transaction of the listener.
+     * @return false if the event was already processed and must be skipped
+     */
+    @Transactional(transactionManager = DistributorDbConfig.TRANSACTION_MANAGER_BEAN_NAME, propagation = Propagation.MANDATORY)
+    public boolean markProcessed(ConsumerRecord<?, ?> record, String consumer) {
+        return this.processedEvents.markProcessed(record, consumer);
+    }
+
+    @Scheduled(fixedDelayString = "${dedup.purge-interval-ms:3600000}")
+    @Transactional(transactionManager = DistributorDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
+    public void purgeExpired() {
+        this.processedEvents.purgeExpired();
+    }
+
+    @Override
+    public String toString() {
+        return this.processedEvents.toString();
+    }
+}
@@ -0,0 +1,171 @@
+package org.pops.et4.jvm.project.distributor.entitlement;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Compressed set of IDs in the Roaring layout.
+ * <ul>
+ *     <li>the IDs are split by their high bits into chunks of 65536, the chunk keys are kept sorted</li>
+ *     <li>a chunk is a sorted array of the low 16 bits while it holds at most 4096 IDs (8 KiB),
+ *     then a 65536-bit bitmap (8 KiB as well, whatever the number of IDs)</li>
+ *     <li>membership is a binary search over the chunk keys, then a binary search or a bit test</li>
+ * </ul>
+ * Not thread-safe, the {@link OwnershipIndex} guards every access.
+ */
+final class IdBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 65536 / Long.SIZE;
+
+    private long[] keys = new long[1];
+    // Per chunk, exactly one of the two is set
+    private char[][] arrays = new char[1][];
+    private long[][] bitmaps = new long[1][];
+    private int[] cardinalities = new int[1];
+    private int chunks;
+    private long cardinality;
+
+    boolean contains(long id) {
+        int index = Arrays.binarySearch(this.keys, 0, this.chunks, id >>> 16);
+        if (index < 0) return false;
+
+        char low = (char) id;
+        char[] array = this.arrays[index];
+        if (array != null) return Arrays.binarySearch(array, 0, this.cardinalities[index], low) >= 0;
+        return (this.bitmaps[index][low >>> 6] & (1L << low)) != 0;
+    }
+
+    /**
+     * @return false if the ID is already in the set
+     */
+    boolean add(long id) {
+        long high = id >>> 16;
+        int index = Arrays.binarySearch(this.keys, 0, this.chunks, high);
+        if (index < 0) index = this.insertChunk(-index - 1, high);
+
+        char low = (char) id;
+        boolean added = this.arrays[index] != null ? this.addToArray(index, low) : this.addToBitmap(index, low);
+        if (added) this.cardinality++;
+        return added;
+    }
+
+    long cardinality() {
+        return this.cardinality;
+    }
+
+    /**
+     * @return Bytes written by {@link #writeTo}
+     */
+    int serializedSize() {
+        int size = Integer.BYTES;
+        for (int i = 0; i < this.chunks; i++)
+            size += Long.BYTES + Integer.BYTES + (this.arrays[i] != null ? this.cardinalities[i] * Character.BYTES : BITMAP_WORDS * Long.BYTES);
+        return size;
+    }
+
+    /**
+     * Writes the number of chunks, then each key, cardinality, and array or bitmap.
+     * The chunk kind is given by the cardinality, so a chunk is copied as is in both directions.
+     */
+    void writeTo(ByteBuffer buffer) {
+        buffer.putInt(this.chunks);
+        for (int i = 0; i < this.chunks; i++) {
+            int cardinality = this.cardinalities[i];
+            buffer.putLong(this.keys[i]);
+            buffer.putInt(cardinality);
+            if (this.arrays[i] != null) {
+                buffer.asCharBuffer().put(this.arrays[i], 0, cardinality);
+                buffer.position(buffer.position() + cardinality * Character.BYTES);
+            } else {
+                buffer.asLongBuffer().put(this.bitmaps[i]);
+                buffer.position(buffer.position() + BITMAP_WORDS * Long.BYTES);
+            }
+        }
+    }
+
+    static IdBitmap readFrom(ByteBuffer buffer) {
+        IdBitmap bitmap = new IdBitmap();
+        int chunks = buffer.getInt();
+        bitmap.keys = new long[Math.max(1, chunks)];
+        bitmap.arrays = new char[bitmap.keys.length][];
+        bitmap.bitmaps = new long[bitmap.keys.length][];
+        bitmap.cardinalities = new int[bitmap.keys.length];
+
+        for (int i = 0; i < chunks; i++) {
+            bitmap.keys[i] = buffer.getLong();
+            int cardinality = buffer.getInt();
+            bitmap.cardinalities[i] = cardinality;
+            if (cardinality <= ARRAY_MAX) {
+                bitmap.arrays[i] = new char[cardinality];
+                buffer.asCharBuffer().get(bitmap.arrays[i]);
+                buffer.position(buffer.position() + cardinality * Character.BYTES);
+            } else {
+                bitmap.bitmaps[i] = new long[BITMAP_WORDS];
+                buffer.asLongBuffer().get(bitmap.bitmaps[i]);
+                buffer.position(buffer.position() + BITMAP_WORDS * Long.BYTES);
+            }
+            bitmap.cardinality += cardinality;
+        }
+        bitmap.chunks = chunks;
+        return bitmap;
+    }
+
+    private boolean addToArray(int index, char low) {
+        char[] array = this.arrays[index];
+        int size = this.cardinalities[index];
+        int position = Arrays.binarySearch(array, 0, size, low);
+        if (position >= 0) return false;
+
+        if (size == ARRAY_MAX) {
+            this.toBitmap(index);
+            return this.addToBitmap(index, low);
+        }
+        if (size == array.length) array = this.arrays[index] = Arrays.copyOf(array, Math.min(ARRAY_MAX, size * 2));
+        position = -position - 1;
+        System.arraycopy(array, position, array, position + 1, size - position);
+        array[position] = low;
+        this.cardinalities[index]++;
+        return true;
+    }
+
+    private boolean addToBitmap(int index, char low) {
+        long[] bitmap = this.bitmaps[index];
+        long bit = 1L << low;
+        if ((bitmap[low >>> 6] & bit) != 0) return false;
+
+        bitmap[low >>> 6] |= bit;
+        this.cardinalities[index]++;
+        return true;
+    }
+
+    private void toBitmap(int index) {
+        long[] bitmap = new long[BITMAP_WORDS];
+        char[] array = this.arrays[index];
+        for (int i = 0; i < this.cardinalities[index]; i++) bitmap[array[i] >>> 6] |= 1L << array[i];
+        this.bitmaps[index] = bitmap;
+        this.arrays[index] = null;
+    }
+
+    private int insertChunk(int index, long high) {
+        if (this.chunks == this.keys.length) {
+            int capacity = this.keys.length * 2;
+            this.keys = Arrays.copyOf(this.keys, capacity);
+            this.arrays = Arrays.copyOf(this.arrays, capacity);
+            this.bitmaps = Arrays.copyOf(this.bitmaps, capacity);
+            this.cardinalities = Arrays.copyOf(this.cardinalities, capacity);
+        }
+        int moved = this.chunks - index;
+        System.arraycopy(this.keys, index, this.keys, index + 1, moved);
+        System.arraycopy(this.arrays, index, this.arrays, index + 1, moved);
+        System.arraycopy(this.bitmaps, index, this.bitmaps, index + 1, moved);
+        System.arraycopy(this.cardinalities, index, this.cardinalities, index + 1, moved);
+
+        this.keys[index] = high;
+        this.arrays[index] = new char[4];
+        this.bitmaps[index] = null;
+        this.cardinalities[index] = 0;
+        this.chunks++;
+        return index;
+    }
+}
@@ -0,0 +1,304 @@
+package org.pops.et4.jvm.project.distributor.entitlement;
+
+import jakarta.annotation.PreDestroy;
+import org.pops.et4.jvm.project.distributor.db.DistributorDbConfig;
+import org.pops.et4.jvm.project.distributor.db.OwnedGamesState;
+import org.pops.et4.jvm.project.migrations.SchemaMigrations;
+import org.pops.et4.jvm.project.schemas.logging.EventLog;
+import org.pops.et4.jvm.project.schemas.logging.EventLogger;
+import org.pops.et4.jvm.project.schemas.repositories.distributor.OwnedGameRepository;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Who owns what, answered from memory: one {@link IdBitmap} of game IDs per player, one of player IDs per game.
+ * <ul>
+ *     <li>purchases are added once their transaction commits</li>
+ *     <li>at startup, the memory-mapped snapshot is loaded and only the owned games inserted since are read
+ *     from the database, without a snapshot the index is built from every owned game, in batches</li>
+ *     <li>adding an ownership twice changes nothing, so the catch-up starts {@code ownership.catch-up-margin} rows
+ *     before the last one of the snapshot, for the purchases that committed out of order</li>
+ *     <li>the snapshot is only loaded if it was taken on the same database and every ownership it holds is still there
+ *     (see {@link OwnedGamesState}), otherwise the index is built again: it answers entitlement checks</li>
+ * </ul>
+ * Until the index is ready, callers check ownership in the database.
+ * Once it is, a hit is final but a miss is not: the purchases committed on another instance are only read at the next startup,
+ * so callers confirm a miss in the database.
+ */
+@Component(OwnershipIndex.BEAN_NAME)
+public class OwnershipIndex implements SmartInitializingSingleton {
+
+    public static final String BEAN_NAME = "distributorServiceOwnershipIndex";
+
+    private static final EventLogger LOG = EventLog.logger("Ownership");
+    private static final int SNAPSHOT_MAGIC = 0x4F574E32; // "OWN2"
+
+    private final OwnedGameRepository ownedGameRepository;
+    private final SchemaMigrations migrations;
+
+    @Value("${ownership.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ownership.load-batch-size:10000}")
+    private int loadBatchSize;
+
+    @Value("${ownership.catch-up-margin:10000}")
+    private long catchUpMargin;
+
+    @Value("${ownership.snapshot.enabled:true}")
+    private boolean snapshotEnabled;
+
+    @Value("${ownership.snapshot.path:./data/distributor-ownership.snapshot}")
+    private String snapshotPath;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, IdBitmap> gamesByPlayer = new HashMap<>();
+    private final Map<Long, IdBitmap> playersByGame = new HashMap<>();
+    private long ownerships;
+    private long lastOwnedGameId;
+    private long epoch = OwnedGamesState.UNKNOWN_EPOCH;
+    private boolean dirty;
+
+    private volatile boolean ready;
+
+    @Autowired
+    public OwnershipIndex(
+            @Qualifier(OwnedGameRepository.BEAN_NAME) OwnedGameRepository ownedGameRepository,
+            @Qualifier(DistributorDbConfig.MIGRATIONS_BEAN_NAME) SchemaMigrations migrations
+    ) {
+        this.ownedGameRepository = ownedGameRepository;
+        this.migrations = migrations;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!this.enabled) return;
+        this.epoch = OwnedGamesState.epochOf(this.migrations);
+        this.loadSnapshot();
+        this.catchUp();
+    }
+
+    /**
+     * Adds the owned games inserted after the snapshot, minus the margin, with keyset pagination.
+     */
+    public void catchUp() {
+        long start = System.nanoTime();
+        long afterId = Math.max(0, this.lastOwnedGameId - this.catchUpMargin);
+        long from = afterId;
+        int read = 0;
+        List<OwnedGameRepository.Ownership> batch;
+        do {
+            batch = this.ownedGameRepository.findOwnershipsAfter(afterId, PageRequest.of(0, this.loadBatchSize));
+            this.lock.writeLock().lock();
+            try {
+                for (OwnedGameRepository.Ownership row : batch) this.add(row.getOwnedGameId(), row.getPlayerId(), row.getGameId());
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+            if (!batch.isEmpty()) afterId = batch.get(batch.size() - 1).getOwnedGameId();
+            read += batch.size();
+        } while (batch.size() == this.loadBatchSize);
+
+        this.ready = true;
+        LOG.info("Read {} owned game(s) after #{} in {} ms: {}", read, from, (System.nanoTime() - start) / 1_000_000, this);
+    }
+
+    /**
+     * Adds a purchase once its transaction commits, a rolled back purchase grants nothing.
+     */
+    public void purchased(long ownedGameId, long playerId, long gameId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            this.addLocked(ownedGameId, playerId, gameId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                OwnershipIndex.this.addLocked(ownedGameId, playerId, gameId);
+            }
+        });
+    }
+
+    public boolean owns(long playerId, long gameId) {
+        this.lock.readLock().lock();
+        try {
+            IdBitmap games = this.gamesByPlayer.get(playerId);
+            return games != null && games.contains(gameId);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    public long ownerCount(long gameId) {
+        this.lock.readLock().lock();
+        try {
+            IdBitmap players = this.playersByGame.get(gameId);
+            return players == null ? 0 : players.cardinality();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    public long ownedGameCount(long playerId) {
+        this.lock.readLock().lock();
+        try {
+            IdBitmap games = this.gamesByPlayer.get(playerId);
+            return games == null ? 0 : games.cardinality();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return false while the index is built or if it is disabled
+     */
+    public boolean isReady() {
+        return this.ready;
+    }
+
+    /**
+     * Writes both indexes to a temporary file through a memory mapping, then moves it over the previous snapshot.
+     * Purchases wait for the end of the write, checks do not.
+     */
+    @Scheduled(fixedDelayString = "${ownership.snapshot.interval-ms:60000}")
+    public synchronized void snapshot() {
+        if (!this.snapshotEnabled || !this.ready) return;
+
+        long start = System.nanoTime();
+        Path path = Path.of(this.snapshotPath);
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        this.lock.readLock().lock();
+        try {
+            if (!this.dirty) return;
+
+            long size = Integer.BYTES + 3 * Long.BYTES + sizeOf(this.gamesByPlayer) + sizeOf(this.playersByGame);
+            if (size > Integer.MAX_VALUE) throw new IOException("Snapshot too large to map: " + size + " bytes");
+            if (path.toAbsolutePath().getParent() != null) Files.createDirectories(path.toAbsolutePath().getParent());
+
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.putInt(SNAPSHOT_MAGIC);
+                buffer.putLong(this.epoch);
+                buffer.putLong(this.lastOwnedGameId);
+                buffer.putLong(this.ownerships);
+                write(buffer, this.gamesByPlayer);
+                write(buffer, this.playersByGame);
+                buffer.force();
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.dirty = false;
+            LOG.info("Snapshotted ownership index to {} in {} ms ({} bytes)", path, (System.nanoTime() - start) / 1_000_000, size);
+        } catch (IOException e) {
+            LOG.error("Failed to snapshot ownership index to {}: {}", path, e.getMessage());
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        this.snapshot();
+    }
+
+    @Override
+    public String toString() {
+        this.lock.readLock().lock();
+        try {
+            return "players=" + this.gamesByPlayer.size() + ", games=" + this.playersByGame.size() + ", ownerships=" + this.ownerships
+                    + ", lastOwnedGame=" + this.lastOwnedGameId + ", ready=" + this.ready;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private void addLocked(long ownedGameId, long playerId, long gameId) {
+        this.lock.writeLock().lock();
+        try {
+            this.add(ownedGameId, playerId, gameId);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private void add(long ownedGameId, long playerId, long gameId) {
+        if (this.gamesByPlayer.computeIfAbsent(playerId, id -> new IdBitmap()).add(gameId)) this.ownerships++;
+        this.playersByGame.computeIfAbsent(gameId, id -> new IdBitmap()).add(playerId);
+        this.lastOwnedGameId = Math.max(this.lastOwnedGameId, ownedGameId);
+        this.dirty = true;
+    }
+
+    private void loadSnapshot() {
+        Path path = Path.of(this.snapshotPath);
+        if (!this.snapshotEnabled || !Files.exists(path)) return;
+
+        this.lock.writeLock().lock();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != SNAPSHOT_MAGIC) throw new IOException("Not an ownership snapshot, or of an older format");
+            OwnedGamesState state = new OwnedGamesState(buffer.getLong(), buffer.getLong(), buffer.getLong());
+            String mismatch = state.mismatch(this.epoch, this.ownedGameRepository, this.catchUpMargin);
+            if (mismatch != null) throw new IOException(mismatch);
+
+            read(buffer, this.gamesByPlayer);
+            read(buffer, this.playersByGame);
+            for (IdBitmap games : this.gamesByPlayer.values()) this.ownerships += games.cardinality();
+            if (this.ownerships != state.ownerships())
+                throw new IOException(this.ownerships + " ownership(s) read instead of " + state.ownerships());
+            this.lastOwnedGameId = state.lastOwnedGameId();
+            LOG.info("Loaded ownership snapshot {}: {}", path, this);
+        } catch (IOException | RuntimeException e) {
+            // The owned games are still in the database, the index is built from them again
+            this.gamesByPlayer.clear();
+            this.playersByGame.clear();
+            this.ownerships = 0;
+            this.lastOwnedGameId = 0;
+            LOG.warn("Ignoring ownership snapshot {}, rebuilding the index: {}", path, e.getMessage());
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private static long sizeOf(Map<Long, IdBitmap> index) {
+        long size = Integer.BYTES;
+        for (IdBitmap bitmap : index.values()) size += Long.BYTES + bitmap.serializedSize();
+        return size;
+    }
+
+    private static void write(ByteBuffer buffer, Map<Long, IdBitmap> index) {
+        buffer.putInt(index.size());
+        index.forEach((id, bitmap) -> {
+            buffer.putLong(id);
+            bitmap.writeTo(buffer);
+        });
+    }
+
+    private static void read(ByteBuffer buffer, Map<Long, IdBitmap> index) {
+        int entries = buffer.getInt();
+        for (int i = 0; i < entries; i++) {
+            long id = buffer.getLong();
+            index.put(id, IdBitmap.readFrom(buffer));
+        }
+    }
+}
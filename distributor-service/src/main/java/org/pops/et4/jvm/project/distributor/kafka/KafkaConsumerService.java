@@ -3,7 +3,10 @@ package org.pops.et4.jvm.project.distributor.kafka;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.pops.et4.jvm.project.distributor.DistributorService;
 import org.pops.et4.jvm.project.distributor.db.DistributorDbConfig;
+import org.pops.et4.jvm.project.distributor.dedup.ProcessedEventService;
 import org.pops.et4.jvm.project.schemas.events.*;
+import org.pops.et4.jvm.project.schemas.logging.EventLog;
+import org.pops.et4.jvm.project.schemas.logging.EventLogger;
 import org.pops.et4.jvm.project.schemas.models.distributor.DistributedGame;
 import org.pops.et4.jvm.project.schemas.models.distributor.Review;
 import org.pops.et4.jvm.project.schemas.repositories.distributor.*;
@@ -12,11 +15,16 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service(KafkaConsumerService.BEAN_NAME)
@@ -24,6 +32,8 @@ public class KafkaConsumerService {
 
     public static final String BEAN_NAME = "distributorServiceKafkaConsumerService";
 
+    private static final EventLogger LOG = EventLog.logger("Consumer");
+
     public static final String EXAMPLE_EVENT_CONSUMER_BEAN_NAME = "distributorServiceExampleEventConsumer";
     public static final String GAME_PUBLISHED_CONSUMER_BEAN_NAME = "distributorServiceGamePublishedConsumer";
     public static final String PATCH_PUBLISHED_CONSUMER_BEAN_NAME = "distributorServicePatchPublishedConsumer";
@@ -33,6 +43,9 @@ public class KafkaConsumerService {
     public static final String REACT_REVIEW_CONSUMER_BEAN_NAME = "distributorServiceReactReviewConsumer";
     public static final String INSTALL_GAME_CONSUMER_BEAN_NAME = "distributorServiceInstallGameConsumer";
     public static final String UPDATE_GAME_CONSUMER_BEAN_NAME = "distributorServiceUpdateGameConsumer";
+    public static final String CHECK_UPDATES_CONSUMER_BEAN_NAME = "distributorServiceCheckUpdatesConsumer";
+    public static final String ASK_LEADERBOARD_CONSUMER_BEAN_NAME = "distributorServiceAskLeaderboardConsumer";
+    public static final String ASK_RECOMMENDATIONS_CONSUMER_BEAN_NAME = "distributorServiceAskRecommendationsConsumer";
     public static final String UNINSTALL_GAME_CONSUMER_BEAN_NAME = "distributorServiceUninstallGameConsumer";
     public static final String ADD_PLAY_TIME_CONSUMER_BEAN_NAME = "distributorServiceAddPlayTimeConsumer";
     public static final String REPORT_CRASH_CONSUMER_BEAN_NAME = "distributorServiceReportCrashConsumer";
@@ -43,6 +56,7 @@ public class KafkaConsumerService {
     public static final String ASK_GAME_REVIEWS_CONSUMER_BEAN_NAME = "distributorServiceAskGameReviewsConsumer";
 
     private final KafkaProducerService producerService;
+    private final ProcessedEventService processedEventService;
     private final DistributorService distributorService;
     private final DistributorRepository distributorRepository;
     private final DistributedGameRepository distributedGameRepository;
@@ -50,11 +64,13 @@ public class KafkaConsumerService {
     private final OwnedGameRepository ownedGameRepository;
     private final ReviewRepository reviewRepository;
 
-    private final List<ConsumeLog<? extends KafkaEvent>> logs = new ArrayList<>();
+    // Appended by the listeners, drained by the archive service
+    private final List<ConsumeLog<? extends KafkaEvent>> logs = Collections.synchronizedList(new ArrayList<>());
 
     @Autowired
     public KafkaConsumerService(
             @Qualifier(KafkaProducerService.BEAN_NAME) KafkaProducerService producerService,
+            @Qualifier(ProcessedEventService.BEAN_NAME) ProcessedEventService processedEventService,
             @Qualifier(DistributorService.BEAN_NAME) DistributorService distributorService,
             @Qualifier(DistributorRepository.BEAN_NAME) DistributorRepository distributorRepository,
             @Qualifier(DistributedGameRepository.BEAN_NAME) DistributedGameRepository distributedGameRepository,
@@ -63,6 +79,7 @@ public class KafkaConsumerService {
             @Qualifier(ReviewRepository.BEAN_NAME) ReviewRepository reviewRepository
     ) {
         this.producerService = producerService;
+        this.processedEventService = processedEventService;
         this.distributorService = distributorService;
         this.distributorRepository = distributorRepository;
         this.distributedGameRepository = distributedGameRepository;
@@ -75,6 +92,45 @@ public class KafkaConsumerService {
         return Collections.unmodifiableList(this.logs);
     }
 
+    /**
+     * @return Copy of the logs consumed before the given date
+     */
+    public List<ConsumeLog<? extends KafkaEvent>> getLogsBefore(Instant before) {
+        synchronized (this.logs) {
+            List<ConsumeLog<? extends KafkaEvent>> logs = new ArrayList<>();
+            for (ConsumeLog<? extends KafkaEvent> log : this.logs)
+                if (log.consumeDate().isBefore(before)) logs.add(log);
+            return logs;
+        }
+    }
+
+    /**
+     * Forgets the given logs, once archived.
+     * Matched by identity: the logs appended meanwhile, even out of date order, are kept.
+     */
+    public void removeLogs(Collection<? extends ConsumeLog<? extends KafkaEvent>> archived) {
+        Set<ConsumeLog<? extends KafkaEvent>> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        removed.addAll(archived);
+        this.logs.removeIf(removed::contains);
+    }
+
+    /**
+     * Appends the log of a record once its transaction commits, right away outside of one.
+     * A record rolled back is redelivered: it is logged by the delivery that commits only.
+     */
+    private void addLog(ConsumeLog<? extends KafkaEvent> log) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            this.logs.add(log);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                KafkaConsumerService.this.logs.add(log);
+            }
+        });
+    }
+
     /*
     @KafkaListener(
             id = KafkaConsumerService.EXAMPLE_EVENT_CONSUMER_BEAN_NAME,
@@ -85,7 +141,7 @@ public class KafkaConsumerService {
     )
     @Transactional(transactionManager = DistributorDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
     public void consumeExampleEvent(ConsumerRecord<String, ExampleEvent> record) {
-        this.logs.add(
+        this.addLog(
                 new ConsumeLog<>(
                         KafkaConsumerService.EXAMPLE_EVENT_CONSUMER_BEAN_NAME,
                         Instant.now(),
@@ -107,7 +163,7 @@ public class KafkaConsumerService {
         // To call a producer if needed:
         //this.producerService.sendExampleEvent();
 
-        System.out.println("[Consumer] " + ExampleEvent.TOPIC + "(" + record.key() + "): FINISHED");
+        LOG.event("{}({}): FINISHED", ExampleEvent.TOPIC, record.key());
     }
     */
 
@@ -119,24 +175,23 @@ public class KafkaConsumerService {
     )
     @Transactional(transactionManager = DistributorDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
     public void consumeGamePublished(ConsumerRecord<String, GamePublished> record) {
-        this.logs.add(new ConsumeLog<>("gamePublishedConsumer", Instant.now(), record.key(), record.value()));
+        this.addLog(new ConsumeLog<>("gamePublishedConsumer", Instant.now(), record.key(), record.value()));
+        if (!this.processedEventService.markProcessed(record, KafkaConsumerService.GAME_PUBLISHED_CONSUMER_BEAN_NAME)) {
+            LOG.info("{}({}): DUPLICATE, skipped", GamePublished.TOPIC, record.key());
+            return;
+        }
+
         GamePublished event = record.value();
 
         // Business logic: Create DistributedGame for ALL distributors and send game-distributed event for each
         List<DistributedGame> distributedGames = distributorService.gamePublished(event);
         String gameName = event.getGameName();
         
-        // Send GameDistributed event for each distributor
-        for (DistributedGame distributedGame : distributedGames) {
-            producerService.sendGameDistributed(
-                distributedGame.getDistributor().getId(), 
-                event.getGameId(), 
-                gameName
-            );
-        }
+        // Send GameDistributed event for each distributor, as one batch
+        producerService.sendGameDistributedBatch(distributedGames, event.getGameId(), gameName);
 
-        System.out.println("[Consumer] " + GamePublished.TOPIC + "(" + record.key() + "): Game distributed to " + distributedGames.size() + " distributor(s)");
-        System.out.println("[Consumer] " + GamePublished.TOPIC + "(" + record.key() + "): FINISHED");
+        LOG.event("{}({}): Game distributed to {} distributor(s)", GamePublished.TOPIC, record.key(), distributedGames.size());
+        LOG.event("{}({}): FINISHED", GamePublished.TOPIC, record.key());
     }
 
     @KafkaListener(
@@ -147,25 +202,23 @@ public class KafkaConsumerService {
     )
     @Transactional(transactionManager = DistributorDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
     public void consumePatchPublished(ConsumerRecord<String, PatchPublished> record) {
-        this.logs.add(new ConsumeLog<>("patchPublishedConsumer", Instant.now(), record.key(), record.value()));
+        this.addLog(new ConsumeLog<>("patchPublishedConsumer", Instant.now(), record.key(), record.value()));
+        if (!this.processedEventService.markProcessed(record, KafkaConsumerService.PATCH_PUBLISHED_CONSUMER_BEAN_NAME)) {
+            LOG.info("{}({}): DUPLICATE, skipped", PatchPublished.TOPIC, record.key());
+            return;
+        }
+
         PatchPublished event = record.value();
 
         // Business logic: Update DistributedGame version for ALL distributors and send patch-distributed event for each
         List<DistributedGame> distributedGames = distributorService.patchPublished(event);
         String gameName = distributorService.getGameName(event.getGameId());
         
-        // Send PatchDistributed event for each distributor
-        for (DistributedGame distributedGame : distributedGames) {
-            producerService.sendPatchDistributed(
-                distributedGame.getDistributor().getId(), 
-                event.getGameId(), 
-                event.getVersion(), 
-                gameName
-            );
-        }
+        // Send PatchDistributed event for each distributor, as one batch
+        producerService.sendPatchDistributedBatch(distributedGames, event.getGameId(), event.getVersion(), gameName);
 
-        System.out.println("[Consumer] " + PatchPublished.TOPIC + "(" + record.key() + "): Patch distributed to " + distributedGames.size() + " distributor(s)");
-        System.out.println("[Consumer] " + PatchPublished.TOPIC + "(" + record.key() + "): FINISHED");
+        LOG.event("{}({}): Patch distributed to {} distributor(s)", PatchPublished.TOPIC, record.key(), distributedGames.size());
+        LOG.event("{}({}): FINISHED", PatchPublished.TOPIC, record.key());
     }
 
     @KafkaListener(
@@ -176,13 +229,18 @@ public class KafkaConsumerService {
     )
     @Transactional(transactionManager = DistributorDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
     public void consumeRegisterPlayer(ConsumerRecord<String, RegisterPlayer> record) {
-        this.logs.add(new ConsumeLog<>("registerPlayerConsumer", Instant.now(), record.key(), record.value()));
+        this.addLog(new ConsumeLog<>("registerPlayerConsumer", Instant.now(), record.key(), record.value()));
+        if (!this.processedEventService.markProcessed(record, KafkaConsumerService.REGISTER_PLAYER_CONSUMER_BEAN_NAME)) {
+            LOG.info("{}({}): DUPLICATE, skipped", RegisterPlayer.TOPIC, record.key());
+            return;
+        }
+
         RegisterPlayer event = record.value();
 
         // Business logic: Register the player in distributor's database
         distributorService.registerPlayer(event);
 
-        System.out.println("[Consumer] " + RegisterPlayer.TOPIC + "(" + record.key() + "): FINISHED");
+        LOG.event("{}({}): FINISHED", RegisterPlayer.TOPIC, record.key());
     }
 
     @KafkaListener(
@@ -193,13 +251,18 @@ public class KafkaConsumerService {
     )
     @Transactional(transactionManager = DistributorDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
     public void consumePurchaseGame(ConsumerRecord<String, PurchaseGame> record) {
-        this.logs.add(new ConsumeLog<>("purchaseGameConsumer", Instant.now(), record.key(), record.value()));
+        this.addLog(new ConsumeLog<>("purchaseGameConsumer", Instant.now(), record.key(), record.value()));
+        if (!this.processedEventService.markProcessed(record, KafkaConsumerService.PURCHASE_GAME_CONSUMER_BEAN_NAME)) {
+            LOG.info("{}({}): DUPLICATE, skipped", PurchaseGame.TOPIC, record.key());
+            return;
+        }
+
         PurchaseGame event = record.value();
 
         // Business logic: Create OwnedGame entry when player purchases a game
         distributorService.purchaseGame(event);
 
-        System.out.println("[Consumer] " + PurchaseGame.TOPIC + "(" + record.key() + "): FINISHED");
+        LOG.event("{}({}): FINISHED", PurchaseGame.TOPIC, record.key());
     }
 
     @KafkaListener(
@@ -210,7 +273,12 @@ public class KafkaConsumerService {
     )
     @Transactional(transactionManager = DistributorDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
     public void consumeReviewGame(ConsumerRecord<String, ReviewGame> record) {
-        this.logs.add(new ConsumeLog<>("reviewGameConsumer", Instant.now(), record.key(), record.value()));
+        this.addLog(new ConsumeLog<>("reviewGameConsumer", Instant.now(), record.key(), record.value()));
+        if (!this.processedEventService.markProcessed(record, KafkaConsumerService.REVIEW_GAME_CONSUMER_BEAN_NAME)) {
+            LOG.info("{}({}): DUPLICATE, skipped", ReviewGame.TOPIC, record.key());
+            return;
+        }
+
         ReviewGame event = record.value();
 
         // Business logic: Save review in database and send game-reviewed event
@@ -248,10 +316,10 @@ public class KafkaConsumerService {
             String playerName = distributorService.getPlayerName(event.getPlayerId());
             String gameName = distributorService.getGameName(event.getGameId());
             producerService.sendReviewRefused(0L, playerName, gameName); // Using 0 as placeholder since review wasn't created
-            System.out.println("[Consumer] " + ReviewGame.TOPIC + "(" + record.key() + "): REFUSED - " + e.getMessage());
+            LOG.info("{}({}): REFUSED - {}", ReviewGame.TOPIC, record.key(), e.getMessage());
         }
 
-        System.out.println("[Consumer] " + ReviewGame.TOPIC + "(" + record.key() + "): FINISHED");
+        LOG.event("{}({}): FINISHED", ReviewGame.TOPIC, record.key());
     }
 
     @KafkaListener(
@@ -262,13 +330,18 @@ public class KafkaConsumerService {
     )
     @Transactional(transactionManager = DistributorDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
     public void consumeReactReview(ConsumerRecord<String, ReactReview> record) {
-        this.logs.add(new ConsumeLog<>("reactReviewConsumer", Instant.now(), record.key(), record.value()));
+        this.addLog(new ConsumeLog<>("reactReviewConsumer", Instant.now(), record.key(), record.value()));
+        if (!this.processedEventService.markProcessed(record, KafkaConsumerService.REACT_REVIEW_CONSUMER_BEAN_NAME)) {
+            LOG.info("{}({}): DUPLICATE, skipped", ReactReview.TOPIC, record.key());
+            return;
+        }
+
         ReactReview event = record.value();
 
         // Business logic: Add or remove reaction to a review
         distributorService.reactReview(event);
 
-        System.out.println("[Consumer] " + ReactReview.TOPIC + "(" + record.key() + "): FINISHED");
+        LOG.event("{}({}): FINISHED", ReactReview.TOPIC, record.key());
     }
 
     @KafkaListener(
@@ -279,7 +352,12 @@ public class KafkaConsumerService {
     )
     @Transactional(transactionManager = DistributorDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
     public void consumeInstallGame(ConsumerRecord<String, InstallGame> record) {
-        this.logs.add(new ConsumeLog<>("installGameConsumer", Instant.now(), record.key(), record.value()));
+        this.addLog(new ConsumeLog<>("installGameConsumer", Instant.now(), record.key(), record.value()));
+        if (!this.processedEventService.markProcessed(record, KafkaConsumerService.INSTALL_GAME_CONSUMER_BEAN_NAME)) {
+            LOG.info("{}({}): DUPLICATE, skipped", InstallGame.TOPIC, record.key());
+            return;
+        }
+
         InstallGame event = record.value();
 
         // Business logic: Verify player owns game, then send game files
@@ -290,10 +368,10 @@ public class KafkaConsumerService {
             String platform = event.getPlatform().toString();
             producerService.sendSendGameFile(event.getPlayerId(), event.getGameId(), game.getVersion(), gameName, platform, playerName);
         } catch (IllegalStateException e) {
-            System.out.println("[Consumer] " + InstallGame.TOPIC + "(" + record.key() + "): REFUSED - " + e.getMessage());
+            LOG.info("{}({}): REFUSED - {}", InstallGame.TOPIC, record.key(), e.getMessage());
         }
 
-        System.out.println("[Consumer] " + InstallGame.TOPIC + "(" + record.key() + "): FINISHED");
+        LOG.event("{}({}): FINISHED", InstallGame.TOPIC, record.key());
     }
 
     @KafkaListener(
@@ -304,21 +382,27 @@ public class KafkaConsumerService {
     )
     @Transactional(transactionManager = DistributorDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
     public void consumeUpdateGame(ConsumerRecord<String, UpdateGame> record) {
-        this.logs.add(new ConsumeLog<>("updateGameConsumer", Instant.now(), record.key(), record.value()));
+        this.addLog(new ConsumeLog<>("updateGameConsumer", Instant.now(), record.key(), record.value()));
+        if (!this.processedEventService.markProcessed(record, KafkaConsumerService.UPDATE_GAME_CONSUMER_BEAN_NAME)) {
+            LOG.info("{}({}): DUPLICATE, skipped", UpdateGame.TOPIC, record.key());
+            return;
+        }
+
         UpdateGame event = record.value();
 
-        // Business logic: Verify player owns game and check if update is needed, then send updated game files
+        // Business logic: Verify player owns game and check if update is needed, then send the chunks changed since the installed version
         try {
-            DistributedGame game = distributorService.processUpdateGame(event.getPlayerId(), event.getGameId(), event.getInstalledVersion().toString());
+            String installedVersion = event.getInstalledVersion().toString();
+            DistributedGame game = distributorService.processUpdateGame(event.getPlayerId(), event.getGameId(), installedVersion);
             String gameName = distributorService.getGameName(event.getGameId());
             String playerName = distributorService.getPlayerName(event.getPlayerId());
             String platform = event.getPlatform().toString();
-            producerService.sendSendGameFile(event.getPlayerId(), event.getGameId(), game.getVersion(), gameName, platform, playerName);
+            producerService.sendSendGameFile(event.getPlayerId(), event.getGameId(), game.getVersion(), gameName, platform, playerName, installedVersion);
         } catch (IllegalStateException e) {
-            System.out.println("[Consumer] " + UpdateGame.TOPIC + "(" + record.key() + "): REFUSED - " + e.getMessage());
+            LOG.info("{}({}): REFUSED - {}", UpdateGame.TOPIC, record.key(), e.getMessage());
         }
 
-        System.out.println("[Consumer] " + UpdateGame.TOPIC + "(" + record.key() + "): FINISHED");
+        LOG.event("{}({}): FINISHED", UpdateGame.TOPIC, record.key());
     }
 
     @KafkaListener(
@@ -329,13 +413,18 @@ public class KafkaConsumerService {
     )
     @Transactional(transactionManager = DistributorDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
     public void consumeUninstallGame(ConsumerRecord<String, UninstallGame> record) {
-        this.logs.add(new ConsumeLog<>("uninstallGameConsumer", Instant.now(), record.key(), record.value()));
+        this.addLog(new ConsumeLog<>("uninstallGameConsumer", Instant.now(), record.key(), record.value()));
+        if (!this.processedEventService.markProcessed(record, KafkaConsumerService.UNINSTALL_GAME_CONSUMER_BEAN_NAME)) {
+            LOG.info("{}({}): DUPLICATE, skipped", UninstallGame.TOPIC, record.key());
+            return;
+        }
+
         UninstallGame event = record.value();
 
         // Log the uninstallation event for tracking purposes
-        System.out.println("[Consumer] Player " + event.getPlayerId() + " uninstalled game " + event.getGameId() + " from platform " + event.getPlatform());
+        LOG.event("Player {} uninstalled game {} from platform {}", event.getPlayerId(), event.getGameId(), event.getPlatform());
 
-        System.out.println("[Consumer] " + UninstallGame.TOPIC + "(" + record.key() + "): FINISHED");
+        LOG.event("{}({}): FINISHED", UninstallGame.TOPIC, record.key());
     }
 
     @KafkaListener(
@@ -346,13 +435,19 @@ public class KafkaConsumerService {
     )
     @Transactional(transactionManager = DistributorDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
     public void consumeAddPlayTime(ConsumerRecord<String, AddPlayTime> record) {
-        this.logs.add(new ConsumeLog<>("addPlayTimeConsumer", Instant.now(), record.key(), record.value()));
+        this.addLog(new ConsumeLog<>("addPlayTimeConsumer", Instant.now(), record.key(), record.value()));
+        if (!this.processedEventService.markProcessed(record, KafkaConsumerService.ADD_PLAY_TIME_CONSUMER_BEAN_NAME)) {
+            LOG.info("{}({}): DUPLICATE, skipped", AddPlayTime.TOPIC, record.key());
+            return;
+        }
+
         AddPlayTime event = record.value();
 
-        // Business logic: Update playtime in OwnedGame
-        distributorService.addPlayTime(event);
+        // Business logic: Update playtime in OwnedGame, the session ended when the event was produced
+        Instant sessionEnd = record.timestamp() > 0 ? Instant.ofEpochMilli(record.timestamp()) : Instant.now();
+        distributorService.addPlayTime(event, sessionEnd);
 
-        System.out.println("[Consumer] " + AddPlayTime.TOPIC + "(" + record.key() + "): FINISHED");
+        LOG.event("{}({}): FINISHED", AddPlayTime.TOPIC, record.key());
     }
 
     @KafkaListener(
@@ -363,7 +458,12 @@ public class KafkaConsumerService {
     )
     @Transactional(transactionManager = DistributorDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
     public void consumeReportCrash(ConsumerRecord<String, ReportCrash> record) {
-        this.logs.add(new ConsumeLog<>("reportCrashConsumer", Instant.now(), record.key(), record.value()));
+        this.addLog(new ConsumeLog<>("reportCrashConsumer", Instant.now(), record.key(), record.value()));
+        if (!this.processedEventService.markProcessed(record, KafkaConsumerService.REPORT_CRASH_CONSUMER_BEAN_NAME)) {
+            LOG.info("{}({}): DUPLICATE, skipped", ReportCrash.TOPIC, record.key());
+            return;
+        }
+
         ReportCrash event = record.value();
 
         // Business logic: Process crash report and notify via crash-reported event
@@ -382,7 +482,7 @@ public class KafkaConsumerService {
                 event.getMessage().toString()
         );
 
-        System.out.println("[Consumer] " + ReportCrash.TOPIC + "(" + record.key() + "): FINISHED");
+        LOG.event("{}({}): FINISHED", ReportCrash.TOPIC, record.key());
     }
 
     @KafkaListener(
@@ -393,13 +493,18 @@ public class KafkaConsumerService {
     )
     @Transactional(transactionManager = DistributorDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
     public void consumeAddWishedGame(ConsumerRecord<String, AddWishedGame> record) {
-        this.logs.add(new ConsumeLog<>("addWishedGameConsumer", Instant.now(), record.key(), record.value()));
+        this.addLog(new ConsumeLog<>("addWishedGameConsumer", Instant.now(), record.key(), record.value()));
+        if (!this.processedEventService.markProcessed(record, KafkaConsumerService.ADD_WISHED_GAME_CONSUMER_BEAN_NAME)) {
+            LOG.info("{}({}): DUPLICATE, skipped", AddWishedGame.TOPIC, record.key());
+            return;
+        }
+
         AddWishedGame event = record.value();
 
         // Business logic: Add game to player's wishlist
         distributorService.addWishedGame(event);
 
-        System.out.println("[Consumer] " + AddWishedGame.TOPIC + "(" + record.key() + "): FINISHED");
+        LOG.event("{}({}): FINISHED", AddWishedGame.TOPIC, record.key());
     }
 
     @KafkaListener(
@@ -410,13 +515,18 @@ public class KafkaConsumerService {
     )
     @Transactional(transactionManager = DistributorDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
     public void consumeRemoveWishedGame(ConsumerRecord<String, RemoveWishedGame> record) {
-        this.logs.add(new ConsumeLog<>("removeWishedGameConsumer", Instant.now(), record.key(), record.value()));
+        this.addLog(new ConsumeLog<>("removeWishedGameConsumer", Instant.now(), record.key(), record.value()));
+        if (!this.processedEventService.markProcessed(record, KafkaConsumerService.REMOVE_WISHED_GAME_CONSUMER_BEAN_NAME)) {
+            LOG.info("{}({}): DUPLICATE, skipped", RemoveWishedGame.TOPIC, record.key());
+            return;
+        }
+
         RemoveWishedGame event = record.value();
 
         // Business logic: Remove game from player's wishlist
         distributorService.removeWishedGame(event);
 
-        System.out.println("[Consumer] " + RemoveWishedGame.TOPIC + "(" + record.key() + "): FINISHED");
+        LOG.event("{}({}): FINISHED", RemoveWishedGame.TOPIC, record.key());
     }
 
     @KafkaListener(
@@ -427,14 +537,14 @@ public class KafkaConsumerService {
     )
     @Transactional(transactionManager = DistributorDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
     public void consumeAskPlayerPage(ConsumerRecord<String, AskPlayerPage> record) {
-        this.logs.add(new ConsumeLog<>("askPlayerPageConsumer", Instant.now(), record.key(), record.value()));
+        this.addLog(new ConsumeLog<>("askPlayerPageConsumer", Instant.now(), record.key(), record.value()));
         AskPlayerPage event = record.value();
 
         // Business logic: Generate and send player page
-        String playerPage = distributorService.generatePlayerPage(event.getDistributorId());
+        SendPlayerPage playerPage = distributorService.buildPlayerPage(event.getDistributorId());
         producerService.sendSendPlayerPage(playerPage);
 
-        System.out.println("[Consumer] " + AskPlayerPage.TOPIC + "(" + record.key() + "): FINISHED");
+        LOG.event("{}({}): FINISHED", AskPlayerPage.TOPIC, record.key());
     }
 
     @KafkaListener(
@@ -445,21 +555,21 @@ public class KafkaConsumerService {
     )
     @Transactional(transactionManager = DistributorDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
     public void consumeAskGamesPage(ConsumerRecord<String, AskGamesPage> record) {
-        this.logs.add(new ConsumeLog<>("askGamesPageConsumer", Instant.now(), record.key(), record.value()));
+        this.addLog(new ConsumeLog<>("askGamesPageConsumer", Instant.now(), record.key(), record.value()));
         AskGamesPage event = record.value();
 
         try {
             // Business logic: Generate and send games page
             // Convert platform string to Platform enum
             Platform platformEnum = Platform.valueOf(event.getPlatform().toString());
-            String gamesPage = distributorService.buildGamesPage(event.getDistributorId(), platformEnum);
+            SendGamesPage gamesPage = distributorService.buildGamesPage(event.getDistributorId(), platformEnum);
             producerService.sendSendGamesPage(gamesPage);
-            System.out.println("[Consumer] " + AskGamesPage.TOPIC + "(" + record.key() + "): Games page sent for platform " + event.getPlatform());
+            LOG.event("{}({}): Games page sent for platform {}", AskGamesPage.TOPIC, record.key(), event.getPlatform());
         } catch (Exception e) {
-            System.err.println("[Consumer] " + AskGamesPage.TOPIC + "(" + record.key() + "): Error - " + e.getMessage());
+            LOG.error("{}({}): Error - {}", AskGamesPage.TOPIC, record.key(), e.getMessage());
         }
 
-        System.out.println("[Consumer] " + AskGamesPage.TOPIC + "(" + record.key() + "): FINISHED");
+        LOG.event("{}({}): FINISHED", AskGamesPage.TOPIC, record.key());
     }
 
     @KafkaListener(
@@ -470,19 +580,89 @@ public class KafkaConsumerService {
     )
     @Transactional(transactionManager = DistributorDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
     public void consumeAskGameReviews(ConsumerRecord<String, AskGameReviews> record) {
-        this.logs.add(new ConsumeLog<>("askGameReviewsConsumer", Instant.now(), record.key(), record.value()));
+        this.addLog(new ConsumeLog<>("askGameReviewsConsumer", Instant.now(), record.key(), record.value()));
         AskGameReviews event = record.value();
 
         try {
-            // Business logic: Generate and send game reviews page
-            String reviewsPage = distributorService.buildGameReviewsPage(event.getDistributorId(), event.getGameId());
+            // Business logic: Generate and send game reviews page, or the reviews matching the query
+            String query = event.getQuery();
+            SendGameReviews reviewsPage = distributorService.buildGameReviewsPage(event.getDistributorId(), event.getGameId(), query);
             producerService.sendSendGameReviews(reviewsPage);
-            System.out.println("[Consumer] " + AskGameReviews.TOPIC + "(" + record.key() + "): Reviews sent for game " + event.getGameId());
+            LOG.event("{}({}): {} review(s) sent for game {} (query: {})", AskGameReviews.TOPIC, record.key(), reviewsPage.getReviews().size(), event.getGameId(), query);
         } catch (Exception e) {
-            System.err.println("[Consumer] " + AskGameReviews.TOPIC + "(" + record.key() + "): Error - " + e.getMessage());
+            LOG.error("{}({}): Error - {}", AskGameReviews.TOPIC, record.key(), e.getMessage());
         }
 
-        System.out.println("[Consumer] " + AskGameReviews.TOPIC + "(" + record.key() + "): FINISHED");
+        LOG.event("{}({}): FINISHED", AskGameReviews.TOPIC, record.key());
     }
-}
 
+    @KafkaListener(
+            id = KafkaConsumerService.CHECK_UPDATES_CONSUMER_BEAN_NAME,
+            containerFactory = KafkaConfig.KAFKA_LISTENER_CONTAINER_BEAN_NAME,
+            topics = CheckUpdates.TOPIC,
+            groupId = "${spring.kafka.consumer.group-id}"
+    )
+    @Transactional(transactionManager = DistributorDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
+    public void consumeCheckUpdates(ConsumerRecord<String, CheckUpdates> record) {
+        this.addLog(new ConsumeLog<>("checkUpdatesConsumer", Instant.now(), record.key(), record.value()));
+        if (!this.processedEventService.markProcessed(record, KafkaConsumerService.CHECK_UPDATES_CONSUMER_BEAN_NAME)) {
+            LOG.info("{}({}): DUPLICATE, skipped", CheckUpdates.TOPIC, record.key());
+            return;
+        }
+
+        CheckUpdates event = record.value();
+
+        // Business logic: One join for the whole library, then the answer and the game files of the outdated games
+        DistributorService.UpdateCheck check = distributorService.processCheckUpdates(event.getPlayerId(), event.getInstalledGames());
+        producerService.sendUpdatesAvailable(check.answer(), check.playerName());
+        LOG.event("{}({}): {} outdated of {} checked for player {}", CheckUpdates.TOPIC, record.key(), check.answer().getOutdatedGames().size(), event.getInstalledGames().size(), event.getPlayerId());
+
+        LOG.event("{}({}): FINISHED", CheckUpdates.TOPIC, record.key());
+    }
+
+    @KafkaListener(
+            id = KafkaConsumerService.ASK_LEADERBOARD_CONSUMER_BEAN_NAME,
+            containerFactory = KafkaConfig.KAFKA_LISTENER_CONTAINER_BEAN_NAME,
+            topics = AskLeaderboard.TOPIC,
+            groupId = "${spring.kafka.consumer.group-id}"
+    )
+    @Transactional(transactionManager = DistributorDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
+    public void consumeAskLeaderboard(ConsumerRecord<String, AskLeaderboard> record) {
+        this.addLog(new ConsumeLog<>("askLeaderboardConsumer", Instant.now(), record.key(), record.value()));
+        AskLeaderboard event = record.value();
+
+        try {
+            // Business logic: Read the top of the maintained leaderboard, only the names of the listed games come from the database
+            SendLeaderboard leaderboard = distributorService.buildLeaderboardPage(event.getDistributorId(), event.getBoard(), event.getLimit());
+            producerService.sendSendLeaderboard(leaderboard);
+            LOG.event("{}({}): {} leaderboard sent for distributor {} ({} games)", AskLeaderboard.TOPIC, record.key(), event.getBoard(), event.getDistributorId(), leaderboard.getEntries().size());
+        } catch (Exception e) {
+            LOG.error("{}({}): Error - {}", AskLeaderboard.TOPIC, record.key(), e.getMessage());
+        }
+
+        LOG.event("{}({}): FINISHED", AskLeaderboard.TOPIC, record.key());
+    }
+
+    @KafkaListener(
+            id = KafkaConsumerService.ASK_RECOMMENDATIONS_CONSUMER_BEAN_NAME,
+            containerFactory = KafkaConfig.KAFKA_LISTENER_CONTAINER_BEAN_NAME,
+            topics = AskRecommendations.TOPIC,
+            groupId = "${spring.kafka.consumer.group-id}"
+    )
+    @Transactional(transactionManager = DistributorDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
+    public void consumeAskRecommendations(ConsumerRecord<String, AskRecommendations> record) {
+        this.addLog(new ConsumeLog<>("askRecommendationsConsumer", Instant.now(), record.key(), record.value()));
+        AskRecommendations event = record.value();
+
+        try {
+            // Business logic: Read the co-ownership model in memory, only the names of the listed games come from the database
+            SendRecommendations recommendations = distributorService.buildRecommendationsPage(event.getDistributorId(), event.getGameId(), event.getLimit());
+            producerService.sendSendRecommendations(recommendations);
+            LOG.event("{}({}): Recommendations sent for game {} of distributor {} ({} games)", AskRecommendations.TOPIC, record.key(), event.getGameId(), event.getDistributorId(), recommendations.getEntries().size());
+        } catch (Exception e) {
+            LOG.error("{}({}): Error - {}", AskRecommendations.TOPIC, record.key(), e.getMessage());
+        }
+
+        LOG.event("{}({}): FINISHED", AskRecommendations.TOPIC, record.key());
+    }
+}
@@ -1,22 +1,29 @@
 package org.pops.et4.jvm.project.distributor.kafka;
 
+import org.pops.et4.jvm.project.distributor.content.ContentStore;
+import org.pops.et4.jvm.project.distributor.outbox.OutboxService;
 import org.pops.et4.jvm.project.schemas.events.*;
+import org.pops.et4.jvm.project.schemas.events.updates.OutdatedGame;
+import org.pops.et4.jvm.project.schemas.kafka.ProducerPipeline;
+import org.pops.et4.jvm.project.schemas.models.distributor.DistributedGame;
 import org.pops.et4.jvm.project.schemas.repositories.distributor.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
 
 @Service(KafkaProducerService.BEAN_NAME)
 public class KafkaProducerService {
 
     public static final String BEAN_NAME = "distributorServiceKafkaProducerService";
 
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final ProducerPipeline pipeline;
+    private final OutboxService outboxService;
+    private final ContentStore contentStore;
     private final DistributorRepository distributorRepository;
     private final DistributedGameRepository distributedGameRepository;
     private final PlayerRepository playerRepository;
@@ -25,14 +32,18 @@ public class KafkaProducerService {
 
     @Autowired
     public KafkaProducerService(
-            @Qualifier(KafkaConfig.KAFKA_TEMPLATE_BEAN_NAME) KafkaTemplate<String, Object> kafkaTemplate,
+            @Qualifier(KafkaConfig.PRODUCER_PIPELINE_BEAN_NAME) ProducerPipeline pipeline,
+            @Qualifier(OutboxService.BEAN_NAME) OutboxService outboxService,
+            @Qualifier(ContentStore.BEAN_NAME) ContentStore contentStore,
             @Qualifier(DistributorRepository.BEAN_NAME) DistributorRepository distributorRepository,
             @Qualifier(DistributedGameRepository.BEAN_NAME) DistributedGameRepository distributedGameRepository,
             @Qualifier(PlayerRepository.BEAN_NAME) PlayerRepository playerRepository,
             @Qualifier(OwnedGameRepository.BEAN_NAME) OwnedGameRepository ownedGameRepository,
             @Qualifier(ReviewRepository.BEAN_NAME) ReviewRepository reviewRepository
     ) {
-        this.kafkaTemplate = kafkaTemplate;
+        this.pipeline = pipeline;
+        this.outboxService = outboxService;
+        this.contentStore = contentStore;
         this.distributorRepository = distributorRepository;
         this.distributedGameRepository = distributedGameRepository;
         this.playerRepository = playerRepository;
@@ -40,6 +51,10 @@ public class KafkaProducerService {
         this.reviewRepository = reviewRepository;
     }
 
+    public ProducerPipeline getPipeline() {
+        return this.pipeline;
+    }
+
     public void sendExampleEvent(String payload) {
         String topic = ExampleEvent.TOPIC;
         String key = UUID.randomUUID().toString();
@@ -47,28 +62,44 @@ public class KafkaProducerService {
                 .setPayload(payload)
                 .build();
 
-        CompletableFuture<?> future = this.kafkaTemplate.send(topic, key, event);
-
-        future.whenComplete((result, ex) -> System.out.println("[Producer] " + topic + "(" + key + "): " + (ex==null ? result : ex.getMessage())));
+        this.pipeline.send(topic, key, event);
     }
 
-    public void sendGameDistributed(Long distributorId, Long gameId, String gameName) {
+    public void sendGameDistributed(Long distributorId, Long gameId, String gameName, String version) {
         String topic = GameDistributed.TOPIC;
-        String key = UUID.randomUUID().toString();
+        String key = KafkaProducerService.catalogKey(distributorId, gameId);
         GameDistributed event = GameDistributed.newBuilder()
                 .setDistributorId(distributorId)
                 .setGameId(gameId)
                 .setGameName(gameName)
+                .setVersion(version)
                 .build();
 
-        CompletableFuture<?> future = this.kafkaTemplate.send(topic, key, event);
+        this.outboxService.enqueue(topic, key, event);
+    }
 
-        future.whenComplete((result, ex) -> System.out.println("[Producer] " + topic + "(" + key + "): " + (ex==null ? result : ex.getMessage())));
+    /**
+     * Queues one GameDistributed event per distributed game in the outbox.
+     */
+    public void sendGameDistributedBatch(List<DistributedGame> distributedGames, Long gameId, String gameName) {
+        List<OutboxService.Entry> entries = new ArrayList<>(distributedGames.size());
+        for (DistributedGame distributedGame : distributedGames) {
+            Long distributorId = distributedGame.getDistributor().getId();
+            GameDistributed event = GameDistributed.newBuilder()
+                    .setDistributorId(distributorId)
+                    .setGameId(gameId)
+                    .setGameName(gameName)
+                    .setVersion(distributedGame.getVersion())
+                    .build();
+            entries.add(new OutboxService.Entry(GameDistributed.TOPIC, KafkaProducerService.catalogKey(distributorId, gameId), event));
+        }
+
+        this.outboxService.enqueueAll(entries);
     }
 
     public void sendPatchDistributed(Long distributorId, Long gameId, String newVersion, String gameName) {
         String topic = PatchDistributed.TOPIC;
-        String key = UUID.randomUUID().toString();
+        String key = KafkaProducerService.catalogKey(distributorId, gameId);
         PatchDistributed event = PatchDistributed.newBuilder()
                 .setDistributorId(distributorId)
                 .setGameId(gameId)
@@ -76,14 +107,31 @@ public class KafkaProducerService {
                 .setGameName(gameName)
                 .build();
 
-        CompletableFuture<?> future = this.kafkaTemplate.send(topic, key, event);
+        this.outboxService.enqueue(topic, key, event);
+    }
 
-        future.whenComplete((result, ex) -> System.out.println("[Producer] " + topic + "(" + key + "): " + (ex==null ? result : ex.getMessage())));
+    /**
+     * Queues one PatchDistributed event per updated distributed game in the outbox.
+     */
+    public void sendPatchDistributedBatch(List<DistributedGame> distributedGames, Long gameId, String newVersion, String gameName) {
+        List<OutboxService.Entry> entries = new ArrayList<>(distributedGames.size());
+        for (DistributedGame distributedGame : distributedGames) {
+            Long distributorId = distributedGame.getDistributor().getId();
+            PatchDistributed event = PatchDistributed.newBuilder()
+                    .setDistributorId(distributorId)
+                    .setGameId(gameId)
+                    .setNewVersion(newVersion)
+                    .setGameName(gameName)
+                    .build();
+            entries.add(new OutboxService.Entry(PatchDistributed.TOPIC, KafkaProducerService.catalogKey(distributorId, gameId), event));
+        }
+
+        this.outboxService.enqueueAll(entries);
     }
 
     public void sendSaleStarted(Long distributorId, Long gameId, Float salePercentage, String gameName) {
         String topic = SaleStarted.TOPIC;
-        String key = UUID.randomUUID().toString();
+        String key = KafkaProducerService.catalogKey(distributorId, gameId);
         SaleStarted event = SaleStarted.newBuilder()
                 .setDistributorId(distributorId)
                 .setGameId(gameId)
@@ -91,26 +139,54 @@ public class KafkaProducerService {
                 .setGameName(gameName)
                 .build();
 
-        CompletableFuture<?> future = this.kafkaTemplate.send(topic, key, event);
-
-        future.whenComplete((result, ex) -> System.out.println("[Producer] " + topic + "(" + key + "): " + (ex==null ? result : ex.getMessage())));
+        this.outboxService.enqueue(topic, key, event);
     }
 
     public void sendSendGameFile(Long targetId, Long gameId, String version, String gameName, String platform, String playerName) {
+        this.sendSendGameFile(targetId, gameId, version, gameName, platform, playerName, null);
+    }
+
+    /**
+     * @param baseVersion Version installed by the player, null for a first install
+     */
+    public void sendSendGameFile(Long targetId, Long gameId, String version, String gameName, String platform, String playerName, String baseVersion) {
         String topic = SendGameFile.TOPIC;
         String key = UUID.randomUUID().toString();
-        SendGameFile event = SendGameFile.newBuilder()
+        SendGameFile event = this.buildSendGameFile(targetId, gameId, version, gameName, platform, playerName, baseVersion);
+
+        this.outboxService.enqueue(topic, key, event);
+    }
+
+    /**
+     * Queues the answer of an update check, followed by one SendGameFile per outdated game, in one outbox batch.
+     */
+    public void sendUpdatesAvailable(UpdatesAvailable answer, String playerName) {
+        List<OutboxService.Entry> entries = new ArrayList<>(answer.getOutdatedGames().size() + 1);
+        entries.add(new OutboxService.Entry(UpdatesAvailable.TOPIC, UUID.randomUUID().toString(), answer));
+        for (OutdatedGame outdated : answer.getOutdatedGames()) {
+            SendGameFile event = this.buildSendGameFile(answer.getPlayerId(), outdated.getGameId(), outdated.getLatestVersion(),
+                    outdated.getGameName(), outdated.getPlatform(), playerName, outdated.getInstalledVersion());
+            entries.add(new OutboxService.Entry(SendGameFile.TOPIC, UUID.randomUUID().toString(), event));
+        }
+
+        this.outboxService.enqueueAll(entries);
+    }
+
+    /**
+     * An update carries the installed version and the size of the chunk delta, the player only downloads the chunks it does not have.
+     */
+    private SendGameFile buildSendGameFile(Long targetId, Long gameId, String version, String gameName, String platform, String playerName, String baseVersion) {
+        return SendGameFile.newBuilder()
                 .setTargetId(targetId)
                 .setGameId(gameId)
                 .setVersion(version)
                 .setGameName(gameName)
                 .setPlatform(platform)
                 .setPlayerName(playerName)
+                .setDownloadUrl(this.contentStore.downloadUrl(gameId, version, platform))
+                .setBaseVersion(baseVersion)
+                .setPatchSize(baseVersion == null ? null : this.contentStore.patchSize(gameId, baseVersion, version, platform))
                 .build();
-
-        CompletableFuture<?> future = this.kafkaTemplate.send(topic, key, event);
-
-        future.whenComplete((result, ex) -> System.out.println("[Producer] " + topic + "(" + key + "): " + (ex==null ? result : ex.getMessage())));
     }
 
     public void sendGameReviewed(Long reviewId, Long gameId, Long distributorId, Integer rating, String comment, Instant publicationDate, java.util.List<Long> positiveReactionPlayerIds, java.util.List<Long> negativeReactionPlayerIds) {
@@ -127,9 +203,7 @@ public class KafkaProducerService {
                 .setNegativeReactionPlayerIds(negativeReactionPlayerIds)
                 .build();
 
-        CompletableFuture<?> future = this.kafkaTemplate.send(topic, key, event);
-
-        future.whenComplete((result, ex) -> System.out.println("[Producer] " + topic + "(" + key + "): " + (ex==null ? result : ex.getMessage())));
+        this.outboxService.enqueue(topic, key, event);
     }
 
     public void sendReviewRefused(Long reviewId, String playerName, String gameName) {
@@ -141,9 +215,7 @@ public class KafkaProducerService {
                 .setGameName(gameName)
                 .build();
 
-        CompletableFuture<?> future = this.kafkaTemplate.send(topic, key, event);
-
-        future.whenComplete((result, ex) -> System.out.println("[Producer] " + topic + "(" + key + "): " + (ex==null ? result : ex.getMessage())));
+        this.outboxService.enqueue(topic, key, event);
     }
 
     public void sendCrashReported(Long distributorId, Long gameId, Platform platform, String installedVersion, Integer errorCode, String message) {
@@ -158,45 +230,50 @@ public class KafkaProducerService {
                 .setMessage(message)
                 .build();
 
-        CompletableFuture<?> future = this.kafkaTemplate.send(topic, key, event);
-
-        future.whenComplete((result, ex) -> System.out.println("[Producer] " + topic + "(" + key + "): " + (ex==null ? result : ex.getMessage())));
+        this.outboxService.enqueue(topic, key, event);
     }
 
-    public void sendSendPlayerPage(String page) {
+    public void sendSendPlayerPage(SendPlayerPage event) {
         String topic = SendPlayerPage.TOPIC;
         String key = UUID.randomUUID().toString();
-        SendPlayerPage event = SendPlayerPage.newBuilder()
-                .setPage(page)
-                .build();
 
-        CompletableFuture<?> future = this.kafkaTemplate.send(topic, key, event);
-
-        future.whenComplete((result, ex) -> System.out.println("[Producer] " + topic + "(" + key + "): " + (ex==null ? result : ex.getMessage())));
+        this.pipeline.send(topic, key, event);
     }
 
-    public void sendSendGamesPage(String page) {
+    public void sendSendGamesPage(SendGamesPage event) {
         String topic = SendGamesPage.TOPIC;
         String key = UUID.randomUUID().toString();
-        SendGamesPage event = SendGamesPage.newBuilder()
-                .setPage(page)
-                .build();
 
-        CompletableFuture<?> future = this.kafkaTemplate.send(topic, key, event);
-
-        future.whenComplete((result, ex) -> System.out.println("[Producer] " + topic + "(" + key + "): " + (ex==null ? result : ex.getMessage())));
+        this.pipeline.send(topic, key, event);
     }
 
-    public void sendSendGameReviews(String page) {
+    public void sendSendGameReviews(SendGameReviews event) {
         String topic = SendGameReviews.TOPIC;
         String key = UUID.randomUUID().toString();
-        SendGameReviews event = SendGameReviews.newBuilder()
-                .setPage(page)
-                .build();
 
-        CompletableFuture<?> future = this.kafkaTemplate.send(topic, key, event);
+        this.pipeline.send(topic, key, event);
+    }
+
+    public void sendSendLeaderboard(SendLeaderboard event) {
+        String topic = SendLeaderboard.TOPIC;
+        String key = UUID.randomUUID().toString();
+
+        this.pipeline.send(topic, key, event);
+    }
+
+    public void sendSendRecommendations(SendRecommendations event) {
+        String topic = SendRecommendations.TOPIC;
+        String key = UUID.randomUUID().toString();
+
+        this.pipeline.send(topic, key, event);
+    }
 
-        future.whenComplete((result, ex) -> System.out.println("[Producer] " + topic + "(" + key + "): " + (ex==null ? result : ex.getMessage())));
+    /**
+     * Key of the catalog events (GameDistributed, PatchDistributed, SaleStarted).
+     * Their topics are compacted, so only the last event of each game of each distributor is kept.
+     */
+    public static String catalogKey(Long distributorId, Long gameId) {
+        return distributorId + ":" + gameId;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,60 @@
+package org.pops.et4.jvm.project.distributor.outbox;
+
+import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificData;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.avro.specific.SpecificRecord;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Encodes events as Base64 Avro binary for the outbox table.
+ * The schema is not stored with the payload, it is resolved from the event class when decoding.
+ */
+final class OutboxCodec {
+
+    private static final Map<String, SpecificDatumReader<SpecificRecord>> READERS = new ConcurrentHashMap<>();
+
+    private OutboxCodec() {}
+
+    static String encode(SpecificRecord event) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+        try {
+            new SpecificDatumWriter<SpecificRecord>(event.getSchema()).write(event, encoder);
+            encoder.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot encode " + event.getClass().getName(), e);
+        }
+        return Base64.getEncoder().encodeToString(out.toByteArray());
+    }
+
+    static SpecificRecord decode(String eventType, String payload) {
+        SpecificDatumReader<SpecificRecord> reader = READERS.computeIfAbsent(eventType, OutboxCodec::readerOf);
+        BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(Base64.getDecoder().decode(payload), null);
+        try {
+            return reader.read(null, decoder);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot decode " + eventType, e);
+        }
+    }
+
+    private static SpecificDatumReader<SpecificRecord> readerOf(String eventType) {
+        try {
+            Schema schema = SpecificData.get().getSchema(Class.forName(eventType));
+            return new SpecificDatumReader<>(schema);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Unknown outbox event type: " + eventType, e);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package org.pops.et4.jvm.project.distributor.outbox;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.pops.et4.jvm.project.distributor.db.DistributorDbConfig;
+import org.pops.et4.jvm.project.distributor.kafka.KafkaConfig;
+import org.pops.et4.jvm.project.schemas.kafka.EventIds;
+import org.pops.et4.jvm.project.schemas.kafka.ProducerPipeline;
+import org.pops.et4.jvm.project.schemas.models.distributor.OutboxEvent;
+import org.pops.et4.jvm.project.schemas.repositories.distributor.OutboxEventRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drains the outbox table to Kafka, keeping the events of a record key in enqueue order.
+ * <ul>
+ *     <li>the events are sharded by the hash of their key, worker {@code n} relays shard {@code n}:
+ *     the events of a key, e.g. the catalog updates of a compacted topic, are never sent by two workers at the same time</li>
+ *     <li>a worker claims the oldest events of its shard in a short transaction, locking them with {@code FOR UPDATE SKIP LOCKED}
+ *     and stamping them with a lease of {@code outbox.relay.claim-ms}; it gives up when the head of its shard is locked or claimed
+ *     by another instance, so it never sends the events behind a batch in flight</li>
+ *     <li>the batch is sent in id order through the producer pipeline, outside of any transaction,
+ *     then deleted in a second short transaction once fully acknowledged</li>
+ *     <li>a failed batch is released and retried with the same event ids, so consumers can drop the duplicates;
+ *     its shard does not go past it until it is acknowledged. The batch of a crashed instance is claimed again when its lease expires</li>
+ * </ul>
+ * No row lock nor database connection is held while waiting for Kafka.
+ * Every instance must run the same number of threads, otherwise their shards differ and the events of a key can be sent by two instances.
+ */
+@Component(OutboxRelay.BEAN_NAME)
+public class OutboxRelay implements SmartLifecycle {
+
+    public static final String BEAN_NAME = "distributorServiceOutboxRelay";
+
+    private static final long FAILURE_BACKOFF_MS = 1000;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ProducerPipeline pipeline;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${outbox.relay.enabled:true}")
+    private boolean enabled;
+
+    @Value("${outbox.relay.threads:2}")
+    private int threads;
+
+    @Value("${outbox.relay.batch-size:500}")
+    private int batchSize;
+
+    @Value("${outbox.relay.idle-ms:200}")
+    private long idleMs;
+
+    @Value("${outbox.relay.send-timeout-ms:30000}")
+    private long sendTimeoutMs;
+
+    @Value("${outbox.relay.claim-ms:60000}")
+    private long claimMs;
+
+    private final LongAdder relayed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private final AtomicLong lastLagMs = new AtomicLong();
+    private final AtomicLong maxLagMs = new AtomicLong();
+    private volatile String lastError;
+
+    private volatile boolean running;
+    private ExecutorService workers;
+
+    @Autowired
+    public OutboxRelay(
+            @Qualifier(OutboxEventRepository.BEAN_NAME) OutboxEventRepository outboxEventRepository,
+            @Qualifier(KafkaConfig.PRODUCER_PIPELINE_BEAN_NAME) ProducerPipeline pipeline,
+            @Qualifier(DistributorDbConfig.TRANSACTION_MANAGER_BEAN_NAME) PlatformTransactionManager transactionManager
+    ) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.pipeline = pipeline;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void start() {
+        if (!this.enabled || this.running) return;
+
+        this.running = true;
+        this.workers = Executors.newFixedThreadPool(this.threads, Thread.ofPlatform().name("outbox-relay-", 0).daemon(true).factory());
+        for (int i = 0; i < this.threads; i++) {
+            int shard = i;
+            this.workers.submit(() -> this.work(shard));
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (!this.running) return;
+
+        this.running = false;
+        this.workers.shutdown();
+        try {
+            if (!this.workers.awaitTermination(this.sendTimeoutMs, TimeUnit.MILLISECONDS))
+                this.workers.shutdownNow();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.workers.shutdownNow();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return this.running;
+    }
+
+    /**
+     * @return Hash stored with the events of a record key, the same on every instance; their shard is this hash modulo the number of threads
+     */
+    public static int keyHash(String key) {
+        return key.hashCode() & Integer.MAX_VALUE;
+    }
+
+    /**
+     * Relays one batch of a shard: claims it, sends it, then deletes it, each database step in its own short transaction.
+     * @return Number of relayed events, 0 when the shard is empty or its head is in flight on another instance
+     */
+    public int drainOnce(int shard) {
+        Instant until = Instant.now().plusMillis(this.claimMs).truncatedTo(ChronoUnit.MICROS);
+        List<OutboxEvent> batch = this.transactionTemplate.execute(status -> this.claim(shard, until));
+        if (batch == null || batch.isEmpty()) return 0;
+
+        List<ProducerRecord<String, Object>> records = new ArrayList<>(batch.size());
+        List<Long> ids = new ArrayList<>(batch.size());
+        Instant oldest = batch.getFirst().getCreatedAt();
+        for (OutboxEvent row : batch) {
+            Object event = OutboxCodec.decode(row.getEventType(), row.getPayload());
+            records.add(new ProducerRecord<>(row.getTopic(), null, row.getEventKey(), event, EventIds.headers(row.getEventId())));
+            ids.add(row.getId());
+            if (row.getCreatedAt().isBefore(oldest)) oldest = row.getCreatedAt();
+        }
+
+        try {
+            this.awaitAcks(this.pipeline.sendBatch(records));
+        } catch (RuntimeException e) {
+            // Sent again by the next call of this worker instead of waiting for the lease to expire
+            this.transactionTemplate.executeWithoutResult(status -> this.outboxEventRepository.release(ids, until));
+            throw e;
+        }
+        this.transactionTemplate.executeWithoutResult(status -> this.outboxEventRepository.deleteAllByIdInBatch(ids));
+
+        long lagMs = Duration.between(oldest, Instant.now()).toMillis();
+        this.lastLagMs.set(lagMs);
+        this.maxLagMs.accumulateAndGet(lagMs, Math::max);
+        this.relayed.add(batch.size());
+        this.batches.increment();
+        return batch.size();
+    }
+
+    /**
+     * @return Relay counters and the current backlog of the outbox table
+     */
+    public Stats getStats() {
+        long pending = this.outboxEventRepository.count();
+        long oldestPendingAgeMs = this.outboxEventRepository.findOldestCreatedAt()
+                .map(createdAt -> Duration.between(createdAt, Instant.now()).toMillis())
+                .orElse(0L);
+
+        return new Stats(
+                pending,
+                oldestPendingAgeMs,
+                this.relayed.sum(),
+                this.batches.sum(),
+                this.failedBatches.sum(),
+                this.lastLagMs.get(),
+                this.maxLagMs.get(),
+                this.lastError
+        );
+    }
+
+    /**
+     * Claims the oldest events of a shard, in the current transaction.
+     * @param until End of the claim, also identifies it when the batch is released
+     * @return The claimed events, empty when the head of the shard is locked or claimed by another relay
+     */
+    private List<OutboxEvent> claim(int shard, Instant until) {
+        List<OutboxEvent> batch = this.outboxEventRepository.lockNextBatch(shard, this.threads, Instant.now(), this.batchSize);
+        if (batch.isEmpty()) return batch;
+
+        // Skipped or claimed rows in front of the batch are an older batch in flight: its events must be acknowledged first
+        Long head = this.outboxEventRepository.findHeadOfShard(shard, this.threads).orElse(null);
+        if (!batch.getFirst().getId().equals(head)) return List.of();
+
+        this.outboxEventRepository.claim(batch.stream().map(OutboxEvent::getId).toList(), until);
+        return batch;
+    }
+
+    private void work(int shard) {
+        while (this.running) {
+            try {
+                if (this.drainOnce(shard) < this.batchSize) Thread.sleep(this.idleMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                this.failedBatches.increment();
+                this.lastError = e.getMessage();
+                // The batch is released, or its claim expires: the next call of this worker starts over from it
+                try {
+                    Thread.sleep(FAILURE_BACKOFF_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void awaitAcks(CompletableFuture<ProducerPipeline.BatchResult> future) {
+        try {
+            future.get(this.sendTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Outbox batch not acknowledged: " + e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Outbox batch not acknowledged after " + this.sendTimeoutMs + " ms", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the outbox batch", e);
+        }
+    }
+
+    /**
+     * Snapshot of the relay.
+     * @param pending Events waiting in the outbox table
+     * @param oldestPendingAgeMs Age of the oldest waiting event
+     * @param relayed Events relayed by this instance since startup
+     * @param batches Batches relayed by this instance since startup
+     * @param failedBatches Batches not acknowledged by this instance since startup
+     * @param lastLagMs Enqueue to acknowledgement delay of the oldest event of the last batch
+     * @param maxLagMs Highest lag seen since startup
+     * @param lastError Message of the last failure, if any
+     */
+    public record Stats(long pending, long oldestPendingAgeMs, long relayed, long batches, long failedBatches, long lastLagMs, long maxLagMs, String lastError) {
+        @Override
+        public String toString() {
+            return "pending=" + pending + ", oldestPendingAge=" + oldestPendingAgeMs + "ms"
+                    + ", relayed=" + relayed + ", batches=" + batches + ", failedBatches=" + failedBatches
+                    + ", lastLag=" + lastLagMs + "ms, maxLag=" + maxLagMs + "ms"
+                    + (lastError != null ? ", lastError=" + lastError : "");
+        }
+    }
+}
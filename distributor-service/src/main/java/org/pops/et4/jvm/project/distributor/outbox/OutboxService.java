@@ -0,0 +1,87 @@
+package org.pops.et4.jvm.project.distributor.outbox;
+
+import org.apache.avro.specific.SpecificRecord;
+import org.pops.et4.jvm.project.distributor.db.DistributorDbConfig;
+import org.pops.et4.jvm.project.schemas.kafka.EventIds;
+import org.pops.et4.jvm.project.schemas.models.distributor.OutboxEvent;
+import org.pops.et4.jvm.project.schemas.repositories.distributor.OutboxEventRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes events to the outbox table.
+ * Must be called inside the transaction of the business change: the events are committed, or rolled back, with it.
+ * {@link OutboxRelay} sends them to Kafka afterwards.
+ */
+@Service(OutboxService.BEAN_NAME)
+public class OutboxService {
+
+    public static final String BEAN_NAME = "distributorServiceOutboxService";
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final LongAdder enqueued = new LongAdder();
+
+    @Autowired
+    public OutboxService(
+            @Qualifier(OutboxEventRepository.BEAN_NAME) OutboxEventRepository outboxEventRepository
+    ) {
+        this.outboxEventRepository = outboxEventRepository;
+    }
+
+    @Transactional(transactionManager = DistributorDbConfig.TRANSACTION_MANAGER_BEAN_NAME, propagation = Propagation.MANDATORY)
+    public void enqueue(String topic, String key, SpecificRecord event) {
+        this.outboxEventRepository.save(this.toOutboxEvent(topic, key, event, Instant.now()));
+        this.enqueued.increment();
+    }
+
+    /**
+     * Writes a group of events, all stamped with the same enqueue time.
+     * @param events Events to write, keyed by topic and record key
+     */
+    @Transactional(transactionManager = DistributorDbConfig.TRANSACTION_MANAGER_BEAN_NAME, propagation = Propagation.MANDATORY)
+    public void enqueueAll(List<Entry> events) {
+        if (events.isEmpty()) return;
+
+        Instant now = Instant.now();
+        List<OutboxEvent> rows = new ArrayList<>(events.size());
+        for (Entry entry : events)
+            rows.add(this.toOutboxEvent(entry.topic(), entry.key(), entry.event(), now));
+
+        this.outboxEventRepository.saveAll(rows);
+        this.enqueued.add(rows.size());
+    }
+
+    /**
+     * @return Number of events written since startup, committed or not
+     */
+    public long getEnqueued() {
+        return this.enqueued.sum();
+    }
+
+    private OutboxEvent toOutboxEvent(String topic, String key, SpecificRecord event, Instant createdAt) {
+        return OutboxEvent.newBuilder()
+                .setId(null)
+                .setEventId(EventIds.newId())
+                .setTopic(topic)
+                .setEventKey(key)
+                .setKeyHash(OutboxRelay.keyHash(key))
+                .setEventType(event.getClass().getName())
+                .setPayload(OutboxCodec.encode(event))
+                .setCreatedAt(createdAt)
+                .setClaimedUntil(null)
+                .build();
+    }
+
+    /**
+     * One event to write to the outbox.
+     */
+    public record Entry(String topic, String key, SpecificRecord event) {}
+}
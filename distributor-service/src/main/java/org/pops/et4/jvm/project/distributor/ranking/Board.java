@@ -0,0 +1,31 @@
+package org.pops.et4.jvm.project.distributor.ranking;
+
+/**
+ * Rankings kept for each distributor, named as in AskLeaderboard.
+ */
+public enum Board {
+    MOST_OWNED("most-owned"),
+    MOST_PLAYED("most-played"),
+    TOP_RATED("top-rated"),
+    TRENDING("trending");
+
+    private final String eventName;
+
+    Board(String eventName) {
+        this.eventName = eventName;
+    }
+
+    public String eventName() {
+        return this.eventName;
+    }
+
+    /**
+     * @throws IllegalArgumentException if no board has this name
+     */
+    public static Board of(String eventName) {
+        for (Board board : values()) {
+            if (board.eventName.equals(eventName)) return board;
+        }
+        throw new IllegalArgumentException("Unknown leaderboard: " + eventName);
+    }
+}
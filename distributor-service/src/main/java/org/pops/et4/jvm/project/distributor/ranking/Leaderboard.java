@@ -0,0 +1,50 @@
+package org.pops.et4.jvm.project.distributor.ranking;
+
+import java.util.*;
+
+/**
+ * Games ordered by score, kept sorted as scores change: an update is O(log n), the top k are read in O(k).
+ * A score per game gives the entry to remove from the ordered set when the score changes.
+ */
+final class Leaderboard {
+
+    // Best score first, ties by game ID so two games never compare equal
+    private static final Comparator<Entry> ORDER = Comparator.comparingDouble(Entry::score).reversed().thenComparingLong(Entry::gameId);
+
+    private final Map<Long, Double> scores = new HashMap<>();
+    private final TreeSet<Entry> ranked = new TreeSet<>(ORDER);
+
+    synchronized void set(long gameId, double score) {
+        Double previous = this.scores.put(gameId, score);
+        if (previous != null) this.ranked.remove(new Entry(gameId, previous));
+        this.ranked.add(new Entry(gameId, score));
+    }
+
+    synchronized void add(long gameId, double delta) {
+        this.set(gameId, this.scores.getOrDefault(gameId, 0.0) + delta);
+    }
+
+    /**
+     * Multiplies every score, the order does not change so the set is rebuilt in one pass.
+     */
+    synchronized void scale(double factor) {
+        this.ranked.clear();
+        this.scores.replaceAll((gameId, score) -> score * factor);
+        this.scores.forEach((gameId, score) -> this.ranked.add(new Entry(gameId, score)));
+    }
+
+    synchronized List<Entry> top(int limit) {
+        List<Entry> top = new ArrayList<>(Math.min(limit, this.ranked.size()));
+        for (Entry entry : this.ranked) {
+            if (top.size() == limit) break;
+            top.add(entry);
+        }
+        return top;
+    }
+
+    synchronized int size() {
+        return this.scores.size();
+    }
+
+    record Entry(long gameId, double score) {}
+}
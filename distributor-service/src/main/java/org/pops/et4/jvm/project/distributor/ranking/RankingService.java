@@ -0,0 +1,239 @@
+package org.pops.et4.jvm.project.distributor.ranking;
+
+import org.pops.et4.jvm.project.schemas.logging.EventLog;
+import org.pops.et4.jvm.project.schemas.logging.EventLogger;
+import org.pops.et4.jvm.project.schemas.repositories.distributor.OwnedGameRepository;
+import org.pops.et4.jvm.project.schemas.repositories.distributor.ReviewRepository;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Leaderboards of each distributor, built from the database once every bean is created, then updated by purchases,
+ * play time and reviews once their transaction commits.
+ * <ul>
+ *     <li>all-time boards (owners, play time, Bayesian average rating) are {@link Leaderboard}s, a front page reads k entries</li>
+ *     <li>trending uses forward decay: an event at time t weighs {@code 2^((t - landmark) / halfLife)}, so older events
+ *     lose weight without any score being touched, and the order never changes as time passes</li>
+ *     <li>the landmark moves forward before the weights could overflow, dividing every trending score by the same factor</li>
+ * </ul>
+ * Each instance only sees the events committed on it: the purchases, play time and reviews of the other instances
+ * reach its boards at its next startup, so the boards of two instances can differ in between.
+ */
+@Component(RankingService.BEAN_NAME)
+public class RankingService implements SmartInitializingSingleton {
+
+    public static final String BEAN_NAME = "distributorServiceRankingService";
+
+    private static final EventLogger LOG = EventLog.logger("Ranking");
+
+    // 2^64 is far from the double range, and the scores keep their precision
+    private static final double MAX_HALF_LIVES = 64;
+    // Older events weigh less than 1/256 of a new one, they are not read back at startup
+    private static final int SEED_HALF_LIVES = 8;
+
+    private final OwnedGameRepository ownedGameRepository;
+    private final ReviewRepository reviewRepository;
+
+    @Value("${ranking.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ranking.max-results:100}")
+    private int maxResults;
+
+    @Value("${ranking.trending.half-life-minutes:60}")
+    private double halfLifeMinutes;
+
+    @Value("${ranking.trending.purchase-weight:1.0}")
+    private double purchaseWeight;
+
+    @Value("${ranking.trending.play-hour-weight:0.5}")
+    private double playHourWeight;
+
+    @Value("${ranking.trending.review-weight:0.5}")
+    private double reviewWeight;
+
+    @Value("${ranking.top-rated.prior-mean:2.5}")
+    private double priorMean;
+
+    @Value("${ranking.top-rated.prior-weight:5}")
+    private double priorWeight;
+
+    private final ConcurrentMap<Long, Rankings> distributors = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+
+    @Autowired
+    public RankingService(
+            @Qualifier(OwnedGameRepository.BEAN_NAME) OwnedGameRepository ownedGameRepository,
+            @Qualifier(ReviewRepository.BEAN_NAME) ReviewRepository reviewRepository
+    ) {
+        this.ownedGameRepository = ownedGameRepository;
+        this.reviewRepository = reviewRepository;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (this.enabled) this.rebuild();
+    }
+
+    /**
+     * Builds every board again with one aggregate query per source, and the recent events for trending.
+     */
+    public void rebuild() {
+        long start = System.nanoTime();
+        this.ready = false;
+        this.distributors.clear();
+
+        for (OwnedGameRepository.GameOwnership stats : this.ownedGameRepository.findGameOwnership()) {
+            Rankings rankings = this.rankings(stats.getDistributorId());
+            rankings.owned.set(stats.getGameId(), stats.getOwners());
+            rankings.played.set(stats.getGameId(), stats.getTotalPlayTime());
+        }
+        for (ReviewRepository.GameRatings ratings : this.reviewRepository.findGameRatings())
+            this.rankings(ratings.getDistributorId()).rate(ratings.getGameId(), ratings.getReviews(), ratings.getRatingSum());
+
+        Instant since = Instant.now().minus(Duration.ofMillis((long) (SEED_HALF_LIVES * this.halfLifeMs())));
+        for (OwnedGameRepository.GameActivity purchase : this.ownedGameRepository.findPurchasesSince(since))
+            this.rankings(purchase.getDistributorId()).trend(purchase.getGameId(), this.purchaseWeight, purchase.getDate().toEpochMilli());
+        for (OwnedGameRepository.GameActivity review : this.reviewRepository.findPublicationsSince(since))
+            this.rankings(review.getDistributorId()).trend(review.getGameId(), this.reviewWeight, review.getDate().toEpochMilli());
+
+        this.ready = true;
+        LOG.info("Built leaderboards in {} ms: {}", (System.nanoTime() - start) / 1_000_000, this);
+    }
+
+    public void purchased(long distributorId, long gameId) {
+        afterCommit(() -> {
+            Rankings rankings = this.rankings(distributorId);
+            rankings.owned.add(gameId, 1);
+            rankings.trend(gameId, this.purchaseWeight, System.currentTimeMillis());
+        });
+    }
+
+    public void played(long distributorId, long gameId, int minutes) {
+        if (minutes <= 0) return;
+        afterCommit(() -> {
+            Rankings rankings = this.rankings(distributorId);
+            rankings.played.add(gameId, minutes);
+            rankings.trend(gameId, this.playHourWeight * minutes / 60.0, System.currentTimeMillis());
+        });
+    }
+
+    public void reviewed(long distributorId, long gameId, int rating) {
+        afterCommit(() -> {
+            Rankings rankings = this.rankings(distributorId);
+            rankings.rate(gameId, 1, rating);
+            rankings.trend(gameId, this.reviewWeight, System.currentTimeMillis());
+        });
+    }
+
+    /**
+     * @return Best games of the board, best first, at most {@code ranking.max-results}; trending scores are decayed to now
+     */
+    public List<Ranked> top(long distributorId, Board board, int limit) {
+        Rankings rankings = this.distributors.get(distributorId);
+        if (rankings == null || limit <= 0) return List.of();
+        int k = Math.min(limit, this.maxResults);
+
+        if (board == Board.TRENDING) return rankings.trendingTop(k, System.currentTimeMillis());
+        Leaderboard leaderboard = switch (board) {
+            case MOST_OWNED -> rankings.owned;
+            case MOST_PLAYED -> rankings.played;
+            default -> rankings.rated;
+        };
+        return leaderboard.top(k).stream().map(entry -> new Ranked(entry.gameId(), entry.score())).toList();
+    }
+
+    /**
+     * @return false while the boards are built or if they are disabled
+     */
+    public boolean isReady() {
+        return this.ready;
+    }
+
+    @Override
+    public String toString() {
+        int games = 0;
+        for (Rankings rankings : this.distributors.values()) games += rankings.owned.size();
+        return "distributors=" + this.distributors.size() + ", ownedGames=" + games + ", halfLife=" + this.halfLifeMinutes + "min, ready=" + this.ready;
+    }
+
+    private Rankings rankings(long distributorId) {
+        return this.distributors.computeIfAbsent(distributorId, id -> new Rankings());
+    }
+
+    private double halfLifeMs() {
+        return this.halfLifeMinutes * 60_000;
+    }
+
+    /**
+     * Rolled back purchases, play times and reviews never reach the boards.
+     */
+    private static void afterCommit(Runnable update) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                update.run();
+            }
+        });
+    }
+
+    /**
+     * @param score Owners, minutes played, average rating, or trending weight decayed to the time of the request
+     */
+    public record Ranked(long gameId, double score) {}
+
+    /**
+     * Boards of one distributor.
+     */
+    private final class Rankings {
+        private final Leaderboard owned = new Leaderboard();
+        private final Leaderboard played = new Leaderboard();
+        private final Leaderboard rated = new Leaderboard();
+        private final Leaderboard trending = new Leaderboard();
+
+        // gameId -> { number of ratings, sum of ratings }
+        private final Map<Long, long[]> ratings = new HashMap<>();
+        private long landmarkMs = System.currentTimeMillis();
+
+        /**
+         * Bayesian average: a few ratings stay close to the prior mean, so one perfect rating does not top the board.
+         */
+        synchronized void rate(long gameId, long count, long sum) {
+            long[] totals = this.ratings.computeIfAbsent(gameId, id -> new long[2]);
+            totals[0] += count;
+            totals[1] += sum;
+            this.rated.set(gameId, (priorWeight * priorMean + totals[1]) / (priorWeight + totals[0]));
+        }
+
+        synchronized void trend(long gameId, double weight, long atMs) {
+            double halfLives = (atMs - this.landmarkMs) / halfLifeMs();
+            if (halfLives > MAX_HALF_LIVES) {
+                this.trending.scale(Math.pow(2, -halfLives));
+                this.landmarkMs = atMs;
+                halfLives = 0;
+            }
+            this.trending.add(gameId, weight * Math.pow(2, halfLives));
+        }
+
+        synchronized List<Ranked> trendingTop(int limit, long nowMs) {
+            double decay = Math.pow(2, -(nowMs - this.landmarkMs) / halfLifeMs());
+            return this.trending.top(limit).stream().map(entry -> new Ranked(entry.gameId(), entry.score() * decay)).toList();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.pops.et4.jvm.project.distributor.recommend;
+
+import org.pops.et4.jvm.project.distributor.recommend.RecommendationService.Recommendation;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Item-to-item co-occurrence counts of the games of one distributor.
+ * <ul>
+ *     <li>owners: gameId -> number of players owning the game</li>
+ *     <li>pairs: gameId -> (other gameId -> number of players owning both), stored in both directions
+ *     so the neighbors of a game are read from a single map</li>
+ * </ul>
+ * Not thread-safe, the {@link RecommendationService} serializes every access.
+ */
+final class CoOwnershipModel {
+
+    private final LongIntMap owners;
+    private final LongObjectMap<LongIntMap> pairs;
+    private long entries;
+
+    CoOwnershipModel() {
+        this(new LongIntMap(16));
+    }
+
+    private CoOwnershipModel(LongIntMap owners) {
+        this.owners = owners;
+        this.pairs = new LongObjectMap<>(16);
+    }
+
+    /**
+     * Counts one more owner of the game, and one more co-owner with each game already in the player's library.
+     * @return Number of pair entries created
+     */
+    long addOwnership(long gameId, long[] library) {
+        this.owners.addTo(gameId, 1);
+        long before = this.entries;
+        for (long other : library) {
+            if (other == gameId) continue;
+            this.increment(gameId, other);
+            this.increment(other, gameId);
+        }
+        return this.entries - before;
+    }
+
+    /**
+     * Removes the pairs owned together by fewer players than the floor.
+     * @return Number of removed entries
+     */
+    long prune(int floor) {
+        long[] removed = { 0 };
+        this.pairs.forEach((gameId, neighbors) -> removed[0] += neighbors.prune(floor));
+        this.entries -= removed[0];
+        return removed[0];
+    }
+
+    /**
+     * Ranks the neighbors of the game by cosine similarity, {@code coOwners / sqrt(owners(game) * owners(other))},
+     * so games everyone owns do not top every list.
+     */
+    List<Recommendation> recommend(long gameId, int limit, int minCoOwners) {
+        LongIntMap neighbors = this.pairs.get(gameId);
+        int gameOwners = this.owners.get(gameId);
+        if (neighbors == null || gameOwners == 0 || limit <= 0) return List.of();
+
+        Comparator<Recommendation> order = Comparator.comparingDouble(Recommendation::score).thenComparingInt(Recommendation::coOwners);
+        PriorityQueue<Recommendation> best = new PriorityQueue<>(limit + 1, order);
+        neighbors.forEach((other, coOwners) -> {
+            if (coOwners < minCoOwners) return;
+            double score = coOwners / Math.sqrt((double) gameOwners * Math.max(1, this.owners.get(other)));
+            best.add(new Recommendation(other, coOwners, score));
+            if (best.size() > limit) best.poll();
+        });
+
+        List<Recommendation> recommendations = new ArrayList<>(best);
+        recommendations.sort(order.reversed());
+        return recommendations;
+    }
+
+    long entries() {
+        return this.entries;
+    }
+
+    int games() {
+        return this.owners.size();
+    }
+
+    void writeTo(DataOutput output) throws IOException {
+        this.owners.writeTo(output);
+        output.writeInt(this.pairs.size());
+        for (int slot = 0; slot < this.pairs.capacity(); slot++) {
+            if (this.pairs.keyAt(slot) == LongIntMap.EMPTY) continue;
+            output.writeLong(this.pairs.keyAt(slot));
+            this.pairs.valueAt(slot).writeTo(output);
+        }
+    }
+
+    static CoOwnershipModel readFrom(DataInput input) throws IOException {
+        CoOwnershipModel model = new CoOwnershipModel(LongIntMap.readFrom(input));
+        int games = input.readInt();
+        for (int i = 0; i < games; i++) {
+            long gameId = input.readLong();
+            LongIntMap neighbors = LongIntMap.readFrom(input);
+            model.pairs.computeIfAbsent(gameId, id -> neighbors);
+            model.entries += neighbors.size();
+        }
+        return model;
+    }
+
+    private void increment(long gameId, long other) {
+        LongIntMap neighbors = this.pairs.computeIfAbsent(gameId, id -> new LongIntMap(4));
+        if (neighbors.addTo(other, 1) == 1) this.entries++;
+    }
+}
@@ -0,0 +1,138 @@
+package org.pops.et4.jvm.project.distributor.recommend;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from long to int, keys and values in two flat arrays: no boxing and no entry objects,
+ * about 17 bytes per entry at the maximum load factor.
+ * {@link Long#MIN_VALUE} marks the empty slots and cannot be used as a key.
+ */
+final class LongIntMap {
+
+    @FunctionalInterface
+    interface Visitor {
+        void accept(long key, int value);
+    }
+
+    static final long EMPTY = Long.MIN_VALUE;
+    private static final float LOAD_FACTOR = 0.7f;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private int threshold;
+
+    LongIntMap(int expectedSize) {
+        this.allocate(capacityFor(expectedSize));
+    }
+
+    int get(long key) {
+        int slot = this.slotOf(key);
+        return this.keys[slot] == key ? this.values[slot] : 0;
+    }
+
+    /**
+     * @return The new value of the key, a missing key starts at 0
+     */
+    int addTo(long key, int delta) {
+        if (key == EMPTY) throw new IllegalArgumentException("Reserved key: " + key);
+        int slot = this.slotOf(key);
+        if (this.keys[slot] == key) return this.values[slot] += delta;
+
+        this.keys[slot] = key;
+        this.values[slot] = delta;
+        if (++this.size > this.threshold) this.rehash(this.keys.length * 2);
+        return delta;
+    }
+
+    /**
+     * Removes the entries whose value is below the floor, the table shrinks to fit the remaining ones.
+     * @return Number of removed entries
+     */
+    int prune(int floor) {
+        long[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        int kept = 0;
+        for (int i = 0; i < oldKeys.length; i++) if (oldKeys[i] != EMPTY && oldValues[i] >= floor) kept++;
+
+        int removed = this.size - kept;
+        if (removed == 0) return 0;
+        this.allocate(capacityFor(kept));
+        for (int i = 0; i < oldKeys.length; i++) if (oldKeys[i] != EMPTY && oldValues[i] >= floor) this.put(oldKeys[i], oldValues[i]);
+        return removed;
+    }
+
+    void forEach(Visitor visitor) {
+        for (int i = 0; i < this.keys.length; i++) if (this.keys[i] != EMPTY) visitor.accept(this.keys[i], this.values[i]);
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Writes the size, then each key and value.
+     */
+    void writeTo(DataOutput output) throws IOException {
+        output.writeInt(this.size);
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.keys[i] == EMPTY) continue;
+            output.writeLong(this.keys[i]);
+            output.writeInt(this.values[i]);
+        }
+    }
+
+    static LongIntMap readFrom(DataInput input) throws IOException {
+        int size = input.readInt();
+        LongIntMap map = new LongIntMap(size);
+        for (int i = 0; i < size; i++) map.put(input.readLong(), input.readInt());
+        return map;
+    }
+
+    private void put(long key, int value) {
+        int slot = this.slotOf(key);
+        if (this.keys[slot] != key) this.size++;
+        this.keys[slot] = key;
+        this.values[slot] = value;
+    }
+
+    /**
+     * @return The slot of the key, or the empty slot where it would be inserted
+     */
+    private int slotOf(long key) {
+        int slot = hash(key) & this.mask;
+        while (this.keys[slot] != EMPTY && this.keys[slot] != key) slot = (slot + 1) & this.mask;
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        this.allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) if (oldKeys[i] != EMPTY) this.put(oldKeys[i], oldValues[i]);
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new long[capacity];
+        Arrays.fill(this.keys, EMPTY);
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+        this.size = 0;
+        this.threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    static int capacityFor(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR) + 1) - 1) << 1;
+        return Math.max(4, capacity);
+    }
+
+    // Game IDs are sequential, the multiplication spreads them over the whole table
+    static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,106 @@
+package org.pops.et4.jvm.project.distributor.recommend;
+
+import java.util.Arrays;
+import java.util.function.LongFunction;
+
+/**
+ * Open-addressing map from long to objects, the counterpart of {@link LongIntMap} for the per-game neighbor maps.
+ * {@link Long#MIN_VALUE} marks the empty slots and cannot be used as a key.
+ */
+final class LongObjectMap<V> {
+
+    @FunctionalInterface
+    interface Visitor<V> {
+        void accept(long key, V value);
+    }
+
+    private static final long EMPTY = LongIntMap.EMPTY;
+    private static final float LOAD_FACTOR = 0.7f;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    private int threshold;
+
+    LongObjectMap(int expectedSize) {
+        this.allocate(LongIntMap.capacityFor(expectedSize));
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        int slot = this.slotOf(key);
+        return this.keys[slot] == key ? (V) this.values[slot] : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    V computeIfAbsent(long key, LongFunction<V> factory) {
+        if (key == EMPTY) throw new IllegalArgumentException("Reserved key: " + key);
+        int slot = this.slotOf(key);
+        if (this.keys[slot] == key) return (V) this.values[slot];
+
+        V value = factory.apply(key);
+        this.keys[slot] = key;
+        this.values[slot] = value;
+        if (++this.size > this.threshold) this.rehash(this.keys.length * 2);
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEach(Visitor<V> visitor) {
+        for (int i = 0; i < this.keys.length; i++) if (this.keys[i] != EMPTY) visitor.accept(this.keys[i], (V) this.values[i]);
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    void clear() {
+        this.allocate(LongIntMap.capacityFor(0));
+    }
+
+    /**
+     * Slot access, for the loops that cannot go through a lambda (checked exceptions): slots 0 to capacity - 1,
+     * {@link #keyAt} returns {@link LongIntMap#EMPTY} for an empty slot.
+     */
+    int capacity() {
+        return this.keys.length;
+    }
+
+    long keyAt(int slot) {
+        return this.keys[slot];
+    }
+
+    @SuppressWarnings("unchecked")
+    V valueAt(int slot) {
+        return (V) this.values[slot];
+    }
+
+    private int slotOf(long key) {
+        int slot = LongIntMap.hash(key) & this.mask;
+        while (this.keys[slot] != EMPTY && this.keys[slot] != key) slot = (slot + 1) & this.mask;
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        this.allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY) continue;
+            int slot = this.slotOf(oldKeys[i]);
+            this.keys[slot] = oldKeys[i];
+            this.values[slot] = oldValues[i];
+            this.size++;
+        }
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new long[capacity];
+        Arrays.fill(this.keys, EMPTY);
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+        this.size = 0;
+        this.threshold = (int) (capacity * LOAD_FACTOR);
+    }
+}
@@ -0,0 +1,289 @@
+package org.pops.et4.jvm.project.distributor.recommend;
+
+import jakarta.annotation.PreDestroy;
+import org.pops.et4.jvm.project.distributor.db.DistributorDbConfig;
+import org.pops.et4.jvm.project.distributor.db.OwnedGamesState;
+import org.pops.et4.jvm.project.migrations.SchemaMigrations;
+import org.pops.et4.jvm.project.schemas.logging.EventLog;
+import org.pops.et4.jvm.project.schemas.logging.EventLogger;
+import org.pops.et4.jvm.project.schemas.repositories.distributor.OwnedGameRepository;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * "Players who bought this also bought": co-ownership counts of the games of each distributor, answered from memory.
+ * <ul>
+ *     <li>each purchase adds one co-owner between the new game and every game already in the player's library,
+ *     once the purchase commits</li>
+ *     <li>at startup, the checkpoint is loaded and only the owned games inserted since are read from the database,
+ *     without a checkpoint the model is built from every owned game, in batches</li>
+ *     <li>past {@code recommend.max-entries} pair entries, the least co-owned pairs are pruned with an increasing floor,
+ *     which bounds the heap used by the model</li>
+ * </ul>
+ * The checkpoint stores the last owned game applied and the number of owned games applied. It is only loaded if it was taken
+ * on the same database and the owned games up to its last one are exactly the ones it applied (see {@link OwnedGamesState}):
+ * otherwise, e.g. after a database reset or a purchase committed out of order and lost in a crash, the model is built again.
+ * Each instance only counts the purchases committed on it: those of the other instances reach its model at its next startup,
+ * when the owned games inserted since the checkpoint are read.
+ */
+@Component(RecommendationService.BEAN_NAME)
+public class RecommendationService implements SmartInitializingSingleton {
+
+    public static final String BEAN_NAME = "distributorServiceRecommendationService";
+
+    private static final EventLogger LOG = EventLog.logger("Recommend");
+    private static final int CHECKPOINT_MAGIC = 0x52454332; // "REC2"
+
+    private final OwnedGameRepository ownedGameRepository;
+    private final SchemaMigrations migrations;
+
+    @Value("${recommend.enabled:true}")
+    private boolean enabled;
+
+    @Value("${recommend.max-entries:4000000}")
+    private long maxEntries;
+
+    @Value("${recommend.max-library-size:1000}")
+    private int maxLibrarySize;
+
+    @Value("${recommend.min-co-owners:1}")
+    private int minCoOwners;
+
+    @Value("${recommend.max-results:50}")
+    private int maxResults;
+
+    @Value("${recommend.load-batch-size:5000}")
+    private int loadBatchSize;
+
+    @Value("${recommend.checkpoint.enabled:true}")
+    private boolean checkpointEnabled;
+
+    @Value("${recommend.checkpoint.path:./data/distributor-recommendations.checkpoint}")
+    private String checkpointPath;
+
+    // distributorId -> model, every access holds the service lock
+    private final LongObjectMap<CoOwnershipModel> models = new LongObjectMap<>(4);
+    private long entries;
+    private long lastOwnedGameId;
+    private long ownerships;
+    private long epoch = OwnedGamesState.UNKNOWN_EPOCH;
+    private int floor = 1;
+    private long pruned;
+    private boolean dirty;
+
+    private volatile boolean ready;
+
+    @Autowired
+    public RecommendationService(
+            @Qualifier(OwnedGameRepository.BEAN_NAME) OwnedGameRepository ownedGameRepository,
+            @Qualifier(DistributorDbConfig.MIGRATIONS_BEAN_NAME) SchemaMigrations migrations
+    ) {
+        this.ownedGameRepository = ownedGameRepository;
+        this.migrations = migrations;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!this.enabled) return;
+        this.epoch = OwnedGamesState.epochOf(this.migrations);
+        this.loadCheckpoint();
+        this.catchUp();
+    }
+
+    /**
+     * Applies the owned games inserted after the last applied one, in batches: one query for the rows,
+     * one for the libraries of their players.
+     */
+    public void catchUp() {
+        long start = System.nanoTime();
+        long from = this.lastOwnedGameId;
+        int applied = 0;
+        List<OwnedGameRepository.Ownership> batch;
+        do {
+            batch = this.ownedGameRepository.findOwnershipsAfter(this.lastOwnedGameId, PageRequest.of(0, this.loadBatchSize));
+            if (batch.isEmpty()) break;
+
+            Set<Long> playerIds = new HashSet<>();
+            for (OwnedGameRepository.Ownership row : batch) playerIds.add(row.getPlayerId());
+            Map<Long, List<OwnedGameRepository.Ownership>> libraries = new HashMap<>();
+            for (OwnedGameRepository.Ownership row : this.ownedGameRepository.findOwnershipsByPlayerIds(playerIds))
+                libraries.computeIfAbsent(row.getPlayerId(), id -> new ArrayList<>()).add(row);
+            libraries.values().forEach(library -> library.sort(Comparator.comparing(OwnedGameRepository.Ownership::getOwnedGameId)));
+
+            for (OwnedGameRepository.Ownership row : batch) {
+                // The library at the time of the purchase: the games inserted before this one
+                List<OwnedGameRepository.Ownership> library = libraries.getOrDefault(row.getPlayerId(), List.of());
+                int end = 0;
+                while (end < library.size() && library.get(end).getOwnedGameId() < row.getOwnedGameId()) end++;
+                int begin = Math.max(0, end - this.maxLibrarySize);
+                long[] gameIds = new long[end - begin];
+                for (int i = begin; i < end; i++) gameIds[i - begin] = library.get(i).getGameId();
+
+                this.apply(row.getDistributorId(), row.getOwnedGameId(), row.getGameId(), gameIds);
+            }
+            applied += batch.size();
+        } while (batch.size() == this.loadBatchSize);
+
+        this.ready = true;
+        LOG.info("Applied {} owned game(s) after #{} in {} ms: {}", applied, from, (System.nanoTime() - start) / 1_000_000, this);
+    }
+
+    /**
+     * Counts a purchase once its transaction commits.
+     * @param library Games the player owned before this purchase, most recent first
+     */
+    public void purchased(long distributorId, long ownedGameId, long gameId, List<Long> library) {
+        long[] gameIds = new long[Math.min(library.size(), this.maxLibrarySize)];
+        for (int i = 0; i < gameIds.length; i++) gameIds[i] = library.get(i);
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            this.apply(distributorId, ownedGameId, gameId, gameIds);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                RecommendationService.this.apply(distributorId, ownedGameId, gameId, gameIds);
+            }
+        });
+    }
+
+    /**
+     * @return Games most co-owned with the game, relative to their own number of owners, best first
+     */
+    public synchronized List<Recommendation> recommend(long distributorId, long gameId, int limit) {
+        CoOwnershipModel model = this.models.get(distributorId);
+        if (model == null) return List.of();
+        return model.recommend(gameId, Math.min(limit, this.maxResults), Math.max(this.minCoOwners, this.floor));
+    }
+
+    public boolean isReady() {
+        return this.ready;
+    }
+
+    /**
+     * Writes the models to a temporary file, then moves it over the previous checkpoint.
+     * Updates wait for the end of the write.
+     */
+    @Scheduled(fixedDelayString = "${recommend.checkpoint.interval-ms:60000}")
+    public synchronized void checkpoint() {
+        if (!this.checkpointEnabled || !this.dirty) return;
+
+        long start = System.nanoTime();
+        Path path = Path.of(this.checkpointPath);
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            if (path.toAbsolutePath().getParent() != null) Files.createDirectories(path.toAbsolutePath().getParent());
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+                output.writeInt(CHECKPOINT_MAGIC);
+                output.writeLong(this.epoch);
+                output.writeLong(this.lastOwnedGameId);
+                output.writeLong(this.ownerships);
+                output.writeInt(this.floor);
+                output.writeInt(this.models.size());
+                for (int slot = 0; slot < this.models.capacity(); slot++) {
+                    if (this.models.keyAt(slot) == LongIntMap.EMPTY) continue;
+                    output.writeLong(this.models.keyAt(slot));
+                    this.models.valueAt(slot).writeTo(output);
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.dirty = false;
+            LOG.info("Checkpointed recommendations to {} in {} ms ({} bytes)", path, (System.nanoTime() - start) / 1_000_000, Files.size(path));
+        } catch (IOException e) {
+            LOG.error("Failed to checkpoint recommendations to {}: {}", path, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        this.checkpoint();
+    }
+
+    @Override
+    public synchronized String toString() {
+        int[] games = { 0 };
+        this.models.forEach((distributorId, model) -> games[0] += model.games());
+        return "distributors=" + this.models.size() + ", games=" + games[0] + ", entries=" + this.entries + "/" + this.maxEntries
+                + ", floor=" + this.floor + ", pruned=" + this.pruned + ", lastOwnedGame=" + this.lastOwnedGameId + ", ready=" + this.ready;
+    }
+
+    private synchronized void apply(long distributorId, long ownedGameId, long gameId, long[] library) {
+        this.entries += this.models.computeIfAbsent(distributorId, id -> new CoOwnershipModel()).addOwnership(gameId, library);
+        this.lastOwnedGameId = Math.max(this.lastOwnedGameId, ownedGameId);
+        this.ownerships++;
+        this.dirty = true;
+        if (this.entries > this.maxEntries) this.prune();
+    }
+
+    /**
+     * Raises the floor until the entries fit in three quarters of the budget, so pruning does not run on every purchase.
+     */
+    private void prune() {
+        long before = this.entries;
+        while (this.entries > this.maxEntries * 3 / 4) {
+            this.floor++;
+            long[] removed = { 0 };
+            this.models.forEach((distributorId, model) -> removed[0] += model.prune(this.floor));
+            this.entries -= removed[0];
+        }
+        this.pruned += before - this.entries;
+        LOG.info("Pruned {} pair entries co-owned by fewer than {} players: {}", before - this.entries, this.floor, this);
+    }
+
+    private synchronized void loadCheckpoint() {
+        Path path = Path.of(this.checkpointPath);
+        if (!this.checkpointEnabled || !Files.exists(path)) return;
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (input.readInt() != CHECKPOINT_MAGIC) throw new IOException("Not a recommendation checkpoint, or of an older format");
+            OwnedGamesState state = new OwnedGamesState(input.readLong(), input.readLong(), input.readLong());
+            String mismatch = state.mismatch(this.epoch, this.ownedGameRepository, 0);
+            if (mismatch != null) throw new IOException(mismatch);
+
+            int floor = input.readInt();
+            int distributors = input.readInt();
+            for (int i = 0; i < distributors; i++) {
+                long distributorId = input.readLong();
+                CoOwnershipModel model = CoOwnershipModel.readFrom(input);
+                this.models.computeIfAbsent(distributorId, id -> model);
+                this.entries += model.entries();
+            }
+            this.lastOwnedGameId = state.lastOwnedGameId();
+            this.ownerships = state.ownerships();
+            this.floor = floor;
+            LOG.info("Loaded recommendation checkpoint {}: {}", path, this);
+        } catch (IOException e) {
+            // The owned games are still in the database, the model is built from them again
+            this.resetModels();
+            LOG.warn("Ignoring recommendation checkpoint {}, rebuilding the model: {}", path, e.getMessage());
+        }
+    }
+
+    private void resetModels() {
+        this.models.clear();
+        this.entries = 0;
+        this.lastOwnedGameId = 0;
+        this.ownerships = 0;
+        this.floor = 1;
+    }
+
+    /**
+     * @param coOwners Players owning both games
+     * @param score Cosine similarity of the two games' owner sets
+     */
+    public record Recommendation(long gameId, int coOwners, double score) {}
+}
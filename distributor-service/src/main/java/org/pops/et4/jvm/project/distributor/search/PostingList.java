@@ -0,0 +1,116 @@
+package org.pops.et4.jvm.project.distributor.search;
+
+import java.util.Arrays;
+
+/**
+ * Reviews containing one term, as (review ID, term frequency) pairs sorted by review ID.
+ * <ul>
+ *     <li>each pair is two varints: the gap since the previous review ID, then the frequency</li>
+ *     <li>review IDs are generated in increasing order, so adding a review appends a few bytes</li>
+ *     <li>an older review (index rebuilt out of order) decodes, inserts and encodes the list again</li>
+ * </ul>
+ */
+final class PostingList {
+
+    @FunctionalInterface
+    interface Visitor {
+        void accept(long reviewId, int frequency);
+    }
+
+    private byte[] bytes = new byte[8];
+    private int length;
+    private int size;
+    private long lastReviewId = -1;
+
+    /**
+     * @return false if the review is already in the list
+     */
+    boolean add(long reviewId, int frequency) {
+        if (reviewId > this.lastReviewId) {
+            this.append(reviewId, frequency);
+            return true;
+        }
+        return this.insert(reviewId, frequency);
+    }
+
+    void forEach(Visitor visitor) {
+        int position = 0;
+        long reviewId = 0;
+        while (position < this.length) {
+            long gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = this.bytes[position++];
+                gap |= (long) (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+
+            int frequency = 0;
+            shift = 0;
+            do {
+                b = this.bytes[position++];
+                frequency |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+
+            reviewId += gap;
+            visitor.accept(reviewId, frequency);
+        }
+    }
+
+    /**
+     * @return Number of reviews containing the term
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * @return Encoded size in bytes
+     */
+    int byteSize() {
+        return this.length;
+    }
+
+    private void append(long reviewId, int frequency) {
+        this.writeVarLong(this.lastReviewId < 0 ? reviewId : reviewId - this.lastReviewId);
+        this.writeVarLong(frequency);
+        this.lastReviewId = reviewId;
+        this.size++;
+    }
+
+    private boolean insert(long reviewId, int frequency) {
+        long[] reviewIds = new long[this.size + 1];
+        int[] frequencies = new int[this.size + 1];
+        int[] count = { 0 };
+        this.forEach((id, f) -> {
+            reviewIds[count[0]] = id;
+            frequencies[count[0]++] = f;
+        });
+
+        int at = Arrays.binarySearch(reviewIds, 0, this.size, reviewId);
+        if (at >= 0) return false;
+        at = -at - 1;
+        System.arraycopy(reviewIds, at, reviewIds, at + 1, this.size - at);
+        System.arraycopy(frequencies, at, frequencies, at + 1, this.size - at);
+        reviewIds[at] = reviewId;
+        frequencies[at] = frequency;
+
+        int total = this.size + 1;
+        this.length = 0;
+        this.size = 0;
+        this.lastReviewId = -1;
+        for (int i = 0; i < total; i++) this.append(reviewIds[i], frequencies[i]);
+        return true;
+    }
+
+    private void writeVarLong(long value) {
+        if (this.length + 10 > this.bytes.length) this.bytes = Arrays.copyOf(this.bytes, Math.max(this.bytes.length * 2, this.length + 10));
+        while ((value & ~0x7fL) != 0) {
+            this.bytes[this.length++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        this.bytes[this.length++] = (byte) value;
+    }
+}
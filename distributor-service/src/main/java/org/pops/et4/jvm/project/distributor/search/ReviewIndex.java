@@ -0,0 +1,196 @@
+package org.pops.et4.jvm.project.distributor.search;
+
+import org.pops.et4.jvm.project.schemas.logging.EventLog;
+import org.pops.et4.jvm.project.schemas.logging.EventLogger;
+import org.pops.et4.jvm.project.schemas.repositories.distributor.ReviewRepository;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Inverted index of the review comments, one per game since reviews are always searched within a game.
+ * <ul>
+ *     <li>built from the database once every bean is created, before the listeners start, then kept up to date by {@link #addAfterCommit}</li>
+ *     <li>each term maps to a {@link PostingList}, varint-encoded gaps between review IDs</li>
+ *     <li>results are ranked with BM25 and the best ones kept in a bounded heap, the whole result set is never sorted</li>
+ * </ul>
+ * The index only returns review IDs, the reviews themselves are read from the database.
+ */
+@Component(ReviewIndex.BEAN_NAME)
+public class ReviewIndex implements SmartInitializingSingleton {
+
+    public static final String BEAN_NAME = "distributorServiceReviewIndex";
+
+    private static final EventLogger LOG = EventLog.logger("Search");
+
+    // BM25 parameters: term frequency saturation, and how much longer comments are penalized
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final ReviewRepository reviewRepository;
+
+    @Value("${search.reviews.enabled:true}")
+    private boolean enabled;
+
+    @Value("${search.reviews.load-batch-size:1000}")
+    private int loadBatchSize;
+
+    @Value("${search.reviews.max-results:50}")
+    private int maxResults;
+
+    private final ConcurrentMap<Long, GameIndex> games = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+
+    @Autowired
+    public ReviewIndex(@Qualifier(ReviewRepository.BEAN_NAME) ReviewRepository reviewRepository) {
+        this.reviewRepository = reviewRepository;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (this.enabled) this.rebuild();
+    }
+
+    /**
+     * Indexes every review comment again, read by batches in review ID order.
+     */
+    public void rebuild() {
+        long start = System.nanoTime();
+        this.ready = false;
+        this.games.clear();
+
+        long lastId = 0;
+        int reviews = 0;
+        List<ReviewRepository.ReviewComment> batch;
+        do {
+            batch = this.reviewRepository.findCommentsAfter(lastId, PageRequest.of(0, this.loadBatchSize));
+            for (ReviewRepository.ReviewComment review : batch) {
+                this.add(review.getReviewId(), review.getGameId(), review.getComment());
+                lastId = review.getReviewId();
+            }
+            reviews += batch.size();
+        } while (batch.size() == this.loadBatchSize);
+
+        this.ready = true;
+        LOG.info("Indexed {} review(s) in {} ms: {}", reviews, (System.nanoTime() - start) / 1_000_000, this);
+    }
+
+    public void add(long reviewId, long gameId, String comment) {
+        List<String> terms = Tokenizer.tokenize(comment);
+        if (terms.isEmpty()) return;
+        this.games.computeIfAbsent(gameId, id -> new GameIndex()).add(reviewId, terms);
+    }
+
+    /**
+     * Indexes the review once the transaction saving it commits, a rolled back review is never searchable.
+     */
+    public void addAfterCommit(long reviewId, long gameId, String comment) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            this.add(reviewId, gameId, comment);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                ReviewIndex.this.add(reviewId, gameId, comment);
+            }
+        });
+    }
+
+    /**
+     * @return Best matching reviews of the game, best first, at most {@code search.reviews.max-results}
+     */
+    public List<Hit> search(long gameId, String query) {
+        List<String> terms = Tokenizer.tokenize(query);
+        GameIndex index = this.games.get(gameId);
+        if (terms.isEmpty() || index == null) return List.of();
+        return index.search(new LinkedHashSet<>(terms), this.maxResults);
+    }
+
+    /**
+     * @return false while the index is built or if it is disabled, searches must then be served from the database
+     */
+    public boolean isReady() {
+        return this.ready;
+    }
+
+    @Override
+    public String toString() {
+        int reviews = 0, terms = 0;
+        long bytes = 0;
+        for (GameIndex index : this.games.values()) {
+            synchronized (index) {
+                reviews += index.lengths.size();
+                terms += index.postings.size();
+                for (PostingList postings : index.postings.values()) bytes += postings.byteSize();
+            }
+        }
+        return "games=" + this.games.size() + ", reviews=" + reviews + ", terms=" + terms + ", postingBytes=" + bytes + ", ready=" + this.ready;
+    }
+
+    /**
+     * @param score BM25 score of the review for the query
+     */
+    public record Hit(long reviewId, double score) {}
+
+    /**
+     * Index of the reviews of one game, reads and writes are serialized on it.
+     */
+    private static final class GameIndex {
+        private final Map<String, PostingList> postings = new HashMap<>();
+        // Number of terms of each review, for the length normalization of BM25
+        private final Map<Long, Integer> lengths = new HashMap<>();
+        private long totalLength;
+
+        synchronized void add(long reviewId, List<String> terms) {
+            if (this.lengths.containsKey(reviewId)) return;
+
+            Map<String, Integer> frequencies = new HashMap<>();
+            for (String term : terms) frequencies.merge(term, 1, Integer::sum);
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet())
+                this.postings.computeIfAbsent(entry.getKey(), term -> new PostingList()).add(reviewId, entry.getValue());
+
+            this.lengths.put(reviewId, terms.size());
+            this.totalLength += terms.size();
+        }
+
+        synchronized List<Hit> search(Set<String> terms, int limit) {
+            int reviews = this.lengths.size();
+            double averageLength = (double) this.totalLength / reviews;
+            Map<Long, Double> scores = new HashMap<>();
+
+            for (String term : terms) {
+                PostingList postings = this.postings.get(term);
+                if (postings == null) continue;
+
+                double idf = Math.log(1 + (reviews - postings.size() + 0.5) / (postings.size() + 0.5));
+                postings.forEach((reviewId, frequency) -> {
+                    double norm = K1 * (1 - B + B * this.lengths.get(reviewId) / averageLength);
+                    scores.merge(reviewId, idf * frequency * (K1 + 1) / (frequency + norm), Double::sum);
+                });
+            }
+
+            // Min-heap of the best hits so far, ties go to the most recent review
+            Comparator<Hit> order = Comparator.comparingDouble(Hit::score).thenComparingLong(Hit::reviewId);
+            PriorityQueue<Hit> best = new PriorityQueue<>(limit + 1, order);
+            for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                best.add(new Hit(entry.getKey(), entry.getValue()));
+                if (best.size() > limit) best.poll();
+            }
+
+            List<Hit> hits = new ArrayList<>(best);
+            hits.sort(order.reversed());
+            return hits;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.pops.et4.jvm.project.distributor.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Splits review comments and search queries into the same terms: lower case, accents removed,
+ * split on anything but letters and digits, without one-letter words and common English and French stop words.
+ */
+public final class Tokenizer {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "but", "by", "for", "if", "in", "is", "it", "its", "of", "on", "or",
+            "so", "that", "the", "this", "to", "was", "were", "with",
+            "au", "aux", "ce", "de", "des", "du", "en", "est", "et", "il", "la", "le", "les", "mais", "ou", "par", "pas",
+            "pour", "que", "qui", "sur", "un", "une"
+    );
+
+    private Tokenizer() {}
+
+    public static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isBlank()) return terms;
+
+        String normalized = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+        for (String term : SEPARATORS.split(normalized)) {
+            if (term.length() > 1 && !STOP_WORDS.contains(term)) terms.add(term);
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,144 @@
+package org.pops.et4.jvm.project.distributor.timeseries;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * One time bucket of a rollup, stored as columns: key (game or player ID), seconds played, sessions.
+ * <ul>
+ *     <li>rows are appended, an open-addressing table of row numbers finds the row of a key</li>
+ *     <li>a scan over one column reads a single primitive array</li>
+ *     <li>encoded sorted by key: delta of the key, seconds and sessions as varints, which compresses well</li>
+ *     <li>decoded columns are read-only and stay sorted, a binary search finds the row of a key</li>
+ * </ul>
+ * Not thread-safe, the {@link PlaytimeSeries} serializes every access.
+ */
+final class Columns {
+
+    private long[] keys;
+    private long[] seconds;
+    private int[] sessions;
+    private int rows;
+
+    // Row + 1 of each key, 0 for an empty slot; null once decoded
+    private int[] table;
+    private int mask;
+
+    Columns(int expectedRows) {
+        int capacity = Math.max(4, Integer.highestOneBit(Math.max(1, expectedRows) - 1) << 1);
+        this.keys = new long[capacity];
+        this.seconds = new long[capacity];
+        this.sessions = new int[capacity];
+        this.table = new int[capacity * 2];
+        this.mask = this.table.length - 1;
+    }
+
+    void add(long key, long seconds, int sessions) {
+        if (this.table == null) throw new IllegalStateException("Decoded columns are read-only");
+        int slot = this.slotOf(key);
+        int row = this.table[slot] - 1;
+        if (row < 0) {
+            if (this.rows == this.keys.length) {
+                this.grow();
+                slot = this.slotOf(key);
+            }
+            row = this.rows++;
+            this.keys[row] = key;
+            this.table[slot] = row + 1;
+        }
+        this.seconds[row] += seconds;
+        this.sessions[row] += sessions;
+    }
+
+    /**
+     * @return Row of the key, -1 if the key has no row
+     */
+    int find(long key) {
+        if (this.table == null) return Math.max(-1, Arrays.binarySearch(this.keys, 0, this.rows, key));
+        return this.table[this.slotOf(key)] - 1;
+    }
+
+    long seconds(int row) {
+        return this.seconds[row];
+    }
+
+    int sessions(int row) {
+        return this.sessions[row];
+    }
+
+    int rows() {
+        return this.rows;
+    }
+
+    byte[] encode() {
+        Integer[] order = new Integer[this.rows];
+        for (int row = 0; row < this.rows; row++) order[row] = row;
+        Arrays.sort(order, (a, b) -> Long.compare(this.keys[a], this.keys[b]));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream(this.rows * 6);
+        long previous = 0;
+        for (int row : order) {
+            writeVarLong(output, this.keys[row] - previous);
+            writeVarLong(output, this.seconds[row]);
+            writeVarLong(output, this.sessions[row]);
+            previous = this.keys[row];
+        }
+        return output.toByteArray();
+    }
+
+    static Columns decode(byte[] bytes, int rows) {
+        Columns columns = new Columns(0);
+        columns.keys = new long[rows];
+        columns.seconds = new long[rows];
+        columns.sessions = new int[rows];
+        columns.table = null;
+
+        int[] position = { 0 };
+        long key = 0;
+        for (int row = 0; row < rows; row++) {
+            key += readVarLong(bytes, position);
+            columns.keys[row] = key;
+            columns.seconds[row] = readVarLong(bytes, position);
+            columns.sessions[row] = (int) readVarLong(bytes, position);
+        }
+        columns.rows = rows;
+        return columns;
+    }
+
+    private int slotOf(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (h ^ (h >>> 32)) & this.mask;
+        while (this.table[slot] != 0 && this.keys[this.table[slot] - 1] != key) slot = (slot + 1) & this.mask;
+        return slot;
+    }
+
+    private void grow() {
+        int capacity = this.keys.length * 2;
+        this.keys = Arrays.copyOf(this.keys, capacity);
+        this.seconds = Arrays.copyOf(this.seconds, capacity);
+        this.sessions = Arrays.copyOf(this.sessions, capacity);
+        this.table = new int[capacity * 2];
+        this.mask = this.table.length - 1;
+        for (int row = 0; row < this.rows; row++) this.table[this.slotOf(this.keys[row])] = row + 1;
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream output, long value) {
+        while ((value & ~0x7FL) != 0) {
+            output.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.write((int) value);
+    }
+
+    private static long readVarLong(byte[] bytes, int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = bytes[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
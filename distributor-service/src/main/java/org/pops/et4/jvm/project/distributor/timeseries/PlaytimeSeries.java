@@ -0,0 +1,250 @@
+package org.pops.et4.jvm.project.distributor.timeseries;
+
+import jakarta.annotation.PreDestroy;
+import org.pops.et4.jvm.project.schemas.logging.EventLog;
+import org.pops.et4.jvm.project.schemas.logging.EventLogger;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Play time history, as two rollups: seconds played per game and hour, and per player and day.
+ * <ul>
+ *     <li>a session reported by AddPlayTime ends when the event is produced, its seconds are spread over the buckets
+ *     it covers, so an hour holds the time actually played during that hour</li>
+ *     <li>open buckets are {@link Columns} in memory, once older than {@code timeseries.seal-after-minutes}
+ *     they are compressed and appended to the {@link SeriesFile}</li>
+ *     <li>a query reads one row per bucket, from memory or from a cached block, never the raw events</li>
+ * </ul>
+ * The open buckets are sealed at shutdown; after a crash, only their play time is missing.
+ */
+@Component(PlaytimeSeries.BEAN_NAME)
+public class PlaytimeSeries implements SmartInitializingSingleton {
+
+    public static final String BEAN_NAME = "distributorServicePlaytimeSeries";
+
+    private static final EventLogger LOG = EventLog.logger("Playtime");
+
+    // The ordinal is stored in the series file, new rollups go last
+    public enum Rollup {
+        GAME_HOUR(3600),
+        PLAYER_DAY(86400);
+
+        private final long bucketSeconds;
+
+        Rollup(long bucketSeconds) {
+            this.bucketSeconds = bucketSeconds;
+        }
+
+        public long bucketSeconds() {
+            return this.bucketSeconds;
+        }
+    }
+
+    @Value("${timeseries.enabled:true}")
+    private boolean enabled;
+
+    @Value("${timeseries.path:./data/distributor-playtime.series}")
+    private String path;
+
+    @Value("${timeseries.seal-after-minutes:60}")
+    private long sealAfterMinutes;
+
+    @Value("${timeseries.block-cache-size:1024}")
+    private int blockCacheSize;
+
+    // Per rollup: bucket -> columns, only the buckets not sealed yet
+    private final List<NavigableMap<Long, Columns>> open = new ArrayList<>();
+    private volatile SeriesFile file;
+    private long sealed;
+
+    public PlaytimeSeries() {
+        for (Rollup ignored : Rollup.values()) this.open.add(new TreeMap<>());
+    }
+
+    @Override
+    public synchronized void afterSingletonsInstantiated() {
+        if (!this.enabled) return;
+        try {
+            this.file = new SeriesFile(Path.of(this.path), Rollup.values().length, this.blockCacheSize);
+            LOG.info("Opened play time series {}: {} block(s), {} bytes", this.path, this.file.blocks(), this.file.size());
+        } catch (IOException e) {
+            LOG.error("Failed to open play time series {}, history disabled: {}", this.path, e.getMessage());
+        }
+    }
+
+    /**
+     * Records a session once its transaction commits.
+     * @param durationMs Length of the session
+     * @param end End of the session
+     */
+    public void played(long gameId, long playerId, long durationMs, Instant end) {
+        if (this.file == null || durationMs < 1000) return;
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            this.add(gameId, playerId, durationMs, end);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                PlaytimeSeries.this.add(gameId, playerId, durationMs, end);
+            }
+        });
+    }
+
+    /**
+     * @return Play time of the game in each hour of [from, to), oldest first
+     */
+    public List<Bucket> gameHours(long gameId, Instant from, Instant to) {
+        return this.buckets(Rollup.GAME_HOUR, gameId, from, to);
+    }
+
+    /**
+     * @return Play time of the player in each day of [from, to), oldest first
+     */
+    public List<Bucket> playerDays(long playerId, Instant from, Instant to) {
+        return this.buckets(Rollup.PLAYER_DAY, playerId, from, to);
+    }
+
+    /**
+     * @return Hour of [from, to) with the most play time of the game, null if it was not played
+     */
+    public Bucket peakHour(long gameId, Instant from, Instant to) {
+        Bucket peak = null;
+        for (Bucket bucket : this.gameHours(gameId, from, to))
+            if (bucket.seconds() > 0 && (peak == null || bucket.seconds() > peak.seconds())) peak = bucket;
+        return peak;
+    }
+
+    /**
+     * Seals the buckets ended for at least {@code timeseries.seal-after-minutes}, late sessions included.
+     */
+    @Scheduled(fixedDelayString = "${timeseries.seal-interval-ms:60000}")
+    public synchronized void seal() {
+        this.seal(Instant.now().getEpochSecond() - this.sealAfterMinutes * 60);
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (this.file == null) return;
+        this.seal(Long.MAX_VALUE);
+        try {
+            this.file.close();
+        } catch (IOException e) {
+            LOG.error("Failed to close play time series {}: {}", this.path, e.getMessage());
+        }
+        this.file = null;
+    }
+
+    @Override
+    public synchronized String toString() {
+        int buckets = 0;
+        long rows = 0;
+        for (NavigableMap<Long, Columns> rollup : this.open) {
+            buckets += rollup.size();
+            for (Columns columns : rollup.values()) rows += columns.rows();
+        }
+        String stored = "closed";
+        if (this.file != null) {
+            try {
+                stored = this.file.blocks() + " block(s), " + this.file.size() + " bytes";
+            } catch (IOException e) {
+                stored = e.getMessage();
+            }
+        }
+        return "openBuckets=" + buckets + ", openRows=" + rows + ", sealed=" + this.sealed + ", file=" + stored;
+    }
+
+    private synchronized void add(long gameId, long playerId, long durationMs, Instant end) {
+        if (this.file == null) return;
+        long endSecond = end.getEpochSecond();
+        long startSecond = endSecond - durationMs / 1000;
+
+        for (Rollup rollup : Rollup.values()) {
+            long key = rollup == Rollup.GAME_HOUR ? gameId : playerId;
+            long size = rollup.bucketSeconds;
+            NavigableMap<Long, Columns> buckets = this.open.get(rollup.ordinal());
+            for (long bucket = Math.floorDiv(startSecond, size); bucket * size < endSecond; bucket++) {
+                long seconds = Math.min(endSecond, (bucket + 1) * size) - Math.max(startSecond, bucket * size);
+                buckets.computeIfAbsent(bucket, b -> new Columns(64)).add(key, seconds, 1);
+            }
+        }
+    }
+
+    private void seal(long horizonSecond) {
+        if (this.file == null) return;
+        long start = System.nanoTime();
+        int count = 0;
+        for (Rollup rollup : Rollup.values()) {
+            NavigableMap<Long, Columns> buckets = this.open.get(rollup.ordinal());
+            Iterator<Map.Entry<Long, Columns>> iterator = buckets.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Long, Columns> bucket = iterator.next();
+                if (horizonSecond != Long.MAX_VALUE && (bucket.getKey() + 1) * rollup.bucketSeconds > horizonSecond) break;
+                try {
+                    this.file.append(rollup.ordinal(), bucket.getKey(), bucket.getValue());
+                } catch (IOException e) {
+                    // Kept open, the next seal tries again
+                    LOG.error("Failed to seal {} bucket {}: {}", rollup, bucket.getKey(), e.getMessage());
+                    return;
+                }
+                iterator.remove();
+                count++;
+            }
+        }
+        this.sealed += count;
+        if (count > 0) LOG.info("Sealed {} bucket(s) in {} ms: {}", count, (System.nanoTime() - start) / 1_000_000, this);
+    }
+
+    private synchronized List<Bucket> buckets(Rollup rollup, long key, Instant from, Instant to) {
+        long size = rollup.bucketSeconds;
+        long first = Math.floorDiv(from.getEpochSecond(), size);
+        long last = Math.floorDiv(to.getEpochSecond() + size - 1, size);
+        if (last <= first) return List.of();
+
+        long[] seconds = new long[(int) (last - first)];
+        int[] sessions = new int[seconds.length];
+        SeriesFile.BlockVisitor visitor = (bucket, columns) -> {
+            int row = columns.find(key);
+            if (row < 0) return;
+            seconds[(int) (bucket - first)] += columns.seconds(row);
+            sessions[(int) (bucket - first)] += columns.sessions(row);
+        };
+        try {
+            for (Map.Entry<Long, Columns> bucket : this.open.get(rollup.ordinal()).subMap(first, true, last, false).entrySet())
+                visitor.accept(bucket.getKey(), bucket.getValue());
+            if (this.file != null) this.file.forEach(rollup.ordinal(), first, last, visitor);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read play time series " + this.path + ": " + e.getMessage(), e);
+        }
+
+        List<Bucket> result = new ArrayList<>(seconds.length);
+        for (int i = 0; i < seconds.length; i++)
+            result.add(new Bucket(Instant.ofEpochSecond((first + i) * size), size, seconds[i], sessions[i]));
+        return result;
+    }
+
+    /**
+     * @param start Start of the bucket
+     * @param bucketSeconds Length of the bucket
+     * @param seconds Seconds played during the bucket
+     * @param sessions Sessions overlapping the bucket
+     */
+    public record Bucket(Instant start, long bucketSeconds, long seconds, int sessions) {
+        /**
+         * @return Average number of players in game during the bucket
+         */
+        public double averageConcurrent() {
+            return (double) this.seconds / this.bucketSeconds;
+        }
+    }
+}
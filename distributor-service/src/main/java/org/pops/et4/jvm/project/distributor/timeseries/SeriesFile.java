@@ -0,0 +1,161 @@
+package org.pops.et4.jvm.project.distributor.timeseries;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Append-only file of sealed buckets, each one a deflated {@link Columns} block behind a fixed header:
+ * rollup, bucket, rows, raw length, compressed length, CRC32C of the compressed bytes.
+ * <ul>
+ *     <li>blocks are additive: a bucket sealed twice (late events, restart in the middle of the bucket) has two blocks,
+ *     and a query sums them</li>
+ *     <li>opening the file reads the headers only, into an index of the blocks by rollup and bucket</li>
+ *     <li>a torn block at the end, left by a crash during an append, is cut off</li>
+ *     <li>decoded blocks are kept in a small LRU cache, a week of hourly buckets is read from disk once</li>
+ * </ul>
+ * Not thread-safe, the {@link PlaytimeSeries} serializes every access.
+ */
+final class SeriesFile implements AutoCloseable {
+
+    private static final int HEADER_BYTES = Byte.BYTES + Long.BYTES + 4 * Integer.BYTES;
+
+    private record Block(long position, int rows, int rawLength, int compressedLength, int checksum) {}
+
+    private final Path path;
+    private final FileChannel channel;
+    private final List<NavigableMap<Long, List<Block>>> index = new ArrayList<>();
+    private final Map<Block, Columns> cache;
+    private long blocks;
+
+    SeriesFile(Path path, int rollups, int cacheSize) throws IOException {
+        this.path = path;
+        if (path.toAbsolutePath().getParent() != null) Files.createDirectories(path.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        for (int i = 0; i < rollups; i++) this.index.add(new TreeMap<>());
+        this.cache = new LinkedHashMap<>(cacheSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Block, Columns> eldest) {
+                return this.size() > cacheSize;
+            }
+        };
+        this.scan();
+    }
+
+    void append(int rollup, long bucket, Columns columns) throws IOException {
+        byte[] raw = columns.encode();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        byte[] compressed;
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            compressed = new byte[raw.length + 64];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == compressed.length) compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                length += deflater.deflate(compressed, length, compressed.length - length);
+            }
+            compressed = Arrays.copyOf(compressed, length);
+        } finally {
+            deflater.end();
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(compressed);
+
+        long position = this.channel.size();
+        Block block = new Block(position, columns.rows(), raw.length, compressed.length, (int) crc.getValue());
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + compressed.length);
+        buffer.put((byte) rollup).putLong(bucket).putInt(block.rows()).putInt(block.rawLength())
+                .putInt(block.compressedLength()).putInt(block.checksum()).put(compressed).flip();
+        while (buffer.hasRemaining()) this.channel.write(buffer, position + buffer.position());
+        this.channel.force(false);
+
+        this.index.get(rollup).computeIfAbsent(bucket, b -> new ArrayList<>(1)).add(block);
+        this.blocks++;
+    }
+
+    /**
+     * Calls the visitor with each block of the rollup whose bucket is in [from, to).
+     */
+    void forEach(int rollup, long from, long to, BlockVisitor visitor) throws IOException {
+        for (Map.Entry<Long, List<Block>> bucket : this.index.get(rollup).subMap(from, true, to, false).entrySet())
+            for (Block block : bucket.getValue()) visitor.accept(bucket.getKey(), this.read(block));
+    }
+
+    long blocks() {
+        return this.blocks;
+    }
+
+    long size() throws IOException {
+        return this.channel.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    @FunctionalInterface
+    interface BlockVisitor {
+        void accept(long bucket, Columns columns) throws IOException;
+    }
+
+    private Columns read(Block block) throws IOException {
+        Columns cached = this.cache.get(block);
+        if (cached != null) return cached;
+
+        ByteBuffer buffer = ByteBuffer.allocate(block.compressedLength());
+        long position = block.position() + HEADER_BYTES;
+        while (buffer.hasRemaining()) {
+            if (this.channel.read(buffer, position + buffer.position()) < 0) throw new IOException("Truncated block at " + block.position());
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array());
+        if ((int) crc.getValue() != block.checksum()) throw new IOException("Corrupted block at " + block.position() + " of " + this.path);
+
+        byte[] raw = new byte[block.rawLength()];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(buffer.array());
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) length += inflater.inflate(raw, length, raw.length - length);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted block at " + block.position() + " of " + this.path, e);
+        } finally {
+            inflater.end();
+        }
+
+        Columns columns = Columns.decode(raw, block.rows());
+        this.cache.put(block, columns);
+        return columns;
+    }
+
+    private void scan() throws IOException {
+        long size = this.channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (position + HEADER_BYTES <= size) {
+            header.clear();
+            while (header.hasRemaining()) this.channel.read(header, position + header.position());
+            header.flip();
+            int rollup = header.get();
+            long bucket = header.getLong();
+            Block block = new Block(position, header.getInt(), header.getInt(), header.getInt(), header.getInt());
+            if (rollup < 0 || rollup >= this.index.size() || block.compressedLength() < 0
+                    || position + HEADER_BYTES + block.compressedLength() > size) break;
+
+            this.index.get(rollup).computeIfAbsent(bucket, b -> new ArrayList<>(1)).add(block);
+            this.blocks++;
+            position += HEADER_BYTES + block.compressedLength();
+        }
+        if (position < size) this.channel.truncate(position);
+    }
+}
@@ -0,0 +1,74 @@
+package org.pops.et4.jvm.project.distributor.warmup;
+
+import org.pops.et4.jvm.project.distributor.db.DistributorDbConfig;
+import org.pops.et4.jvm.project.distributor.kafka.KafkaConfig;
+import org.pops.et4.jvm.project.schemas.events.KafkaEvent;
+import org.pops.et4.jvm.project.schemas.warmup.EventSamples;
+import org.pops.et4.jvm.project.schemas.warmup.WarmUp;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Runs the warm-up once every bean is created, before the listener containers and the outbox relay start.
+ */
+@Component(WarmUpService.BEAN_NAME)
+public class WarmUpService implements SmartInitializingSingleton {
+
+    public static final String BEAN_NAME = "distributorServiceWarmUpService";
+
+    private final KafkaConfig kafkaConfig;
+    private final DataSource dataSource;
+
+    @Value("${spring.application.name}")
+    private String serviceName;
+
+    @Value("${warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${warmup.iterations:200}")
+    private int iterations;
+
+    @Value("${warmup.db-connections:4}")
+    private int dbConnections;
+
+    private WarmUp lastWarmUp;
+
+    @Autowired
+    public WarmUpService(
+            @Qualifier(KafkaConfig.BEAN_NAME) KafkaConfig kafkaConfig,
+            @Qualifier(DistributorDbConfig.DATA_SOURCE_BEAN_NAME) DataSource dataSource
+    ) {
+        this.kafkaConfig = kafkaConfig;
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (this.enabled) this.run();
+    }
+
+    public WarmUp run() {
+        WarmUp warmUp = new WarmUp(this.serviceName);
+
+        Map<String, KafkaEvent> samples = warmUp.step("event classes", EventSamples::byTopic, s -> s.size() + " classes");
+        if (samples != null && !this.kafkaConfig.isInMemory()) {
+            warmUp.step("schema ids", () -> WarmUp.fetchSchemaIds(this.kafkaConfig.valueSerializer(), samples), n -> n + " subjects");
+            warmUp.step("serde", () -> WarmUp.roundTrip(this.kafkaConfig.valueSerializer(), this.kafkaConfig.valueDeserializer(), samples, this.iterations), n -> n + " round trips");
+        }
+        warmUp.step("datasource", () -> WarmUp.primeDataSource(this.dataSource, this.dbConnections), n -> n + " connections");
+
+        warmUp.report();
+        this.lastWarmUp = warmUp;
+        return warmUp;
+    }
+
+    public WarmUp getLastWarmUp() {
+        return this.lastWarmUp;
+    }
+}
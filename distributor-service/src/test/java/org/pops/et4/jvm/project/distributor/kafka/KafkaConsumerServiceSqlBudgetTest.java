@@ -0,0 +1,344 @@
+package org.pops.et4.jvm.project.distributor.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pops.et4.jvm.project.distributor.App;
+import org.pops.et4.jvm.project.schemas.events.*;
+import org.pops.et4.jvm.project.schemas.events.updates.InstalledGameVersion;
+import org.pops.et4.jvm.project.schemas.models.distributor.Distributor;
+import org.pops.et4.jvm.project.schemas.models.distributor.Player;
+import org.pops.et4.jvm.project.schemas.repositories.distributor.DistributorRepository;
+import org.pops.et4.jvm.project.schemas.repositories.distributor.PlayerRepository;
+import org.pops.et4.jvm.project.schemas.repositories.distributor.ReviewRepository;
+import org.pops.et4.jvm.project.schemas.sql.SqlBudget;
+import org.pops.et4.jvm.project.schemas.sql.SqlBudgetInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the listeners against the H2 database of the in-memory profile and counts their SQL statements with {@link SqlBudget}.
+ * <ul>
+ *     <li>every handler stays within the budget of its topic, {@code sql.budget.*} of application.yml</li>
+ *     <li>the pages read a constant number of statements whatever their number of rows: a lazy association loaded per row is an N+1</li>
+ * </ul>
+ * Each test works on its own distributor and games, the context and its database are shared by the tests.
+ */
+@SpringBootTest(classes = App.class, properties = {
+        "cli.enabled=false",
+        "warmup.enabled=false",
+        "archive.enabled=false",
+        "outbox.relay.enabled=false"
+})
+@ActiveProfiles("inmemory")
+class KafkaConsumerServiceSqlBudgetTest {
+
+    private static final AtomicLong OFFSETS = new AtomicLong();
+    private static final AtomicLong GAME_IDS = new AtomicLong(1_000_000);
+    private static final String PLATFORM = "NES";
+    private static final String VERSION = "1.0.0";
+    // 2 minutes, above the 15 seconds required to review
+    private static final long PLAY_TIME_MS = 120_000;
+
+    @Autowired
+    @Qualifier(KafkaConsumerService.BEAN_NAME)
+    private KafkaConsumerService consumer;
+
+    @Autowired
+    @Qualifier(DistributorRepository.BEAN_NAME)
+    private DistributorRepository distributorRepository;
+
+    @Autowired
+    @Qualifier(PlayerRepository.BEAN_NAME)
+    private PlayerRepository playerRepository;
+
+    @Autowired
+    @Qualifier(ReviewRepository.BEAN_NAME)
+    private ReviewRepository reviewRepository;
+
+    @Autowired
+    private Environment environment;
+
+    private SqlBudgetInterceptor<String, Object> budgets;
+    private long distributorId;
+
+    @BeforeEach
+    void setUp() {
+        this.budgets = new SqlBudgetInterceptor<>(this.environment);
+        this.distributorId = this.distributorRepository.save(Distributor.newBuilder()
+                .setId(null)
+                .setName("Distributor " + OFFSETS.incrementAndGet())
+                .build()).getId();
+    }
+
+    @Test
+    void everyHandlerStaysWithinItsBudget() {
+        long gameId = this.publishGame();
+        within(PatchPublished.TOPIC, this.consumer::consumePatchPublished, PatchPublished.newBuilder()
+                .setGameId(gameId)
+                .setVersion("1.1.0")
+                .build());
+
+        long playerId = this.registerPlayer();
+        long reactingPlayerId = this.registerPlayer();
+        within(PurchaseGame.TOPIC, this.consumer::consumePurchaseGame, purchase(playerId, gameId));
+        within(AddPlayTime.TOPIC, this.consumer::consumeAddPlayTime, playTime(playerId, gameId));
+        within(ReviewGame.TOPIC, this.consumer::consumeReviewGame, review(playerId, gameId));
+        // Refused: one review per player and game
+        within(ReviewGame.TOPIC, this.consumer::consumeReviewGame, review(playerId, gameId));
+        long reviewId = this.reviewIdsOf(gameId).getFirst();
+        within(ReactReview.TOPIC, this.consumer::consumeReactReview, ReactReview.newBuilder()
+                .setPlayerId(reactingPlayerId)
+                .setReviewId(reviewId)
+                .setReactType(1)
+                .build());
+
+        within(InstallGame.TOPIC, this.consumer::consumeInstallGame, InstallGame.newBuilder()
+                .setPlayerId(playerId)
+                .setGameId(gameId)
+                .setPlatform(PLATFORM)
+                .build());
+        within(UpdateGame.TOPIC, this.consumer::consumeUpdateGame, UpdateGame.newBuilder()
+                .setPlayerId(playerId)
+                .setGameId(gameId)
+                .setPlatform(PLATFORM)
+                .setInstalledVersion(VERSION)
+                .build());
+        within(UninstallGame.TOPIC, this.consumer::consumeUninstallGame, UninstallGame.newBuilder()
+                .setPlayerId(playerId)
+                .setGameId(gameId)
+                .setPlatform(PLATFORM)
+                .setComment(null)
+                .build());
+        within(ReportCrash.TOPIC, this.consumer::consumeReportCrash, ReportCrash.newBuilder()
+                .setPlayerId(playerId)
+                .setGameId(gameId)
+                .setPlatform(PLATFORM)
+                .setInstalledVersion(VERSION)
+                .setErrorCode(42)
+                .setMessage("Crash")
+                .build());
+        within(AddWishedGame.TOPIC, this.consumer::consumeAddWishedGame, AddWishedGame.newBuilder()
+                .setPlayerId(reactingPlayerId)
+                .setGameId(gameId)
+                .build());
+        within(RemoveWishedGame.TOPIC, this.consumer::consumeRemoveWishedGame, RemoveWishedGame.newBuilder()
+                .setPlayerId(reactingPlayerId)
+                .setGameId(gameId)
+                .build());
+
+        within(AskPlayerPage.TOPIC, this.consumer::consumeAskPlayerPage, this.askPlayerPage());
+        within(AskGamesPage.TOPIC, this.consumer::consumeAskGamesPage, this.askGamesPage());
+        within(AskGameReviews.TOPIC, this.consumer::consumeAskGameReviews, this.askGameReviews(gameId, null));
+        within(AskGameReviews.TOPIC, this.consumer::consumeAskGameReviews, this.askGameReviews(gameId, "great"));
+        within(CheckUpdates.TOPIC, this.consumer::consumeCheckUpdates, checkUpdates(playerId, List.of(gameId), "1.1.0"));
+        within(AskLeaderboard.TOPIC, this.consumer::consumeAskLeaderboard, AskLeaderboard.newBuilder()
+                .setDistributorId(this.distributorId)
+                .setBoard("most-owned")
+                .setLimit(10)
+                .build());
+        within(AskRecommendations.TOPIC, this.consumer::consumeAskRecommendations, AskRecommendations.newBuilder()
+                .setDistributorId(this.distributorId)
+                .setGameId(gameId)
+                .setLimit(10)
+                .build());
+    }
+
+    @Test
+    void playerPageDoesNotGrowWithItsPlayers() {
+        long gameId = this.publishGame();
+        this.registerOwner(gameId);
+        int one = within(AskPlayerPage.TOPIC, this.consumer::consumeAskPlayerPage, this.askPlayerPage());
+
+        for (int i = 0; i < 4; i++) this.registerOwner(gameId);
+        int five = within(AskPlayerPage.TOPIC, this.consumer::consumeAskPlayerPage, this.askPlayerPage());
+
+        assertEquals(one, five, "statements of the player page with 1 then 5 players");
+    }
+
+    @Test
+    void gamesPageDoesNotGrowWithItsGames() {
+        this.publishGame();
+        int one = within(AskGamesPage.TOPIC, this.consumer::consumeAskGamesPage, this.askGamesPage());
+
+        for (int i = 0; i < 4; i++) this.publishGame();
+        int five = within(AskGamesPage.TOPIC, this.consumer::consumeAskGamesPage, this.askGamesPage());
+
+        assertEquals(one, five, "statements of the games page with 1 then 5 games");
+    }
+
+    @Test
+    void reviewsPageDoesNotGrowWithItsReviewsNorTheirReactions() {
+        long gameId = this.publishGame();
+        long reactingPlayerId = this.registerPlayer();
+        this.reviewWithReaction(gameId, reactingPlayerId);
+        int one = within(AskGameReviews.TOPIC, this.consumer::consumeAskGameReviews, this.askGameReviews(gameId, null));
+
+        for (int i = 0; i < 4; i++) this.reviewWithReaction(gameId, reactingPlayerId);
+        int five = within(AskGameReviews.TOPIC, this.consumer::consumeAskGameReviews, this.askGameReviews(gameId, null));
+
+        assertEquals(5, this.reviewIdsOf(gameId).size());
+        assertEquals(one, five, "statements of the reviews page with 1 then 5 reviews");
+    }
+
+    @Test
+    void updateCheckDoesNotGrowWithTheLibrary() {
+        long playerId = this.registerPlayer();
+        List<Long> library = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            long gameId = this.publishGame();
+            within(PurchaseGame.TOPIC, this.consumer::consumePurchaseGame, purchase(playerId, gameId));
+            library.add(gameId);
+        }
+
+        // Up to date: an outdated game queues one more SendGameFile, which is an insert and not a lookup
+        int one = within(CheckUpdates.TOPIC, this.consumer::consumeCheckUpdates, checkUpdates(playerId, library.subList(0, 1), VERSION));
+        int five = within(CheckUpdates.TOPIC, this.consumer::consumeCheckUpdates, checkUpdates(playerId, library, VERSION));
+
+        assertEquals(one, five, "statements of the update check with 1 then 5 installed games");
+    }
+
+    /**
+     * Runs one record through a listener, as its container would.
+     * @return Number of SQL statements of the handler, asserted within the budget of its topic
+     */
+    private <V> int within(String topic, Consumer<ConsumerRecord<String, V>> handler, V event) {
+        ConsumerRecord<String, V> record = new ConsumerRecord<>(topic, 0, OFFSETS.incrementAndGet(), "key", event);
+        int count;
+        try (SqlBudget.Scope scope = SqlBudget.INSTANCE.open(topic, SqlBudget.UNLIMITED)) {
+            handler.accept(record);
+            count = scope.getCount();
+        }
+
+        int limit = this.budgets.limitOf(topic);
+        if (limit != SqlBudget.UNLIMITED)
+            assertTrue(count <= limit, topic + ": " + count + " SQL statement(s) for a budget of " + limit);
+        return count;
+    }
+
+    private long publishGame() {
+        long gameId = GAME_IDS.incrementAndGet();
+        within(GamePublished.TOPIC, this.consumer::consumeGamePublished, GamePublished.newBuilder()
+                .setGameId(gameId)
+                .setGameName("Game " + gameId)
+                .setVersion(VERSION)
+                .setPublisherId(1L)
+                .setPlatforms(List.of(PLATFORM))
+                .setGenres(List.of("Action"))
+                .build());
+        return gameId;
+    }
+
+    private long registerPlayer() {
+        within(RegisterPlayer.TOPIC, this.consumer::consumeRegisterPlayer, RegisterPlayer.newBuilder()
+                .setDistributorId(this.distributorId)
+                .setPseudo("player" + OFFSETS.incrementAndGet())
+                .setFirstName("First")
+                .setLastName("Last")
+                .setBirthDate(Instant.parse("2000-01-01T00:00:00Z"))
+                .build());
+        List<Player> players = this.playerRepository.findByDistributorId(this.distributorId);
+        return players.getLast().getId();
+    }
+
+    private long registerOwner(long gameId) {
+        long playerId = this.registerPlayer();
+        within(PurchaseGame.TOPIC, this.consumer::consumePurchaseGame, purchase(playerId, gameId));
+        within(AddPlayTime.TOPIC, this.consumer::consumeAddPlayTime, playTime(playerId, gameId));
+        within(AddWishedGame.TOPIC, this.consumer::consumeAddWishedGame, AddWishedGame.newBuilder()
+                .setPlayerId(playerId)
+                .setGameId(gameId + 1)
+                .build());
+        return playerId;
+    }
+
+    private void reviewWithReaction(long gameId, long reactingPlayerId) {
+        long playerId = this.registerOwner(gameId);
+        within(ReviewGame.TOPIC, this.consumer::consumeReviewGame, review(playerId, gameId));
+        List<Long> reviewIds = this.reviewIdsOf(gameId);
+        within(ReactReview.TOPIC, this.consumer::consumeReactReview, ReactReview.newBuilder()
+                .setPlayerId(reactingPlayerId)
+                .setReviewId(reviewIds.getFirst())
+                .setReactType(reviewIds.size() % 2 == 0 ? 1 : 2)
+                .build());
+    }
+
+    private List<Long> reviewIdsOf(long gameId) {
+        return this.reviewRepository.findSummariesByGameIdSince(gameId, Instant.EPOCH, Pageable.unpaged()).stream()
+                .map(ReviewRepository.ReviewSummary::getReviewId)
+                .toList();
+    }
+
+    private AskPlayerPage askPlayerPage() {
+        return AskPlayerPage.newBuilder()
+                .setDistributorId(this.distributorId)
+                .build();
+    }
+
+    private AskGamesPage askGamesPage() {
+        return AskGamesPage.newBuilder()
+                .setDistributorId(this.distributorId)
+                .setPlatform(PLATFORM)
+                .build();
+    }
+
+    private AskGameReviews askGameReviews(long gameId, String query) {
+        return AskGameReviews.newBuilder()
+                .setDistributorId(this.distributorId)
+                .setGameId(gameId)
+                .setQuery(query)
+                .build();
+    }
+
+    private static PurchaseGame purchase(long playerId, long gameId) {
+        return PurchaseGame.newBuilder()
+                .setPlayerId(playerId)
+                .setGameId(gameId)
+                .build();
+    }
+
+    private static AddPlayTime playTime(long playerId, long gameId) {
+        return AddPlayTime.newBuilder()
+                .setPlayerId(playerId)
+                .setGameId(gameId)
+                .setTime(PLAY_TIME_MS)
+                .build();
+    }
+
+    private static ReviewGame review(long playerId, long gameId) {
+        return ReviewGame.newBuilder()
+                .setPlayerId(playerId)
+                .setGameId(gameId)
+                .setRating(4)
+                .setComment("A great game")
+                .build();
+    }
+
+    private static CheckUpdates checkUpdates(long playerId, List<Long> gameIds, String installedVersion) {
+        List<InstalledGameVersion> installed = new ArrayList<>(gameIds.size());
+        for (long gameId : gameIds) {
+            installed.add(InstalledGameVersion.newBuilder()
+                    .setGameId(gameId)
+                    .setPlatform(PLATFORM)
+                    .setInstalledVersion(installedVersion)
+                    .build());
+        }
+        return CheckUpdates.newBuilder()
+                .setPlayerId(playerId)
+                .setInstalledGames(installed)
+                .build();
+    }
+}
@@ -0,0 +1,69 @@
+package org.pops.et4.jvm.project.migrations;
+
+import java.util.List;
+
+/**
+ * Databases of the platform, with the location of their migrations and the access paths of their hot queries.
+ */
+public enum Database {
+
+    PUBLISHER("publisher", List.of(
+            new AccessPath("negative reviews of a game", "SELECT COUNT(*) FROM reviews WHERE game_id = 1 AND rating <= 2"),
+            new AccessPath("recent crash reports of a game", "SELECT COUNT(*) FROM crash_reports WHERE game_id = 1 AND report_date >= now() - interval '90 days'"),
+            new AccessPath("crash reports of a signature", "SELECT COUNT(*) FROM crash_reports WHERE game_id = 1 AND version = '1.0.0' AND platform = 'PC' AND error_code = 1"),
+            new AccessPath("platforms of a game", "SELECT platform FROM game_platforms WHERE game_id = 1"),
+            new AccessPath("genres of a game", "SELECT genre FROM game_genres WHERE game_id = 1")
+    )),
+
+    DISTRIBUTOR("distributor", List.of(
+            new AccessPath("owned game of a player", "SELECT * FROM owned_games WHERE player_id = 1 AND game_id = 1"),
+            new AccessPath("latest reviews of a game", "SELECT * FROM reviews WHERE game_id = 1 AND publication_date >= now() - interval '365 days' ORDER BY publication_date DESC LIMIT 100"),
+            new AccessPath("distributions of a game", "SELECT * FROM distributed_games WHERE game_id = 1"),
+            new AccessPath("players of a distributor", "SELECT * FROM players WHERE distributor_id = 1"),
+            new AccessPath("positive reactions of a review", "SELECT COUNT(*) FROM positive_reactions WHERE review_id = 1"),
+            new AccessPath("negative reactions of a review", "SELECT COUNT(*) FROM negative_reactions WHERE review_id = 1")
+    )),
+
+    PLAYER("player", List.of(
+            new AccessPath("installation of a game", "SELECT * FROM installed_games WHERE player_id = 1 AND game_id = 1 AND platform = 'PC'"),
+            new AccessPath("installed games of a player", "SELECT * FROM installed_games WHERE player_id = 1 ORDER BY game_id")
+    ));
+
+    public static final String LOCATION_PREFIX = "classpath:db/migrations/";
+    public static final String POSTGRESQL_LOCATION_PREFIX = LOCATION_PREFIX + "postgresql/";
+
+    private final String name;
+    private final List<AccessPath> accessPaths;
+
+    Database(String name, List<AccessPath> accessPaths) {
+        this.name = name;
+        this.accessPaths = accessPaths;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * @return Location of the versioned scripts, {@code V<version>__<description>.sql}
+     */
+    public String getLocation() {
+        return Database.LOCATION_PREFIX + this.name;
+    }
+
+    /**
+     * @return Location of the scripts that only run on PostgreSQL (e.g. partitioning), numbered in the same sequence as the common ones
+     */
+    public String getPostgresqlLocation() {
+        return Database.POSTGRESQL_LOCATION_PREFIX + this.name;
+    }
+
+    public List<AccessPath> getAccessPaths() {
+        return this.accessPaths;
+    }
+
+    /**
+     * A hot query, with literal values so it can be explained without binding parameters.
+     */
+    public record AccessPath(String description, String sql) {}
+}
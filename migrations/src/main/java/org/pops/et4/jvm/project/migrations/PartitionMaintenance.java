@@ -0,0 +1,261 @@
+package org.pops.et4.jvm.project.migrations;
+
+import org.pops.et4.jvm.project.schemas.logging.EventLog;
+import org.pops.et4.jvm.project.schemas.logging.EventLogger;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Monthly range partitions of the tables partitioned by the PostgreSQL migrations.
+ * <ul>
+ *     <li>a partition is named {@code <table>_pYYYY_MM} and holds one UTC month of the partition column</li>
+ *     <li>the partitions of the current month and of the next {@code premakeMonths} ones are created ahead, so inserts never land in the default partition</li>
+ *     <li>rows found in the default partition anyway (e.g. dated after the premade months) are moved to the partition of their month</li>
+ *     <li>with a retention, the partitions of the months older than it are detached and dropped, after deleting the rows of the tables that reference them;
+ *     a {@link BeforeDrop} callback can archive their rows first, the partition is kept if it fails</li>
+ * </ul>
+ * Does nothing on a table that is not partitioned, e.g. on the in-memory H2 database.
+ */
+public class PartitionMaintenance {
+
+    private static final EventLogger LOG = EventLog.logger("Partitions");
+
+    private static final String POSTGRESQL = "PostgreSQL";
+    private static final String DEFAULT_SUFFIX = "_default";
+    private static final DateTimeFormatter MONTH_SUFFIX = DateTimeFormatter.ofPattern("'_p'yyyy_MM");
+
+    private final DataSource dataSource;
+    private final List<PartitionedTable> tables;
+    private final BeforeDrop beforeDrop;
+
+    public PartitionMaintenance(DataSource dataSource, List<PartitionedTable> tables) {
+        this(dataSource, tables, (connection, table, partition) -> {});
+    }
+
+    public PartitionMaintenance(DataSource dataSource, List<PartitionedTable> tables, BeforeDrop beforeDrop) {
+        this.dataSource = dataSource;
+        this.tables = tables;
+        this.beforeDrop = beforeDrop;
+    }
+
+    public List<PartitionedTable> getTables() {
+        return this.tables;
+    }
+
+    /**
+     * @param now Current month
+     * @return One result per partitioned table, empty if the database is not PostgreSQL
+     */
+    public List<Result> run(YearMonth now) throws SQLException {
+        List<Result> results = new ArrayList<>();
+        try (Connection connection = this.dataSource.getConnection()) {
+            if (!POSTGRESQL.equals(connection.getMetaData().getDatabaseProductName())) return results;
+            for (PartitionedTable table : this.tables) {
+                if (!isPartitioned(connection, table.name())) continue;
+                results.add(this.maintain(connection, table, now));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @return Partitions of a table, in month order, empty if it is not partitioned
+     */
+    public List<YearMonth> partitions(String table) throws SQLException {
+        try (Connection connection = this.dataSource.getConnection()) {
+            if (!POSTGRESQL.equals(connection.getMetaData().getDatabaseProductName())) return List.of();
+            return new ArrayList<>(monthlyPartitions(connection, table));
+        }
+    }
+
+    private Result maintain(Connection connection, PartitionedTable table, YearMonth now) throws SQLException {
+        long start = System.nanoTime();
+        TreeSet<YearMonth> months = monthlyPartitions(connection, table.name());
+
+        // First, PostgreSQL refuses to create a partition whose rows are still in the default one
+        long moved = 0;
+        for (YearMonth month : monthsInDefault(connection, table)) {
+            moved += this.moveFromDefault(connection, table, month);
+            months.add(month);
+        }
+
+        int created = 0;
+        for (YearMonth month = now; !month.isAfter(now.plusMonths(table.premakeMonths())); month = month.plusMonths(1)) {
+            if (months.contains(month)) continue;
+            execute(connection, "CREATE TABLE " + partitionName(table, month) + " PARTITION OF " + table.name() + bounds(month));
+            months.add(month);
+            created++;
+        }
+
+        int dropped = 0;
+        if (table.retentionMonths() > 0) {
+            YearMonth oldestKept = now.minusMonths(table.retentionMonths());
+            for (YearMonth month : months.headSet(oldestKept)) {
+                this.drop(connection, table, month);
+                dropped++;
+            }
+        }
+
+        if (created + moved + dropped > 0)
+            LOG.info("{}: {} partition(s) created, {} row(s) moved out of the default partition, {} partition(s) dropped in {} ms",
+                    table.name(), created, moved, dropped, (System.nanoTime() - start) / 1_000_000);
+        return new Result(table.name(), created, moved, dropped);
+    }
+
+    /**
+     * Moves the rows of one month out of the default partition into a new partition, attached once they are deleted from the default one.
+     * The month has no partition yet, otherwise its rows would not be in the default one.
+     */
+    private long moveFromDefault(Connection connection, PartitionedTable table, YearMonth month) throws SQLException {
+        String partition = partitionName(table, month);
+        String defaultPartition = table.name() + DEFAULT_SUFFIX;
+        String range = " WHERE " + table.column() + " >= '" + start(month) + "' AND " + table.column() + " < '" + start(month.plusMonths(1)) + "'";
+        return inTransaction(connection, () -> {
+            execute(connection, "CREATE TABLE " + partition + " (LIKE " + table.name() + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+            long rows = executeUpdate(connection, "INSERT INTO " + partition + " SELECT * FROM " + defaultPartition + range);
+            execute(connection, "DELETE FROM " + defaultPartition + range);
+            execute(connection, "ALTER TABLE " + table.name() + " ATTACH PARTITION " + partition + bounds(month));
+            return rows;
+        });
+    }
+
+    private void drop(Connection connection, PartitionedTable table, YearMonth month) throws SQLException {
+        String partition = partitionName(table, month);
+        inTransaction(connection, () -> {
+            try {
+                this.beforeDrop.accept(connection, table, partition);
+            } catch (IOException e) {
+                throw new SQLException("Could not archive " + partition + ", kept: " + e.getMessage(), e);
+            }
+            for (Dependent dependent : table.dependents())
+                execute(connection, "DELETE FROM " + dependent.table() + " WHERE " + dependent.column() + " IN (SELECT id FROM " + partition + ")");
+            execute(connection, "ALTER TABLE " + table.name() + " DETACH PARTITION " + partition);
+            execute(connection, "DROP TABLE " + partition);
+            return 0L;
+        });
+    }
+
+    private static boolean isPartitioned(Connection connection, String table) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT 1 FROM pg_partitioned_table WHERE partrelid = to_regclass(?)")) {
+            statement.setString(1, table);
+            try (ResultSet rows = statement.executeQuery()) {
+                return rows.next();
+            }
+        }
+    }
+
+    private static TreeSet<YearMonth> monthlyPartitions(Connection connection, String table) throws SQLException {
+        Pattern name = Pattern.compile(Pattern.quote(table) + "_p(\\d{4})_(\\d{2})");
+        TreeSet<YearMonth> months = new TreeSet<>();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = to_regclass(?)")) {
+            statement.setString(1, table);
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    Matcher matcher = name.matcher(rows.getString(1));
+                    if (matcher.matches()) months.add(YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))));
+                }
+            }
+        }
+        return months;
+    }
+
+    private static List<YearMonth> monthsInDefault(Connection connection, PartitionedTable table) throws SQLException {
+        List<YearMonth> months = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT DISTINCT to_char(" + table.column() + " AT TIME ZONE 'UTC', 'YYYY-MM') FROM "
+                     + table.name() + DEFAULT_SUFFIX)) {
+            while (rows.next()) months.add(YearMonth.parse(rows.getString(1)));
+        }
+        return months;
+    }
+
+    private static String partitionName(PartitionedTable table, YearMonth month) {
+        return table.name() + MONTH_SUFFIX.format(month);
+    }
+
+    private static String bounds(YearMonth month) {
+        return " FOR VALUES FROM ('" + start(month) + "') TO ('" + start(month.plusMonths(1)) + "')";
+    }
+
+    private static String start(YearMonth month) {
+        return month.atDay(1).atStartOfDay(ZoneOffset.UTC).toOffsetDateTime().toString();
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static long executeUpdate(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            return statement.executeLargeUpdate(sql);
+        }
+    }
+
+    private static long inTransaction(Connection connection, SqlWork work) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            long result = work.run();
+            connection.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    @FunctionalInterface
+    private interface SqlWork {
+        long run() throws SQLException;
+    }
+
+    /**
+     * Called with each expired partition before it is dropped, in the transaction of the drop.
+     */
+    @FunctionalInterface
+    public interface BeforeDrop {
+        void accept(Connection connection, PartitionedTable table, String partition) throws SQLException, IOException;
+    }
+
+    /**
+     * @param name Partitioned table
+     * @param column Partition column, a timestamp with time zone
+     * @param premakeMonths Number of months after the current one whose partitions are created ahead
+     * @param retentionMonths Number of months before the current one that are kept, 0 to keep every month
+     * @param dependents Tables referencing the rows of this one without a foreign key, cleaned with the dropped partitions
+     */
+    public record PartitionedTable(String name, String column, int premakeMonths, int retentionMonths, List<Dependent> dependents) {}
+
+    /**
+     * @param column Column holding the id of a row of the partitioned table
+     */
+    public record Dependent(String table, String column) {}
+
+    public record Result(String table, int created, long moved, int dropped) {
+
+        @Override
+        public String toString() {
+            return this.table + ": " + this.created + " partition(s) created, " + this.moved + " row(s) moved out of the default partition, "
+                    + this.dropped + " partition(s) dropped";
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package org.pops.et4.jvm.project.migrations;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.output.MigrateResult;
+import org.pops.et4.jvm.project.schemas.logging.EventLog;
+import org.pops.et4.jvm.project.schemas.logging.EventLogger;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Versioned migrations of one database, and the check of the access paths of its hot queries.
+ * <ul>
+ *     <li>the tables are still created by Hibernate, so the migrations run once the entity manager factory is built;
+ *     a database migrated for the first time is baselined at version 0, then every script of {@link Database#getLocation()} runs once,
+ *     and on PostgreSQL the ones of {@link Database#getPostgresqlLocation()} too</li>
+ *     <li>{@link #checkAccessPaths()} explains each hot query with sequential scans disabled:
+ *     a plan that still scans the whole table means no index can serve the query</li>
+ * </ul>
+ * The check only runs on PostgreSQL, the in-memory H2 database does not have the same planner.
+ * It fails the tests of this module, run against a PostgreSQL container; at startup it only logs a warning.
+ */
+public class SchemaMigrations {
+
+    private static final EventLogger LOG = EventLog.logger("Migrations");
+
+    private static final String POSTGRESQL = "PostgreSQL";
+    private static final String SEQUENTIAL_SCAN = "Seq Scan";
+
+    private final DataSource dataSource;
+    private final Database database;
+
+    public SchemaMigrations(DataSource dataSource, Database database) {
+        this.dataSource = dataSource;
+        this.database = database;
+    }
+
+    public Database getDatabase() {
+        return this.database;
+    }
+
+    /**
+     * Runs the scripts not applied yet.
+     * @return Number of applied scripts
+     */
+    public int migrate() {
+        long start = System.nanoTime();
+        String[] locations = this.isPostgresql()
+                ? new String[] { this.database.getLocation(), this.database.getPostgresqlLocation() }
+                : new String[] { this.database.getLocation() };
+        MigrateResult result = Flyway.configure()
+                .dataSource(this.dataSource)
+                .locations(locations)
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .load()
+                .migrate();
+        LOG.info("Migrated {}_db from version {} to {} ({} script(s)) in {} ms", this.database.getName(),
+                result.initialSchemaVersion, result.targetSchemaVersion, result.migrationsExecuted, (System.nanoTime() - start) / 1_000_000);
+        return result.migrationsExecuted;
+    }
+
+    /**
+     * Identity of the database, for the state kept outside of it (snapshots, checkpoints): a database dropped and created again,
+     * e.g. the in-memory one at each start, is baselined again and gets a new epoch.
+     * @return Time the database was baselined by the migrations, empty if it never was
+     */
+    public Optional<Instant> getEpoch() {
+        try (Connection connection = this.dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT installed_on FROM flyway_schema_history ORDER BY installed_rank LIMIT 1")) {
+            return rows.next() ? Optional.of(rows.getTimestamp(1).toInstant()) : Optional.empty();
+        } catch (SQLException e) {
+            // No history table: migrations disabled
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @return One result per access path, empty if the database is not PostgreSQL
+     */
+    public List<AccessPathResult> checkAccessPaths() throws SQLException {
+        List<AccessPathResult> results = new ArrayList<>();
+        if (!this.isPostgresql()) return results;
+        try (Connection connection = this.dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                // Only for this transaction: the planner picks an index whenever one can serve the query, even on tiny tables
+                statement.execute("SET LOCAL enable_seqscan = off");
+                for (Database.AccessPath accessPath : this.database.getAccessPaths())
+                    results.add(new AccessPathResult(accessPath, this.explain(statement, accessPath.sql())));
+            } finally {
+                connection.rollback();
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Logs a warning for each hot query no index serves.
+     * @return Number of such queries
+     */
+    public int logAccessPaths() throws SQLException {
+        int failed = 0;
+        for (AccessPathResult result : this.checkAccessPaths()) {
+            if (result.indexed()) {
+                LOG.debug("{}_db {}: {}", this.database.getName(), result.accessPath().description(), result.plan().getFirst());
+                continue;
+            }
+            failed++;
+            LOG.warn("{}_db {} scans the whole table, no index serves: {}\n  {}", this.database.getName(),
+                    result.accessPath().description(), result.accessPath().sql(), String.join("\n  ", result.plan()));
+        }
+        return failed;
+    }
+
+    /**
+     * @return false for the in-memory H2 database
+     */
+    public boolean isPostgresql() {
+        try (Connection connection = this.dataSource.getConnection()) {
+            return POSTGRESQL.equals(connection.getMetaData().getDatabaseProductName());
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private List<String> explain(Statement statement, String sql) throws SQLException {
+        List<String> plan = new ArrayList<>();
+        try (ResultSet rows = statement.executeQuery("EXPLAIN " + sql)) {
+            while (rows.next()) plan.add(rows.getString(1));
+        }
+        return plan;
+    }
+
+    /**
+     * @param plan Lines of the query plan
+     */
+    public record AccessPathResult(Database.AccessPath accessPath, List<String> plan) {
+
+        public boolean indexed() {
+            return this.plan.stream().noneMatch(line -> line.contains(SEQUENTIAL_SCAN));
+        }
+
+        @Override
+        public String toString() {
+            return (this.indexed() ? "OK   " : "SCAN ") + this.accessPath.description() + ": " + (this.plan.isEmpty() ? "" : this.plan.getFirst().trim());
+        }
+    }
+}
@@ -0,0 +1,15 @@
+-- Tables and columns are created by Hibernate (hbm2ddl update), the migrations only add what it cannot infer.
+-- owned_games (player_id, game_id) is already indexed by the unique constraint of the table.
+
+-- Reviews of a game: reviews page, leaderboards (the unique (player_id, game_id) index starts with the player)
+CREATE INDEX IF NOT EXISTS idx_reviews_game_id ON reviews (game_id);
+
+-- Every distribution of a published or patched game (the unique (distributor_id, game_id) index starts with the distributor)
+CREATE INDEX IF NOT EXISTS idx_distributed_games_game_id ON distributed_games (game_id);
+
+-- Players of a distributor: player page, library statistics
+CREATE INDEX IF NOT EXISTS idx_players_distributor_id ON players (distributor_id);
+
+-- Reactions of a review, counted by the review summaries and loaded by the reactions
+CREATE INDEX IF NOT EXISTS idx_positive_reactions_review_id ON positive_reactions (review_id);
+CREATE INDEX IF NOT EXISTS idx_negative_reactions_review_id ON negative_reactions (review_id);
@@ -0,0 +1,9 @@
+-- review_keys holds the unique (player_id, game_id) of the reviews, which the partitioned reviews table cannot hold (see V2 on PostgreSQL).
+-- The table is created by Hibernate, this fills it with the reviews written before it: the first review of a player on a game wins.
+INSERT INTO review_keys (review_id, player_id, game_id)
+SELECT r.id, r.player_id, r.game_id FROM reviews r
+WHERE r.id = (SELECT MIN(d.id) FROM reviews d WHERE d.player_id = r.player_id AND d.game_id = r.game_id)
+  AND NOT EXISTS (SELECT 1 FROM review_keys k WHERE k.player_id = r.player_id AND k.game_id = r.game_id);
+
+-- The duplicate check reads review_keys now
+DROP INDEX IF EXISTS idx_reviews_player_id_game_id;
@@ -0,0 +1,3 @@
+-- Latest reviews of a game: reviews page, read in publication order without sorting (replaces the index on game_id alone)
+CREATE INDEX IF NOT EXISTS idx_reviews_game_id_publication_date ON reviews (game_id, publication_date);
+DROP INDEX IF EXISTS idx_reviews_game_id;
@@ -0,0 +1,2 @@
+-- Tables and columns are created by Hibernate (hbm2ddl update), the migrations only add what it cannot infer.
+-- installed_games lookups go through the unique (player_id, game_id, platform) constraint of the table, nothing to add.
@@ -0,0 +1,60 @@
+-- Range partitioning of reviews by publication_date, one partition per UTC month.
+-- PostgreSQL 17+ only (identity column on a partitioned table).
+-- The partitions of the existing months are created here, PartitionMaintenance then creates the next ones and drops the expired ones.
+SET LOCAL TIME ZONE 'UTC';
+
+ALTER TABLE reviews RENAME TO reviews_unpartitioned;
+
+-- The primary key of a partitioned table must contain the partition column
+CREATE TABLE reviews (
+    LIKE reviews_unpartitioned INCLUDING DEFAULTS INCLUDING IDENTITY INCLUDING CONSTRAINTS
+) PARTITION BY RANGE (publication_date);
+ALTER TABLE reviews ADD CONSTRAINT reviews_id_publication_date_pkey PRIMARY KEY (id, publication_date);
+
+DO $$
+DECLARE
+    month timestamptz;
+BEGIN
+    FOR month IN SELECT generate_series(date_trunc('month', MIN(publication_date)), date_trunc('month', now()), interval '1 month')
+                 FROM reviews_unpartitioned LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF reviews FOR VALUES FROM (%L) TO (%L)',
+                       'reviews_p' || to_char(month, 'YYYY_MM'), month, month + interval '1 month');
+    END LOOP;
+END $$;
+
+-- Reviews dated after the premade partitions, split into their month by PartitionMaintenance
+CREATE TABLE reviews_default PARTITION OF reviews DEFAULT;
+
+INSERT INTO reviews SELECT * FROM reviews_unpartitioned;
+SELECT setval(pg_get_serial_sequence('reviews', 'id'), COALESCE((SELECT MAX(id) FROM reviews_unpartitioned), 0) + 1, false);
+
+-- Same foreign keys (player), same names so Hibernate does not add them again
+DO $$
+DECLARE
+    fk record;
+BEGIN
+    FOR fk IN SELECT conname, pg_get_constraintdef(oid) AS definition FROM pg_constraint
+              WHERE conrelid = 'reviews_unpartitioned'::regclass AND contype = 'f' LOOP
+        EXECUTE format('ALTER TABLE reviews ADD CONSTRAINT %I %s', fk.conname, fk.definition);
+    END LOOP;
+END $$;
+
+-- The reactions reference the review id alone, which is no longer unique on its own:
+-- their foreign keys are dropped (NO_CONSTRAINT on the join tables) and PartitionMaintenance deletes them with their partition
+DO $$
+DECLARE
+    fk record;
+BEGIN
+    FOR fk IN SELECT conrelid::regclass AS referencing, conname FROM pg_constraint
+              WHERE confrelid = 'reviews_unpartitioned'::regclass AND contype = 'f' LOOP
+        EXECUTE format('ALTER TABLE %s DROP CONSTRAINT %I', fk.referencing, fk.conname);
+    END LOOP;
+END $$;
+
+-- Drops the unique (player_id, game_id) constraint too: it cannot hold without the partition column, DistributorService checks it instead
+DROP TABLE reviews_unpartitioned;
+
+CREATE INDEX idx_reviews_game_id ON reviews (game_id);
+CREATE INDEX idx_reviews_player_id_game_id ON reviews (player_id, game_id);
+
+ANALYZE reviews;
@@ -0,0 +1,47 @@
+-- Range partitioning of crash_reports by report_date, one partition per UTC month.
+-- PostgreSQL 17+ only (identity column on a partitioned table).
+-- The partitions of the existing months are created here, PartitionMaintenance then creates the next ones and drops the expired ones.
+SET LOCAL TIME ZONE 'UTC';
+
+ALTER TABLE crash_reports RENAME TO crash_reports_unpartitioned;
+
+-- The primary key of a partitioned table must contain the partition column
+CREATE TABLE crash_reports (
+    LIKE crash_reports_unpartitioned INCLUDING DEFAULTS INCLUDING IDENTITY INCLUDING CONSTRAINTS
+) PARTITION BY RANGE (report_date);
+ALTER TABLE crash_reports ADD CONSTRAINT crash_reports_id_report_date_pkey PRIMARY KEY (id, report_date);
+
+DO $$
+DECLARE
+    month timestamptz;
+BEGIN
+    FOR month IN SELECT generate_series(date_trunc('month', MIN(report_date)), date_trunc('month', now()), interval '1 month')
+                 FROM crash_reports_unpartitioned LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF crash_reports FOR VALUES FROM (%L) TO (%L)',
+                       'crash_reports_p' || to_char(month, 'YYYY_MM'), month, month + interval '1 month');
+    END LOOP;
+END $$;
+
+-- Reports dated after the premade partitions, split into their month by PartitionMaintenance
+CREATE TABLE crash_reports_default PARTITION OF crash_reports DEFAULT;
+
+INSERT INTO crash_reports SELECT * FROM crash_reports_unpartitioned;
+SELECT setval(pg_get_serial_sequence('crash_reports', 'id'), COALESCE((SELECT MAX(id) FROM crash_reports_unpartitioned), 0) + 1, false);
+
+-- Same foreign keys (game, player), same names so Hibernate does not add them again
+DO $$
+DECLARE
+    fk record;
+BEGIN
+    FOR fk IN SELECT conname, pg_get_constraintdef(oid) AS definition FROM pg_constraint
+              WHERE conrelid = 'crash_reports_unpartitioned'::regclass AND contype = 'f' LOOP
+        EXECUTE format('ALTER TABLE crash_reports ADD CONSTRAINT %I %s', fk.conname, fk.definition);
+    END LOOP;
+END $$;
+
+DROP TABLE crash_reports_unpartitioned;
+
+-- Created on every partition, the threshold count of a game only scans the partitions of its window
+CREATE INDEX idx_crash_reports_signature ON crash_reports (game_id, version, platform, error_code);
+
+ANALYZE crash_reports;
@@ -0,0 +1,11 @@
+-- Tables and columns are created by Hibernate (hbm2ddl update), the migrations only add what it cannot infer.
+
+-- Negative reviews of a game, counted by each GameReviewed record
+CREATE INDEX IF NOT EXISTS idx_reviews_game_id ON reviews (game_id);
+
+-- Crash reports of a game, counted by each CrashReported record, and of one signature by the crash analytics
+CREATE INDEX IF NOT EXISTS idx_crash_reports_signature ON crash_reports (game_id, version, platform, error_code);
+
+-- Element collections, loaded with their game
+CREATE INDEX IF NOT EXISTS idx_game_platforms_game_id ON game_platforms (game_id);
+CREATE INDEX IF NOT EXISTS idx_game_genres_game_id ON game_genres (game_id);
@@ -0,0 +1,83 @@
+package org.pops.et4.jvm.project.migrations;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Builds each database on PostgreSQL the way the services do, then fails on any hot query of {@link Database} that no index serves.
+ * <ul>
+ *     <li>Hibernate creates the tables from the entities of the database, then {@link SchemaMigrations#migrate()} runs every script</li>
+ *     <li>{@link SchemaMigrations#checkAccessPaths()} explains each hot query with sequential scans disabled, a Seq Scan fails the test</li>
+ * </ul>
+ * Skipped without Docker: the in-memory H2 database does not have the same planner.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class SchemaMigrationsAccessPathsTest {
+
+    private static final String MODELS_PACKAGE = "org.pops.et4.jvm.project.schemas.models.";
+
+    // Same image as docker-compose.yml
+    @Container
+    private static final PostgreSQLContainer POSTGRES = new PostgreSQLContainer("postgres:18.1-alpine3.23");
+
+    @ParameterizedTest
+    @EnumSource(Database.class)
+    void everyHotQueryIsServedByAnIndex(Database database) throws SQLException {
+        DataSource dataSource = createDatabase(database);
+        createTables(dataSource, database);
+        SchemaMigrations migrations = new SchemaMigrations(dataSource, database);
+        migrations.migrate();
+
+        List<SchemaMigrations.AccessPathResult> results = migrations.checkAccessPaths();
+
+        assertEquals(database.getAccessPaths().size(), results.size(), "access paths explained on PostgreSQL");
+        List<String> scans = results.stream()
+                .filter(result -> !result.indexed())
+                .map(result -> result.accessPath().description() + ": " + result.accessPath().sql() + "\n  " + String.join("\n  ", result.plan()))
+                .toList();
+        assertTrue(scans.isEmpty(), database.getName() + "_db scans the whole table for:\n" + String.join("\n", scans));
+    }
+
+    private static DataSource createDatabase(Database database) throws SQLException {
+        String name = database.getName() + "_db";
+        try (Connection connection = POSTGRES.createConnection("");
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE DATABASE " + name);
+        }
+        String url = "jdbc:postgresql://" + POSTGRES.getHost() + ":" + POSTGRES.getMappedPort(5432) + "/" + name;
+        return new DriverManagerDataSource(url, POSTGRES.getUsername(), POSTGRES.getPassword());
+    }
+
+    /**
+     * Tables of the entities, created by Hibernate as in the services, which name them in snake case.
+     */
+    private static void createTables(DataSource dataSource, Database database) {
+        LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+        factory.setDataSource(dataSource);
+        factory.setPackagesToScan(MODELS_PACKAGE + database.getName());
+        factory.setPersistenceUnitName(database.getName());
+        factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factory.setJpaPropertyMap(Map.of(
+                "hibernate.hbm2ddl.auto", "update",
+                "hibernate.physical_naming_strategy", "org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy"
+        ));
+        factory.afterPropertiesSet();
+        factory.destroy();
+    }
+}
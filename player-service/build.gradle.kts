@@ -11,6 +11,7 @@ plugins {
 
 dependencies {
     api(project(":schemas"))
+    api(project(":migrations"))
     api("org.jetbrains.kotlin:kotlin-reflect:2.3.0")
     api("org.jetbrains.kotlin:kotlin-stdlib:2.3.0")
     api("org.springframework.boot:spring-boot-starter")
@@ -19,8 +20,10 @@ dependencies {
     api("org.springframework.kafka:spring-kafka")
     api("io.confluent:kafka-avro-serializer:8.1.1")
     runtimeOnly("org.postgresql:postgresql:42.7.8")
+    runtimeOnly("com.h2database:h2:2.3.232")
 
     testImplementation(kotlin("test"))
+    testImplementation("org.springframework.boot:spring-boot-starter-test")
 }
 
 kotlin {
@@ -1,22 +1,39 @@
 package org.pops.et4.jvm.project.player
 
+import org.pops.et4.jvm.project.player.archive.ArchiveService
+import org.pops.et4.jvm.project.player.catalog.CatalogStore
+import org.pops.et4.jvm.project.player.download.DownloadService
+import org.pops.et4.jvm.project.player.kafka.KafkaConfig
 import org.pops.et4.jvm.project.player.kafka.KafkaLifecycleService
 import org.pops.et4.jvm.project.player.kafka.KafkaProducerService
+import org.pops.et4.jvm.project.schemas.cli.BatchRunner
+import org.pops.et4.jvm.project.schemas.kafka.DeadLetterTool
+import org.pops.et4.jvm.project.schemas.kafka.RetryTopics
 import org.pops.et4.jvm.project.schemas.models.player.InstalledGame
 import org.pops.et4.jvm.project.schemas.models.player.Platform
 import org.pops.et4.jvm.project.schemas.repositories.player.InstalledGameRepository
+import org.pops.et4.jvm.project.schemas.threads.VirtualThreads
 import org.springframework.beans.factory.annotation.Qualifier
+import org.springframework.beans.factory.annotation.Value
 import org.springframework.boot.CommandLineRunner
 import org.springframework.boot.autoconfigure.SpringBootApplication
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty
 import org.springframework.boot.runApplication
 import org.springframework.context.annotation.Bean
+import org.springframework.scheduling.annotation.EnableScheduling
+import java.time.Duration
+import java.time.LocalDate
+import java.time.ZoneOffset
 import java.util.*
+import kotlin.system.exitProcess
 
 @SpringBootApplication
+@EnableScheduling
 class App {
 
 	companion object {
         const val CLI_BEAN_NAME = "playerServiceCLI"
+        const val VIRTUAL_THREADS_BEAN_NAME = "playerServiceVirtualThreads"
     }
     
     // Timer state for playtime tracking
@@ -24,239 +41,373 @@ class App {
     private var timerPlayerId: Long? = null
     private var timerGameId: Long? = null
 
+    /**
+     * Virtual-thread mode of the service, watching for pinned virtual threads when enabled
+     */
+    @Bean(name = [App.VIRTUAL_THREADS_BEAN_NAME], destroyMethod = "close")
+    fun virtualThreads(
+        @Value("\${spring.threads.virtual.enabled:false}") enabled: Boolean,
+        @Value("\${threads.pinning.enabled:true}") pinningEnabled: Boolean,
+        @Value("\${threads.pinning.threshold-ms:20}") pinningThresholdMs: Long
+    ): VirtualThreads {
+        return VirtualThreads(enabled, pinningEnabled, Duration.ofMillis(pinningThresholdMs))
+    }
+
     @Bean(name = [App.CLI_BEAN_NAME])
+    @ConditionalOnProperty(name = ["cli.enabled"], havingValue = "true", matchIfMissing = true)
     fun interactiveTestRunner(
         @Qualifier(KafkaProducerService.BEAN_NAME)producer: KafkaProducerService,
         @Qualifier(KafkaLifecycleService.BEAN_NAME)lifecycle: KafkaLifecycleService,
-        @Qualifier(InstalledGameRepository.BEAN_NAME)installedGameRepository: InstalledGameRepository
+        @Qualifier(InstalledGameRepository.BEAN_NAME)installedGameRepository: InstalledGameRepository,
+        @Qualifier(KafkaConfig.DEAD_LETTER_TOOL_BEAN_NAME)deadLetterTool: DeadLetterTool,
+        @Qualifier(CatalogStore.BEAN_NAME)catalogStore: CatalogStore,
+        @Qualifier(DownloadService.BEAN_NAME)downloadService: DownloadService,
+        @Qualifier(ArchiveService.BEAN_NAME)archiveService: ArchiveService,
+        @Value("\${cli.batch.script:}") batchScript: String,
+        @Value("\${cli.batch.parallelism:8}") batchParallelism: Int,
+        @Value("\${cli.batch.echo:true}") batchEcho: Boolean
     ): CommandLineRunner {
+        val commands = BatchRunner.Handler { cmd ->
+            val args = cmd.sliceArray(1 until cmd.size)
+
+            when (cmd[0]) {
+                "start" -> {
+                    println("> Starting Listener(s)")
+                    args.forEach { lifecycle.startListener(it) }
+                }
+                "stop" -> {
+                    println("> Stopping Listener(s)")
+                    args.forEach { lifecycle.stopListener(it) }
+                }
+
+                
+                // === PRODUCER COMMANDS ===
+                "register" -> {
+                    println("> Registering Player...")
+                    if (args.size < 5) {
+                        System.err.println("Usage: register [distributorId] [pseudo] [firstName] [lastName] [birthDate(yyyy-MM-dd)]")
+                    } else {
+                        try {
+                            val birthDate = java.time.LocalDate.parse(args[4]).atStartOfDay(java.time.ZoneId.systemDefault()).toInstant()
+                            producer.sendRegisterPlayer(args[0].toLong(), args[1], args[2], args[3], birthDate)
+                        } catch (e: Exception) {
+                            System.err.println("Error: ${e.message}")
+                        }
+                    }
+                }
+                "purchase" -> {
+                    println("> Purchasing Game...")
+                    if (args.size < 2) {
+                        System.err.println("Usage: purchase [playerId] [gameId]")
+                    } else {
+                        producer.sendPurchaseGame(args[0].toLong(), args[1].toLong())
+                    }
+                }
+                "review" -> {
+                    println("> Submitting Review...")
+                    if (args.size < 3) {
+                        System.err.println("Usage: review [playerId] [gameId] [rating(0-5)] [comment?]")
+                    } else {
+                        try {
+                            val rating = args[2].toInt()
+                            if (rating !in 0..5) {
+                                System.err.println("Error: Rating must be between 0 and 5. Got: $rating")
+                            } else {
+                                val comment = if (args.size > 3) args.drop(3).joinToString(" ") else null
+                                producer.sendReviewGame(args[0].toLong(), args[1].toLong(), rating, comment)
+                            }
+                        } catch (e: NumberFormatException) {
+                            System.err.println("Error: Invalid rating number")
+                        }
+                    }
+                }
+                "install" -> {
+                    println("> Installing Game...")
+                    if (args.size < 3) {
+                        System.err.println("Usage: install [playerId] [gameId] [platform]")
+                    } else if (args[2] !in KafkaProducerService.VALID_PLATFORMS) {
+                        System.err.println("Error: Invalid platform '${args[2]}'. Valid platforms: ${KafkaProducerService.VALID_PLATFORMS.joinToString(", ")}")
+                    } else {
+                        producer.sendInstallGame(args[0].toLong(), args[1].toLong(), args[2])
+                    }
+                }
+                "update" -> {
+                    println("> Updating Game...")
+                    if (args.size < 3) {
+                        System.err.println("Usage: update [playerId] [gameId] [platform]")
+                    } else if (args[2] !in KafkaProducerService.VALID_PLATFORMS) {
+                        System.err.println("Error: Invalid platform '${args[2]}'. Valid platforms: ${KafkaProducerService.VALID_PLATFORMS.joinToString(", ")}")
+                    } else {
+                        producer.sendUpdateGame(args[0].toLong(), args[1].toLong(), args[2], "")
+                    }
+                }
+                "update-all" -> {
+                    println("> Checking Updates...")
+                    if (args.isEmpty()) {
+                        System.err.println("Usage: update-all [playerId]")
+                    } else {
+                        producer.sendCheckUpdates(args[0].toLong())
+                    }
+                }
+                "uninstall" -> {
+                    println("> Uninstalling Game...")
+                    if (args.size < 3) {
+                        System.err.println("Usage: uninstall [playerId] [gameId] [platform] [comment?]")
+                    } else if (args[2] !in KafkaProducerService.VALID_PLATFORMS) {
+                        System.err.println("Error: Invalid platform '${args[2]}'. Valid platforms: ${KafkaProducerService.VALID_PLATFORMS.joinToString(", ")}")
+                    } else {
+                        val comment = if (args.size > 3) args.drop(3).joinToString(" ") else null
+                        producer.sendUninstallGame(args[0].toLong(), args[1].toLong(), args[2], comment)
+                    }
+                }
+                "playtime" -> {
+                    if (args.isEmpty() || args[0] == "start") {
+                        // Start timer
+                        if (args.size < 3) {
+                            System.err.println("Usage: playtime start [playerId] [gameId]")
+                        } else if (timerStartTime != null) {
+                            System.err.println("Error: Timer already running! Use 'playtime stop' first.")
+                        } else {
+                            timerPlayerId = args[1].toLong()
+                            timerGameId = args[2].toLong()
+                            timerStartTime = System.currentTimeMillis()
+                            println("> Playtime timer STARTED for Player=${timerPlayerId}, Game=${timerGameId}")
+                            println("  Use 'playtime stop' to stop the timer and send the event")
+                        }
+                    } else if (args[0] == "stop") {
+                        // Stop timer
+                        if (timerStartTime == null) {
+                            System.err.println("Error: No timer running! Use 'playtime start' first.")
+                        } else {
+                            val endTime = System.currentTimeMillis()
+                            val elapsedMillis = endTime - timerStartTime!!
+                            val elapsedMinutes = (elapsedMillis / 1000 / 60).toLong()
+                            val elapsedSeconds = (elapsedMillis / 1000 % 60)
+                            
+                            println("> Playtime timer STOPPED")
+                            println("  Elapsed time: ${elapsedMinutes}m ${elapsedSeconds}s (${elapsedMillis}ms)")
+                            println("  Sending AddPlayTime event with duration...")
+                            
+                            // Send elapsed time in milliseconds (timespan)
+                            producer.sendAddPlayTime(timerPlayerId!!, timerGameId!!, elapsedMillis)
+                            
+                            // Reset timer
+                            timerStartTime = null
+                            timerPlayerId = null
+                            timerGameId = null
+                        }
+                    } else {
+                        System.err.println("Usage: playtime start [playerId] [gameId]  OR  playtime stop")
+                    }
+                }
+                "crash" -> {
+                    println("> Reporting Crash...")
+                    if (args.size < 5) {
+                        System.err.println("Usage: crash [playerId] [gameId] [platform] [version] [errorCode] [message...]")
+                    } else if (args[2] !in KafkaProducerService.VALID_PLATFORMS) {
+                        System.err.println("Error: Invalid platform '${args[2]}'. Valid platforms: ${KafkaProducerService.VALID_PLATFORMS.joinToString(", ")}")
+                    } else {
+                        val message = args.drop(5).joinToString(" ")
+                        producer.sendReportCrash(
+                            args[0].toLong(),
+                            args[1].toLong(),
+                            args[2],
+                            args[3],
+                            args[4].toLong(),
+                            message
+                        )
+                    }
+                }
+                "wishlist-add" -> {
+                    println("> Adding to Wishlist...")
+                    if (args.size < 2) {
+                        System.err.println("Usage: wishlist-add [playerId] [gameId]")
+                    } else {
+                        producer.sendAddWishedGame(args[0].toLong(), args[1].toLong())
+                    }
+                }
+                "wishlist-remove" -> {
+                    println("> Removing from Wishlist...")
+                    if (args.size < 2) {
+                        System.err.println("Usage: wishlist-remove [playerId] [gameId]")
+                    } else {
+                        producer.sendRemoveWishedGame(args[0].toLong(), args[1].toLong())
+                    }
+                }
+                "react" -> {
+                    println("> Reacting to Review...")
+                    if (args.size < 3) {
+                        System.err.println("Usage: react [playerId] [reviewId] [0=NOTHING|1=POSITIVE|2=NEGATIVE]")
+                    } else {
+                        try {
+                            val reactType = args[2].toInt()
+                            if (reactType !in 0..2) {
+                                System.err.println("Error: ReactType must be 0 (NOTHING), 1 (POSITIVE), or 2 (NEGATIVE). Got: $reactType")
+                            } else {
+                                producer.sendReactReview(args[0].toLong(), args[1].toLong(), reactType)
+                            }
+                        } catch (e: NumberFormatException) {
+                            System.err.println("Error: Invalid reactType number")
+                        }
+                    }
+                }
+                "ask-page" -> {
+                    println("> Requesting Player Page...")
+                    if (args.isEmpty()) {
+                        System.err.println("Usage: ask-page [distributorId]")
+                    } else {
+                        producer.sendAskPlayerPage(args[0].toLong())
+                    }
+                }
+                "ask-games" -> {
+                    println("> Requesting Games Page...")
+                    if (args.size < 2) {
+                        System.err.println("Usage: ask-games [distributorId] [platform]")
+                    } else if (args[1] !in KafkaProducerService.VALID_PLATFORMS) {
+                        System.err.println("Error: Invalid platform '${args[1]}'. Valid platforms: ${KafkaProducerService.VALID_PLATFORMS.joinToString(", ")}")
+                    } else {
+                        producer.sendAskGamesPage(args[0].toLong(), args[1])
+                    }
+                }
+                "ask-reviews" -> {
+                    println("> Requesting Game Reviews...")
+                    if (args.size < 2) {
+                        System.err.println("Usage: ask-reviews [distributorId] [gameId] [keywords...?]")
+                    } else {
+                        val query = args.drop(2).joinToString(" ").ifBlank { null }
+                        producer.sendAskGameReviews(args[0].toLong(), args[1].toLong(), query)
+                    }
+                }
+                "ask-leaderboard" -> {
+                    println("> Requesting Leaderboard...")
+                    if (args.size < 2) {
+                        System.err.println("Usage: ask-leaderboard [distributorId] [board] [limit?]")
+                    } else if (args[1] !in KafkaProducerService.VALID_LEADERBOARDS) {
+                        System.err.println("Error: Invalid leaderboard '${args[1]}'. Valid leaderboards: ${KafkaProducerService.VALID_LEADERBOARDS.joinToString(", ")}")
+                    } else {
+                        producer.sendAskLeaderboard(args[0].toLong(), args[1], args.getOrNull(2)?.toInt() ?: 10)
+                    }
+                }
+                "ask-recommendations" -> {
+                    println("> Requesting Recommendations...")
+                    if (args.size < 2) {
+                        System.err.println("Usage: ask-recommendations [distributorId] [gameId] [limit?]")
+                    } else {
+                        producer.sendAskRecommendations(args[0].toLong(), args[1].toLong(), args.getOrNull(2)?.toInt() ?: 10)
+                    }
+                }
+                "producer-stats" -> {
+                    println("> Producer statistics (${producer.pipeline.getInFlight()} in flight)")
+                    producer.pipeline.getStats().forEach { (topic, stats) -> println("$topic: $stats") }
+                }
+                "dlt-list" -> {
+                    println("> Listing dead letters...")
+                    if (args.isEmpty()) {
+                        System.err.println("Usage: dlt-list [topic] [max?]")
+                    } else {
+                        try {
+                            deadLetterTool.list(dltTopicOf(args[0]), args.getOrNull(1)?.toInt() ?: 20).forEach { println(it) }
+                        } catch (e: Exception) {
+                            System.err.println("Error listing dead letters: ${e.message}")
+                        }
+                    }
+                }
+                "dlt-redrive" -> {
+                    println("> Re-driving dead letters...")
+                    if (args.isEmpty()) {
+                        System.err.println("Usage: dlt-redrive [topic] [max?]")
+                    } else {
+                        try {
+                            val redriven = deadLetterTool.redrive(dltTopicOf(args[0]), args.getOrNull(1)?.toInt() ?: 100)
+                            println("$redriven record(s) sent back to ${args[0]}")
+                        } catch (e: Exception) {
+                            System.err.println("Error re-driving dead letters: ${e.message}")
+                        }
+                    }
+                }
+                
+                "catalog" -> {
+                    println("> Local catalog (${catalogStore})")
+                    catalogStore.catalog(args.getOrNull(0)?.toLong()).forEach { println(it) }
+                }
+                "download" -> {
+                    println("> Downloading build...")
+                    if (args.size < 4) {
+                        System.err.println("Usage: download [url] [gameId] [version] [platform]")
+                    } else {
+                        downloadService.downloadAsync(args[0], args[1].toLong(), args[2], args[3])
+                    }
+                }
+                "downloads" -> {
+                    println("> Downloads ($downloadService)")
+                    downloadService.getResults().forEach { (path, state) -> println("$path: $state") }
+                }
+                "archive-run" -> {
+                    println("> Archiving the old consume logs")
+                    println("${archiveService.archiveConsumeLogs()} log(s) archived")
+                }
+                "archive-list" -> {
+                    println("> Archived datasets (${archiveService.archive.root})")
+                    archiveService.archive.datasets().forEach { println(it) }
+                }
+                "archive-scan" -> {
+                    println("> Scanning the archive...")
+                    if (args.isEmpty()) {
+                        System.err.println("Usage: archive-scan [dataset] [from(yyyy-MM-dd)|*] [to(yyyy-MM-dd)|*] [fields|*] [max?]")
+                    } else {
+                        try {
+                            // UTC days, both included, fields separated by commas (e.g. key,event.gameId)
+                            val from = args.getOrNull(1)?.takeIf { it != "*" }?.let { LocalDate.parse(it).atStartOfDay(ZoneOffset.UTC).toInstant() }
+                            val to = args.getOrNull(2)?.takeIf { it != "*" }?.let { LocalDate.parse(it).plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant() }
+                            val fields = args.getOrNull(3)?.takeIf { it != "*" }?.split(",") ?: emptyList()
+                            val max = args.getOrNull(4)?.toInt() ?: 20
+                            println(archiveService.reader.scan(args[0], from, to, fields, max) { println(it) })
+                        } catch (e: Exception) {
+                            System.err.println("Error scanning the archive: ${e.message}")
+                        }
+                    }
+                }
+                
+                // === DATABASE COMMANDS ===
+                "get-installed" -> {
+                    println("> Get installed games...")
+                    if (args.isEmpty()) installedGameRepository.findAll().forEach { println(it) }
+                    else installedGameRepository.findByPlayerIdOrderByGameId(args[0].toLong()).forEach { println(it) }
+                }
+                else -> println("Invalid option. Please try again.")
+            }
+        }
+
         return CommandLineRunner {
+            // Script mode: no pauses, independent commands run concurrently
+            if (batchScript.isNotEmpty()) {
+                val summary = runBatch(commands, batchScript, batchParallelism, batchEcho)
+                exitProcess(if (summary == null || summary.failed > 0) 1 else 0)
+            }
+
             Thread.sleep(1000)
 
             Scanner(System.`in`).use { scanner ->
-                var running = true
-
-                while (running) {
+                while (true) {
                     printMenu(timerStartTime != null)
                     if (!scanner.hasNextLine()) break
                     val input = scanner.nextLine().trim()
                     if (input.isEmpty()) continue
 
                     val cmd = input.split("\\s+".toRegex()).toTypedArray()
-                    val args = cmd.sliceArray(1 until cmd.size)
 
                     println("---------------------------------")
 
                     when (cmd[0]) {
                         "exit", "quit" -> {
                             println("Exiting Manual Test Mode...")
-                            running = false
-                        }
-                        "start" -> {
-                            println("> Starting Listener(s)")
-                            args.forEach { lifecycle.startListener(it) }
-                        }
-                        "stop" -> {
-                            println("> Stopping Listener(s)")
-                            args.forEach { lifecycle.stopListener(it) }
-                        }
-
-                        
-                        // === PRODUCER COMMANDS ===
-                        "register" -> {
-                            println("> Registering Player...")
-                            if (args.size < 5) {
-                                System.err.println("Usage: register [distributorId] [pseudo] [firstName] [lastName] [birthDate(yyyy-MM-dd)]")
-                            } else {
-                                try {
-                                    val birthDate = java.time.LocalDate.parse(args[4]).atStartOfDay(java.time.ZoneId.systemDefault()).toInstant()
-                                    producer.sendRegisterPlayer(args[0].toLong(), args[1], args[2], args[3], birthDate)
-                                } catch (e: Exception) {
-                                    System.err.println("Error: ${e.message}")
-                                }
-                            }
-                        }
-                        "purchase" -> {
-                            println("> Purchasing Game...")
-                            if (args.size < 2) {
-                                System.err.println("Usage: purchase [playerId] [gameId]")
-                            } else {
-                                producer.sendPurchaseGame(args[0].toLong(), args[1].toLong())
-                            }
-                        }
-                        "review" -> {
-                            println("> Submitting Review...")
-                            if (args.size < 3) {
-                                System.err.println("Usage: review [playerId] [gameId] [rating(0-5)] [comment?]")
-                            } else {
-                                try {
-                                    val rating = args[2].toInt()
-                                    if (rating !in 0..5) {
-                                        System.err.println("Error: Rating must be between 0 and 5. Got: $rating")
-                                    } else {
-                                        val comment = if (args.size > 3) args.drop(3).joinToString(" ") else null
-                                        producer.sendReviewGame(args[0].toLong(), args[1].toLong(), rating, comment)
-                                    }
-                                } catch (e: NumberFormatException) {
-                                    System.err.println("Error: Invalid rating number")
-                                }
-                            }
-                        }
-                        "install" -> {
-                            println("> Installing Game...")
-                            if (args.size < 3) {
-                                System.err.println("Usage: install [playerId] [gameId] [platform]")
-                            } else if (args[2] !in KafkaProducerService.VALID_PLATFORMS) {
-                                System.err.println("Error: Invalid platform '${args[2]}'. Valid platforms: ${KafkaProducerService.VALID_PLATFORMS.joinToString(", ")}")
-                            } else {
-                                producer.sendInstallGame(args[0].toLong(), args[1].toLong(), args[2])
-                            }
-                        }
-                        "update" -> {
-                            println("> Updating Game...")
-                            if (args.size < 3) {
-                                System.err.println("Usage: update [playerId] [gameId] [platform]")
-                            } else if (args[2] !in KafkaProducerService.VALID_PLATFORMS) {
-                                System.err.println("Error: Invalid platform '${args[2]}'. Valid platforms: ${KafkaProducerService.VALID_PLATFORMS.joinToString(", ")}")
-                            } else {
-                                producer.sendUpdateGame(args[0].toLong(), args[1].toLong(), args[2], "")
-                            }
-                        }
-                        "uninstall" -> {
-                            println("> Uninstalling Game...")
-                            if (args.size < 3) {
-                                System.err.println("Usage: uninstall [playerId] [gameId] [platform] [comment?]")
-                            } else if (args[2] !in KafkaProducerService.VALID_PLATFORMS) {
-                                System.err.println("Error: Invalid platform '${args[2]}'. Valid platforms: ${KafkaProducerService.VALID_PLATFORMS.joinToString(", ")}")
-                            } else {
-                                val comment = if (args.size > 3) args.drop(3).joinToString(" ") else null
-                                producer.sendUninstallGame(args[0].toLong(), args[1].toLong(), args[2], comment)
-                            }
-                        }
-                        "playtime" -> {
-                            if (args.isEmpty() || args[0] == "start") {
-                                // Start timer
-                                if (args.size < 3) {
-                                    System.err.println("Usage: playtime start [playerId] [gameId]")
-                                } else if (timerStartTime != null) {
-                                    System.err.println("Error: Timer already running! Use 'playtime stop' first.")
-                                } else {
-                                    timerPlayerId = args[1].toLong()
-                                    timerGameId = args[2].toLong()
-                                    timerStartTime = System.currentTimeMillis()
-                                    println("> Playtime timer STARTED for Player=${timerPlayerId}, Game=${timerGameId}")
-                                    println("  Use 'playtime stop' to stop the timer and send the event")
-                                }
-                            } else if (args[0] == "stop") {
-                                // Stop timer
-                                if (timerStartTime == null) {
-                                    System.err.println("Error: No timer running! Use 'playtime start' first.")
-                                } else {
-                                    val endTime = System.currentTimeMillis()
-                                    val elapsedMillis = endTime - timerStartTime!!
-                                    val elapsedMinutes = (elapsedMillis / 1000 / 60).toLong()
-                                    val elapsedSeconds = (elapsedMillis / 1000 % 60)
-                                    
-                                    println("> Playtime timer STOPPED")
-                                    println("  Elapsed time: ${elapsedMinutes}m ${elapsedSeconds}s (${elapsedMillis}ms)")
-                                    println("  Sending AddPlayTime event with duration...")
-                                    
-                                    // Send elapsed time in milliseconds (timespan)
-                                    producer.sendAddPlayTime(timerPlayerId!!, timerGameId!!, elapsedMillis)
-                                    
-                                    // Reset timer
-                                    timerStartTime = null
-                                    timerPlayerId = null
-                                    timerGameId = null
-                                }
-                            } else {
-                                System.err.println("Usage: playtime start [playerId] [gameId]  OR  playtime stop")
-                            }
-                        }
-                        "crash" -> {
-                            println("> Reporting Crash...")
-                            if (args.size < 5) {
-                                System.err.println("Usage: crash [playerId] [gameId] [platform] [version] [errorCode] [message...]")
-                            } else if (args[2] !in KafkaProducerService.VALID_PLATFORMS) {
-                                System.err.println("Error: Invalid platform '${args[2]}'. Valid platforms: ${KafkaProducerService.VALID_PLATFORMS.joinToString(", ")}")
-                            } else {
-                                val message = args.drop(5).joinToString(" ")
-                                producer.sendReportCrash(
-                                    args[0].toLong(),
-                                    args[1].toLong(),
-                                    args[2],
-                                    args[3],
-                                    args[4].toLong(),
-                                    message
-                                )
-                            }
+                            break
                         }
-                        "wishlist-add" -> {
-                            println("> Adding to Wishlist...")
-                            if (args.size < 2) {
-                                System.err.println("Usage: wishlist-add [playerId] [gameId]")
-                            } else {
-                                producer.sendAddWishedGame(args[0].toLong(), args[1].toLong())
-                            }
-                        }
-                        "wishlist-remove" -> {
-                            println("> Removing from Wishlist...")
-                            if (args.size < 2) {
-                                System.err.println("Usage: wishlist-remove [playerId] [gameId]")
-                            } else {
-                                producer.sendRemoveWishedGame(args[0].toLong(), args[1].toLong())
-                            }
-                        }
-                        "react" -> {
-                            println("> Reacting to Review...")
-                            if (args.size < 3) {
-                                System.err.println("Usage: react [playerId] [reviewId] [0=NOTHING|1=POSITIVE|2=NEGATIVE]")
-                            } else {
-                                try {
-                                    val reactType = args[2].toInt()
-                                    if (reactType !in 0..2) {
-                                        System.err.println("Error: ReactType must be 0 (NOTHING), 1 (POSITIVE), or 2 (NEGATIVE). Got: $reactType")
-                                    } else {
-                                        producer.sendReactReview(args[0].toLong(), args[1].toLong(), reactType)
-                                    }
-                                } catch (e: NumberFormatException) {
-                                    System.err.println("Error: Invalid reactType number")
-                                }
-                            }
+                        "batch" -> {
+                            if (cmd.size < 2) System.err.println("Usage: batch [file|-] [parallelism?]")
+                            else runBatch(commands, cmd[1], cmd.getOrNull(2)?.toInt() ?: batchParallelism, batchEcho)
                         }
-                        "ask-page" -> {
-                            println("> Requesting Player Page...")
-                            if (args.isEmpty()) {
-                                System.err.println("Usage: ask-page [distributorId]")
-                            } else {
-                                producer.sendAskPlayerPage(args[0].toLong())
-                            }
-                        }
-                        "ask-games" -> {
-                            println("> Requesting Games Page...")
-                            if (args.size < 2) {
-                                System.err.println("Usage: ask-games [distributorId] [platform]")
-                            } else if (args[1] !in KafkaProducerService.VALID_PLATFORMS) {
-                                System.err.println("Error: Invalid platform '${args[1]}'. Valid platforms: ${KafkaProducerService.VALID_PLATFORMS.joinToString(", ")}")
-                            } else {
-                                producer.sendAskGamesPage(args[0].toLong(), args[1])
-                            }
-                        }
-                        "ask-reviews" -> {
-                            println("> Requesting Game Reviews...")
-                            if (args.size < 2) {
-                                System.err.println("Usage: ask-reviews [distributorId] [gameId]")
-                            } else {
-                                producer.sendAskGameReviews(args[0].toLong(), args[1].toLong())
-                            }
-                        }
-                        
-                        // === DATABASE COMMANDS ===
-                        "get-installed" -> {
-                            println("> Get installed games...")
-                            installedGameRepository.findAll().forEach { println(it) }
-                        }
-                        else -> println("Invalid option. Please try again.")
+                        else -> commands.execute(cmd)
                     }
 
                     Thread.sleep(500)
@@ -265,6 +416,20 @@ class App {
         }
     }
 
+    private fun runBatch(commands: BatchRunner.Handler, script: String, parallelism: Int, echo: Boolean): BatchRunner.Summary? {
+        println("> Running batch '$script' with parallelism $parallelism...")
+        return try {
+            BatchRunner(commands, parallelism, echo).run(script).also { print(it) }
+        } catch (e: Exception) {
+            System.err.println("Error running batch: ${e.message}")
+            null
+        }
+    }
+
+    private fun dltTopicOf(topic: String): String {
+        return if (topic.endsWith(RetryTopics.DLT_SUFFIX)) topic else RetryTopics.dltOf(topic)
+    }
+
     private fun printMenu(timerActive: Boolean) {
         println()
         println("=================================")
@@ -276,8 +441,18 @@ class App {
         }
         println("SYSTEM COMMANDS:")
         println("* Exit                          exit/quit")
+        println("* Run Script                    batch [file|-] [parallelism?]")
         println("* Start Listener                start [listenerId...]")
         println("* Stop Listener                 stop [listenerId...]")
+        println("* Producer Stats                producer-stats")
+        println("* List Dead Letters             dlt-list [topic] [max?]")
+        println("* Re-drive Dead Letters         dlt-redrive [topic] [max?]")
+        println("* Local Catalog                 catalog [distributorId?]")
+        println("* Download Build                download [url] [gameId] [version] [platform]")
+        println("* Downloads                     downloads")
+        println("* Archive Logs                  archive-run")
+        println("* Archived Datasets             archive-list")
+        println("* Scan Archive                  archive-scan [dataset] [from|*] [to|*] [fields|*] [max?]")
         println()
         println("PRODUCER EVENTS (Player sends):")
         println("* Register Player               register [distId] [pseudo] [first] [last] [birthDate]")
@@ -285,6 +460,7 @@ class App {
         println("* Review Game                   review [playerId] [gameId] [rating(0-5)] [comment?]")
         println("* Install Game                  install [playerId] [gameId] [platform]")
         println("* Update Game                   update [playerId] [gameId] [platform]")
+        println("* Update All Games              update-all [playerId]")
         println("* Uninstall Game                uninstall [playerId] [gameId] [platform] [comment?]")
         println("* Start Play Time Timer         playtime start [playerId] [gameId]")
         println("* Stop Play Time Timer          playtime stop")
@@ -294,10 +470,12 @@ class App {
         println("* React to Review               react [playerId] [reviewId] [0=NOTHING|1=POSITIVE|2=NEGATIVE]")
         println("* Ask Player Page               ask-page [distributorId]")
         println("* Ask Games Page                ask-games [distributorId] [platform]")
-        println("* Ask Game Reviews              ask-reviews [distributorId] [gameId]")
+        println("* Ask Game Reviews              ask-reviews [distributorId] [gameId] [keywords...?]")
+        println("* Ask Leaderboard               ask-leaderboard [distributorId] [board] [limit?]")
+        println("* Ask Recommendations           ask-recommendations [distributorId] [gameId] [limit?]")
         println()
         println("DATABASE COMMANDS:")
-        println("* Get Installed Games           get-installed")
+        println("* Get Installed Games           get-installed [playerId?]")
         println()
         print("> ")
     }
@@ -0,0 +1,54 @@
+package org.pops.et4.jvm.project.player.archive
+
+import org.pops.et4.jvm.project.player.kafka.KafkaConsumerService
+import org.pops.et4.jvm.project.schemas.archive.ArchiveReader
+import org.pops.et4.jvm.project.schemas.archive.Archiver
+import org.pops.et4.jvm.project.schemas.archive.EventArchive
+import org.springframework.beans.factory.annotation.Qualifier
+import org.springframework.beans.factory.annotation.Value
+import org.springframework.scheduling.annotation.Scheduled
+import org.springframework.stereotype.Component
+import java.nio.file.Path
+import java.time.Duration
+import java.time.Instant
+
+/**
+ * Cold tier of the player: the consume logs older than `archive.consume-logs.max-age-minutes` are moved to an [EventArchive],
+ * one dataset per topic (`consume-logs/<topic>`), for audits
+ */
+@Component(ArchiveService.BEAN_NAME)
+class ArchiveService(
+    @Qualifier(KafkaConsumerService.BEAN_NAME)
+    private val consumerService: KafkaConsumerService,
+    @Value("\${archive.path:./data/player-archive}") path: String,
+    @Value("\${archive.codec:deflate}") codec: String
+) {
+
+    companion object {
+        const val BEAN_NAME = "playerServiceArchiveService"
+    }
+
+    @Value("\${archive.enabled:true}")
+    private var enabled: Boolean = true
+
+    @Value("\${archive.consume-logs.max-age-minutes:60}")
+    private var consumeLogsMaxAgeMinutes: Long = 60
+
+    val archive = EventArchive(Path.of(path), codec)
+    val reader = ArchiveReader(archive)
+    private val archiver = Archiver(archive)
+
+    @Scheduled(fixedDelayString = "\${archive.interval-ms:600000}", initialDelayString = "\${archive.interval-ms:600000}")
+    fun scheduledRun() {
+        if (enabled) archiveConsumeLogs()
+    }
+
+    /**
+     * Moves the old consume logs to the archive, they stay in memory if they cannot be written
+     */
+    @Synchronized
+    fun archiveConsumeLogs(): Int {
+        val logs = consumerService.logsBefore(Instant.now().minus(Duration.ofMinutes(consumeLogsMaxAgeMinutes)))
+        return archiver.archiveConsumeLogs(logs) { consumerService.removeLogs(it) }
+    }
+}
@@ -0,0 +1,112 @@
+package org.pops.et4.jvm.project.player.catalog
+
+import org.apache.kafka.clients.consumer.ConsumerRecord
+import org.apache.kafka.common.TopicPartition
+import org.pops.et4.jvm.project.player.kafka.KafkaConfig
+import org.pops.et4.jvm.project.schemas.events.GameDistributed
+import org.pops.et4.jvm.project.schemas.events.PatchDistributed
+import org.pops.et4.jvm.project.schemas.events.SaleStarted
+import org.pops.et4.jvm.project.schemas.kafka.InMemoryEventBus
+import org.pops.et4.jvm.project.schemas.logging.EventLog
+import org.springframework.beans.factory.annotation.Qualifier
+import org.springframework.beans.factory.annotation.Value
+import org.springframework.context.SmartLifecycle
+import org.springframework.kafka.core.ConsumerFactory
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer
+import org.springframework.kafka.listener.ConsumerSeekAware
+import org.springframework.kafka.listener.ContainerProperties
+import org.springframework.kafka.listener.DefaultErrorHandler
+import org.springframework.kafka.listener.MessageListener
+import org.springframework.stereotype.Component
+import java.util.UUID
+
+/**
+ * Feeds the [CatalogStore] from the catalog topics, always running, unlike the listeners started from the command line
+ * - the container is built here rather than with @KafkaListener, so no retry topic is attached to it
+ * - each instance reads every partition: its group id is unique, and offsets come from the snapshot instead of being committed
+ */
+@Component(CatalogConsumer.BEAN_NAME)
+class CatalogConsumer(
+    @Qualifier(CatalogStore.BEAN_NAME)
+    private val store: CatalogStore,
+    @Qualifier(KafkaConfig.BEAN_NAME)
+    private val kafkaConfig: KafkaConfig,
+    @Qualifier(KafkaConfig.CONSUMER_FACTORY_BEAN_NAME)
+    private val consumerFactory: ConsumerFactory<String, Any>,
+    @Qualifier(KafkaConfig.ERROR_HANDLER_BEAN_NAME)
+    private val errorHandler: DefaultErrorHandler
+) : SmartLifecycle, MessageListener<String, Any>, ConsumerSeekAware {
+
+    companion object {
+        const val BEAN_NAME = "playerServiceCatalogConsumer"
+
+        val TOPICS = listOf(GameDistributed.TOPIC, PatchDistributed.TOPIC, SaleStarted.TOPIC)
+
+        private val LOG = EventLog.logger("Catalog")
+    }
+
+    @Value("\${spring.kafka.consumer.group-id}")
+    private lateinit var groupId: String
+
+    @Value("\${catalog.enabled:true}")
+    private var enabled: Boolean = true
+
+    private var container: ConcurrentMessageListenerContainer<String, Any>? = null
+    private var subscribed = false
+
+    @Volatile
+    private var running = false
+
+    override fun onMessage(record: ConsumerRecord<String, Any>) {
+        store.apply(record)
+    }
+
+    /**
+     * Starts after the snapshot position of each partition, or from the beginning of the compacted topic
+     */
+    override fun onPartitionsAssigned(assignments: MutableMap<TopicPartition, Long>, callback: ConsumerSeekAware.ConsumerSeekCallback) {
+        for (partition in assignments.keys) {
+            val next = store.nextOffset(partition)
+            if (next != null) callback.seek(partition.topic(), partition.partition(), next)
+            else callback.seekToBeginning(partition.topic(), partition.partition())
+        }
+        LOG.info("Catalog reading {} partition(s), {} from the snapshot", assignments.size, assignments.keys.count { store.nextOffset(it) != null })
+    }
+
+    override fun start() {
+        if (!enabled || running) return
+
+        if (kafkaConfig.inMemory) {
+            val bus = InMemoryEventBus.shared()
+            if (subscribed) bus.resume(BEAN_NAME)
+            else bus.subscribe(BEAN_NAME, TOPICS, this)
+            subscribed = true
+        } else {
+            val properties = ContainerProperties(*TOPICS.toTypedArray())
+            properties.setGroupId("$groupId-catalog-${UUID.randomUUID()}")
+            properties.setAckMode(ContainerProperties.AckMode.MANUAL)
+            properties.setMessageListener(this)
+
+            val container = ConcurrentMessageListenerContainer(consumerFactory, properties)
+            container.setBeanName(BEAN_NAME)
+            container.setCommonErrorHandler(errorHandler)
+            container.start()
+            this.container = container
+        }
+        running = true
+    }
+
+    override fun stop() {
+        if (!running) return
+
+        if (kafkaConfig.inMemory) InMemoryEventBus.shared().pause(BEAN_NAME)
+        else container?.stop()
+        running = false
+
+        store.saveSnapshot()
+    }
+
+    override fun isRunning(): Boolean {
+        return running
+    }
+}
@@ -0,0 +1,232 @@
+package org.pops.et4.jvm.project.player.catalog
+
+import jakarta.annotation.PostConstruct
+import org.apache.kafka.clients.consumer.ConsumerRecord
+import org.apache.kafka.common.TopicPartition
+import org.pops.et4.jvm.project.schemas.events.GameDistributed
+import org.pops.et4.jvm.project.schemas.events.PatchDistributed
+import org.pops.et4.jvm.project.schemas.events.SaleStarted
+import org.pops.et4.jvm.project.schemas.logging.EventLog
+import org.springframework.beans.factory.annotation.Value
+import org.springframework.stereotype.Component
+import java.io.*
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.time.Instant
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Local copy of the distributors' catalogs, materialized from the compacted GameDistributed, PatchDistributed and SaleStarted topics
+ * - one entry per game of each distributor, updated by each of its events
+ * - the entries and the next offset of each partition are saved to a snapshot file,
+ *   a restart loads it and only reads the records sent since
+ * - only the catalog consumer thread writes, so a snapshot is always consistent with its offsets
+ */
+@Component(CatalogStore.BEAN_NAME)
+class CatalogStore {
+
+    companion object {
+        const val BEAN_NAME = "playerServiceCatalogStore"
+
+        private const val SNAPSHOT_MAGIC = 0x43415431 // "CAT1"
+
+        private val LOG = EventLog.logger("Catalog")
+    }
+
+    @Value("\${catalog.snapshot.enabled:true}")
+    private var snapshotEnabled: Boolean = true
+
+    @Value("\${catalog.snapshot.path:./data/player-catalog.snapshot}")
+    private lateinit var snapshotPath: String
+
+    @Value("\${catalog.snapshot.interval-ms:30000}")
+    private var snapshotIntervalMs: Long = 30000
+
+    // gameId -> distributorId -> entry, update checks look up one game
+    private val entries = ConcurrentHashMap<Long, ConcurrentHashMap<Long, CatalogEntry>>()
+    private val nextOffsets = ConcurrentHashMap<TopicPartition, Long>()
+
+    private val applied = LongAdder()
+    private val snapshots = LongAdder()
+    private var lastSnapshotMs = System.currentTimeMillis()
+    private var dirty = false
+
+    @Volatile
+    private var loadedFromSnapshot = 0
+
+    @PostConstruct
+    fun loadSnapshot() {
+        if (!snapshotEnabled) return
+        val path = Path.of(snapshotPath)
+        if (!Files.exists(path)) return
+
+        try {
+            DataInputStream(BufferedInputStream(Files.newInputStream(path))).use { input ->
+                if (input.readInt() != SNAPSHOT_MAGIC) throw IOException("Not a catalog snapshot")
+
+                repeat(input.readInt()) {
+                    nextOffsets[TopicPartition(input.readUTF(), input.readInt())] = input.readLong()
+                }
+                repeat(input.readInt()) {
+                    val entry = CatalogEntry(
+                        distributorId = input.readLong(),
+                        gameId = input.readLong(),
+                        gameName = input.readUTF(),
+                        version = if (input.readBoolean()) input.readUTF() else null,
+                        salePercentage = if (input.readBoolean()) input.readFloat() else null,
+                        updatedAt = Instant.ofEpochMilli(input.readLong())
+                    )
+                    put(entry)
+                }
+            }
+            loadedFromSnapshot = size()
+            LOG.info("Loaded {} catalog entries from {}, resuming at {}", loadedFromSnapshot, path, nextOffsets)
+        } catch (e: IOException) {
+            // The topics are compacted, reading them again from the beginning is enough to rebuild the catalog
+            entries.clear()
+            nextOffsets.clear()
+            LOG.warn("Ignoring catalog snapshot {}: {}", path, e.message)
+        }
+    }
+
+    /**
+     * Applies one record of the catalog topics, then saves a snapshot if the last one is older than the interval
+     */
+    fun apply(record: ConsumerRecord<String, Any>) {
+        val updatedAt = Instant.ofEpochMilli(record.timestamp())
+
+        when (val event = record.value()) {
+            // A GameDistributed replayed after a patch of the same game must not bring the first version back
+            is GameDistributed -> update(event.getDistributorId(), event.getGameId(), event.getGameName(), updatedAt) {
+                it.copy(version = it.version ?: event.getVersion())
+            }
+            is PatchDistributed -> update(event.getDistributorId(), event.getGameId(), event.getGameName(), updatedAt) {
+                it.copy(version = event.getNewVersion())
+            }
+            is SaleStarted -> update(event.getDistributorId(), event.getGameId(), event.getGameName(), updatedAt) {
+                it.copy(salePercentage = event.getSalePercentage())
+            }
+            else -> LOG.warn("{}({}): unexpected {} in the catalog topics", record.topic(), record.key(), event?.javaClass?.simpleName)
+        }
+
+        nextOffsets[TopicPartition(record.topic(), record.partition())] = record.offset() + 1
+        applied.increment()
+        dirty = true
+
+        if (System.currentTimeMillis() - lastSnapshotMs >= snapshotIntervalMs) saveSnapshot()
+    }
+
+    /**
+     * @return Offset of the next record to read on this partition, null if the partition must be read from the beginning
+     */
+    fun nextOffset(partition: TopicPartition): Long? {
+        return nextOffsets[partition]
+    }
+
+    /**
+     * Writes the snapshot to a temporary file then moves it over the previous one, a crash never leaves a partial snapshot
+     */
+    fun saveSnapshot() {
+        lastSnapshotMs = System.currentTimeMillis()
+        if (!snapshotEnabled || !dirty) return
+
+        val path = Path.of(snapshotPath)
+        val tmp = path.resolveSibling(path.fileName.toString() + ".tmp")
+        try {
+            path.toAbsolutePath().parent?.let { Files.createDirectories(it) }
+            DataOutputStream(BufferedOutputStream(Files.newOutputStream(tmp))).use { output ->
+                output.writeInt(SNAPSHOT_MAGIC)
+
+                val offsets = HashMap(nextOffsets)
+                output.writeInt(offsets.size)
+                for ((partition, offset) in offsets) {
+                    output.writeUTF(partition.topic())
+                    output.writeInt(partition.partition())
+                    output.writeLong(offset)
+                }
+
+                val all = entries.values.flatMap { it.values }
+                output.writeInt(all.size)
+                for (entry in all) {
+                    output.writeLong(entry.distributorId)
+                    output.writeLong(entry.gameId)
+                    output.writeUTF(entry.gameName)
+                    output.writeBoolean(entry.version != null)
+                    entry.version?.let { output.writeUTF(it) }
+                    output.writeBoolean(entry.salePercentage != null)
+                    entry.salePercentage?.let { output.writeFloat(it) }
+                    output.writeLong(entry.updatedAt.toEpochMilli())
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+            dirty = false
+            snapshots.increment()
+        } catch (e: IOException) {
+            LOG.error("Failed to save the catalog snapshot to {}: {}", path, e.message)
+        }
+    }
+
+    fun entry(distributorId: Long, gameId: Long): CatalogEntry? {
+        return entries[gameId]?.get(distributorId)
+    }
+
+    /**
+     * @return Entries of one distributor, or of every distributor if null, by distributor then game
+     */
+    fun catalog(distributorId: Long? = null): List<CatalogEntry> {
+        return entries.values
+            .flatMap { byDistributor -> if (distributorId == null) byDistributor.values else listOfNotNull(byDistributor[distributorId]) }
+            .sortedWith(compareBy({ it.distributorId }, { it.gameId }))
+    }
+
+    /**
+     * @return Versions of the game known for each distributor distributing it, empty if the game is unknown
+     */
+    fun versionsOf(gameId: Long): Set<String> {
+        return entries[gameId]?.values?.mapNotNull { it.version }?.toSet() ?: emptySet()
+    }
+
+    /**
+     * @return true only if the catalog knows the game and every distributor of the game has this version
+     */
+    fun isUpToDate(gameId: Long, installedVersion: String): Boolean {
+        val versions = versionsOf(gameId)
+        return versions.isNotEmpty() && versions.all { it == installedVersion }
+    }
+
+    fun size(): Int {
+        return entries.values.sumOf { it.size }
+    }
+
+    override fun toString(): String {
+        return "entries=${size()}, games=${entries.size}, applied=${applied.sum()}, loadedFromSnapshot=$loadedFromSnapshot, " +
+            "snapshots=${snapshots.sum()}, offsets=$nextOffsets"
+    }
+
+    private fun update(distributorId: Long, gameId: Long, gameName: String, updatedAt: Instant, change: (CatalogEntry) -> CatalogEntry) {
+        entries.computeIfAbsent(gameId) { ConcurrentHashMap() }.compute(distributorId) { _, previous ->
+            val base = previous ?: CatalogEntry(distributorId, gameId, gameName, null, null, updatedAt)
+            change(base.copy(gameName = gameName, updatedAt = updatedAt))
+        }
+    }
+
+    private fun put(entry: CatalogEntry) {
+        entries.computeIfAbsent(entry.gameId) { ConcurrentHashMap() }[entry.distributorId] = entry
+    }
+
+    data class CatalogEntry(
+        val distributorId: Long,
+        val gameId: Long,
+        val gameName: String,
+        val version: String?,
+        val salePercentage: Float?,
+        val updatedAt: Instant
+    ) {
+        override fun toString(): String {
+            val sale = salePercentage?.let { ", sale=${(it * 100).toInt()}%" } ?: ""
+            return "Distributor=$distributorId, Game=$gameId '$gameName', version=${version ?: "?"}$sale, updated=$updatedAt"
+        }
+    }
+}
@@ -1,7 +1,12 @@
 package org.pops.et4.jvm.project.player.db
 
 import jakarta.persistence.EntityManagerFactory
+import org.pops.et4.jvm.project.migrations.Database
+import org.pops.et4.jvm.project.migrations.SchemaMigrations
+import org.pops.et4.jvm.project.schemas.logging.EventLog
+import org.pops.et4.jvm.project.schemas.sql.SqlBudget
 import org.springframework.beans.factory.annotation.Qualifier
+import org.springframework.beans.factory.annotation.Value
 import org.springframework.boot.context.properties.ConfigurationProperties
 import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties
 import org.springframework.boot.jpa.EntityManagerFactoryBuilder
@@ -12,6 +17,7 @@ import org.springframework.orm.jpa.JpaTransactionManager
 import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean
 import org.springframework.transaction.PlatformTransactionManager
 import org.springframework.transaction.annotation.EnableTransactionManagement
+import java.sql.SQLException
 import javax.sql.DataSource
 
 @Configuration(PlayerDbConfig.BEAN_NAME)
@@ -30,12 +36,15 @@ class PlayerDbConfig {
         const val DATA_SOURCE_PROPS_BEAN_NAME = "playerServicePlayerDbDataSourceProperties"
         const val ENTITY_MANAGER_FACTORY_BEAN_NAME = "playerServicePlayerDbEntityManagerFactory"
         const val TRANSACTION_MANAGER_BEAN_NAME = "playerServicePlayerDbTransactionManager"
+        const val MIGRATIONS_BEAN_NAME = "playerServicePlayerDbMigrations"
 
         const val REPOSITORIES_PACKAGE = "org.pops.et4.jvm.project.schemas.repositories.player"
         const val MODELS_PACKAGE = "org.pops.et4.jvm.project.schemas.models.player"
         const val DATA_SOURCE_CONFIG = "spring.datasource.player"
         const val ENTITY_MANAGER_PERSISTENCE = "player"
         const val DB_MODE = "update"
+
+        private val LOG = EventLog.logger("Db")
     }
 
     @Bean(name = [DATA_SOURCE_PROPS_BEAN_NAME])
@@ -56,7 +65,11 @@ class PlayerDbConfig {
         builder: EntityManagerFactoryBuilder,
         @Qualifier(DATA_SOURCE_BEAN_NAME) dataSource: DataSource
     ): LocalContainerEntityManagerFactoryBean {
-        val props = mapOf("hibernate.hbm2ddl.auto" to DB_MODE)
+        val props = mapOf(
+            "hibernate.hbm2ddl.auto" to DB_MODE,
+            // Counts the statements of each handler, see SqlBudget
+            SqlBudget.STATEMENT_INSPECTOR_PROPERTY to SqlBudget.INSTANCE
+        )
 
         return builder
             .dataSource(dataSource)
@@ -72,4 +85,26 @@ class PlayerDbConfig {
     ): PlatformTransactionManager {
         return JpaTransactionManager(emf)
     }
+
+    /**
+     * Versioned migrations of the database (indexes...), once Hibernate has created the tables
+     */
+    @Bean(name = [MIGRATIONS_BEAN_NAME])
+    fun migrations(
+        @Qualifier(DATA_SOURCE_BEAN_NAME) dataSource: DataSource,
+        @Qualifier(ENTITY_MANAGER_FACTORY_BEAN_NAME) emf: EntityManagerFactory,
+        @Value("\${migrations.enabled:true}") enabled: Boolean,
+        @Value("\${migrations.check-access-paths:true}") checkAccessPaths: Boolean
+    ): SchemaMigrations {
+        val migrations = SchemaMigrations(dataSource, Database.PLAYER)
+        if (enabled) migrations.migrate()
+        if (checkAccessPaths) {
+            try {
+                migrations.logAccessPaths()
+            } catch (e: SQLException) {
+                LOG.warn("Could not check the access paths of player_db: {}", e.message)
+            }
+        }
+        return migrations
+    }
 }
\ No newline at end of file
@@ -0,0 +1,369 @@
+package org.pops.et4.jvm.project.player.download
+
+import jakarta.annotation.PreDestroy
+import org.pops.et4.jvm.project.schemas.logging.EventLog
+import org.springframework.beans.factory.annotation.Value
+import org.springframework.stereotype.Component
+import java.io.*
+import java.net.URI
+import java.net.URLEncoder
+import java.net.http.HttpClient
+import java.net.http.HttpRequest
+import java.net.http.HttpResponse
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.time.Duration
+import java.util.*
+import java.util.concurrent.*
+import java.util.concurrent.atomic.LongAdder
+import java.util.zip.CRC32C
+
+/**
+ * Downloads the builds served by the distributor content store
+ * - chunks are fetched in parallel, by at most `download.parallelism` requests shared by every download
+ * - each received buffer is checksummed and written at its position in the file, without being copied
+ * - verified chunks are recorded next to the file, an interrupted download only fetches the missing chunks,
+ *   and an interrupted chunk is resumed with a Range request
+ * - an update asks for the delta against the installed build: the chunks the distributor found in it are copied
+ *   from the local file (copy_file_range on Linux, shared extents on filesystems with reflinks), only the others are fetched
+ */
+@Component(DownloadService.BEAN_NAME)
+class DownloadService {
+
+    companion object {
+        const val BEAN_NAME = "playerServiceDownloadService"
+
+        private const val PARTS_EXTENSION = ".parts"
+
+        // One plain path segment: no separator, and cannot be "." or ".."
+        private val PATH_SEGMENT = Regex("[A-Za-z0-9][A-Za-z0-9._+-]*")
+
+        private val LOG = EventLog.logger("Download")
+    }
+
+    @Value("\${download.root:./data/downloads}")
+    private lateinit var root: String
+
+    @Value("\${download.parallelism:4}")
+    private var parallelism: Int = 4
+
+    @Value("\${download.max-attempts:3}")
+    private var maxAttempts: Int = 3
+
+    @Value("\${download.timeout-ms:30000}")
+    private var timeoutMs: Long = 30000
+
+    private val client: HttpClient by lazy {
+        HttpClient.newBuilder().connectTimeout(Duration.ofMillis(timeoutMs)).build()
+    }
+
+    // Chunk requests of every download share this pool, the downloads themselves wait on their own thread
+    private val chunkPool: ExecutorService by lazy {
+        Executors.newFixedThreadPool(parallelism, Thread.ofPlatform().name("download-chunk-", 0).daemon(true).factory())
+    }
+    private val downloadPool: ExecutorService = Executors.newCachedThreadPool(Thread.ofPlatform().name("download-", 0).daemon(true).factory())
+
+    private val results = ConcurrentHashMap<Path, String>()
+    private val bytesReceived = LongAdder()
+    private val chunksVerified = LongAdder()
+    private val chunksRetried = LongAdder()
+    private val chunksCopied = LongAdder()
+    private val bytesCopied = LongAdder()
+
+    /**
+     * @param baseVersion Installed version to reuse the chunks of, ignored if its build was never downloaded
+     */
+    fun downloadAsync(url: String, gameId: Long, version: String, platform: String, baseVersion: String? = null): CompletableFuture<DownloadResult> {
+        val target = targetOf(gameId, version, platform)
+        val base = baseVersion?.takeIf { it != version }?.let { targetOf(gameId, it, platform) }?.takeIf { Files.isRegularFile(it) }
+        results[target] = "running"
+        return CompletableFuture.supplyAsync({ download(url, target, baseVersion, base) }, downloadPool)
+            .whenComplete { result, ex ->
+                if (ex == null) {
+                    results[target] = result.toString()
+                    LOG.info("Downloaded {}", result)
+                } else {
+                    results[target] = "failed: ${ex.message}"
+                    LOG.error("Download of {} failed: {}", url, ex.message)
+                }
+            }
+    }
+
+    /**
+     * Downloads the build at url into target, or completes a previous partial download of the same build
+     * @param base Local build of baseVersion, its chunks listed in the delta are copied instead of downloaded
+     */
+    fun download(url: String, target: Path, baseVersion: String? = null, base: Path? = null): DownloadResult {
+        val start = System.nanoTime()
+        val manifest = fetchManifest(if (base != null) "$url/manifest?base=${URLEncoder.encode(baseVersion, Charsets.UTF_8)}" else "$url/manifest")
+        Files.createDirectories(target.toAbsolutePath().parent)
+
+        val partsFile = target.resolveSibling(target.fileName.toString() + PARTS_EXTENSION)
+        val verified = loadParts(partsFile, manifest)
+        val resumed = verified.cardinality()
+        var copied = 0
+
+        FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE).use { channel ->
+            if (channel.size() > manifest.size) channel.truncate(manifest.size)
+            // Sized up front: transferFrom does not write past the end of the file
+            if (manifest.size > 0 && channel.size() < manifest.size) channel.write(ByteBuffer.allocate(1), manifest.size - 1)
+
+            if (base != null) {
+                FileChannel.open(base, StandardOpenOption.READ).use { baseChannel ->
+                    for (chunk in manifest.chunks) {
+                        if (chunk.baseOffset == null || verified.get(chunk.index)) continue
+                        if (copyChunk(baseChannel, chunk, channel)) {
+                            verified.set(chunk.index)
+                            copied++
+                        }
+                    }
+                }
+                saveParts(partsFile, manifest, verified)
+            }
+
+            val missing = (0 until manifest.chunks.size).filter { !verified.get(it) }
+            val futures = missing.map { index ->
+                CompletableFuture.runAsync({
+                    fetchChunk(url, manifest.chunks[index], channel)
+                    synchronized(verified) {
+                        verified.set(index)
+                        saveParts(partsFile, manifest, verified)
+                    }
+                }, chunkPool)
+            }
+            CompletableFuture.allOf(*futures.toTypedArray()).join()
+            channel.force(true)
+        }
+
+        Files.deleteIfExists(partsFile)
+        val fetched = manifest.chunks.size - resumed - copied
+        return DownloadResult(target, manifest.size, manifest.chunks.size, resumed, copied, fetched, (System.nanoTime() - start) / 1_000_000)
+    }
+
+    /**
+     * @throws IllegalArgumentException if the version or the platform, read from events, is not a plain path segment (e.g. `../..`)
+     */
+    fun targetOf(gameId: Long, version: String, platform: String): Path {
+        require(PATH_SEGMENT.matches(version)) { "Invalid version '$version'" }
+        require(PATH_SEGMENT.matches(platform)) { "Invalid platform '$platform'" }
+        val base = Path.of(root).normalize()
+        val target = base.resolve(gameId.toString()).resolve(version).resolve("$platform.build").normalize()
+        require(target.startsWith(base)) { "Download target $target is outside of $base" }
+        return target
+    }
+
+    /**
+     * @return Last state of each download, by file
+     */
+    fun getResults(): SortedMap<Path, String> {
+        return TreeMap(results)
+    }
+
+    override fun toString(): String {
+        return "bytes=${bytesReceived.sum()}, chunks=${chunksVerified.sum()}, retried=${chunksRetried.sum()}, " +
+            "copied=${chunksCopied.sum()} (${bytesCopied.sum()} bytes), parallelism=$parallelism"
+    }
+
+    @PreDestroy
+    fun shutdown() {
+        downloadPool.shutdownNow()
+        chunkPool.shutdownNow()
+    }
+
+    private fun fetchManifest(url: String): Manifest {
+        val request = HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofMillis(timeoutMs)).GET().build()
+        val response = client.send(request, HttpResponse.BodyHandlers.ofLines())
+        if (response.statusCode() != 200) throw IOException("Manifest of $url: HTTP ${response.statusCode()}")
+        return Manifest.parse(response.body().toList())
+    }
+
+    /**
+     * Fetches one chunk, a failed attempt is resumed from its last received byte, a wrong checksum restarts the chunk
+     */
+    private fun fetchChunk(url: String, chunk: Chunk, channel: FileChannel) {
+        val writer = ChunkWriter(channel, chunk.offset)
+
+        for (attempt in 1..maxAttempts) {
+            if (attempt > 1) chunksRetried.increment()
+            writer.clearFailure()
+            val builder = HttpRequest.newBuilder(URI.create("$url/chunks/${chunk.index}")).timeout(Duration.ofMillis(timeoutMs)).GET()
+            if (writer.written > 0) builder.header("Range", "bytes=${writer.written}-")
+
+            try {
+                val resumed = writer.written
+                val response = client.send(builder.build()) { info ->
+                    // A full answer to a range request restarts the chunk
+                    if (info.statusCode() == 200 && resumed > 0) writer.reset()
+                    if (info.statusCode() == 200 || info.statusCode() == 206) HttpResponse.BodySubscribers.fromSubscriber(writer) { it.written }
+                    else HttpResponse.BodySubscribers.replacing(-1L)
+                }
+                if (response.body() < 0) throw IOException("HTTP ${response.statusCode()}")
+                writer.failure?.let { throw it }
+            } catch (e: IOException) {
+                LOG.warn("Chunk {} of {}: attempt {} failed after {} bytes: {}", chunk.index, url, attempt, writer.written, e.message)
+                continue
+            }
+
+            if (writer.written == chunk.length && writer.checksum() == chunk.checksum) {
+                chunksVerified.increment()
+                return
+            }
+            LOG.warn("Chunk {} of {}: {} bytes, checksum {} instead of {}", chunk.index, url, writer.written, java.lang.Long.toHexString(writer.checksum()), java.lang.Long.toHexString(chunk.checksum))
+            writer.reset()
+        }
+        throw IOException("Chunk ${chunk.index} of $url failed after $maxAttempts attempts")
+    }
+
+    /**
+     * Copies one chunk from the installed build, then checks it against the manifest: a local file modified since its
+     * download makes the chunk fall back to the network
+     */
+    private fun copyChunk(baseChannel: FileChannel, chunk: Chunk, channel: FileChannel): Boolean {
+        var copied = 0L
+        while (copied < chunk.length) {
+            val n = channel.transferFrom(baseChannel.position(chunk.baseOffset!! + copied), chunk.offset + copied, chunk.length - copied)
+            if (n <= 0) return false
+            copied += n
+        }
+
+        val crc = CRC32C()
+        crc.update(channel.map(FileChannel.MapMode.READ_ONLY, chunk.offset, chunk.length))
+        if (crc.value != chunk.checksum) return false
+
+        chunksCopied.increment()
+        bytesCopied.add(chunk.length)
+        return true
+    }
+
+    /**
+     * The parts file holds the checksum of the manifest, so the chunks of another build are never reused
+     */
+    private fun loadParts(partsFile: Path, manifest: Manifest): BitSet {
+        if (!Files.exists(partsFile)) return BitSet(manifest.chunks.size)
+        try {
+            DataInputStream(BufferedInputStream(Files.newInputStream(partsFile))).use { input ->
+                if (input.readLong() != manifest.fingerprint) return BitSet(manifest.chunks.size)
+                return BitSet.valueOf(input.readNBytes(input.readInt()))
+            }
+        } catch (e: IOException) {
+            return BitSet(manifest.chunks.size)
+        }
+    }
+
+    private fun saveParts(partsFile: Path, manifest: Manifest, verified: BitSet) {
+        DataOutputStream(BufferedOutputStream(Files.newOutputStream(partsFile))).use { output ->
+            val bits = verified.toByteArray()
+            output.writeLong(manifest.fingerprint)
+            output.writeInt(bits.size)
+            output.write(bits)
+        }
+    }
+
+    /**
+     * Writes the received buffers at their position in the file and checksums them on the way
+     */
+    private inner class ChunkWriter(private val channel: FileChannel, private val offset: Long) : Flow.Subscriber<List<ByteBuffer>> {
+        private val crc = CRC32C()
+        private lateinit var subscription: Flow.Subscription
+
+        @Volatile
+        var written = 0L
+            private set
+
+        // A failed write discards the rest of the body, the chunk is resumed from the last written byte
+        @Volatile
+        var failure: IOException? = null
+            private set
+
+        fun checksum(): Long = crc.value
+
+        fun reset() {
+            crc.reset()
+            written = 0
+            failure = null
+        }
+
+        fun clearFailure() {
+            failure = null
+        }
+
+        override fun onSubscribe(subscription: Flow.Subscription) {
+            this.subscription = subscription
+            subscription.request(1)
+        }
+
+        override fun onNext(item: List<ByteBuffer>) {
+            try {
+                for (buffer in item) {
+                    while (failure == null && buffer.hasRemaining()) {
+                        val slice = buffer.duplicate()
+                        val n = channel.write(buffer, offset + written)
+                        crc.update(slice.limit(slice.position() + n))
+                        written += n
+                        bytesReceived.add(n.toLong())
+                    }
+                }
+            } catch (e: IOException) {
+                failure = e
+            }
+            subscription.request(1)
+        }
+
+        override fun onError(throwable: Throwable) {}
+
+        override fun onComplete() {}
+    }
+
+    /**
+     * @param baseOffset Offset of the same chunk in the installed build, null if it has to be downloaded
+     */
+    data class Chunk(val index: Int, val offset: Long, val length: Long, val checksum: Long, val baseOffset: Long? = null)
+
+    data class Manifest(val size: Long, val chunks: List<Chunk>, val fingerprint: Long) {
+        companion object {
+            /**
+             * Parses the text manifest of the distributor: "key value" lines, then "index offset length crc32c sha256" lines,
+             * followed by the offset in the base build ("-" if missing) for a delta
+             */
+            fun parse(lines: List<String>): Manifest {
+                var size = 0L
+                val chunks = ArrayList<Chunk>()
+                val fingerprint = CRC32C()
+
+                for (line in lines) {
+                    fingerprint.update(line.toByteArray())
+                    val parts = line.trim().split(' ')
+                    when {
+                        parts.size == 2 && parts[0] == "size" -> size = parts[1].toLong()
+                        parts.size >= 5 -> chunks.add(
+                            Chunk(
+                                parts[0].toInt(), parts[1].toLong(), parts[2].toLong(), java.lang.Long.parseUnsignedLong(parts[3], 16),
+                                parts.getOrNull(5)?.takeIf { it != "-" }?.toLong()
+                            )
+                        )
+                    }
+                }
+                return Manifest(size, chunks, fingerprint.value)
+            }
+        }
+    }
+
+    data class DownloadResult(
+        val path: Path,
+        val size: Long,
+        val chunks: Int,
+        val resumedChunks: Int,
+        val copiedChunks: Int,
+        val fetchedChunks: Int,
+        val elapsedMs: Long
+    ) {
+        override fun toString(): String {
+            val mbPerSecond = if (elapsedMs > 0) size / 1024.0 / 1024.0 / (elapsedMs / 1000.0) else 0.0
+            return "$path: $size bytes, $chunks chunk(s), $resumedChunks resumed, $copiedChunks copied from the installed build, " +
+                "$fetchedChunks fetched, $elapsedMs ms (${String.format("%.1f", mbPerSecond)} MiB/s)"
+        }
+    }
+}
@@ -1,25 +1,45 @@
 package org.pops.et4.jvm.project.player.kafka
 
+import io.confluent.kafka.schemaregistry.client.CachedSchemaRegistryClient
+import io.confluent.kafka.schemaregistry.client.SchemaRegistryClient
 import io.confluent.kafka.serializers.KafkaAvroDeserializer
 import io.confluent.kafka.serializers.KafkaAvroDeserializerConfig
 import io.confluent.kafka.serializers.KafkaAvroSerializer
 import org.apache.kafka.clients.consumer.ConsumerConfig
 import org.apache.kafka.clients.consumer.ConsumerRecord
 import org.apache.kafka.clients.producer.ProducerConfig
+import org.apache.kafka.common.serialization.Deserializer
+import org.apache.kafka.common.serialization.Serializer
 import org.apache.kafka.common.serialization.StringDeserializer
 import org.apache.kafka.common.serialization.StringSerializer
+import org.pops.et4.jvm.project.schemas.kafka.DeadLetterTool
+import org.pops.et4.jvm.project.schemas.kafka.InMemoryEventBus
+import org.pops.et4.jvm.project.schemas.kafka.ProducerPipeline
+import org.pops.et4.jvm.project.schemas.kafka.ProducerProfile
+import org.pops.et4.jvm.project.schemas.kafka.RetryTopics
+import org.pops.et4.jvm.project.schemas.logging.EventLog
+import org.pops.et4.jvm.project.schemas.sql.SqlBudgetInterceptor
+import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.beans.factory.annotation.Value
 import org.springframework.context.annotation.Bean
 import org.springframework.context.annotation.Configuration
+import org.springframework.core.env.Environment
+import org.springframework.core.task.VirtualThreadTaskExecutor
 import org.springframework.kafka.annotation.EnableKafka
+import org.springframework.kafka.annotation.EnableKafkaRetryTopic
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory
 import org.springframework.kafka.core.*
 import org.springframework.kafka.listener.ConsumerRecordRecoverer
 import org.springframework.kafka.listener.DefaultErrorHandler
+import org.springframework.kafka.retrytopic.RetryTopicConfiguration
 import org.springframework.util.backoff.FixedBackOff
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.function.Supplier
 
 @Configuration(KafkaConfig.BEAN_NAME)
 @EnableKafka
+@EnableKafkaRetryTopic
 class KafkaConfig {
 
     companion object {
@@ -27,9 +47,18 @@ class KafkaConfig {
 
         const val KAFKA_TEMPLATE_BEAN_NAME = "playerServiceKafkaTemplate"
         const val PRODUCER_FACTORY_BEAN_NAME = "playerServiceProducerFactory"
+        const val PRODUCER_PIPELINE_BEAN_NAME = "playerServiceProducerPipeline"
+        const val CALLBACK_EXECUTOR_BEAN_NAME = "playerServiceProducerCallbackExecutor"
         const val CONSUMER_FACTORY_BEAN_NAME = "playerServiceConsumerFactory"
         const val ERROR_HANDLER_BEAN_NAME = "playerServiceErrorHandler"
         const val KAFKA_LISTENER_CONTAINER_BEAN_NAME = "playerServiceKafkaListenerContainerFactory"
+        const val RETRY_TOPIC_CONFIGURATION_BEAN_NAME = "playerServiceRetryTopicConfiguration"
+        const val DEAD_LETTER_TOOL_BEAN_NAME = "playerServiceDeadLetterTool"
+        const val SCHEMA_REGISTRY_CLIENT_BEAN_NAME = "playerServiceSchemaRegistryClient"
+
+        private const val SCHEMA_CACHE_CAPACITY = 1000
+
+        private val LOG = EventLog.logger("Kafka")
     }
 
     @Value("\${spring.kafka.bootstrap-servers}")
@@ -41,25 +70,118 @@ class KafkaConfig {
     @Value("\${spring.kafka.consumer.group-id}")
     private lateinit var groupId: String
 
+    @Value("\${producer.pipeline.max-in-flight:10000}")
+    private var maxInFlight: Int = 10000
+
+    @Value("\${producer.pipeline.acquire-timeout-ms:30000}")
+    private var acquireTimeoutMs: Long = 30000
+
+    /**
+     * true when the records go through the [InMemoryEventBus] instead of Kafka
+     */
+    @Value("\${kafka.in-memory:false}")
+    var inMemory: Boolean = false
+        private set
+
+    @Value("\${consumer.concurrency:1}")
+    private var concurrency: Int = 1
+
+    @Value("\${spring.threads.virtual.enabled:false}")
+    private var virtualThreads: Boolean = false
+
+    @Value("\${sql.budget.enabled:false}")
+    private var sqlBudget: Boolean = false
+
+    @Autowired
+    private lateinit var environment: Environment
+
+    @Value("\${consumer.retry.max-attempts:4}")
+    private var retryMaxAttempts: Int = 4
+
+    @Value("\${consumer.retry.initial-interval-ms:1000}")
+    private var retryInitialIntervalMs: Long = 1000
+
+    @Value("\${consumer.retry.multiplier:4.0}")
+    private var retryMultiplier: Double = 4.0
+
+    @Value("\${consumer.retry.max-interval-ms:60000}")
+    private var retryMaxIntervalMs: Long = 60000
+
+    /**
+     * Schema Registry client shared by every producer and consumer of the service,
+     * so the schema ids fetched during the warm-up are not fetched again by the first records
+     */
+    @Bean(name = [SCHEMA_REGISTRY_CLIENT_BEAN_NAME])
+    fun schemaRegistryClient(): SchemaRegistryClient {
+        return CachedSchemaRegistryClient(schemaRegistryUrl, SCHEMA_CACHE_CAPACITY)
+    }
+
+    /**
+     * @return A new Avro serializer backed by the shared Schema Registry client
+     */
+    fun valueSerializer(): Serializer<Any> {
+        return KafkaAvroSerializer(schemaRegistryClient(), producerConfig())
+    }
+
+    /**
+     * @return A new Avro deserializer backed by the shared Schema Registry client
+     */
+    fun valueDeserializer(): Deserializer<Any> {
+        return KafkaAvroDeserializer(schemaRegistryClient(), consumerConfig())
+    }
+
     @Bean(name = [KAFKA_TEMPLATE_BEAN_NAME])
     fun kafkaTemplate(): KafkaTemplate<String, Any> {
+        if (inMemory) return InMemoryEventBus.shared().template()
         return KafkaTemplate(producerFactory())
     }
 
     @Bean(name = [PRODUCER_FACTORY_BEAN_NAME])
     fun producerFactory(): ProducerFactory<String, Any> {
-        val configProps = mapOf(
+        return DefaultKafkaProducerFactory(producerConfig(), Supplier { StringSerializer() }, Supplier { valueSerializer() })
+    }
+
+    /**
+     * Pipeline used by the producer service, player commands are latency sensitive
+     */
+    @Bean(name = [PRODUCER_PIPELINE_BEAN_NAME])
+    fun producerPipeline(): ProducerPipeline {
+        val builder = if (inMemory) ProducerPipeline.builder(InMemoryEventBus.shared())
+                      else ProducerPipeline.builder(producerConfig()) { valueSerializer() }
+
+        return builder
+            .defaultProfile(ProducerProfile.LOW_LATENCY)
+            .maxInFlight(maxInFlight)
+            .acquireTimeoutMs(acquireTimeoutMs)
+            .callbackExecutor(if (virtualThreads) callbackExecutor() else null)
+            .build()
+    }
+
+    /**
+     * Virtual threads running the stages chained on the producer futures, used by the pipeline in virtual-thread mode.
+     * Closed with the context, after the pipeline
+     */
+    @Bean(name = [CALLBACK_EXECUTOR_BEAN_NAME], destroyMethod = "close")
+    fun callbackExecutor(): ExecutorService {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("producer-callback-", 0).factory())
+    }
+
+    private fun producerConfig(): Map<String, Any> {
+        return mapOf(
             ProducerConfig.BOOTSTRAP_SERVERS_CONFIG to bootstrapServers,
             ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG to StringSerializer::class.java,
             ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG to KafkaAvroSerializer::class.java,
             "schema.registry.url" to schemaRegistryUrl
         )
-        return DefaultKafkaProducerFactory(configProps)
     }
 
     @Bean(name = [CONSUMER_FACTORY_BEAN_NAME])
     fun consumerFactory(): ConsumerFactory<String, Any> {
-        val props = mapOf(
+        return DefaultKafkaConsumerFactory(consumerConfig(), Supplier { StringDeserializer() }, Supplier { valueDeserializer() })
+    }
+
+    private fun consumerConfig(): Map<String, Any> {
+        return mapOf(
             ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG to bootstrapServers,
             ConsumerConfig.GROUP_ID_CONFIG to groupId,
             ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG to StringDeserializer::class.java,
@@ -68,28 +190,61 @@ class KafkaConfig {
             KafkaAvroDeserializerConfig.SPECIFIC_AVRO_READER_CONFIG to true,
             ConsumerConfig.AUTO_OFFSET_RESET_CONFIG to "earliest"
         )
-        return DefaultKafkaConsumerFactory(props)
     }
 
+    /**
+     * Logs and skips a failed record, only for the [org.pops.et4.jvm.project.player.catalog.CatalogConsumer]:
+     * its container is built by hand and has no retry topic
+     */
     @Bean(name = [ERROR_HANDLER_BEAN_NAME])
     fun errorHandler(): DefaultErrorHandler {
         val recoverer = ConsumerRecordRecoverer { record: ConsumerRecord<*, *>, exception: Exception ->
-            System.err.println("------------------------------------------------")
-            System.err.println(" [ERROR] Failed to consume message!")
-            System.err.println(" Key: ${record.key()}")
-            System.err.println(" Error: ${exception.message}")
-            System.err.println(" -> Skipping message and committing offset.")
-            System.err.println("------------------------------------------------")
+            LOG.error("Failed to consume {}({}) at offset {}: {} -> skipping message and committing offset", record.topic(), record.key(), record.offset(), exception.message)
         }
 
         return DefaultErrorHandler(recoverer, FixedBackOff(0L, 0L))
     }
 
+    /**
+     * Container factory of the @KafkaListener listeners, main and retry topics alike.
+     * It has no error handler of its own: a failed record goes through the retry topics, then to the dead-letter topic,
+     * see [retryTopicConfiguration]
+     */
     @Bean(name = [KAFKA_LISTENER_CONTAINER_BEAN_NAME])
     fun kafkaListenerContainerFactory(): ConcurrentKafkaListenerContainerFactory<String, Any> {
         val factory = ConcurrentKafkaListenerContainerFactory<String, Any>()
         factory.setConsumerFactory(consumerFactory())
-        factory.setCommonErrorHandler(errorHandler())
+        factory.setAutoStartup(!inMemory)
+        factory.setConcurrency(concurrency)
+        // Each consumer then blocks a virtual thread on the database instead of a platform thread
+        if (virtualThreads)
+            factory.containerProperties.listenerTaskExecutor = VirtualThreadTaskExecutor("$groupId-listener-")
+        // SQL statements counted per record, to catch the N+1 selects
+        if (sqlBudget)
+            factory.setRecordInterceptor(SqlBudgetInterceptor(environment))
         return factory
     }
+
+    /**
+     * Non-blocking retries: topic-retry-N with exponential delays, then topic-dlt
+     */
+    @Bean(name = [RETRY_TOPIC_CONFIGURATION_BEAN_NAME])
+    fun retryTopicConfiguration(): RetryTopicConfiguration {
+        return RetryTopics.configuration(
+            kafkaTemplate(),
+            KAFKA_LISTENER_CONTAINER_BEAN_NAME,
+            retryMaxAttempts,
+            retryInitialIntervalMs,
+            retryMultiplier,
+            retryMaxIntervalMs
+        )
+    }
+
+    /**
+     * Inspects and re-drives the -dlt topics
+     */
+    @Bean(name = [DEAD_LETTER_TOOL_BEAN_NAME])
+    fun deadLetterTool(): DeadLetterTool {
+        return DeadLetterTool(consumerConfig(), producerPipeline(), "$groupId-dlt-redrive")
+    }
 }
\ No newline at end of file
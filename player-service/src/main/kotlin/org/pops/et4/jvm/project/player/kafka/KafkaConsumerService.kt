@@ -2,12 +2,16 @@ package org.pops.et4.jvm.project.player.kafka
 
 import org.apache.kafka.clients.consumer.ConsumerRecord
 import org.pops.et4.jvm.project.player.db.PlayerDbConfig
+import org.pops.et4.jvm.project.player.download.DownloadService
 import org.pops.et4.jvm.project.schemas.events.*
+import org.pops.et4.jvm.project.schemas.logging.EventLog
 import org.pops.et4.jvm.project.schemas.repositories.player.InstalledGameRepository
 import org.springframework.beans.factory.annotation.Qualifier
 import org.springframework.kafka.annotation.KafkaListener
 import org.springframework.stereotype.Service
 import org.springframework.transaction.annotation.Transactional
+import org.springframework.transaction.support.TransactionSynchronization
+import org.springframework.transaction.support.TransactionSynchronizationManager
 import java.time.Instant
 import java.util.*
 
@@ -16,7 +20,9 @@ class KafkaConsumerService(
 	@Qualifier(KafkaProducerService.BEAN_NAME)
     private val producerService: KafkaProducerService,
     @Qualifier(InstalledGameRepository.BEAN_NAME) 
-    private val installedGameRepository: InstalledGameRepository
+    private val installedGameRepository: InstalledGameRepository,
+    @Qualifier(DownloadService.BEAN_NAME)
+    private val downloadService: DownloadService
 ) {
 
     companion object {
@@ -30,13 +36,53 @@ class KafkaConsumerService(
         const val SEND_PLAYER_PAGE_CONSUMER_BEAN_NAME = "playerServiceSendPlayerPageConsumer"
         const val SEND_GAMES_PAGE_CONSUMER_BEAN_NAME = "playerServiceSendGamesPageConsumer"
         const val SEND_GAME_REVIEWS_CONSUMER_BEAN_NAME = "playerServiceSendGameReviewsConsumer"
+        const val UPDATES_AVAILABLE_CONSUMER_BEAN_NAME = "playerServiceUpdatesAvailableConsumer"
+        const val SEND_LEADERBOARD_CONSUMER_BEAN_NAME = "playerServiceSendLeaderboardConsumer"
+        const val SEND_RECOMMENDATIONS_CONSUMER_BEAN_NAME = "playerServiceSendRecommendationsConsumer"
+
+        private val LOG = EventLog.logger("Consumer")
+        private val PAGE_SEPARATOR = "=".repeat(80)
     }
 
-    private val _logs = ArrayList<ConsumeLog<out KafkaEvent>>()
+    // Appended by the listeners, drained by the archive service
+    private val _logs: MutableList<ConsumeLog<out KafkaEvent>> = Collections.synchronizedList(ArrayList())
 
     val logs: List<ConsumeLog<out KafkaEvent>>
         get() = Collections.unmodifiableList(_logs)
 
+    /**
+     * Copy of the logs consumed before the given date
+     */
+    fun logsBefore(before: Instant): List<ConsumeLog<out KafkaEvent>> = synchronized(_logs) {
+        _logs.filter { it.consumeDate.isBefore(before) }
+    }
+
+    /**
+     * Forgets the given logs, once archived
+     * Matched by identity: the logs appended meanwhile, even out of date order, are kept
+     */
+    fun removeLogs(archived: Collection<ConsumeLog<out KafkaEvent>>) {
+        val removed: MutableSet<ConsumeLog<out KafkaEvent>> = Collections.newSetFromMap(IdentityHashMap())
+        removed.addAll(archived)
+        _logs.removeIf { it in removed }
+    }
+
+    /**
+     * Appends the log of a record once its transaction commits, right away outside of one
+     * A record rolled back is redelivered: it is logged by the delivery that commits only
+     */
+    private fun addLog(log: ConsumeLog<out KafkaEvent>) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            _logs.add(log)
+            return
+        }
+        TransactionSynchronizationManager.registerSynchronization(object : TransactionSynchronization {
+            override fun afterCommit() {
+                _logs.add(log)
+            }
+        })
+    }
+
     // ============================================
     // DISTRIBUTOR EVENT CONSUMERS
     // ============================================
@@ -54,7 +100,7 @@ class KafkaConsumerService(
     )
     @Transactional(transactionManager = PlayerDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
     fun consumeGameDistributed(record: ConsumerRecord<String, GameDistributed>) {
-        _logs.add(
+        addLog(
             ConsumeLog(
                 GAME_DISTRIBUTED_CONSUMER_BEAN_NAME,
                 Instant.now(),
@@ -65,8 +111,8 @@ class KafkaConsumerService(
 
         val event = record.value()
         
-        println("[Consumer] ${GameDistributed.TOPIC}(${record.key()}): New game '${event.getGameName()}' (ID: ${event.getGameId()}) available from distributor ${event.getDistributorId()}")
-        println("[Consumer] ${GameDistributed.TOPIC}(${record.key()}): FINISHED")
+        LOG.event("{}({}): New game '{}' (ID: {}) available from distributor {}", GameDistributed.TOPIC, record.key(), event.getGameName(), event.getGameId(), event.getDistributorId())
+        LOG.event("{}({}): FINISHED", GameDistributed.TOPIC, record.key())
     }
 
     /**
@@ -83,7 +129,7 @@ class KafkaConsumerService(
     )
     @Transactional(transactionManager = PlayerDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
     fun consumePatchDistributed(record: ConsumerRecord<String, PatchDistributed>) {
-        _logs.add(
+        addLog(
             ConsumeLog(
                 PATCH_DISTRIBUTED_CONSUMER_BEAN_NAME,
                 Instant.now(),
@@ -93,7 +139,7 @@ class KafkaConsumerService(
         )
 
         val event = record.value()
-        println("[Consumer] ${PatchDistributed.TOPIC}(${record.key()}): Patch ${event.getNewVersion()} available for '${event.getGameName()}' (ID: ${event.getGameId()})")
+        LOG.event("{}({}): Patch {} available for '{}' (ID: {})", PatchDistributed.TOPIC, record.key(), event.getNewVersion(), event.getGameName(), event.getGameId())
         
     }
 
@@ -110,7 +156,7 @@ class KafkaConsumerService(
     )
     @Transactional(transactionManager = PlayerDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
     fun consumeSaleStarted(record: ConsumerRecord<String, SaleStarted>) {
-        _logs.add(
+        addLog(
             ConsumeLog(
                 SALE_STARTED_CONSUMER_BEAN_NAME,
                 Instant.now(),
@@ -122,8 +168,8 @@ class KafkaConsumerService(
         val event = record.value()
         val discountPercent = (event.getSalePercentage() * 100).toInt()
         
-        println("[Consumer] ${SaleStarted.TOPIC}(${record.key()}): Sale ${discountPercent}% off on '${event.getGameName()}' (ID: ${event.getGameId()})")
-        println("[Consumer] ${SaleStarted.TOPIC}(${record.key()}): FINISHED")
+        LOG.event("{}({}): Sale {}% off on '{}' (ID: {})", SaleStarted.TOPIC, record.key(), discountPercent, event.getGameName(), event.getGameId())
+        LOG.event("{}({}): FINISHED", SaleStarted.TOPIC, record.key())
     }
 
     /**
@@ -141,7 +187,7 @@ class KafkaConsumerService(
     )
     @Transactional(transactionManager = PlayerDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
     fun consumeSendGameFile(record: ConsumerRecord<String, SendGameFile>) {
-        _logs.add(
+        addLog(
             ConsumeLog(
                 SEND_GAME_FILE_CONSUMER_BEAN_NAME,
                 Instant.now(),
@@ -151,54 +197,28 @@ class KafkaConsumerService(
         )
 
         val event = record.value()
-        println("[Consumer] ${SendGameFile.TOPIC}(${record.key()}): Game files for '${event.getGameName()}' v${event.getVersion()} sent to player '${event.getPlayerName()}' (ID: ${event.getTargetId()}) on ${event.getPlatform()}")
+        LOG.event("{}({}): Game files for '{}' v{} sent to player '{}' (ID: {}) on {}", SendGameFile.TOPIC, record.key(), event.getGameName(), event.getVersion(), event.getPlayerName(), event.getTargetId(), event.getPlatform())
         
         try {
             // Try to parse the platform enum
             val platformEnum = org.pops.et4.jvm.project.schemas.models.player.Platform.valueOf(event.getPlatform())
             
-            // Find existing installation
-            val existingGames = installedGameRepository.findAll()
-                .filter { 
-                    it.getPlayerId() == event.getTargetId() && 
-                    it.getGameId() == event.getGameId() && 
-                    it.getPlatform().toString() == event.getPlatform() 
-                }
-            
-            if (existingGames.isNotEmpty()) {
-                // UPDATE existing installation
-                val existingGame = existingGames.first()
-                val updatedGame = org.pops.et4.jvm.project.schemas.models.player.InstalledGame.newBuilder()
-                    .setId(existingGame.getId())
-                    .setPlayerId(existingGame.getPlayerId())
-                    .setGameId(existingGame.getGameId())
-                    .setPlatform(existingGame.getPlatform())
-                    .setInstalledVersion(event.getVersion())
-                    .build()
-                
-                val saved = installedGameRepository.save(updatedGame)
-                println("[Consumer] ${SendGameFile.TOPIC}(${record.key()}): UPDATED installation ID=${saved.getId()}, Player=${event.getTargetId()}, Game=${event.getGameId()}, Platform=${event.getPlatform()}, Version=${event.getVersion()}")
-            } else {
-                // INSERT new installation
-                val newGame = org.pops.et4.jvm.project.schemas.models.player.InstalledGame.newBuilder()
-                    .setId(null)
-                    .setPlayerId(event.getTargetId())
-                    .setGameId(event.getGameId())
-                    .setPlatform(platformEnum)
-                    .setInstalledVersion(event.getVersion())
-                    .build()
-                
-                val saved = installedGameRepository.save(newGame)
-                println("[Consumer] ${SendGameFile.TOPIC}(${record.key()}): INSERTED new installation ID=${saved.getId()}, Player=${event.getTargetId()}, Game=${event.getGameId()}, Platform=${event.getPlatform()}, Version=${event.getVersion()}")
+            // Insert or update the installation in one statement, on the unique (player, game, platform) index
+            installedGameRepository.upsert(event.getTargetId(), event.getGameId(), platformEnum.name, event.getVersion())
+            LOG.event("{}({}): INSTALLED Player={}, Game={}, Platform={}, Version={}", SendGameFile.TOPIC, record.key(), event.getTargetId(), event.getGameId(), event.getPlatform(), event.getVersion())
+
+            // The build bytes are fetched in the background, outside of the listener thread, an update only fetches the changed chunks
+            event.getDownloadUrl()?.let {
+                downloadService.downloadAsync(it, event.getGameId(), event.getVersion(), event.getPlatform(), event.getBaseVersion())
+                LOG.event("{}({}): DOWNLOADING {} (base={}, patch={} bytes)", SendGameFile.TOPIC, record.key(), it, event.getBaseVersion(), event.getPatchSize())
             }
         } catch (e: IllegalArgumentException) {
-            System.err.println("[Consumer] ${SendGameFile.TOPIC}(${record.key()}): ERROR - Invalid platform '${event.getPlatform()}': ${e.message}")
+            LOG.error("{}({}): ERROR - Invalid platform or version '{}' v{}: {}", SendGameFile.TOPIC, record.key(), event.getPlatform(), event.getVersion(), e.message)
         } catch (e: Exception) {
-            System.err.println("[Consumer] ${SendGameFile.TOPIC}(${record.key()}): ERROR - ${e.message}")
-            e.printStackTrace()
+            LOG.error("{}({}): ERROR - {}", SendGameFile.TOPIC, record.key(), e.message, e)
         }
         
-        println("[Consumer] ${SendGameFile.TOPIC}(${record.key()}): FINISHED")
+        LOG.event("{}({}): FINISHED", SendGameFile.TOPIC, record.key())
     }
 
     /**
@@ -214,7 +234,7 @@ class KafkaConsumerService(
     )
     @Transactional(transactionManager = PlayerDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
     fun consumeReviewRefused(record: ConsumerRecord<String, ReviewRefused>) {
-        _logs.add(
+        addLog(
             ConsumeLog(
                 REVIEW_REFUSED_CONSUMER_BEAN_NAME,
                 Instant.now(),
@@ -225,14 +245,14 @@ class KafkaConsumerService(
 
         val event = record.value()
         
-        println("[Consumer] ${ReviewRefused.TOPIC}(${record.key()}): Review (ID: ${event.getReviewId()}) by '${event.getPlayerName()}' for '${event.getGameName()}' has been refused")
-        println("[Consumer] ${ReviewRefused.TOPIC}(${record.key()}): FINISHED")
+        LOG.event("{}({}): Review (ID: {}) by '{}' for '{}' has been refused", ReviewRefused.TOPIC, record.key(), event.getReviewId(), event.getPlayerName(), event.getGameName())
+        LOG.event("{}({}): FINISHED", ReviewRefused.TOPIC, record.key())
     }
 
     /**
      * Consumer for SendPlayerPage event
      * Triggered when the distributor sends the player's profile page
-     * Displays the formatted player page content
+     * Renders the player entries locally
      */
     @KafkaListener(
         id = SEND_PLAYER_PAGE_CONSUMER_BEAN_NAME,
@@ -243,7 +263,7 @@ class KafkaConsumerService(
     )
     @Transactional(transactionManager = PlayerDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
     fun consumeSendPlayerPage(record: ConsumerRecord<String, SendPlayerPage>) {
-        _logs.add(
+        addLog(
             ConsumeLog(
                 SEND_PLAYER_PAGE_CONSUMER_BEAN_NAME,
                 Instant.now(),
@@ -254,17 +274,14 @@ class KafkaConsumerService(
 
         val event = record.value()
         
-        println("[Consumer] ${SendPlayerPage.TOPIC}(${record.key()}): Received player page:")
-        println("=".repeat(80))
-        println(event.getPage())
-        println("=".repeat(80))
-        println("[Consumer] ${SendPlayerPage.TOPIC}(${record.key()}): FINISHED")
+        LOG.info("{}({}): Received player page:\n{}\n{}\n{}", SendPlayerPage.TOPIC, record.key(), PAGE_SEPARATOR, renderPlayerPage(event), PAGE_SEPARATOR)
+        LOG.event("{}({}): FINISHED", SendPlayerPage.TOPIC, record.key())
     }
 
     /**
      * Consumer for SendGamesPage event
      * Triggered when the distributor sends a page of available games
-     * Displays the formatted games page content
+     * Renders the game entries locally
      */
     @KafkaListener(
         id = SEND_GAMES_PAGE_CONSUMER_BEAN_NAME,
@@ -275,7 +292,7 @@ class KafkaConsumerService(
     )
     @Transactional(transactionManager = PlayerDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
     fun consumeSendGamesPage(record: ConsumerRecord<String, SendGamesPage>) {
-        _logs.add(
+        addLog(
             ConsumeLog(
                 SEND_GAMES_PAGE_CONSUMER_BEAN_NAME,
                 Instant.now(),
@@ -286,17 +303,14 @@ class KafkaConsumerService(
 
         val event = record.value()
         
-        println("[Consumer] ${SendGamesPage.TOPIC}(${record.key()}): Received games page:")
-        println("=".repeat(80))
-        println(event.getPage())
-        println("=".repeat(80))
-        println("[Consumer] ${SendGamesPage.TOPIC}(${record.key()}): FINISHED")
+        LOG.info("{}({}): Received games page:\n{}\n{}\n{}", SendGamesPage.TOPIC, record.key(), PAGE_SEPARATOR, renderGamesPage(event), PAGE_SEPARATOR)
+        LOG.event("{}({}): FINISHED", SendGamesPage.TOPIC, record.key())
     }
 
     /**
      * Consumer for SendGameReviews event
      * Triggered when the distributor sends reviews for a specific game
-     * Displays the formatted game reviews content
+     * Renders the review entries locally
      */
     @KafkaListener(
         id = SEND_GAME_REVIEWS_CONSUMER_BEAN_NAME,
@@ -307,7 +321,7 @@ class KafkaConsumerService(
     )
     @Transactional(transactionManager = PlayerDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
     fun consumeSendGameReviews(record: ConsumerRecord<String, SendGameReviews>) {
-        _logs.add(
+        addLog(
             ConsumeLog(
                 SEND_GAME_REVIEWS_CONSUMER_BEAN_NAME,
                 Instant.now(),
@@ -318,10 +332,270 @@ class KafkaConsumerService(
 
         val event = record.value()
         
-        println("[Consumer] ${SendGameReviews.TOPIC}(${record.key()}): Received game reviews:")
-        println("=".repeat(80))
-        println(event.getPage())
-        println("=".repeat(80))
-        println("[Consumer] ${SendGameReviews.TOPIC}(${record.key()}): FINISHED")
+        LOG.info("{}({}): Received game reviews:\n{}\n{}\n{}", SendGameReviews.TOPIC, record.key(), PAGE_SEPARATOR, renderGameReviews(event), PAGE_SEPARATOR)
+        LOG.event("{}({}): FINISHED", SendGameReviews.TOPIC, record.key())
+    }
+
+    /**
+     * Consumer for UpdatesAvailable event
+     * Triggered when the distributor answers an update check of the whole library
+     * The game files of the outdated games follow as SendGameFile events
+     */
+    @KafkaListener(
+        id = UPDATES_AVAILABLE_CONSUMER_BEAN_NAME,
+        containerFactory = KafkaConfig.KAFKA_LISTENER_CONTAINER_BEAN_NAME,
+        topics = [UpdatesAvailable.TOPIC],
+        groupId = "\${spring.kafka.consumer.group-id}",
+        autoStartup = "false"
+    )
+    @Transactional(transactionManager = PlayerDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
+    fun consumeUpdatesAvailable(record: ConsumerRecord<String, UpdatesAvailable>) {
+        addLog(
+            ConsumeLog(
+                UPDATES_AVAILABLE_CONSUMER_BEAN_NAME,
+                Instant.now(),
+                record.key(),
+                record.value()
+            )
+        )
+
+        val event = record.value()
+
+        LOG.info("{}({}): Received update check:\n{}\n{}\n{}", UpdatesAvailable.TOPIC, record.key(), PAGE_SEPARATOR, renderUpdatesAvailable(event), PAGE_SEPARATOR)
+        LOG.event("{}({}): FINISHED", UpdatesAvailable.TOPIC, record.key())
+    }
+
+    /**
+     * Consumer for SendLeaderboard event
+     * Triggered when the distributor sends one of its leaderboards
+     * Renders the ranked games locally
+     */
+    @KafkaListener(
+        id = SEND_LEADERBOARD_CONSUMER_BEAN_NAME,
+        containerFactory = KafkaConfig.KAFKA_LISTENER_CONTAINER_BEAN_NAME,
+        topics = [SendLeaderboard.TOPIC],
+        groupId = "\${spring.kafka.consumer.group-id}",
+        autoStartup = "false"
+    )
+    @Transactional(transactionManager = PlayerDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
+    fun consumeSendLeaderboard(record: ConsumerRecord<String, SendLeaderboard>) {
+        addLog(
+            ConsumeLog(
+                SEND_LEADERBOARD_CONSUMER_BEAN_NAME,
+                Instant.now(),
+                record.key(),
+                record.value()
+            )
+        )
+
+        val event = record.value()
+
+        LOG.info("{}({}): Received leaderboard:\n{}\n{}\n{}", SendLeaderboard.TOPIC, record.key(), PAGE_SEPARATOR, renderLeaderboard(event), PAGE_SEPARATOR)
+        LOG.event("{}({}): FINISHED", SendLeaderboard.TOPIC, record.key())
+    }
+
+    /**
+     * Consumer for SendRecommendations event
+     * Triggered when the distributor sends the games most often owned with a game
+     * Renders the recommended games locally
+     */
+    @KafkaListener(
+        id = SEND_RECOMMENDATIONS_CONSUMER_BEAN_NAME,
+        containerFactory = KafkaConfig.KAFKA_LISTENER_CONTAINER_BEAN_NAME,
+        topics = [SendRecommendations.TOPIC],
+        groupId = "\${spring.kafka.consumer.group-id}",
+        autoStartup = "false"
+    )
+    @Transactional(transactionManager = PlayerDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
+    fun consumeSendRecommendations(record: ConsumerRecord<String, SendRecommendations>) {
+        addLog(
+            ConsumeLog(
+                SEND_RECOMMENDATIONS_CONSUMER_BEAN_NAME,
+                Instant.now(),
+                record.key(),
+                record.value()
+            )
+        )
+
+        val event = record.value()
+
+        LOG.info("{}({}): Received recommendations:\n{}\n{}\n{}", SendRecommendations.TOPIC, record.key(), PAGE_SEPARATOR, renderRecommendations(event), PAGE_SEPARATOR)
+        LOG.event("{}({}): FINISHED", SendRecommendations.TOPIC, record.key())
+    }
+
+    // ============================================
+    // PAGE RENDERING
+    // ============================================
+
+    /**
+     * Renders the player directory sent by the distributor.
+     */
+    private fun renderPlayerPage(event: SendPlayerPage): String {
+        val page = StringBuilder()
+        page.append("=================================\n")
+        page.append("      PLAYERS DIRECTORY\n")
+        page.append("=================================\n\n")
+
+        if (event.getPlayers().isEmpty()) {
+            page.append("No players registered with this distributor.\n")
+            return page.toString()
+        }
+
+        for (player in event.getPlayers()) {
+            page.append("Player ID: ").append(player.getPlayerId()).append("\n")
+            page.append("Name: ").append(player.getFirstName()).append(" ").append(player.getLastName()).append("\n")
+            page.append("Pseudo: ").append(player.getPseudo()).append("\n")
+            page.append("Registration Date: ").append(player.getRegistrationDate()).append("\n")
+            page.append("Owned Games: ").append(player.getOwnedGames()).append("\n")
+            page.append("Total Playtime: ").append(player.getTotalPlayTime()).append(" minutes\n")
+            page.append("Wishlist: ").append(player.getWishlistSize()).append(" games\n")
+            page.append("---------------------------------\n")
+        }
+
+        return page.toString()
+    }
+
+    /**
+     * Renders the games page sent by the distributor, discounted prices are computed here.
+     */
+    private fun renderGamesPage(event: SendGamesPage): String {
+        val page = StringBuilder()
+        page.append("=================================\n")
+        page.append("   AVAILABLE GAMES - ").append(event.getPlatform()).append("\n")
+        page.append("   Distributor: ").append(event.getDistributorName()).append("\n")
+        page.append("=================================\n\n")
+
+        if (event.getGames().isEmpty()) {
+            page.append("No games available for this platform.\n")
+            return page.toString()
+        }
+
+        for (game in event.getGames()) {
+            page.append("Game ID: ").append(game.getGameId()).append("\n")
+            page.append("Name: ").append(game.getGameName()).append("\n")
+            page.append("Version: ").append(game.getVersion()).append("\n")
+            page.append("Price: $").append(game.getPrice()).append("\n")
+
+            val sale = game.getSale()
+            if (sale != null) {
+                val discountedPrice = game.getPrice() * (1 - sale)
+                page.append("SALE! ").append((sale * 100).toInt()).append("% OFF - ")
+                page.append("Now: $").append(String.format("%.2f", discountedPrice)).append("\n")
+            }
+
+            page.append("---------------------------------\n")
+        }
+
+        return page.toString()
+    }
+
+    /**
+     * Renders the reviews page sent by the distributor, the average rating is computed here.
+     */
+    private fun renderGameReviews(event: SendGameReviews): String {
+        val page = StringBuilder()
+        page.append("=================================\n")
+        page.append("   GAME REVIEWS\n")
+        page.append("   Game: ").append(event.getGameName()).append("\n")
+        page.append("   Distributor: ").append(event.getDistributorName()).append("\n")
+        event.getQuery()?.let { page.append("   Search: ").append(it).append(" (best matches first)\n") }
+        page.append("=================================\n\n")
+
+        val reviews = event.getReviews()
+        if (reviews.isEmpty()) {
+            page.append(if (event.getQuery() != null) "No review matches this search.\n" else "No reviews yet for this game.\n")
+            return page.toString()
+        }
+
+        page.append("Total Reviews: ").append(reviews.size).append("\n")
+        val avgRating = reviews.map { it.getRating() }.average()
+        page.append("Average Rating: ").append(String.format("%.1f", avgRating)).append("/10\n\n")
+
+        for (review in reviews) {
+            page.append("Review ID: ").append(review.getReviewId()).append("\n")
+            page.append("Rating: ").append(review.getRating()).append("/10\n")
+            page.append("Comment: ").append(review.getComment()).append("\n")
+            page.append("Date: ").append(review.getPublicationDate()).append("\n")
+            page.append("Reactions: 👍 ").append(review.getPositiveReactions())
+                .append(" | 👎 ").append(review.getNegativeReactions()).append("\n")
+            page.append("---------------------------------\n")
+        }
+
+        return page.toString()
+    }
+
+    /**
+     * Renders the answer of an update check.
+     */
+    private fun renderUpdatesAvailable(event: UpdatesAvailable): String {
+        val page = StringBuilder()
+        page.append("=================================\n")
+        page.append("   UPDATES - Player ").append(event.getPlayerId()).append("\n")
+        page.append("=================================\n\n")
+        page.append(event.getOutdatedGames().size).append(" outdated of ").append(event.getCheckedGames()).append(" installed game(s)\n\n")
+
+        for (game in event.getOutdatedGames()) {
+            page.append(game.getGameName()).append(" (ID: ").append(game.getGameId()).append(") on ").append(game.getPlatform())
+                .append(": ").append(game.getInstalledVersion()).append(" -> ").append(game.getLatestVersion()).append("\n")
+        }
+        if (event.getNotOwnedGameIds().isNotEmpty()) {
+            page.append("\nNot owned, not updated: ").append(event.getNotOwnedGameIds().joinToString(", ")).append("\n")
+        }
+
+        return page.toString()
+    }
+
+    /**
+     * Renders a leaderboard, the score unit depends on the board.
+     */
+    private fun renderLeaderboard(event: SendLeaderboard): String {
+        val page = StringBuilder()
+        page.append("=================================\n")
+        page.append("   LEADERBOARD - ").append(event.getBoard()).append("\n")
+        page.append("   Distributor: ").append(event.getDistributorName()).append("\n")
+        page.append("=================================\n\n")
+
+        if (event.getEntries().isEmpty()) {
+            page.append("No games ranked yet.\n")
+            return page.toString()
+        }
+
+        for (entry in event.getEntries()) {
+            val score = when (event.getBoard()) {
+                "most-owned" -> "${entry.getScore().toLong()} owner(s)"
+                "most-played" -> "${entry.getScore().toLong()} min played"
+                "top-rated" -> String.format("%.2f/5", entry.getScore())
+                else -> String.format("%.2f", entry.getScore())
+            }
+            page.append("#").append(entry.getRank()).append(" ").append(entry.getGameName())
+                .append(" (ID: ").append(entry.getGameId()).append(") - ").append(score).append("\n")
+        }
+
+        return page.toString()
+    }
+
+    /**
+     * Renders the games most often owned with a game.
+     */
+    private fun renderRecommendations(event: SendRecommendations): String {
+        val page = StringBuilder()
+        page.append("=================================\n")
+        page.append("   PLAYERS WHO BOUGHT ").append(event.getGameName()).append(" ALSO BOUGHT\n")
+        page.append("   Distributor: ").append(event.getDistributorName()).append("\n")
+        page.append("=================================\n\n")
+
+        if (event.getEntries().isEmpty()) {
+            page.append("No recommendations yet.\n")
+            return page.toString()
+        }
+
+        for ((index, entry) in event.getEntries().withIndex()) {
+            page.append("#").append(index + 1).append(" ").append(entry.getGameName())
+                .append(" (ID: ").append(entry.getGameId()).append(") - ")
+                .append(entry.getCoOwners()).append(" co-owner(s), ")
+                .append(String.format("%.0f%% match", entry.getScore() * 100)).append("\n")
+        }
+
+        return page.toString()
     }
-}
\ No newline at end of file
+}
@@ -1,39 +1,92 @@
 package org.pops.et4.jvm.project.player.kafka
 
+import org.pops.et4.jvm.project.schemas.kafka.InMemoryEventBus
+import org.pops.et4.jvm.project.schemas.kafka.RetryTopics
+import org.pops.et4.jvm.project.schemas.logging.EventLog
+import org.springframework.beans.factory.annotation.Qualifier
+import org.springframework.context.event.ContextRefreshedEvent
+import org.springframework.context.event.EventListener
 import org.springframework.kafka.config.KafkaListenerEndpointRegistry
 import org.springframework.stereotype.Service
 
 @Service(KafkaLifecycleService.BEAN_NAME)
 class KafkaLifecycleService(
-    private val registry: KafkaListenerEndpointRegistry
+    private val registry: KafkaListenerEndpointRegistry,
+    @Qualifier(KafkaConfig.BEAN_NAME)
+    private val kafkaConfig: KafkaConfig
 ) {
 	companion object {
         const val BEAN_NAME = "playerServiceKafkaLifecycleService"
+
+        private val LOG = EventLog.logger("Lifecycle")
+    }
+
+    /**
+     * In memory, the listeners receive their records from the bus, their containers are never started
+     */
+    @EventListener(ContextRefreshedEvent::class)
+    fun bindInMemoryBus() {
+        if (!kafkaConfig.inMemory) return
+        val bound = InMemoryEventBus.shared().bind(registry)
+        LOG.info("{} listener(s) bound to the in-memory bus", bound)
     }
 
     fun startListener(listenerId: String) {
-        val container = registry.getListenerContainer(listenerId)
-
-        when {
-            container == null -> println("[Lifecycle] Listener $listenerId not found.")
-            container.isRunning -> println("[Lifecycle] Listener $listenerId is already running.")
-            else -> {
-                println("[Lifecycle] Starting listener: $listenerId")
-                container.start()
+        if (kafkaConfig.inMemory) {
+            if (InMemoryEventBus.shared().resume(listenerId)) LOG.info("Resuming in-memory listener: {}", listenerId)
+            else LOG.warn("Listener {} not found", listenerId)
+            return
+        }
+
+        val containerIds = containerIdsOf(listenerId)
+        if (containerIds.isEmpty()) LOG.warn("Listener {} not found", listenerId)
+
+        for (containerId in containerIds) {
+            val container = registry.getListenerContainer(containerId) ?: continue
+
+            when {
+                container.isRunning -> LOG.info("Listener {} is already running", containerId)
+                else -> {
+                    LOG.info("Starting listener: {}", containerId)
+                    container.start()
+                }
             }
         }
     }
 
     fun stopListener(listenerId: String) {
-        val container = registry.getListenerContainer(listenerId)
-
-        when {
-            container == null -> println("[Lifecycle] Listener $listenerId not found.")
-            !container.isRunning -> println("[Lifecycle] Listener $listenerId is not running.")
-            else -> {
-                println("[Lifecycle] Stopping listener: $listenerId")
-                container.stop()
+        if (kafkaConfig.inMemory) {
+            if (InMemoryEventBus.shared().pause(listenerId)) LOG.info("Pausing in-memory listener: {}", listenerId)
+            else LOG.warn("Listener {} not found", listenerId)
+            return
+        }
+
+        val containerIds = containerIdsOf(listenerId)
+        if (containerIds.isEmpty()) LOG.warn("Listener {} not found", listenerId)
+
+        for (containerId in containerIds) {
+            val container = registry.getListenerContainer(containerId) ?: continue
+
+            when {
+                !container.isRunning -> LOG.info("Listener {} is not running", containerId)
+                else -> {
+                    LOG.info("Stopping listener: {}", containerId)
+                    container.stop()
+                }
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * The id of the listener followed by the ids of its retry and dead-letter listeners
+     */
+    private fun containerIdsOf(listenerId: String): List<String> {
+        return registry.listenerContainerIds
+            .filter {
+                it == listenerId
+                    || it.startsWith(listenerId + RetryTopics.RETRY_SUFFIX)
+                    || it.startsWith(listenerId + RetryTopics.DLT_SUFFIX)
+            }
+            .sorted()
+    }
+}
@@ -1,22 +1,32 @@
 package org.pops.et4.jvm.project.player.kafka
 
+import org.pops.et4.jvm.project.player.catalog.CatalogStore
+import org.pops.et4.jvm.project.player.db.PlayerDbConfig
 import org.pops.et4.jvm.project.schemas.events.*
+import org.pops.et4.jvm.project.schemas.events.updates.InstalledGameVersion
+import org.pops.et4.jvm.project.schemas.kafka.ProducerPipeline
+import org.pops.et4.jvm.project.schemas.logging.EventLog
+import org.pops.et4.jvm.project.schemas.models.player.Platform
 import org.pops.et4.jvm.project.schemas.repositories.player.InstalledGameRepository
 import org.springframework.beans.factory.annotation.Qualifier
-import org.springframework.kafka.core.KafkaTemplate
 import org.springframework.stereotype.Service
+import org.springframework.transaction.annotation.Transactional
 import java.time.Instant
 import java.util.UUID
 
 @Service(KafkaProducerService.BEAN_NAME)
 class KafkaProducerService(
-    @Qualifier(KafkaConfig.KAFKA_TEMPLATE_BEAN_NAME)
-    private val kafkaTemplate: KafkaTemplate<String, Any>,
+    @Qualifier(KafkaConfig.PRODUCER_PIPELINE_BEAN_NAME)
+    val pipeline: ProducerPipeline,
     @Qualifier(InstalledGameRepository.BEAN_NAME)
-    private val installedGameRepository: InstalledGameRepository
+    private val installedGameRepository: InstalledGameRepository,
+    @Qualifier(CatalogStore.BEAN_NAME)
+    private val catalogStore: CatalogStore
 ) {
 	companion object {
         const val BEAN_NAME = "playerServiceKafkaProducerService"
+
+        private val LOG = EventLog.logger("Producer")
         
         // Valid platform values (must match Platform enum in 03_player.avpr)
         val VALID_PLATFORMS = setOf(
@@ -56,6 +66,9 @@ class KafkaProducerService(
             "XBOX_SERIES",
             "UNKNOWN"
         )
+
+        // Leaderboards kept by the distributors
+        val VALID_LEADERBOARDS = setOf("most-owned", "most-played", "top-rated", "trending")
     }
 
 
@@ -76,12 +89,7 @@ class KafkaProducerService(
             .setBirthDate(birthDate)
             .build()
 
-        val future = kafkaTemplate.send(topic, key, event)
-
-        future.whenComplete { result, ex ->
-            val message = ex?.message ?: result
-            println("[Producer] $topic($key): $message")
-        }
+        pipeline.send(topic, key, event)
     }
 
     fun sendPurchaseGame(playerId: Long, gameId: Long) {
@@ -92,18 +100,13 @@ class KafkaProducerService(
             .setGameId(gameId)
             .build()
 
-        val future = kafkaTemplate.send(topic, key, event)
-
-        future.whenComplete { result, ex ->
-            val message = ex?.message ?: result
-            println("[Producer] $topic($key): $message")
-        }
+        pipeline.send(topic, key, event)
     }
 
     fun sendReviewGame(playerId: Long, gameId: Long, rating: Int, comment: String?) {
         // Validate rating (0-5)
         if (rating !in 0..5) {
-            println("[Error] Invalid rating: $rating. Rating must be between 0 and 5.")
+            LOG.warn("Invalid rating: {}. Rating must be between 0 and 5.", rating)
             return
         }
         
@@ -116,18 +119,13 @@ class KafkaProducerService(
             .setComment(comment)
             .build()
 
-        val future = kafkaTemplate.send(topic, key, event)
-
-        future.whenComplete { result, ex ->
-            val message = ex?.message ?: result
-            println("[Producer] $topic($key): $message")
-        }
+        pipeline.send(topic, key, event)
     }
 
     fun sendInstallGame(playerId: Long, gameId: Long, platform: String) {
         // Validate platform
         if (platform !in VALID_PLATFORMS) {
-            println("[Error] Invalid platform: $platform. Valid platforms: ${VALID_PLATFORMS.joinToString(", ")}")
+            LOG.warn("Invalid platform: {}. Valid platforms: {}", platform, VALID_PLATFORMS.joinToString(", "))
             return
         }
         
@@ -140,32 +138,31 @@ class KafkaProducerService(
             .setPlatform(platform)
             .build()
 
-        val future = kafkaTemplate.send(topic, key, event)
-
-        future.whenComplete { result, ex ->
-            val message = ex?.message ?: result
-            println("[Producer] $topic($key): $message")
-        }
+        pipeline.send(topic, key, event)
     }
 
     fun sendUpdateGame(playerId: Long, gameId: Long, platform: String, installedVersion: String) {
         // Validate platform
         if (platform !in VALID_PLATFORMS) {
-            println("[Error] Invalid platform: $platform. Valid platforms: ${VALID_PLATFORMS.joinToString(", ")}")
+            LOG.warn("Invalid platform: {}. Valid platforms: {}", platform, VALID_PLATFORMS.joinToString(", "))
             return
         }
         
         // Get installed game version from database
-        val installedGames = installedGameRepository.findAll()
-            .filter { it.playerId == playerId && it.gameId == gameId && it.platform?.toString() == platform }
+        val installedGame = installedGameRepository.findByPlayerIdAndGameIdAndPlatform(playerId, gameId, Platform.valueOf(platform))
         
-        if (installedGames.isEmpty()) {
-            println("[Error] Game not installed. Cannot update.")
-            println("        Use 'install' command to install the game first.")
+        if (installedGame.isEmpty) {
+            LOG.warn("Game {} not installed on {} for player {}, cannot update: install it first", gameId, platform, playerId)
             return
         }
         
-        val currentInstalledVersion = installedGames.first().installedVersion ?: "1.0.0"
+        val currentInstalledVersion = installedGame.get().installedVersion ?: "1.0.0"
+        
+        // The local catalog answers when every distributor of the game has the installed version, no request is sent
+        if (catalogStore.isUpToDate(gameId, currentInstalledVersion)) {
+            LOG.info("Game {} already up to date (version: {}), no update requested", gameId, currentInstalledVersion)
+            return
+        }
         
         // Send Kafka event with the installed version
         val topic = UpdateGame.TOPIC
@@ -177,34 +174,56 @@ class KafkaProducerService(
             .setInstalledVersion(currentInstalledVersion)
             .build()
 
-        val future = kafkaTemplate.send(topic, key, event)
+        pipeline.send(topic, key, event)
+    }
+
+    /**
+     * Checks the whole library in one request, instead of one UpdateGame per installed game
+     * Games the local catalog knows to be up to date are not sent
+     */
+    fun sendCheckUpdates(playerId: Long) {
+        val installedGames = installedGameRepository.findByPlayerIdOrderByGameId(playerId)
+            .filter { !catalogStore.isUpToDate(it.gameId, it.installedVersion ?: "1.0.0") }
+            .map {
+                InstalledGameVersion.newBuilder()
+                    .setGameId(it.gameId)
+                    .setPlatform(it.platform.toString())
+                    .setInstalledVersion(it.installedVersion ?: "1.0.0")
+                    .build()
+            }
 
-        future.whenComplete { result, ex ->
-            val message = ex?.message ?: result
-            println("[Producer] $topic($key): $message")
+        if (installedGames.isEmpty()) {
+            LOG.info("No installed game to update for player {}, no update check requested", playerId)
+            return
         }
+
+        val topic = CheckUpdates.TOPIC
+        val key = UUID.randomUUID().toString()
+        val event = CheckUpdates.newBuilder()
+            .setPlayerId(playerId)
+            .setInstalledGames(installedGames)
+            .build()
+
+        pipeline.send(topic, key, event)
     }
 
+    @Transactional(transactionManager = PlayerDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
     fun sendUninstallGame(playerId: Long, gameId: Long, platform: String, comment: String?) {
         // Validate platform
         if (platform !in VALID_PLATFORMS) {
-            println("[Error] Invalid platform: $platform. Valid platforms: ${VALID_PLATFORMS.joinToString(", ")}")
+            LOG.warn("Invalid platform: {}. Valid platforms: {}", platform, VALID_PLATFORMS.joinToString(", "))
             return
         }
         
         // Update database: Remove from installed games
         try {
-            val installedGames = installedGameRepository.findAll()
-                .filter { it.playerId == playerId && it.gameId == gameId && it.platform?.toString() == platform }
-            
-            if (installedGames.isNotEmpty()) {
-                installedGameRepository.deleteAll(installedGames)
-                println("[Database] Uninstalled game: Player=${playerId}, Game=${gameId}, Platform=${platform}")
+            if (installedGameRepository.deleteInstallation(playerId, gameId, Platform.valueOf(platform)) > 0) {
+                LOG.info("Uninstalled game: Player={}, Game={}, Platform={}", playerId, gameId, platform)
             } else {
-                println("[Database] Warning: Game not found in installed games")
+                LOG.warn("Game {} not found in the installed games of player {}", gameId, playerId)
             }
         } catch (e: Exception) {
-            println("[Database] Error uninstalling game: ${e.message}")
+            LOG.error("Error uninstalling game {} of player {}: {}", gameId, playerId, e.message)
         }
         
         // Send Kafka event
@@ -217,12 +236,7 @@ class KafkaProducerService(
             .setComment(comment)
             .build()
 
-        val future = kafkaTemplate.send(topic, key, event)
-
-        future.whenComplete { result, ex ->
-            val message = ex?.message ?: result
-            println("[Producer] $topic($key): $message")
-        }
+        pipeline.send(topic, key, event)
     }
 
     fun sendAddPlayTime(playerId: Long, gameId: Long, time: Long) {
@@ -234,12 +248,7 @@ class KafkaProducerService(
             .setTime(time)
             .build()
 
-        val future = kafkaTemplate.send(topic, key, event)
-
-        future.whenComplete { result, ex ->
-            val message = ex?.message ?: result
-            println("[Producer] $topic($key): $message")
-        }
+        pipeline.send(topic, key, event)
     }
 
     fun sendReportCrash(
@@ -252,7 +261,7 @@ class KafkaProducerService(
     ) {
         // Validate platform
         if (platform !in VALID_PLATFORMS) {
-            println("[Error] Invalid platform: $platform. Valid platforms: ${VALID_PLATFORMS.joinToString(", ")}")
+            LOG.warn("Invalid platform: {}. Valid platforms: {}", platform, VALID_PLATFORMS.joinToString(", "))
             return
         }
         
@@ -267,12 +276,7 @@ class KafkaProducerService(
             .setMessage(message)
             .build()
 
-        val future = kafkaTemplate.send(topic, key, event)
-
-        future.whenComplete { result, ex ->
-            val msg = ex?.message ?: result
-            println("[Producer] $topic($key): $msg")
-        }
+        pipeline.send(topic, key, event)
     }
 
     fun sendAddWishedGame(playerId: Long, gameId: Long) {
@@ -283,12 +287,7 @@ class KafkaProducerService(
             .setGameId(gameId)
             .build()
 
-        val future = kafkaTemplate.send(topic, key, event)
-
-        future.whenComplete { result, ex ->
-            val message = ex?.message ?: result
-            println("[Producer] $topic($key): $message")
-        }
+        pipeline.send(topic, key, event)
     }
 
     fun sendRemoveWishedGame(playerId: Long, gameId: Long) {
@@ -299,18 +298,13 @@ class KafkaProducerService(
             .setGameId(gameId)
             .build()
 
-        val future = kafkaTemplate.send(topic, key, event)
-
-        future.whenComplete { result, ex ->
-            val message = ex?.message ?: result
-            println("[Producer] $topic($key): $message")
-        }
+        pipeline.send(topic, key, event)
     }
 
     fun sendReactReview(playerId: Long, reviewId: Long, reactType: Int) {
         // Validate reactType (0-2: 0=NOTHING, 1=POSITIVE, 2=NEGATIVE)
         if (reactType !in 0..2) {
-            println("[Error] Invalid reactType: $reactType. ReactType must be 0=NOTHING, 1=POSITIVE, or 2=NEGATIVE.")
+            LOG.warn("Invalid reactType: {}. ReactType must be 0=NOTHING, 1=POSITIVE, or 2=NEGATIVE.", reactType)
             return
         }
         
@@ -322,12 +316,7 @@ class KafkaProducerService(
             .setReactType(reactType)
             .build()
 
-        val future = kafkaTemplate.send(topic, key, event)
-
-        future.whenComplete { result, ex ->
-            val message = ex?.message ?: result
-            println("[Producer] $topic($key): $message")
-        }
+        pipeline.send(topic, key, event)
     }
 
     fun sendAskPlayerPage(distributorId: Long) {
@@ -337,18 +326,13 @@ class KafkaProducerService(
             .setDistributorId(distributorId)
             .build()
 
-        val future = kafkaTemplate.send(topic, key, event)
-
-        future.whenComplete { result, ex ->
-            val message = ex?.message ?: result
-            println("[Producer] $topic($key): $message")
-        }
+        pipeline.send(topic, key, event)
     }
 
     fun sendAskGamesPage(distributorId: Long, platform: String) {
         // Validate platform
         if (platform !in VALID_PLATFORMS) {
-            println("[Error] Invalid platform: $platform. Valid platforms: ${VALID_PLATFORMS.joinToString(", ")}")
+            LOG.warn("Invalid platform: {}. Valid platforms: {}", platform, VALID_PLATFORMS.joinToString(", "))
             return
         }
         
@@ -359,27 +343,45 @@ class KafkaProducerService(
             .setPlatform(platform)
             .build()
 
-        val future = kafkaTemplate.send(topic, key, event)
-
-        future.whenComplete { result, ex ->
-            val message = ex?.message ?: result
-            println("[Producer] $topic($key): $message")
-        }
+        pipeline.send(topic, key, event)
     }
 
-    fun sendAskGameReviews(distributorId: Long, gameId: Long) {
+    /**
+     * @param query Keywords to search in the review comments, null for every review of the game
+     */
+    fun sendAskGameReviews(distributorId: Long, gameId: Long, query: String? = null) {
         val topic = AskGameReviews.TOPIC
         val key = UUID.randomUUID().toString()
         val event = AskGameReviews.newBuilder()
             .setDistributorId(distributorId)
             .setGameId(gameId)
+            .setQuery(query)
             .build()
 
-        val future = kafkaTemplate.send(topic, key, event)
+        pipeline.send(topic, key, event)
+    }
 
-        future.whenComplete { result, ex ->
-            val message = ex?.message ?: result
-            println("[Producer] $topic($key): $message")
-        }
+    fun sendAskLeaderboard(distributorId: Long, board: String, limit: Int) {
+        val topic = AskLeaderboard.TOPIC
+        val key = UUID.randomUUID().toString()
+        val event = AskLeaderboard.newBuilder()
+            .setDistributorId(distributorId)
+            .setBoard(board)
+            .setLimit(limit)
+            .build()
+
+        pipeline.send(topic, key, event)
+    }
+
+    fun sendAskRecommendations(distributorId: Long, gameId: Long, limit: Int) {
+        val topic = AskRecommendations.TOPIC
+        val key = UUID.randomUUID().toString()
+        val event = AskRecommendations.newBuilder()
+            .setDistributorId(distributorId)
+            .setGameId(gameId)
+            .setLimit(limit)
+            .build()
+
+        pipeline.send(topic, key, event)
     }
-}
\ No newline at end of file
+}
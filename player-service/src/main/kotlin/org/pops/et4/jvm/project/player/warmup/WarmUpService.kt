@@ -0,0 +1,61 @@
+package org.pops.et4.jvm.project.player.warmup
+
+import org.pops.et4.jvm.project.player.db.PlayerDbConfig
+import org.pops.et4.jvm.project.player.kafka.KafkaConfig
+import org.pops.et4.jvm.project.schemas.warmup.EventSamples
+import org.pops.et4.jvm.project.schemas.warmup.WarmUp
+import org.springframework.beans.factory.SmartInitializingSingleton
+import org.springframework.beans.factory.annotation.Qualifier
+import org.springframework.beans.factory.annotation.Value
+import org.springframework.stereotype.Component
+import javax.sql.DataSource
+
+/**
+ * Runs the warm-up once every bean is created, before the listener containers start
+ */
+@Component(WarmUpService.BEAN_NAME)
+class WarmUpService(
+    @Qualifier(KafkaConfig.BEAN_NAME)
+    private val kafkaConfig: KafkaConfig,
+    @Qualifier(PlayerDbConfig.DATA_SOURCE_BEAN_NAME)
+    private val dataSource: DataSource
+) : SmartInitializingSingleton {
+
+    companion object {
+        const val BEAN_NAME = "playerServiceWarmUpService"
+    }
+
+    @Value("\${spring.application.name}")
+    private lateinit var serviceName: String
+
+    @Value("\${warmup.enabled:true}")
+    private var enabled: Boolean = true
+
+    @Value("\${warmup.iterations:200}")
+    private var iterations: Int = 200
+
+    @Value("\${warmup.db-connections:4}")
+    private var dbConnections: Int = 4
+
+    var lastWarmUp: WarmUp? = null
+        private set
+
+    override fun afterSingletonsInstantiated() {
+        if (enabled) run()
+    }
+
+    fun run(): WarmUp {
+        val warmUp = WarmUp(serviceName)
+
+        val samples = warmUp.step("event classes", { EventSamples.byTopic() }, { "${it.size} classes" })
+        if (samples != null && !kafkaConfig.inMemory) {
+            warmUp.step("schema ids", { WarmUp.fetchSchemaIds(kafkaConfig.valueSerializer(), samples) }, { "$it subjects" })
+            warmUp.step("serde", { WarmUp.roundTrip(kafkaConfig.valueSerializer(), kafkaConfig.valueDeserializer(), samples, iterations) }, { "$it round trips" })
+        }
+        warmUp.step("datasource", { WarmUp.primeDataSource(dataSource, dbConnections) }, { "$it connections" })
+
+        warmUp.report()
+        lastWarmUp = warmUp
+        return warmUp
+    }
+}
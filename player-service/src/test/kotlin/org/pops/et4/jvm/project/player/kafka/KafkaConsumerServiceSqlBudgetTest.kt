@@ -0,0 +1,83 @@
+package org.pops.et4.jvm.project.player.kafka
+
+import org.apache.kafka.clients.consumer.ConsumerRecord
+import org.junit.jupiter.api.Test
+import org.pops.et4.jvm.project.player.App
+import org.pops.et4.jvm.project.schemas.events.SendGameFile
+import org.pops.et4.jvm.project.schemas.sql.SqlBudget
+import org.pops.et4.jvm.project.schemas.sql.SqlBudgetInterceptor
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.beans.factory.annotation.Qualifier
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.core.env.Environment
+import org.springframework.test.context.ActiveProfiles
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+/**
+ * Runs the listeners against the H2 database of the in-memory profile and counts their SQL statements with [SqlBudget]
+ * Only the game files touch the database, the other listeners render their page
+ */
+@SpringBootTest(
+    classes = [App::class],
+    properties = [
+        "cli.enabled=false",
+        "warmup.enabled=false",
+        "archive.enabled=false",
+        "catalog.snapshot.enabled=false"
+    ]
+)
+@ActiveProfiles("inmemory")
+class KafkaConsumerServiceSqlBudgetTest {
+
+    companion object {
+        private val OFFSETS = AtomicLong()
+        private const val PLATFORM = "NES"
+    }
+
+    @Autowired
+    @Qualifier(KafkaConsumerService.BEAN_NAME)
+    private lateinit var consumer: KafkaConsumerService
+
+    @Autowired
+    private lateinit var environment: Environment
+
+    @Test
+    fun `game files upsert the installation in one statement`() {
+        val playerId = OFFSETS.incrementAndGet()
+        val install = within(SendGameFile.TOPIC, consumer::consumeSendGameFile, gameFile(playerId, "1.0.0", null))
+        val update = within(SendGameFile.TOPIC, consumer::consumeSendGameFile, gameFile(playerId, "1.1.0", "1.0.0"))
+
+        assertEquals(install, update, "statements of a first install then of an update")
+    }
+
+    /**
+     * Runs one record through a listener, as its container would
+     * @return Number of SQL statements of the handler, asserted within the budget of its topic
+     */
+    private fun <V> within(topic: String, handler: (ConsumerRecord<String, V>) -> Unit, event: V): Int {
+        val record = ConsumerRecord(topic, 0, OFFSETS.incrementAndGet(), "key", event)
+        val count = SqlBudget.INSTANCE.open(topic, SqlBudget.UNLIMITED).use { scope ->
+            handler(record)
+            scope.count
+        }
+
+        val limit = SqlBudgetInterceptor<String, Any>(environment).limitOf(topic)
+        if (limit != SqlBudget.UNLIMITED) assertTrue(count <= limit, "$topic: $count SQL statement(s) for a budget of $limit")
+        return count
+    }
+
+    private fun gameFile(playerId: Long, version: String, baseVersion: String?): SendGameFile =
+        SendGameFile.newBuilder()
+            .setTargetId(playerId)
+            .setGameId(1L)
+            .setVersion(version)
+            .setGameName("Game")
+            .setPlatform(PLATFORM)
+            .setPlayerName("player$playerId")
+            .setDownloadUrl(null)
+            .setBaseVersion(baseVersion)
+            .setPatchSize(null)
+            .build()
+}
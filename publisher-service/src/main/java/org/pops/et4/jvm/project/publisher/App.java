@@ -1,47 +1,301 @@
 package org.pops.et4.jvm.project.publisher;
 
 import jakarta.transaction.Transactional;
+import org.pops.et4.jvm.project.publisher.analytics.CrashAnalytics;
+import org.pops.et4.jvm.project.publisher.archive.ArchiveService;
+import org.pops.et4.jvm.project.publisher.db.PublisherDbConfig;
+import org.pops.et4.jvm.project.publisher.db.PartitionMaintenanceService;
+import org.pops.et4.jvm.project.publisher.dedup.ProcessedEventService;
+import org.pops.et4.jvm.project.publisher.kafka.KafkaConfig;
 import org.pops.et4.jvm.project.publisher.kafka.KafkaConsumerService;
 import org.pops.et4.jvm.project.publisher.kafka.KafkaLifecycleService;
 import org.pops.et4.jvm.project.publisher.kafka.KafkaProducerService;
+import org.pops.et4.jvm.project.migrations.SchemaMigrations;
+import org.pops.et4.jvm.project.schemas.archive.ArchiveReader;
+import org.pops.et4.jvm.project.schemas.cli.BatchRunner;
+import org.pops.et4.jvm.project.schemas.kafka.DeadLetterTool;
+import org.pops.et4.jvm.project.schemas.kafka.RetryTopics;
+import org.pops.et4.jvm.project.schemas.sql.SqlBudget;
 import org.pops.et4.jvm.project.schemas.models.publisher.Genre;
 import org.pops.et4.jvm.project.schemas.models.publisher.Platform;
 import org.pops.et4.jvm.project.schemas.models.publisher.Publisher;
 import org.pops.et4.jvm.project.schemas.repositories.publisher.PublisherRepository;
 import org.pops.et4.jvm.project.schemas.models.publisher.Game;
 import org.pops.et4.jvm.project.schemas.repositories.publisher.GameRepository;
+import org.pops.et4.jvm.project.schemas.threads.VirtualThreads;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicLong;
 
 @SpringBootApplication
+@EnableScheduling
 public class App {
 
     public static final String CLI_BEAN_NAME = "publisherServiceCLI";
+    public static final String VIRTUAL_THREADS_BEAN_NAME = "publisherServiceVirtualThreads";
 
     public static void main(String[] args) {
         SpringApplication.run(App.class, args);
     }
 
+    /**
+     * Virtual-thread mode of the service, watching for pinned virtual threads when enabled.
+     */
+    @Bean(name = App.VIRTUAL_THREADS_BEAN_NAME, destroyMethod = "close")
+    public VirtualThreads virtualThreads(
+            @Value("${spring.threads.virtual.enabled:false}") boolean enabled,
+            @Value("${threads.pinning.enabled:true}") boolean pinningEnabled,
+            @Value("${threads.pinning.threshold-ms:20}") long pinningThresholdMs
+    ) {
+        return new VirtualThreads(enabled, pinningEnabled, Duration.ofMillis(pinningThresholdMs));
+    }
+
     @Bean(name = App.CLI_BEAN_NAME)
+    @ConditionalOnProperty(name = "cli.enabled", havingValue = "true", matchIfMissing = true)
     public CommandLineRunner interactiveTestRunner(
             @Qualifier(KafkaProducerService.BEAN_NAME) KafkaProducerService producer,
             @Qualifier(KafkaLifecycleService.BEAN_NAME) KafkaLifecycleService lifecycle,
             @Qualifier(PublisherRepository.BEAN_NAME) PublisherRepository publisherRepository,
-            @Qualifier(GameRepository.BEAN_NAME) GameRepository gameRepository
+            @Qualifier(GameRepository.BEAN_NAME) GameRepository gameRepository,
+            @Qualifier(PublisherService.BEAN_NAME) PublisherService publisherService,
+            @Qualifier(PublisherDbConfig.MIGRATIONS_BEAN_NAME) SchemaMigrations migrations,
+            @Qualifier(PartitionMaintenanceService.BEAN_NAME) PartitionMaintenanceService partitionMaintenance,
+            @Qualifier(ArchiveService.BEAN_NAME) ArchiveService archiveService,
+            @Qualifier(ProcessedEventService.BEAN_NAME) ProcessedEventService processedEventService,
+            @Qualifier(KafkaConfig.DEAD_LETTER_TOOL_BEAN_NAME) DeadLetterTool deadLetterTool,
+            @Qualifier(CrashAnalytics.BEAN_NAME) CrashAnalytics crashAnalytics,
+            @Value("${cli.batch.script:}") String batchScript,
+            @Value("${cli.batch.parallelism:8}") int batchParallelism,
+            @Value("${cli.batch.echo:true}") boolean batchEcho
     ) {
+        BatchRunner.Handler commands = cmd -> {
+            String[] args = Arrays.copyOfRange(cmd, 1, cmd.length);
+
+            switch (cmd[0]) {
+                case "exit":
+                case "quit":
+                    System.out.println("Exiting Manual Test Mode...");
+                    System.exit(0);
+                    break;
+
+                case "load-csv":
+                    System.out.println("Loading Data in DB...");
+                    if (args.length < 1) {
+                        System.err.println("Too few arguments, required: 1");
+                        break;
+                    }
+                    this.handleCsvImport(publisherRepository, gameRepository, Long.parseLong(args[0]));
+                    break;
+
+                case "start":
+                    System.out.println("> Starting Listener(s)");
+                    for (String listenerId: args)
+                        lifecycle.startListener(listenerId);
+                    break;
+
+                case "stop":
+                    System.out.println("> Stopping Listener(s)");
+                    for (String listenerId: args)
+                        lifecycle.stopListener(listenerId);
+                    break;
+
+                case "list-games":
+                    System.out.println("> Listing games from database...");
+                    List<Game> games = gameRepository.findAll();
+
+                    if (games.isEmpty()) {
+                        System.out.println("No games found in database.");
+                    } else {
+                        for (Game game : games) {
+                            System.out.println(formatGame(game));
+                        }
+                    }
+                    break;
+
+                // --- COMMANDES KAFKA PRODUCER ---
+                case "publish-game":
+                    System.out.println("> Publishing Game event...");
+                    handlePublishGame(publisherService, args);
+                    break;
+
+                case "publish-patch":
+                    System.out.println("> Publishing Patch event...");
+                    handlePublishPatch(producer, args);
+                    break;
+
+                case "send":
+                    System.out.println("> Sending 'ExampleEvent'...");
+                    producer.sendExampleEvent(String.join(" ", args));
+                    break;
+
+                case "producer-stats":
+                    System.out.println("> Producer statistics (" + producer.getPipeline().getInFlight() + " in flight)");
+                    producer.getPipeline().getStats().forEach((topic, stats) -> System.out.println(topic + ": " + stats));
+                    break;
+
+                case "dedup-stats":
+                    System.out.println("> Deduplication statistics");
+                    System.out.println(processedEventService);
+                    break;
+
+                case "sql-budget":
+                    System.out.println("> SQL statements per handler");
+                    SqlBudget.INSTANCE.report().forEach(System.out::println);
+                    if (args.length > 0 && args[0].equals("reset")) SqlBudget.INSTANCE.reset();
+                    break;
+
+                case "access-paths":
+                    System.out.println("> Access paths of the hot queries (PostgreSQL only)");
+                    migrations.checkAccessPaths().forEach(System.out::println);
+                    break;
+
+                case "partitions":
+                    System.out.println("> Monthly partitions (PostgreSQL only)");
+                    if (args.length > 0 && args[0].equals("run")) partitionMaintenance.run().forEach(System.out::println);
+                    System.out.println(partitionMaintenance.partitions());
+                    break;
+
+                case "archive-run":
+                    System.out.println("> Archiving the old consume logs");
+                    System.out.println(archiveService.archiveConsumeLogs() + " log(s) archived");
+                    break;
+
+                case "archive-list":
+                    System.out.println("> Archived datasets (" + archiveService.getArchive().getRoot() + ")");
+                    archiveService.getArchive().datasets().forEach(System.out::println);
+                    break;
+
+                case "archive-scan":
+                    System.out.println("> Scanning the archive...");
+                    this.handleArchiveScan(archiveService.getReader(), args);
+                    break;
+
+                case "dlt-list":
+                    System.out.println("> Listing dead letters...");
+                    if (args.length < 1) {
+                        System.err.println("Error: Too few arguments, required: 1 (topic [max])");
+                        break;
+                    }
+                    try {
+                        deadLetterTool.list(dltTopicOf(args[0]), args.length > 1 ? Integer.parseInt(args[1]) : 20)
+                                .forEach(System.out::println);
+                    } catch (Exception e) {
+                        System.err.println("Error listing dead letters: " + e.getMessage());
+                    }
+                    break;
+
+                case "dlt-redrive":
+                    System.out.println("> Re-driving dead letters...");
+                    if (args.length < 1) {
+                        System.err.println("Error: Too few arguments, required: 1 (topic [max])");
+                        break;
+                    }
+                    try {
+                        int redriven = deadLetterTool.redrive(dltTopicOf(args[0]), args.length > 1 ? Integer.parseInt(args[1]) : 100);
+                        System.out.println(redriven + " record(s) sent back to " + args[0]);
+                    } catch (Exception e) {
+                        System.err.println("Error re-driving dead letters: " + e.getMessage());
+                    }
+                    break;
+
+                case "top-crashes":
+                    System.out.println("> Most frequent crash signatures...");
+                    if (args.length < 1) {
+                        System.err.println("Error: Too few arguments, required: 1 (gameId [version] [limit])");
+                        break;
+                    }
+                    try {
+                        long crashGameId = Long.parseLong(args[0]);
+                        String crashVersion = args.length > 1 && !args[1].equals("*") ? args[1] : null;
+                        int crashLimit = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+                        long crashStart = System.nanoTime();
+                        List<CrashAnalytics.TopSignature> topCrashes = crashAnalytics.top(crashGameId, crashVersion, crashLimit);
+                        long crashMicros = (System.nanoTime() - crashStart) / 1_000;
+                        System.out.println(crashAnalytics);
+                        for (CrashAnalytics.TopSignature top : topCrashes)
+                            System.out.println("  " + top.signature() + ": "
+                                    + (top.exact() >= 0 ? top.exact() + " report(s)" : "exact count unknown")
+                                    + " (estimate " + top.count() + ", error " + top.error() + ")");
+                        System.out.println(topCrashes.size() + " signature(s) in " + crashMicros + " µs");
+                    } catch (Exception e) {
+                        System.err.println("Error listing crash signatures: " + e.getMessage());
+                    }
+                    break;
+
+                // --- COMMANDES BDD ---
+                case "get-publisher":
+                    System.out.println("> Get publishers...");
+                    for (Publisher publisher: publisherRepository.findAll())
+                        System.out.println(publisher);
+                    break;
+
+                case "add-publisher":
+                    System.out.println("> Adding new publisher...");
+                    if (args.length < 2) {
+                        System.err.println("Too few arguments, required: 2");
+                        break;
+                    }
+                    Publisher entity = Publisher.newBuilder()
+                            .setId(null)
+                            .setName(args[0])
+                            .setIsCompany(Objects.equals(args[1], "1"))
+                            .build();
+                    Publisher publisher1 = publisherRepository.save(entity);
+                    System.out.println("Added publisher: " + publisher1);
+                    break;
+
+                case "remove-publisher":
+                    System.out.println("> Removing publisher(s)...");
+                    for (String publisherId: args) {
+                        try {
+                            Long id = Long.parseLong(publisherId);
+                            Optional<Publisher> publisherOpt = publisherRepository.findById(id);
+                            if (publisherOpt.isEmpty()) throw new RuntimeException();
+                            Publisher publisher2 = publisherOpt.get();
+                            publisherRepository.delete(publisher2);
+                            System.out.println("Removed publisher: " + publisher2);
+                        } catch (NumberFormatException e) {
+                            Optional<Publisher> publisherOpt = publisherRepository.findFirstByName(publisherId);
+                            if (publisherOpt.isEmpty()) {
+                                System.out.println("Error: '" + publisherId + "' is not a valid publisher ID.");
+                                break;
+                            }
+                            Publisher publisher2 = publisherOpt.get();
+                            publisherRepository.delete(publisher2);
+                            System.out.println("Removed publisher: " + publisher2);
+                        }
+                    }
+                    break;
+
+                default:
+                    System.out.println("Invalid option. Please try again.");
+            }
+        };
+
         return ignored -> {
+            // Mode script : pas de pause, les commandes indépendantes tournent en parallèle
+            if (!batchScript.isEmpty()) {
+                BatchRunner.Summary summary = this.runBatch(commands, batchScript, batchParallelism, batchEcho);
+                System.exit(summary == null || summary.getFailed() > 0 ? 1 : 0);
+            }
+
             Thread.sleep(1000);
 
             try (Scanner scanner = new Scanner(System.in)) {
@@ -52,113 +306,14 @@ public class App {
                     String input = scanner.nextLine().trim();
                     if (input.isEmpty()) continue;
                     String[] cmd = input.split("\\s+");
-                    String[] args = Arrays.copyOfRange(cmd, 1, cmd.length);
 
                     System.out.println("---------------------------------");
 
-                    switch (cmd[0]) {
-                        case "exit":
-                        case "quit":
-                            System.out.println("Exiting Manual Test Mode...");
-                            System.exit(0);
-                            break;
-
-                        case "load-csv":
-                            System.out.println("Loading Data in DB...");
-                            if (args.length < 1) {
-                                System.err.println("Too few arguments, required: 1");
-                                break;
-                            }
-                            this.handleCsvImport(publisherRepository, gameRepository, Long.parseLong(args[0]));
-                            break;
-
-                        case "start":
-                            System.out.println("> Starting Listener(s)");
-                            for (String listenerId: args)
-                                lifecycle.startListener(listenerId);
-                            break;
-
-                        case "stop":
-                            System.out.println("> Stopping Listener(s)");
-                            for (String listenerId: args)
-                                lifecycle.stopListener(listenerId);
-                            break;
-
-                        case "list-games":
-                            System.out.println("> Listing games from database...");
-                            List<Game> games = gameRepository.findAll();
-
-                            if (games.isEmpty()) {
-                                System.out.println("No games found in database.");
-                            } else {
-                                for (Game game : games) {
-                                    System.out.println(formatGame(game));
-                                }
-                            }
-                            break;
-
-                        // --- COMMANDES KAFKA PRODUCER ---
-                        case "publish-game":
-                            System.out.println("> Publishing Game event...");
-                            handlePublishGame(producer, gameRepository, args);
-                            break;
-
-                        case "publish-patch":
-                            System.out.println("> Publishing Patch event...");
-                            handlePublishPatch(producer, args);
-                            break;
-
-                        case "send":
-                            System.out.println("> Sending 'ExampleEvent'...");
-                            producer.sendExampleEvent(String.join(" ", args));
-                            break;
-                        // --- COMMANDES BDD ---
-                        case "get-publisher":
-                            System.out.println("> Get publishers...");
-                            for (Publisher publisher: publisherRepository.findAll())
-                                System.out.println(publisher);
-                            break;
-
-                        case "add-publisher":
-                            System.out.println("> Adding new publisher...");
-                            if (args.length < 2) {
-                                System.err.println("Too few arguments, required: 2");
-                                break;
-                            }
-                            Publisher entity = Publisher.newBuilder()
-                                    .setId(null)
-                                    .setName(args[0])
-                                    .setIsCompany(Objects.equals(args[1], "1"))
-                                    .build();
-                            Publisher publisher1 = publisherRepository.save(entity);
-                            System.out.println("Added publisher: " + publisher1);
-                            break;
-
-                        case "remove-publisher":
-                            System.out.println("> Removing publisher(s)...");
-                            for (String publisherId: args) {
-                                try {
-                                    Long id = Long.parseLong(publisherId);
-                                    Optional<Publisher> publisherOpt = publisherRepository.findById(id);
-                                    if (publisherOpt.isEmpty()) throw new RuntimeException();
-                                    Publisher publisher2 = publisherOpt.get();
-                                    publisherRepository.delete(publisher2);
-                                    System.out.println("Removed publisher: " + publisher2);
-                                } catch (NumberFormatException e) {
-                                    Optional<Publisher> publisherOpt = publisherRepository.findFirstByName(publisherId);
-                                    if (publisherOpt.isEmpty()) {
-                                        System.out.println("Error: '" + publisherId + "' is not a valid publisher ID.");
-                                        break;
-                                    }
-                                    Publisher publisher2 = publisherOpt.get();
-                                    publisherRepository.delete(publisher2);
-                                    System.out.println("Removed publisher: " + publisher2);
-                                }
-                            }
-                            break;
-
-                        default:
-                            System.out.println("Invalid option. Please try again.");
+                    if (cmd[0].equals("batch")) {
+                        if (cmd.length < 2) System.err.println("Error: Too few arguments, required: 1 (file [parallelism])");
+                        else this.runBatch(commands, cmd[1], cmd.length > 2 ? Integer.parseInt(cmd[2]) : batchParallelism, batchEcho);
+                    } else {
+                        commands.execute(cmd);
                     }
 
                     Thread.sleep(500);
@@ -167,6 +322,18 @@ public class App {
         };
     }
 
+    private BatchRunner.Summary runBatch(BatchRunner.Handler commands, String script, int parallelism, boolean echo) {
+        System.out.println("> Running batch '" + script + "' with parallelism " + parallelism + "...");
+        try {
+            BatchRunner.Summary summary = new BatchRunner(commands, parallelism, echo).run(script);
+            System.out.print(summary);
+            return summary;
+        } catch (Exception e) {
+            System.err.println("Error running batch: " + e.getMessage());
+            return null;
+        }
+    }
+
     private static final String CSV_FILENAME = "vgsales.csv";
 
     @Transactional
@@ -298,21 +465,16 @@ public class App {
         );
     }
 
-    private void handlePublishGame(KafkaProducerService producer, GameRepository gameRepo, String[] args) {
+    private void handlePublishGame(PublisherService publisherService, String[] args) {
         if (args.length < 1) {
             System.out.println("Usage: publish-game [gameId]");
             return;
         }
         try {
             long id = Long.parseLong(args[0]);
-            gameRepo.findById(id).ifPresentOrElse(
-                    game -> {
-                        // force l'initialisation pour éviter le lazy error
-                        game.getPlatforms().size();
-                        game.getGenres().size();
-                        producer.sendGamePublished(game); // On envoie l'objet complet
-                        System.out.println("> Game '" + game.getName() + "' send to the Distributor.");
-                    },
+            // Le jeu est chargé avec ses plateformes et envoyé dans une seule transaction
+            publisherService.publishGame(id).ifPresentOrElse(
+                    game -> System.out.println("> Game '" + game.getName() + "' send to the Distributor."),
                     () -> System.out.println("> Error : No games found with the ID " + id)
             );
         } catch (Exception e) {
@@ -334,6 +496,25 @@ public class App {
         }
     }
 
+    /**
+     * archive-scan [dataset] [from|*] [to|*] [fields|*] [max?]: UTC days, both included, fields separated by commas (e.g. key,event.gameId)
+     */
+    private void handleArchiveScan(ArchiveReader reader, String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: archive-scan [dataset] [from(yyyy-MM-dd)|*] [to(yyyy-MM-dd)|*] [fields|*] [max?]");
+            return;
+        }
+        try {
+            Instant from = args.length > 1 && !args[1].equals("*") ? LocalDate.parse(args[1]).atStartOfDay(ZoneOffset.UTC).toInstant() : null;
+            Instant to = args.length > 2 && !args[2].equals("*") ? LocalDate.parse(args[2]).plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant() : null;
+            List<String> fields = args.length > 3 && !args[3].equals("*") ? Arrays.asList(args[3].split(",")) : List.of();
+            int max = args.length > 4 ? Integer.parseInt(args[4]) : 20;
+            System.out.println(reader.scan(args[0], from, to, fields, max, System.out::println));
+        } catch (Exception e) {
+            System.err.println("Error scanning the archive: " + e.getMessage());
+        }
+    }
+
     private void printMenu() {
         System.out.println();
         System.out.println("=================================");
@@ -342,6 +523,7 @@ public class App {
         System.out.println("\n[SYSTEM]");
         System.out.println("* Exit                exit/quit");
         System.out.println("* Load Game DataBase  load-csv [number of lines]");
+        System.out.println("* Run Script          batch [file|-] [parallelism?]");
         System.out.println("\n[KAFKA CONSUMER EVENTS]");
         System.out.println("* Start Listener      start [listenerId...]");
         System.out.println("* Stop Listener       stop [listenerId...]");
@@ -353,6 +535,17 @@ public class App {
         System.out.println("* Publish Game        publish-game [gameId]");
         System.out.println("* Publish Patch       publish-patch [gameId] [version]");
         System.out.println("* Send Payload        send [payload]");
+        System.out.println("* Producer Stats      producer-stats");
+        System.out.println("* Dedup Stats         dedup-stats");
+        System.out.println("* SQL Budget          sql-budget [reset?]");
+        System.out.println("* Access Paths        access-paths");
+        System.out.println("* Partitions          partitions [run?]");
+        System.out.println("* Archive Logs        archive-run");
+        System.out.println("* Archived Datasets   archive-list");
+        System.out.println("* Scan Archive        archive-scan [dataset] [from|*] [to|*] [fields|*] [max?]");
+        System.out.println("* List Dead Letters   dlt-list [topic] [max?]");
+        System.out.println("* Re-drive DLT        dlt-redrive [topic] [max?]");
+        System.out.println("* Top Crashes         top-crashes [gameId] [version?|*] [limit?]");
         System.out.println("\n[DATABASE]");
         System.out.println("* Get Publishers      get-publisher");
         System.out.println("* Add Publisher       add-publisher [name] [isCompany]");
@@ -360,4 +553,9 @@ public class App {
         System.out.println();
         System.out.print("> ");
     }
+
+    private static String dltTopicOf(String topic) {
+        return topic.endsWith(RetryTopics.DLT_SUFFIX) ? topic : RetryTopics.dltOf(topic);
+    }
+
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package org.pops.et4.jvm.project.publisher;
 
+import org.pops.et4.jvm.project.publisher.analytics.CrashAnalytics;
+import org.pops.et4.jvm.project.publisher.db.PublisherDbConfig;
 import org.pops.et4.jvm.project.publisher.kafka.KafkaProducerService;
 import org.pops.et4.jvm.project.schemas.events.CrashReported;
 import org.pops.et4.jvm.project.schemas.events.GameReviewed;
@@ -7,34 +9,59 @@ import org.pops.et4.jvm.project.schemas.models.publisher.*;
 import org.pops.et4.jvm.project.schemas.repositories.publisher.ReviewRepository;
 import org.pops.et4.jvm.project.schemas.repositories.publisher.GameRepository;
 import org.pops.et4.jvm.project.schemas.repositories.publisher.CrashReportRepository;
+import org.pops.et4.jvm.project.schemas.logging.EventLog;
+import org.pops.et4.jvm.project.schemas.logging.EventLogger;
 
 import org.springframework.stereotype.Service;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.annotation.Transactional;
 
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 @Service(PublisherService.BEAN_NAME)
 public class PublisherService {
     public static final String BEAN_NAME = "publisherService";
 
+    private static final EventLogger LOG = EventLog.logger("Publisher");
+
     private final GameRepository gameRepository;
     private final ReviewRepository reviewRepository;
     private final CrashReportRepository crashReportRepository;
     private final KafkaProducerService producerService;
+    private final CrashAnalytics crashAnalytics;
+
+    @Value("${crash-reports.threshold-window-days:90}")
+    private long crashThresholdWindowDays;
 
     @Autowired
     public PublisherService(@Qualifier(GameRepository.BEAN_NAME) GameRepository gameRepository,
                             @Qualifier(ReviewRepository.BEAN_NAME) ReviewRepository reviewRepository,
                             @Qualifier(CrashReportRepository.BEAN_NAME) CrashReportRepository crashReportRepository,
-                            @Qualifier(KafkaProducerService.BEAN_NAME) KafkaProducerService producerService)
+                            @Qualifier(KafkaProducerService.BEAN_NAME) KafkaProducerService producerService,
+                            @Qualifier(CrashAnalytics.BEAN_NAME) CrashAnalytics crashAnalytics)
     {
         this.gameRepository = gameRepository;
         this.reviewRepository = reviewRepository;
         this.crashReportRepository = crashReportRepository;
         this.producerService = producerService;
+        this.crashAnalytics = crashAnalytics;
+    }
+
+    /**
+     * Publie un jeu auprès des Distributors
+     * L'éditeur et les plateformes sont chargés avec le jeu, les genres par un second select dans la même transaction
+     * @return Le jeu publié, vide s'il n'existe pas
+     */
+    @Transactional(transactionManager = PublisherDbConfig.TRANSACTION_MANAGER_BEAN_NAME, readOnly = true)
+    public Optional<Game> publishGame(long gameId) {
+        Optional<Game> game = gameRepository.findForPublicationById(gameId);
+        game.ifPresent(producerService::sendGamePublished);
+        return game;
     }
 
     /**
@@ -52,10 +79,8 @@ public class PublisherService {
                 .setPublicationDate(event.getPublicationDate())
                 .build();
 
-        long negativeReviewsCount = reviewRepository.findAll().stream()
-                .filter(r -> r.getGame().getId().equals(game.getId()))
-                .filter(r -> r.getRating() <= 2)
-                .count();
+        // Compté en base : charger toutes les reviews pour les filtrer coûtait une requête par review
+        long negativeReviewsCount = reviewRepository.countByGameIdAndRatingAtMost(game.getId(), 2);
 
         if (negativeReviewsCount > 0 && negativeReviewsCount % 15 == 0) {
             publishAutoPatch(game, "NEGATIVE_FEEDBACK");
@@ -86,18 +111,19 @@ public class PublisherService {
                 .build();
 
         // --- LOGIQUE DE RÉACTION ---
-        // On récupère tous les crashs de la DB et on filtre ceux du jeu actuel
-        long crashCount = crashReportRepository.findAll().stream()
-                .filter(c -> c.getGame().getId().equals(game.getId()))
-                .count();
+        // On compte en base les crashs récents du jeu actuel : la table est partitionnée par mois, seules les partitions de la fenêtre sont lues
+        java.time.Instant since = crash.getReportDate().minus(java.time.Duration.ofDays(this.crashThresholdWindowDays));
+        long crashCount = crashReportRepository.countByGameIdSince(game.getId(), since);
 
-        System.out.println("[Publisher] Total crashs for " + game.getName() + " : " + crashCount);
+        LOG.event("Total crashs for {} : {}", game.getName(), crashCount);
 
         // Réaction : seuil de 10 atteint, modulo 10 d'ailleurs pour chaque dizaine (10, 20, 30...)
         if (crashCount > 0 && crashCount % 10 == 0) {
             this.publishAutoPatch(game, "CRASH");
         }
         crashReportRepository.save(crash);
+        // Signatures les plus fréquentes, mises à jour après le commit
+        crashAnalytics.reported(crash);
     }
 
     private void publishAutoPatch(Game game, String reasonType) {
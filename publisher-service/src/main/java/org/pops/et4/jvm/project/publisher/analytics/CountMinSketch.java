@@ -0,0 +1,72 @@
+package org.pops.et4.jvm.project.publisher.analytics;
+
+/**
+ * Count-min sketch: approximate counts of any number of keys in a fixed {@code depth x width} table.
+ * <ul>
+ *     <li>each key increments one counter per row, its estimate is the smallest of its counters</li>
+ *     <li>an estimate is never below the true count, and exceeds it by at most {@code epsilon * total}
+ *     with probability {@code 1 - delta}</li>
+ *     <li>conservative update: only the counters equal to the minimum are raised, which keeps the overestimate lower</li>
+ * </ul>
+ * Not thread-safe, the {@link CrashAnalytics} serializes every access.
+ */
+final class CountMinSketch {
+
+    private final int depth;
+    private final int width;
+    private final long[] counters;
+    private long total;
+
+    /**
+     * @param epsilon Overestimate bound, as a fraction of the total count
+     * @param delta Probability of exceeding that bound
+     */
+    CountMinSketch(double epsilon, double delta) {
+        if (epsilon <= 0 || epsilon >= 1 || delta <= 0 || delta >= 1)
+            throw new IllegalArgumentException("epsilon and delta must be in ]0, 1[");
+        this.width = (int) Math.ceil(Math.E / epsilon);
+        this.depth = (int) Math.ceil(Math.log(1 / delta));
+        this.counters = new long[this.depth * this.width];
+    }
+
+    /**
+     * @return The estimate of the key after the increment
+     */
+    long add(long hash, long increment) {
+        this.total += increment;
+        long estimate = this.estimate(hash) + increment;
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int row = 0; row < this.depth; row++) {
+            int slot = row * this.width + this.column(h1, h2, row);
+            if (this.counters[slot] < estimate) this.counters[slot] = estimate;
+        }
+        return estimate;
+    }
+
+    long estimate(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < this.depth; row++) estimate = Math.min(estimate, this.counters[row * this.width + this.column(h1, h2, row)]);
+        return estimate;
+    }
+
+    long total() {
+        return this.total;
+    }
+
+    long sizeInBytes() {
+        return (long) this.counters.length * Long.BYTES;
+    }
+
+    @Override
+    public String toString() {
+        return this.depth + "x" + this.width + ", total=" + this.total;
+    }
+
+    // Double hashing, the rows behave as independent hash functions
+    private int column(int h1, int h2, int row) {
+        return Math.floorMod(h1 + row * h2, this.width);
+    }
+}
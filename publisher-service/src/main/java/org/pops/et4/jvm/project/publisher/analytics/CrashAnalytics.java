@@ -0,0 +1,194 @@
+package org.pops.et4.jvm.project.publisher.analytics;
+
+import org.pops.et4.jvm.project.schemas.logging.EventLog;
+import org.pops.et4.jvm.project.schemas.logging.EventLogger;
+import org.pops.et4.jvm.project.schemas.models.publisher.CrashReport;
+import org.pops.et4.jvm.project.schemas.models.publisher.Platform;
+import org.pops.et4.jvm.project.schemas.repositories.publisher.CrashReportRepository;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+
+/**
+ * Most frequent crash signatures of each game, and of each version of a game, without grouping the CrashReports table.
+ * <ul>
+ *     <li>one count-min sketch estimates every signature in a fixed amount of memory</li>
+ *     <li>one {@link SpaceSaving} per game and per (game, version) monitors the heavy hitters, a signature enters it
+ *     when its estimate beats the least counted monitored one</li>
+ *     <li>the signatures listed by {@link #top} get an exact counter: one indexed count the first time they are listed,
+ *     then incremented with each report</li>
+ * </ul>
+ * Built from the crash reports once every bean is created, then updated by each report once its transaction commits.
+ */
+@Component(CrashAnalytics.BEAN_NAME)
+public class CrashAnalytics implements SmartInitializingSingleton {
+
+    public static final String BEAN_NAME = "publisherServiceCrashAnalytics";
+
+    private static final EventLogger LOG = EventLog.logger("CrashAnalytics");
+
+    private final CrashReportRepository crashReportRepository;
+
+    @Value("${crash-analytics.enabled:true}")
+    private boolean enabled;
+
+    @Value("${crash-analytics.sketch.epsilon:0.0001}")
+    private double epsilon;
+
+    @Value("${crash-analytics.sketch.delta:0.001}")
+    private double delta;
+
+    @Value("${crash-analytics.monitored-per-game:64}")
+    private int monitoredPerGame;
+
+    @Value("${crash-analytics.max-exact:10000}")
+    private int maxExact;
+
+    @Value("${crash-analytics.load-batch-size:10000}")
+    private int loadBatchSize;
+
+    private CountMinSketch sketch;
+    // Version null: every version of the game
+    private final Map<GameVersion, SpaceSaving<CrashSignature>> heavyHitters = new HashMap<>();
+    private final Map<CrashSignature, long[]> exact = new HashMap<>();
+
+    private volatile boolean ready;
+
+    @Autowired
+    public CrashAnalytics(@Qualifier(CrashReportRepository.BEAN_NAME) CrashReportRepository crashReportRepository) {
+        this.crashReportRepository = crashReportRepository;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (this.enabled) this.rebuild();
+    }
+
+    /**
+     * Reads the signatures of every crash report with keyset pagination, the messages are not loaded.
+     */
+    public void rebuild() {
+        long start = System.nanoTime();
+        this.ready = false;
+        synchronized (this) {
+            this.sketch = new CountMinSketch(this.epsilon, this.delta);
+            this.heavyHitters.clear();
+            this.exact.clear();
+        }
+
+        long afterId = 0;
+        List<CrashReportRepository.CrashSignatureRow> batch;
+        do {
+            batch = this.crashReportRepository.findSignaturesAfter(afterId, PageRequest.of(0, this.loadBatchSize));
+            synchronized (this) {
+                for (CrashReportRepository.CrashSignatureRow row : batch) {
+                    this.add(new CrashSignature(row.getGameId(), row.getVersion(),
+                            row.getPlatform() == null ? null : row.getPlatform().name(), row.getErrorCode()));
+                }
+            }
+            if (!batch.isEmpty()) afterId = batch.get(batch.size() - 1).getId();
+        } while (batch.size() == this.loadBatchSize);
+
+        this.ready = true;
+        LOG.info("Built crash analytics in {} ms: {}", (System.nanoTime() - start) / 1_000_000, this);
+    }
+
+    /**
+     * Counts a crash report once its transaction commits.
+     */
+    public void reported(CrashReport crash) {
+        if (!this.ready) return;
+        CrashSignature signature = new CrashSignature(crash.getGame().getId(), crash.getVersion(),
+                crash.getPlatform() == null ? null : crash.getPlatform().name(), crash.getErrorCode());
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            this.addLocked(signature);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                CrashAnalytics.this.addLocked(signature);
+            }
+        });
+    }
+
+    /**
+     * @param version Version of the game, null for every version
+     * @return Most frequent signatures, most frequent first, with their exact count
+     */
+    public List<TopSignature> top(long gameId, String version, int limit) {
+        List<SpaceSaving.Entry<CrashSignature>> candidates;
+        synchronized (this) {
+            SpaceSaving<CrashSignature> monitored = this.heavyHitters.get(new GameVersion(gameId, version));
+            if (monitored == null || limit <= 0) return List.of();
+            candidates = monitored.top(limit);
+        }
+
+        List<TopSignature> top = new ArrayList<>(candidates.size());
+        for (SpaceSaving.Entry<CrashSignature> candidate : candidates)
+            top.add(new TopSignature(candidate.key(), this.exactCount(candidate.key()), candidate.count(), candidate.error()));
+        top.sort(Comparator.comparingLong((TopSignature signature) -> signature.exact() >= 0 ? signature.exact() : signature.count()).reversed());
+        return top;
+    }
+
+    public boolean isReady() {
+        return this.ready;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "sketch=" + this.sketch + " (" + (this.sketch == null ? 0 : this.sketch.sizeInBytes() / 1024) + " KiB)"
+                + ", monitored=" + this.heavyHitters.size() + " game(s)/version(s), exact=" + this.exact.size() + ", ready=" + this.ready;
+    }
+
+    private synchronized void addLocked(CrashSignature signature) {
+        this.add(signature);
+    }
+
+    private void add(CrashSignature signature) {
+        long estimate = this.sketch.add(signature.hash64(), 1);
+        this.heavyHitters.computeIfAbsent(new GameVersion(signature.gameId(), null), key -> new SpaceSaving<>(this.monitoredPerGame))
+                .add(signature, 1, estimate);
+        this.heavyHitters.computeIfAbsent(new GameVersion(signature.gameId(), signature.version()), key -> new SpaceSaving<>(this.monitoredPerGame))
+                .add(signature, 1, estimate);
+
+        long[] count = this.exact.get(signature);
+        if (count != null) count[0]++;
+    }
+
+    /**
+     * Counts the signature in the database the first time, the counter is then kept up to date by {@link #add}.
+     * A report committed between the count and the registration of the counter can be counted twice.
+     */
+    private long exactCount(CrashSignature signature) {
+        synchronized (this) {
+            long[] count = this.exact.get(signature);
+            if (count != null) return count[0];
+        }
+        if (signature.platform() == null) return -1;
+
+        long count = this.crashReportRepository.countSignature(signature.gameId(), signature.version(),
+                Platform.valueOf(signature.platform()), signature.errorCode());
+        synchronized (this) {
+            if (this.exact.size() >= this.maxExact) this.exact.clear();
+            return this.exact.computeIfAbsent(signature, key -> new long[] { count })[0];
+        }
+    }
+
+    private record GameVersion(long gameId, String version) {}
+
+    /**
+     * @param exact Exact number of reports, -1 if unknown
+     * @param count Upper bound of the number of reports
+     * @param error Reports possibly counted before the signature was monitored
+     */
+    public record TopSignature(CrashSignature signature, long exact, long count, long error) {}
+}
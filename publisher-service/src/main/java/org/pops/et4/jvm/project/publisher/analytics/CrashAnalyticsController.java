@@ -0,0 +1,56 @@
+package org.pops.et4.jvm.project.publisher.analytics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Serves the heavy hitters of the {@link CrashAnalytics}.
+ * <ul>
+ *     <li>{@code GET /crashes/<gameId>/top?limit=<n>}: most frequent signatures over every version of the game</li>
+ *     <li>{@code GET /crashes/<gameId>/top?version=<version>&limit=<n>}: most frequent signatures of one version</li>
+ * </ul>
+ * One signature per line: {@code <exact|-> <count> <error> <version> <platform> <errorCode>}, most frequent first.
+ */
+@RestController(CrashAnalyticsController.BEAN_NAME)
+@RequestMapping(CrashAnalyticsController.BASE_PATH + "/{gameId}")
+public class CrashAnalyticsController {
+
+    public static final String BEAN_NAME = "publisherServiceCrashAnalyticsController";
+
+    public static final String BASE_PATH = "/crashes";
+
+    private static final int MAX_LIMIT = 1000;
+
+    private final CrashAnalytics crashAnalytics;
+
+    @Autowired
+    public CrashAnalyticsController(@Qualifier(CrashAnalytics.BEAN_NAME) CrashAnalytics crashAnalytics) {
+        this.crashAnalytics = crashAnalytics;
+    }
+
+    @GetMapping(value = "/top", produces = MediaType.TEXT_PLAIN_VALUE)
+    public String top(
+            @PathVariable long gameId,
+            @RequestParam(required = false) String version,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        if (!this.crashAnalytics.isReady())
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Crash analytics not built yet");
+
+        StringBuilder text = new StringBuilder();
+        for (CrashAnalytics.TopSignature top : this.crashAnalytics.top(gameId, version, Math.min(limit, MAX_LIMIT))) {
+            CrashSignature signature = top.signature();
+            text.append(top.exact() >= 0 ? Long.toString(top.exact()) : "-").append(' ')
+                .append(top.count()).append(' ')
+                .append(top.error()).append(' ')
+                .append(signature.version()).append(' ')
+                .append(signature.platform()).append(' ')
+                .append(signature.errorCode()).append('\n');
+        }
+        return text.toString();
+    }
+}
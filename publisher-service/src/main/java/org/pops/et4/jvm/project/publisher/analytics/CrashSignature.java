@@ -0,0 +1,48 @@
+package org.pops.et4.jvm.project.publisher.analytics;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * What makes two crashes "the same crash": the game, its version, the platform and the error code.
+ * @param platform Platform name, null if the report had none
+ */
+public record CrashSignature(long gameId, String version, String platform, int errorCode) {
+
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    /**
+     * @return 64-bit FNV-1a hash of the fields, the sketch derives its row indexes from it
+     */
+    public long hash64() {
+        long hash = FNV_OFFSET;
+        hash = mix(hash, this.gameId);
+        hash = mix(hash, this.version);
+        hash = mix(hash, this.platform);
+        return mix(hash, this.errorCode);
+    }
+
+    @Override
+    public String toString() {
+        return "game " + this.gameId + " v" + this.version + " on " + this.platform + ", error " + this.errorCode;
+    }
+
+    private static long mix(long hash, long value) {
+        for (int i = 0; i < Long.BYTES; i++) {
+            hash ^= (value >>> (i * 8)) & 0xFF;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, String value) {
+        if (value == null) return mix(hash, -1L);
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= FNV_PRIME;
+        }
+        // Field separator, so ("1.0", "1PC") and ("1.01", "PC") differ
+        hash ^= 0xFF;
+        return hash * FNV_PRIME;
+    }
+}
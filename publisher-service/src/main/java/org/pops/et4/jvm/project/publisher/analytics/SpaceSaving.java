@@ -0,0 +1,86 @@
+package org.pops.et4.jvm.project.publisher.analytics;
+
+import java.util.*;
+
+/**
+ * Space-saving top-k: at most {@code capacity} monitored keys, each with a count and the error of that count.
+ * <ul>
+ *     <li>a monitored key is counted exactly from the moment it is monitored</li>
+ *     <li>a new key replaces the least counted one only if its count-min estimate is higher,
+ *     it starts at that estimate, which is also its error</li>
+ *     <li>a frequent key is monitored sooner or later: its estimate keeps growing past the smallest count</li>
+ * </ul>
+ * Not thread-safe, the {@link CrashAnalytics} serializes every access.
+ */
+final class SpaceSaving<K> {
+
+    private static final class Counter<K> {
+        private final K key;
+        private final long sequence;
+        private long count;
+        private long error;
+
+        private Counter(K key, long sequence, long count, long error) {
+            this.key = key;
+            this.sequence = sequence;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    private final int capacity;
+    private final Map<K, Counter<K>> counters = new HashMap<>();
+    private final TreeSet<Counter<K>> byCount = new TreeSet<>(
+            Comparator.<Counter<K>>comparingLong(counter -> counter.count).thenComparingLong(counter -> counter.sequence));
+    private long sequence;
+
+    SpaceSaving(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param estimate Count-min estimate of the key, this occurrence included
+     */
+    void add(K key, long increment, long estimate) {
+        Counter<K> counter = this.counters.get(key);
+        if (counter != null) {
+            this.byCount.remove(counter);
+            counter.count += increment;
+            this.byCount.add(counter);
+            return;
+        }
+
+        if (this.counters.size() == this.capacity) {
+            Counter<K> smallest = this.byCount.first();
+            if (estimate <= smallest.count) return;
+            this.byCount.pollFirst();
+            this.counters.remove(smallest.key);
+        }
+        counter = new Counter<>(key, this.sequence++, estimate, estimate - increment);
+        this.counters.put(key, counter);
+        this.byCount.add(counter);
+    }
+
+    /**
+     * @return Up to {@code limit} monitored keys, most counted first
+     */
+    List<Entry<K>> top(int limit) {
+        List<Entry<K>> top = new ArrayList<>(Math.min(limit, this.counters.size()));
+        Iterator<Counter<K>> iterator = this.byCount.descendingIterator();
+        while (iterator.hasNext() && top.size() < limit) {
+            Counter<K> counter = iterator.next();
+            top.add(new Entry<>(counter.key, counter.count, counter.error));
+        }
+        return top;
+    }
+
+    int size() {
+        return this.counters.size();
+    }
+
+    /**
+     * @param count Upper bound of the number of occurrences
+     * @param error Occurrences possibly counted before the key was monitored, {@code count - error} is a lower bound
+     */
+    record Entry<K>(K key, long count, long error) {}
+}
@@ -0,0 +1,106 @@
+package org.pops.et4.jvm.project.publisher.archive;
+
+import org.pops.et4.jvm.project.migrations.PartitionMaintenance;
+import org.pops.et4.jvm.project.publisher.kafka.KafkaConsumerService;
+import org.pops.et4.jvm.project.schemas.archive.ArchiveReader;
+import org.pops.et4.jvm.project.schemas.archive.ArchivedEvent;
+import org.pops.et4.jvm.project.schemas.archive.Archiver;
+import org.pops.et4.jvm.project.schemas.archive.EventArchive;
+import org.pops.et4.jvm.project.schemas.events.ConsumeLog;
+import org.pops.et4.jvm.project.schemas.events.CrashReported;
+import org.pops.et4.jvm.project.schemas.events.KafkaEvent;
+import org.pops.et4.jvm.project.schemas.events.Platform;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Cold tier of the publisher: what ages out of memory and of publisher_db is kept in an {@link EventArchive} for audits.
+ * <ul>
+ *     <li>the consume logs older than {@code archive.consume-logs.max-age-minutes}, one dataset per topic ({@code consume-logs/<topic>})</li>
+ *     <li>the crash reports of an expired partition, as CrashReported events keyed by report id ({@code crash-reports}),
+ *     before {@link org.pops.et4.jvm.project.publisher.db.PartitionMaintenanceService} drops it</li>
+ * </ul>
+ */
+@Component(ArchiveService.BEAN_NAME)
+public class ArchiveService {
+
+    public static final String BEAN_NAME = "publisherServiceArchiveService";
+
+    public static final String CRASH_REPORTS_DATASET = "crash-reports";
+
+    private final KafkaConsumerService consumerService;
+    private final EventArchive archive;
+    private final ArchiveReader reader;
+    private final Archiver archiver;
+
+    @Value("${archive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${archive.consume-logs.max-age-minutes:60}")
+    private long consumeLogsMaxAgeMinutes;
+
+    @Autowired
+    public ArchiveService(
+            @Qualifier(KafkaConsumerService.BEAN_NAME) KafkaConsumerService consumerService,
+            @Value("${archive.path:./data/publisher-archive}") String path,
+            @Value("${archive.codec:deflate}") String codec
+    ) {
+        this.consumerService = consumerService;
+        this.archive = new EventArchive(Path.of(path), codec);
+        this.reader = new ArchiveReader(this.archive);
+        this.archiver = new Archiver(this.archive);
+    }
+
+    public EventArchive getArchive() {
+        return this.archive;
+    }
+
+    public ArchiveReader getReader() {
+        return this.reader;
+    }
+
+    @Scheduled(fixedDelayString = "${archive.interval-ms:600000}", initialDelayString = "${archive.interval-ms:600000}")
+    public void scheduledRun() {
+        if (this.enabled) this.archiveConsumeLogs();
+    }
+
+    /**
+     * Moves the old consume logs to the archive, they stay in memory if they cannot be written.
+     * @return Number of archived logs
+     */
+    public synchronized int archiveConsumeLogs() {
+        List<ConsumeLog<? extends KafkaEvent>> logs = this.consumerService.getLogsBefore(Instant.now().minus(Duration.ofMinutes(this.consumeLogsMaxAgeMinutes)));
+        return this.archiver.archiveConsumeLogs(logs, this.consumerService::removeLogs);
+    }
+
+    /**
+     * {@link PartitionMaintenance.BeforeDrop} of the CrashReports table: streams the rows of the partition to the archive.
+     */
+    public void archivePartition(Connection connection, PartitionMaintenance.PartitionedTable table, String partition) throws SQLException, IOException {
+        this.archiver.archivePartition(connection, partition, CRASH_REPORTS_DATASET,
+                "SELECT id, game_id, distributor_id, platform, version, error_code, message, report_date FROM " + partition,
+                row -> {
+                    String platform = row.getString("platform");
+                    CrashReported event = CrashReported.newBuilder()
+                            .setDistributorId(row.getLong("distributor_id"))
+                            .setGameId(row.getLong("game_id"))
+                            .setPlatform(platform == null ? Platform.UNKNOWN : Platform.valueOf(platform))
+                            .setInstalledVersion(row.getString("version"))
+                            .setErrorCode(row.getInt("error_code"))
+                            .setMessage(row.getString("message"))
+                            .build();
+                    return new ArchivedEvent<>(table.name(), row.getTimestamp("report_date").toInstant(), String.valueOf(row.getLong("id")), event);
+                });
+    }
+}
@@ -0,0 +1,94 @@
+package org.pops.et4.jvm.project.publisher.db;
+
+import org.pops.et4.jvm.project.migrations.PartitionMaintenance;
+import org.pops.et4.jvm.project.migrations.SchemaMigrations;
+import org.pops.et4.jvm.project.publisher.analytics.CrashAnalytics;
+import org.pops.et4.jvm.project.publisher.archive.ArchiveService;
+import org.pops.et4.jvm.project.schemas.logging.EventLog;
+import org.pops.et4.jvm.project.schemas.logging.EventLogger;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Monthly partitions of the CrashReports table (PostgreSQL only, see the V2 migration of publisher_db).
+ * The rows of an expired partition are archived by the {@link ArchiveService} before it is dropped.
+ * Runs once every bean is created, so the partitions of the coming months exist before the listeners start, then periodically.
+ */
+@Component(PartitionMaintenanceService.BEAN_NAME)
+public class PartitionMaintenanceService implements SmartInitializingSingleton {
+
+    public static final String BEAN_NAME = "publisherServicePartitionMaintenanceService";
+
+    private static final EventLogger LOG = EventLog.logger("Partitions");
+
+    private final PartitionMaintenance maintenance;
+    private final CrashAnalytics crashAnalytics;
+
+    @Value("${partitioning.enabled:true}")
+    private boolean enabled;
+
+    private List<PartitionMaintenance.Result> lastResults = List.of();
+
+    @Autowired
+    public PartitionMaintenanceService(
+            @Qualifier(PublisherDbConfig.DATA_SOURCE_BEAN_NAME) DataSource dataSource,
+            // Les partitions n'existent qu'une fois les migrations passées
+            @Qualifier(PublisherDbConfig.MIGRATIONS_BEAN_NAME) SchemaMigrations migrations,
+            @Qualifier(CrashAnalytics.BEAN_NAME) CrashAnalytics crashAnalytics,
+            @Qualifier(ArchiveService.BEAN_NAME) ArchiveService archiveService,
+            @Value("${archive.enabled:true}") boolean archive,
+            @Value("${partitioning.crash-reports.premake-months:3}") int premakeMonths,
+            @Value("${partitioning.crash-reports.retention-months:24}") int retentionMonths
+    ) {
+        this.maintenance = new PartitionMaintenance(dataSource, List.of(
+                new PartitionMaintenance.PartitionedTable("crash_reports", "report_date", premakeMonths, retentionMonths, List.of())
+        ), archive ? archiveService::archivePartition : (connection, table, partition) -> {});
+        this.crashAnalytics = crashAnalytics;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (this.enabled) this.run();
+    }
+
+    @Scheduled(fixedDelayString = "${partitioning.maintenance-interval-ms:3600000}", initialDelayString = "${partitioning.maintenance-interval-ms:3600000}")
+    public void scheduledRun() {
+        if (this.enabled) this.run();
+    }
+
+    /**
+     * Creates the coming partitions and drops the expired ones, then rebuilds the crash analytics if reports were dropped.
+     */
+    public synchronized List<PartitionMaintenance.Result> run() {
+        try {
+            this.lastResults = this.maintenance.run(YearMonth.now(ZoneOffset.UTC));
+        } catch (SQLException e) {
+            LOG.error("Partition maintenance of publisher_db failed: {}", e.getMessage());
+            return List.of();
+        }
+        if (this.lastResults.stream().anyMatch(result -> result.dropped() > 0) && this.crashAnalytics.isReady())
+            this.crashAnalytics.rebuild();
+        return this.lastResults;
+    }
+
+    /**
+     * @return Months of the partitions of the CrashReports table, empty if it is not partitioned
+     */
+    public List<YearMonth> partitions() throws SQLException {
+        return this.maintenance.partitions("crash_reports");
+    }
+
+    public List<PartitionMaintenance.Result> getLastResults() {
+        return this.lastResults;
+    }
+}
@@ -1,7 +1,13 @@
 package org.pops.et4.jvm.project.publisher.db;
 
 import jakarta.persistence.EntityManagerFactory;
+import org.pops.et4.jvm.project.migrations.Database;
+import org.pops.et4.jvm.project.migrations.SchemaMigrations;
+import org.pops.et4.jvm.project.schemas.logging.EventLog;
+import org.pops.et4.jvm.project.schemas.logging.EventLogger;
+import org.pops.et4.jvm.project.schemas.sql.SqlBudget;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
 import org.springframework.boot.jpa.EntityManagerFactoryBuilder;
@@ -14,6 +20,7 @@ import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
 import javax.sql.DataSource;
+import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -32,6 +39,7 @@ public class PublisherDbConfig {
     public static final String DATA_SOURCE_PROPS_BEAN_NAME = "publisherServicePublisherDbDataSourceProperties";
     public static final String ENTITY_MANAGER_FACTORY_BEAN_NAME = "publisherServicePublisherDbEntityManagerFactory";
     public static final String TRANSACTION_MANAGER_BEAN_NAME = "publisherServicePublisherDbTransactionManager";
+    public static final String MIGRATIONS_BEAN_NAME = "publisherServicePublisherDbMigrations";
 
     public static final String REPOSITORIES_PACKAGE = "org.pops.et4.jvm.project.schemas.repositories.publisher";
     public static final String MODELS_PACKAGE = "org.pops.et4.jvm.project.schemas.models.publisher";
@@ -39,6 +47,8 @@ public class PublisherDbConfig {
     public static final String ENTITY_MANAGER_PERSISTENCE = "publisher";
     public static final String DB_MODE = "update";
 
+    private static final EventLogger LOG = EventLog.logger("Db");
+
     @Bean(name = PublisherDbConfig.DATA_SOURCE_PROPS_BEAN_NAME)
     @ConfigurationProperties(prefix = PublisherDbConfig.DATA_SOURCE_CONFIG)
     public DataSourceProperties dataSourceProperties() {
@@ -59,6 +69,10 @@ public class PublisherDbConfig {
     ) {
         Map<String, Object> props = new HashMap<>();
         props.put("hibernate.hbm2ddl.auto", PublisherDbConfig.DB_MODE);
+        // Compte les requêtes de chaque handler, voir SqlBudget
+        props.put(SqlBudget.STATEMENT_INSPECTOR_PROPERTY, SqlBudget.INSTANCE);
+        // CrashReports est partitionnée sur PostgreSQL : sans ça, Hibernate ne la voit pas et tente de la recréer
+        props.put("hibernate.hbm2ddl.extra_physical_table_types", "PARTITIONED TABLE");
 
         return builder
                 .dataSource(dataSource)
@@ -74,4 +88,26 @@ public class PublisherDbConfig {
     ) {
         return new JpaTransactionManager(emf);
     }
+
+    /**
+     * Migrations versionnées de la base (index...), une fois les tables créées par Hibernate
+     */
+    @Bean(name = PublisherDbConfig.MIGRATIONS_BEAN_NAME)
+    public SchemaMigrations migrations(
+            @Qualifier(PublisherDbConfig.DATA_SOURCE_BEAN_NAME) DataSource dataSource,
+            @Qualifier(PublisherDbConfig.ENTITY_MANAGER_FACTORY_BEAN_NAME) EntityManagerFactory emf,
+            @Value("${migrations.enabled:true}") boolean enabled,
+            @Value("${migrations.check-access-paths:true}") boolean checkAccessPaths
+    ) {
+        SchemaMigrations migrations = new SchemaMigrations(dataSource, Database.PUBLISHER);
+        if (enabled) migrations.migrate();
+        if (checkAccessPaths) {
+            try {
+                migrations.logAccessPaths();
+            } catch (SQLException e) {
+                LOG.warn("Could not check the access paths of publisher_db: {}", e.getMessage());
+            }
+        }
+        return migrations;
+    }
 }
\ No newline at end of file
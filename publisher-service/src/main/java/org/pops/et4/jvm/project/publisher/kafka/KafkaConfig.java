@@ -1,37 +1,57 @@
 package org.pops.et4.jvm.project.publisher.kafka;
 
+import io.confluent.kafka.schemaregistry.client.CachedSchemaRegistryClient;
+import io.confluent.kafka.schemaregistry.client.SchemaRegistryClient;
 import io.confluent.kafka.serializers.KafkaAvroDeserializer;
 import io.confluent.kafka.serializers.KafkaAvroDeserializerConfig;
 import io.confluent.kafka.serializers.KafkaAvroSerializer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
-import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.pops.et4.jvm.project.schemas.kafka.DeadLetterTool;
+import org.pops.et4.jvm.project.schemas.kafka.InMemoryEventBus;
+import org.pops.et4.jvm.project.schemas.kafka.ProducerPipeline;
+import org.pops.et4.jvm.project.schemas.kafka.ProducerProfile;
+import org.pops.et4.jvm.project.schemas.kafka.RetryTopics;
+import org.pops.et4.jvm.project.schemas.sql.SqlBudgetInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
 import org.springframework.kafka.annotation.EnableKafka;
+import org.springframework.kafka.annotation.EnableKafkaRetryTopic;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.*;
-import org.springframework.kafka.listener.ConsumerRecordRecoverer;
-import org.springframework.kafka.listener.DefaultErrorHandler;
-import org.springframework.util.backoff.FixedBackOff;
+import org.springframework.kafka.retrytopic.RetryTopicConfiguration;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Configuration(KafkaConfig.BEAN_NAME)
 @EnableKafka
+@EnableKafkaRetryTopic
 public class KafkaConfig {
 
     public static final String BEAN_NAME = "publisherServiceKafkaConfig";
 
     public static final String KAFKA_TEMPLATE_BEAN_NAME = "publisherServiceKafkaTemplate";
     public static final String PRODUCER_FACTORY_BEAN_NAME = "publisherServiceProducerFactory";
+    public static final String PRODUCER_PIPELINE_BEAN_NAME = "publisherServiceProducerPipeline";
+    public static final String CALLBACK_EXECUTOR_BEAN_NAME = "publisherServiceProducerCallbackExecutor";
     public static final String CONSUMER_FACTORY_BEAN_NAME = "publisherServiceConsumerFactory";
-    public static final String ERROR_HANDLER_BEAN_NAME = "publisherServiceErrorHandler";
     public static final String KAFKA_LISTENER_CONTAINER_BEAN_NAME = "publisherServiceKafkaListenerContainerFactory";
+    public static final String RETRY_TOPIC_CONFIGURATION_BEAN_NAME = "publisherServiceRetryTopicConfiguration";
+    public static final String DEAD_LETTER_TOOL_BEAN_NAME = "publisherServiceDeadLetterTool";
+    public static final String SCHEMA_REGISTRY_CLIENT_BEAN_NAME = "publisherServiceSchemaRegistryClient";
+
+    private static final int SCHEMA_CACHE_CAPACITY = 1000;
 
     @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrapServers;
@@ -42,23 +62,121 @@ public class KafkaConfig {
     @Value("${spring.kafka.consumer.group-id}")
     private String groupId;
 
+    @Value("${producer.pipeline.max-in-flight:10000}")
+    private int maxInFlight;
+
+    @Value("${producer.pipeline.acquire-timeout-ms:30000}")
+    private long acquireTimeoutMs;
+
+    @Value("${kafka.in-memory:false}")
+    private boolean inMemory;
+
+    @Value("${consumer.concurrency:1}")
+    private int concurrency;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${sql.budget.enabled:false}")
+    private boolean sqlBudget;
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${consumer.retry.max-attempts:4}")
+    private int retryMaxAttempts;
+
+    @Value("${consumer.retry.initial-interval-ms:1000}")
+    private long retryInitialIntervalMs;
+
+    @Value("${consumer.retry.multiplier:4.0}")
+    private double retryMultiplier;
+
+    @Value("${consumer.retry.max-interval-ms:60000}")
+    private long retryMaxIntervalMs;
+
+    /**
+     * @return true when the records go through the {@link InMemoryEventBus} instead of Kafka
+     */
+    public boolean isInMemory() {
+        return this.inMemory;
+    }
+
+    /**
+     * Schema Registry client shared by every producer and consumer of the service,
+     * so the schema ids fetched during the warm-up are not fetched again by the first records.
+     */
+    @Bean(name = KafkaConfig.SCHEMA_REGISTRY_CLIENT_BEAN_NAME)
+    public SchemaRegistryClient schemaRegistryClient() {
+        return new CachedSchemaRegistryClient(this.schemaRegistryUrl, KafkaConfig.SCHEMA_CACHE_CAPACITY);
+    }
+
+    /**
+     * @return A new Avro serializer backed by the shared Schema Registry client
+     */
+    public Serializer<Object> valueSerializer() {
+        return new KafkaAvroSerializer(this.schemaRegistryClient(), this.producerConfig());
+    }
+
+    /**
+     * @return A new Avro deserializer backed by the shared Schema Registry client
+     */
+    public Deserializer<Object> valueDeserializer() {
+        return new KafkaAvroDeserializer(this.schemaRegistryClient(), this.consumerConfig());
+    }
+
     @Bean(name = KafkaConfig.KAFKA_TEMPLATE_BEAN_NAME)
     public KafkaTemplate<String, Object> kafkaTemplate() {
+        if (this.inMemory) return InMemoryEventBus.shared().template();
         return new KafkaTemplate<>(producerFactory());
     }
 
     @Bean(name = KafkaConfig.PRODUCER_FACTORY_BEAN_NAME)
     public ProducerFactory<String, Object> producerFactory() {
+        return new DefaultKafkaProducerFactory<>(this.producerConfig(), StringSerializer::new, this::valueSerializer);
+    }
+
+    /**
+     * Pipeline utilisé par le service producteur.
+     */
+    @Bean(name = KafkaConfig.PRODUCER_PIPELINE_BEAN_NAME)
+    public ProducerPipeline producerPipeline() {
+        ProducerPipeline.Builder builder = this.inMemory
+                ? ProducerPipeline.builder(InMemoryEventBus.shared())
+                : ProducerPipeline.builder(this.producerConfig(), this::valueSerializer);
+
+        return builder
+                .defaultProfile(ProducerProfile.LOW_LATENCY)
+                .maxInFlight(this.maxInFlight)
+                .acquireTimeoutMs(this.acquireTimeoutMs)
+                .callbackExecutor(this.virtualThreads ? this.callbackExecutor() : null)
+                .build();
+    }
+
+    /**
+     * Virtual threads running the stages chained on the producer futures, used by the pipeline in virtual-thread mode.
+     * Closed with the context, after the pipeline.
+     */
+    @Bean(name = KafkaConfig.CALLBACK_EXECUTOR_BEAN_NAME, destroyMethod = "close")
+    public ExecutorService callbackExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("producer-callback-", 0).factory());
+    }
+
+    private Map<String, Object> producerConfig() {
         Map<String, Object> configProps = new HashMap<>();
         configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
         configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, KafkaAvroSerializer.class);
         configProps.put("schema.registry.url", schemaRegistryUrl);
-        return new DefaultKafkaProducerFactory<>(configProps);
+        return configProps;
     }
 
     @Bean(name = KafkaConfig.CONSUMER_FACTORY_BEAN_NAME)
     public ConsumerFactory<String, Object> consumerFactory() {
+        return new DefaultKafkaConsumerFactory<>(this.consumerConfig(), StringDeserializer::new, this::valueDeserializer);
+    }
+
+    private Map<String, Object> consumerConfig() {
         Map<String, Object> props = new HashMap<>();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
@@ -67,30 +185,50 @@ public class KafkaConfig {
         props.put("schema.registry.url", schemaRegistryUrl);
         props.put(KafkaAvroDeserializerConfig.SPECIFIC_AVRO_READER_CONFIG, true); // Matches your YAML
         props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
-
-        return new DefaultKafkaConsumerFactory<>(props);
-    }
-
-    @Bean(name = KafkaConfig.ERROR_HANDLER_BEAN_NAME)
-    public DefaultErrorHandler errorHandler() {
-        ConsumerRecordRecoverer recoverer = (ConsumerRecord<?, ?> record, Exception exception) -> {
-            System.err.println("------------------------------------------------");
-            System.err.println(" [ERROR] Failed to consume message!");
-            System.err.println(" Key: " + record.key());
-            System.err.println(" Error: " + exception.getMessage());
-            System.err.println(" -> Skipping message and committing offset.");
-            System.err.println("------------------------------------------------");
-        };
-
-        return new DefaultErrorHandler(recoverer, new FixedBackOff(0L, 0L));
+        return props;
     }
 
+    /**
+     * Container factory of the listeners, main and retry topics alike.
+     * It has no error handler of its own: a failed record goes through the retry topics, then to the dead-letter topic,
+     * see {@link #retryTopicConfiguration}.
+     */
     @Bean(name = KafkaConfig.KAFKA_LISTENER_CONTAINER_BEAN_NAME)
     public ConcurrentKafkaListenerContainerFactory<String, Object> kafkaListenerContainerFactory() {
         ConcurrentKafkaListenerContainerFactory<String, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(this.consumerFactory());
-        factory.setCommonErrorHandler(this.errorHandler());
+        factory.setAutoStartup(!this.inMemory);
+        factory.setConcurrency(this.concurrency);
+        // Each consumer then blocks a virtual thread on the database instead of a platform thread
+        if (this.virtualThreads)
+            factory.getContainerProperties().setListenerTaskExecutor(new VirtualThreadTaskExecutor(this.groupId + "-listener-"));
+        // SQL statements counted per record, to catch the N+1 selects
+        if (this.sqlBudget)
+            factory.setRecordInterceptor(new SqlBudgetInterceptor<>(this.environment));
         return factory;
     }
 
+    /**
+     * Retries non bloquants : topic-retry-N avec délai exponentiel, puis topic-dlt.
+     */
+    @Bean(name = KafkaConfig.RETRY_TOPIC_CONFIGURATION_BEAN_NAME)
+    public RetryTopicConfiguration retryTopicConfiguration() {
+        return RetryTopics.configuration(
+                this.kafkaTemplate(),
+                KafkaConfig.KAFKA_LISTENER_CONTAINER_BEAN_NAME,
+                this.retryMaxAttempts,
+                this.retryInitialIntervalMs,
+                this.retryMultiplier,
+                this.retryMaxIntervalMs
+        );
+    }
+
+    /**
+     * Outil d'inspection et de relance des topics -dlt.
+     */
+    @Bean(name = KafkaConfig.DEAD_LETTER_TOOL_BEAN_NAME)
+    public DeadLetterTool deadLetterTool() {
+        return new DeadLetterTool(this.consumerConfig(), this.producerPipeline(), this.groupId + "-dlt-redrive");
+    }
+
 }
\ No newline at end of file
@@ -3,11 +3,14 @@ package org.pops.et4.jvm.project.publisher.kafka;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.pops.et4.jvm.project.publisher.PublisherService;
 import org.pops.et4.jvm.project.publisher.db.PublisherDbConfig;
+import org.pops.et4.jvm.project.publisher.dedup.ProcessedEventService;
 import org.pops.et4.jvm.project.schemas.events.ConsumeLog;
 import org.pops.et4.jvm.project.schemas.events.ExampleEvent;
 import org.pops.et4.jvm.project.schemas.events.GameReviewed;
 import org.pops.et4.jvm.project.schemas.events.CrashReported;
 import org.pops.et4.jvm.project.schemas.events.KafkaEvent;
+import org.pops.et4.jvm.project.schemas.logging.EventLog;
+import org.pops.et4.jvm.project.schemas.logging.EventLogger;
 import org.pops.et4.jvm.project.schemas.models.publisher.Review;
 import org.pops.et4.jvm.project.schemas.repositories.publisher.*;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,35 +18,45 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 @Service(KafkaConsumerService.BEAN_NAME)
 public class KafkaConsumerService {
 
     public static final String BEAN_NAME = "publisherServiceKafkaConsumerService";
 
+    private static final EventLogger LOG = EventLog.logger("Consumer");
+
     public static final String EXAMPLE_EVENT_CONSUMER_BEAN_NAME = "publisherServiceExampleEventConsumer";
     public static final String GAME_REVIEWED_CONSUMER_BEAN_NAME = "publisherServiceGameReviewedConsumer";
     public static final String CRASH_REPORTED_CONSUMER_BEAN_NAME = "publisherServiceCrashReportedConsumer";
 
     private final KafkaProducerService producerService;
     private final PublisherService publisherService;
+    private final ProcessedEventService processedEventService;
     private final PublisherRepository publisherRepository;
     private final GameRepository gameRepository;
     private final PatchRepository patchRepository;
     private final CrashReportRepository crashReportRepository;
     private final ReviewRepository reviewRepository;
 
-    private final List<ConsumeLog<? extends KafkaEvent>> logs = new ArrayList<>();
+    // Appended by the listeners, drained by the archive service
+    private final List<ConsumeLog<? extends KafkaEvent>> logs = Collections.synchronizedList(new ArrayList<>());
 
     @Autowired
     public KafkaConsumerService(
             @Qualifier(KafkaProducerService.BEAN_NAME) KafkaProducerService producerService,
             @Qualifier(PublisherService.BEAN_NAME) PublisherService publisherService,
+            @Qualifier(ProcessedEventService.BEAN_NAME) ProcessedEventService processedEventService,
             @Qualifier(PublisherRepository.BEAN_NAME) PublisherRepository publisherRepository,
             @Qualifier(GameRepository.BEAN_NAME) GameRepository gameRepository,
             @Qualifier(PatchRepository.BEAN_NAME) PatchRepository patchRepository,
@@ -52,6 +65,7 @@ public class KafkaConsumerService {
     ) {
         this.producerService = producerService;
         this.publisherService = publisherService;
+        this.processedEventService = processedEventService;
         this.publisherRepository = publisherRepository;
         this.gameRepository = gameRepository;
         this.patchRepository = patchRepository;
@@ -63,6 +77,45 @@ public class KafkaConsumerService {
         return Collections.unmodifiableList(this.logs);
     }
 
+    /**
+     * @return Copy of the logs consumed before the given date
+     */
+    public List<ConsumeLog<? extends KafkaEvent>> getLogsBefore(Instant before) {
+        synchronized (this.logs) {
+            List<ConsumeLog<? extends KafkaEvent>> logs = new ArrayList<>();
+            for (ConsumeLog<? extends KafkaEvent> log : this.logs)
+                if (log.consumeDate().isBefore(before)) logs.add(log);
+            return logs;
+        }
+    }
+
+    /**
+     * Forgets the given logs, once archived.
+     * Matched by identity: the logs appended meanwhile, even out of date order, are kept.
+     */
+    public void removeLogs(Collection<? extends ConsumeLog<? extends KafkaEvent>> archived) {
+        Set<ConsumeLog<? extends KafkaEvent>> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        removed.addAll(archived);
+        this.logs.removeIf(removed::contains);
+    }
+
+    /**
+     * Appends the log of a record once its transaction commits, right away outside of one.
+     * A record rolled back is redelivered: it is logged by the delivery that commits only.
+     */
+    private void addLog(ConsumeLog<? extends KafkaEvent> log) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            this.logs.add(log);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                KafkaConsumerService.this.logs.add(log);
+            }
+        });
+    }
+
     @KafkaListener(
             id = KafkaConsumerService.EXAMPLE_EVENT_CONSUMER_BEAN_NAME,
             containerFactory = KafkaConfig.KAFKA_LISTENER_CONTAINER_BEAN_NAME,
@@ -72,7 +125,7 @@ public class KafkaConsumerService {
     )
     @Transactional(transactionManager = PublisherDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
     public void consumeExampleEvent(ConsumerRecord<String, ExampleEvent> record) {
-        this.logs.add(
+        this.addLog(
                 new ConsumeLog<>(
                         KafkaConsumerService.EXAMPLE_EVENT_CONSUMER_BEAN_NAME,
                         Instant.now(),
@@ -94,7 +147,7 @@ public class KafkaConsumerService {
         // To call a producer if needed:
         //this.producerService.sendExampleEvent();
 
-        System.out.println("[Consumer] " + ExampleEvent.TOPIC + "(" + record.key() + "): FINISHED");
+        LOG.event("{}({}): FINISHED", ExampleEvent.TOPIC, record.key());
     }
 
     @KafkaListener(
@@ -106,7 +159,7 @@ public class KafkaConsumerService {
     )
     @Transactional(transactionManager = PublisherDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
     public void consumeGameReviewed(ConsumerRecord<String, GameReviewed> record) {
-        this.logs.add(
+        this.addLog(
                 new ConsumeLog<>(
                         KafkaConsumerService.GAME_REVIEWED_CONSUMER_BEAN_NAME,
                         Instant.now(),
@@ -115,13 +168,18 @@ public class KafkaConsumerService {
                 )
         );
 
+        if (!this.processedEventService.markProcessed(record, KafkaConsumerService.GAME_REVIEWED_CONSUMER_BEAN_NAME)) {
+            LOG.info("{}({}): DUPLICATE, skipped", GameReviewed.TOPIC, record.key());
+            return;
+        }
+
         GameReviewed event = record.value();
         try {
             publisherService.processGameReview(event);
         } catch (Exception e) {
-            System.err.println("[Consumer] Error processing review: " + e.getMessage());
+            LOG.error("Error processing review: {}", e.getMessage());
         }
-        System.out.println("[Consumer] " + GameReviewed.TOPIC + "(" + record.key() + "): Review " + event.getReviewId() + " received.");
+        LOG.event("{}({}): Review {} received.", GameReviewed.TOPIC, record.key(), event.getReviewId());
     }
 
     @KafkaListener(
@@ -133,7 +191,7 @@ public class KafkaConsumerService {
     )
     @Transactional(transactionManager = PublisherDbConfig.TRANSACTION_MANAGER_BEAN_NAME)
     public void consumeCrashReported(ConsumerRecord<String, CrashReported> record) {
-        this.logs.add(
+        this.addLog(
                 new ConsumeLog<>(
                         KafkaConsumerService.CRASH_REPORTED_CONSUMER_BEAN_NAME,
                         Instant.now(),
@@ -142,14 +200,19 @@ public class KafkaConsumerService {
                 )
         );
 
+        if (!this.processedEventService.markProcessed(record, KafkaConsumerService.CRASH_REPORTED_CONSUMER_BEAN_NAME)) {
+            LOG.info("{}({}): DUPLICATE, skipped", CrashReported.TOPIC, record.key());
+            return;
+        }
+
         CrashReported event = record.value();
         try {
             publisherService.processCrashReport(event);
         } catch (Exception e) {
-            System.err.println("[Consumer] Error processing crash: " + e.getMessage());
+            LOG.error("Error processing crash: {}", e.getMessage());
         }
 
-        System.out.println("[Consumer] " + CrashReported.TOPIC + "(" + record.key() + "): Crash on " + event.getPlatform() + " for Game " + event.getGameId());
+        LOG.event("{}({}): Crash on {} for Game {}", CrashReported.TOPIC, record.key(), event.getPlatform(), event.getGameId());
     }
 
 }
\ No newline at end of file
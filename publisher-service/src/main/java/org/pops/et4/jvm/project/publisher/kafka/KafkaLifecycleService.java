@@ -1,37 +1,94 @@
 package org.pops.et4.jvm.project.publisher.kafka;
 
+import org.pops.et4.jvm.project.schemas.kafka.InMemoryEventBus;
+import org.pops.et4.jvm.project.schemas.kafka.RetryTopics;
+import org.pops.et4.jvm.project.schemas.logging.EventLog;
+import org.pops.et4.jvm.project.schemas.logging.EventLogger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
 import org.springframework.kafka.listener.MessageListenerContainer;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @Service(KafkaLifecycleService.BEAN_NAME)
 public class KafkaLifecycleService {
 
     public static final String BEAN_NAME = "publisherServiceKafkaLifecycleService";
 
+    private static final EventLogger LOG = EventLog.logger("Lifecycle");
+
     @Autowired
     private KafkaListenerEndpointRegistry registry;
 
+    @Autowired
+    @Qualifier(KafkaConfig.BEAN_NAME)
+    private KafkaConfig kafkaConfig;
+
+    /**
+     * In memory, the listeners receive their records from the bus, their containers are never started.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public void bindInMemoryBus() {
+        if (!this.kafkaConfig.isInMemory()) return;
+        int bound = InMemoryEventBus.shared().bind(this.registry);
+        LOG.info("{} listener(s) bound to the in-memory bus", bound);
+    }
+
     public void startListener(String listenerId) {
-        MessageListenerContainer container = this.registry.getListenerContainer(listenerId);
+        if (this.kafkaConfig.isInMemory()) {
+            if (InMemoryEventBus.shared().resume(listenerId)) LOG.info("Resuming in-memory listener: {}", listenerId);
+            else LOG.warn("Listener {} not found", listenerId);
+            return;
+        }
 
-        if (container == null)          System.out.println("[Lifecycle] Listener " + listenerId + " not found.");
-        else if (container.isRunning()) System.out.println("[Lifecycle] Listener " + listenerId + " is already running.");
-        else {
-            System.out.println("[Lifecycle] Starting listener: " + listenerId);
-            container.start();
+        List<String> containerIds = this.containerIdsOf(listenerId);
+        if (containerIds.isEmpty()) LOG.warn("Listener {} not found", listenerId);
+
+        for (String containerId : containerIds) {
+            MessageListenerContainer container = this.registry.getListenerContainer(containerId);
+
+            if (container.isRunning()) LOG.info("Listener {} is already running", containerId);
+            else {
+                LOG.info("Starting listener: {}", containerId);
+                container.start();
+            }
         }
     }
 
     public void stopListener(String listenerId) {
-        MessageListenerContainer container = this.registry.getListenerContainer(listenerId);
+        if (this.kafkaConfig.isInMemory()) {
+            if (InMemoryEventBus.shared().pause(listenerId)) LOG.info("Pausing in-memory listener: {}", listenerId);
+            else LOG.warn("Listener {} not found", listenerId);
+            return;
+        }
+
+        List<String> containerIds = this.containerIdsOf(listenerId);
+        if (containerIds.isEmpty()) LOG.warn("Listener {} not found", listenerId);
 
-        if (container == null)           System.out.println("[Lifecycle] Listener " + listenerId + " not found.");
-        else if (!container.isRunning()) System.out.println("[Lifecycle] Listener " + listenerId + " is not running.");
-        else {
-            System.out.println("[Lifecycle] Stopping listener: " + listenerId);
-            container.stop();
+        for (String containerId : containerIds) {
+            MessageListenerContainer container = this.registry.getListenerContainer(containerId);
+
+            if (!container.isRunning()) LOG.info("Listener {} is not running", containerId);
+            else {
+                LOG.info("Stopping listener: {}", containerId);
+                container.stop();
+            }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * @return The id of the listener followed by the ids of its retry and dead-letter listeners
+     */
+    private List<String> containerIdsOf(String listenerId) {
+        return this.registry.getListenerContainerIds().stream()
+                .filter(id -> id.equals(listenerId)
+                        || id.startsWith(listenerId + RetryTopics.RETRY_SUFFIX)
+                        || id.startsWith(listenerId + RetryTopics.DLT_SUFFIX))
+                .sorted()
+                .toList();
+    }
+}
@@ -3,23 +3,22 @@ package org.pops.et4.jvm.project.publisher.kafka;
 import org.pops.et4.jvm.project.schemas.events.ExampleEvent;
 import org.pops.et4.jvm.project.schemas.events.GamePublished;
 import org.pops.et4.jvm.project.schemas.events.PatchPublished;
+import org.pops.et4.jvm.project.schemas.kafka.ProducerPipeline;
 import org.pops.et4.jvm.project.schemas.models.publisher.Game;
 import org.pops.et4.jvm.project.schemas.repositories.publisher.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
 
 @Service(KafkaProducerService.BEAN_NAME)
 public class KafkaProducerService {
 
     public static final String BEAN_NAME = "publisherServiceKafkaProducerService";
 
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final ProducerPipeline pipeline;
     private final PublisherRepository publisherRepository;
     private final GameRepository gameRepository;
     private final PatchRepository patchRepository;
@@ -28,14 +27,14 @@ public class KafkaProducerService {
 
     @Autowired
     public KafkaProducerService(
-            @Qualifier(KafkaConfig.KAFKA_TEMPLATE_BEAN_NAME) KafkaTemplate<String, Object> kafkaTemplate,
+            @Qualifier(KafkaConfig.PRODUCER_PIPELINE_BEAN_NAME) ProducerPipeline pipeline,
             @Qualifier(PublisherRepository.BEAN_NAME) PublisherRepository publisherRepository,
             @Qualifier(GameRepository.BEAN_NAME) GameRepository gameRepository,
             @Qualifier(PatchRepository.BEAN_NAME) PatchRepository patchRepository,
             @Qualifier(CrashReportRepository.BEAN_NAME) CrashReportRepository crashReportRepository,
             @Qualifier(ReviewRepository.BEAN_NAME) ReviewRepository reviewRepository
     ) {
-        this.kafkaTemplate = kafkaTemplate;
+        this.pipeline = pipeline;
         this.publisherRepository = publisherRepository;
         this.gameRepository = gameRepository;
         this.patchRepository = patchRepository;
@@ -43,6 +42,10 @@ public class KafkaProducerService {
         this.reviewRepository = reviewRepository;
     }
 
+    public ProducerPipeline getPipeline() {
+        return this.pipeline;
+    }
+
     public void sendExampleEvent(String payload) {
         String topic = ExampleEvent.TOPIC;
         String key = UUID.randomUUID().toString();
@@ -50,9 +53,7 @@ public class KafkaProducerService {
                 .setPayload(payload)
                 .build();
 
-        CompletableFuture<?> future = this.kafkaTemplate.send(topic, key, event);
-
-        future.whenComplete((result, ex) -> System.out.println("[Producer] " + topic + "(" + key + "): " + (ex==null ? result : ex.getMessage())));
+        this.pipeline.send(topic, key, event);
     }
 
     public void sendGamePublished(Game game){
@@ -77,10 +78,7 @@ public class KafkaProducerService {
                 .setGenres(genreStrings)
                 .build();
 
-        CompletableFuture<?> future = this.kafkaTemplate.send(topic, key, event);
-
-        future.whenComplete((result, ex) ->
-                System.out.println("[Producer] " + topic + "(" + key + "): " + (ex==null ? result : ex.getMessage())));
+        this.pipeline.send(topic, key, event);
     }
 
     public void sendPatchPublished(long gameId, String version){
@@ -91,10 +89,7 @@ public class KafkaProducerService {
                 .setVersion(version)
                 .build();
 
-        CompletableFuture<?> future = this.kafkaTemplate.send(topic, key, event);
-
-        future.whenComplete((result, ex) ->
-                System.out.println("[Producer] " + topic + "(" + key + "): " + (ex==null ? result : ex.getMessage())));
+        this.pipeline.send(topic, key, event);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,145 @@
+package org.pops.et4.jvm.project.publisher.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pops.et4.jvm.project.publisher.App;
+import org.pops.et4.jvm.project.schemas.events.CrashReported;
+import org.pops.et4.jvm.project.schemas.events.GameReviewed;
+import org.pops.et4.jvm.project.schemas.models.publisher.Game;
+import org.pops.et4.jvm.project.schemas.models.publisher.Genre;
+import org.pops.et4.jvm.project.schemas.models.publisher.Platform;
+import org.pops.et4.jvm.project.schemas.models.publisher.Publisher;
+import org.pops.et4.jvm.project.schemas.repositories.publisher.GameRepository;
+import org.pops.et4.jvm.project.schemas.repositories.publisher.PublisherRepository;
+import org.pops.et4.jvm.project.schemas.sql.SqlBudget;
+import org.pops.et4.jvm.project.schemas.sql.SqlBudgetInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.env.Environment;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the listeners against the H2 database of the in-memory profile and counts their SQL statements with {@link SqlBudget}:
+ * every handler stays within the budget of its topic, and does not grow with the reviews and crashes already stored for the game.
+ */
+@SpringBootTest(classes = App.class, properties = {
+        "cli.enabled=false",
+        "warmup.enabled=false",
+        "archive.enabled=false"
+})
+@ActiveProfiles("inmemory")
+class KafkaConsumerServiceSqlBudgetTest {
+
+    private static final AtomicLong OFFSETS = new AtomicLong();
+    private static final AtomicLong REVIEW_IDS = new AtomicLong(1_000_000);
+    private static final long DISTRIBUTOR_ID = 1L;
+
+    @Autowired
+    @Qualifier(KafkaConsumerService.BEAN_NAME)
+    private KafkaConsumerService consumer;
+
+    @Autowired
+    @Qualifier(PublisherRepository.BEAN_NAME)
+    private PublisherRepository publisherRepository;
+
+    @Autowired
+    @Qualifier(GameRepository.BEAN_NAME)
+    private GameRepository gameRepository;
+
+    @Autowired
+    private Environment environment;
+
+    private SqlBudgetInterceptor<String, Object> budgets;
+    private long gameId;
+
+    @BeforeEach
+    void setUp() {
+        this.budgets = new SqlBudgetInterceptor<>(this.environment);
+        Publisher publisher = this.publisherRepository.save(Publisher.newBuilder()
+                .setId(null)
+                .setName("Publisher " + OFFSETS.incrementAndGet())
+                .setIsCompany(true)
+                .build());
+        this.gameId = this.gameRepository.save(Game.newBuilder()
+                .setId(null)
+                .setName("Game " + OFFSETS.incrementAndGet())
+                .setPublisher(publisher)
+                .setVersion("1.0.0")
+                .setReleaseDate(Instant.now())
+                .setPlatforms(List.of(Platform.NES))
+                .setGenres(List.of(Genre.ACTION))
+                .build()).getId();
+    }
+
+    @Test
+    void gameReviewedDoesNotGrowWithTheReviewsOfTheGame() {
+        int first = within(GameReviewed.TOPIC, this.consumer::consumeGameReviewed, this.reviewed());
+        // Ratings of 4: the negative reviews never reach the automatic patch threshold
+        for (int i = 0; i < 4; i++) within(GameReviewed.TOPIC, this.consumer::consumeGameReviewed, this.reviewed());
+        int sixth = within(GameReviewed.TOPIC, this.consumer::consumeGameReviewed, this.reviewed());
+
+        assertEquals(first, sixth, "statements of a review with 0 then 5 reviews of the game");
+    }
+
+    @Test
+    void crashReportedDoesNotGrowWithTheCrashesOfTheGame() {
+        int first = within(CrashReported.TOPIC, this.consumer::consumeCrashReported, this.crashed());
+        // Below the 10 crashes of the automatic patch
+        for (int i = 0; i < 4; i++) within(CrashReported.TOPIC, this.consumer::consumeCrashReported, this.crashed());
+        int sixth = within(CrashReported.TOPIC, this.consumer::consumeCrashReported, this.crashed());
+
+        assertEquals(first, sixth, "statements of a crash with 0 then 5 crashes of the game");
+    }
+
+    /**
+     * Runs one record through a listener, as its container would.
+     * @return Number of SQL statements of the handler, asserted within the budget of its topic
+     */
+    private <V> int within(String topic, Consumer<ConsumerRecord<String, V>> handler, V event) {
+        ConsumerRecord<String, V> record = new ConsumerRecord<>(topic, 0, OFFSETS.incrementAndGet(), "key", event);
+        int count;
+        try (SqlBudget.Scope scope = SqlBudget.INSTANCE.open(topic, SqlBudget.UNLIMITED)) {
+            handler.accept(record);
+            count = scope.getCount();
+        }
+
+        int limit = this.budgets.limitOf(topic);
+        if (limit != SqlBudget.UNLIMITED)
+            assertTrue(count <= limit, topic + ": " + count + " SQL statement(s) for a budget of " + limit);
+        return count;
+    }
+
+    private GameReviewed reviewed() {
+        return GameReviewed.newBuilder()
+                .setReviewId(REVIEW_IDS.incrementAndGet())
+                .setGameId(this.gameId)
+                .setDistributorId(DISTRIBUTOR_ID)
+                .setRating(4)
+                .setComment("A great game")
+                .setPublicationDate(Instant.now())
+                .setPositiveReactionPlayerIds(List.of())
+                .setNegativeReactionPlayerIds(List.of())
+                .build();
+    }
+
+    private CrashReported crashed() {
+        return CrashReported.newBuilder()
+                .setDistributorId(DISTRIBUTOR_ID)
+                .setGameId(this.gameId)
+                .setPlatform(org.pops.et4.jvm.project.schemas.events.Platform.NES)
+                .setInstalledVersion("1.0.0")
+                .setErrorCode(42)
+                .setMessage("Crash")
+                .build();
+    }
+}
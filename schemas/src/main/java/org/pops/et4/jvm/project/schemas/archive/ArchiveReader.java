@@ -0,0 +1,148 @@
+package org.pops.et4.jvm.project.schemas.archive;
+
+import org.apache.avro.Schema;
+import org.apache.avro.data.TimeConversions;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Reads the files of an {@link EventArchive} back, for audits.
+ * <ul>
+ *     <li>only the day directories of the requested range are opened, then the records are filtered on their exact date</li>
+ *     <li>with a projection (e.g. {@code key,event.gameId}), the files are read with a reader schema holding only those fields:
+ *     Avro skips the others while decoding, an unread message or comment is never materialized</li>
+ * </ul>
+ */
+public class ArchiveReader {
+
+    private static final GenericData MODEL = new GenericData();
+
+    static {
+        MODEL.addLogicalTypeConversion(new TimeConversions.TimestampMicrosConversion());
+    }
+
+    private final EventArchive archive;
+
+    public ArchiveReader(EventArchive archive) {
+        this.archive = archive;
+    }
+
+    /**
+     * @param from First date, inclusive, null for no bound
+     * @param to Last date, exclusive, null for no bound
+     * @param fields Paths of the projected fields, dot separated; empty for every field
+     * @param limit Maximum number of records, 0 for no limit
+     * @param consumer Called with each record in the range
+     */
+    public Scan scan(String dataset, Instant from, Instant to, List<String> fields, int limit, Consumer<GenericRecord> consumer) throws IOException {
+        long start = System.nanoTime();
+        Path directory = this.archive.directoryOf(dataset);
+        if (!Files.isDirectory(directory)) throw new IllegalArgumentException("Unknown archive dataset: " + dataset);
+
+        // The date is always read, to filter the records of the first and last days
+        Set<String> projection = new LinkedHashSet<>(fields);
+        if (!projection.isEmpty()) projection.add(ArchivedEvent.DATE);
+
+        int files = 0;
+        long read = 0;
+        long matched = 0;
+        for (Path day : this.days(directory, from, to)) {
+            for (Path file : EventArchive.files(day)) {
+                files++;
+                GenericDatumReader<GenericRecord> datumReader = new GenericDatumReader<>(null, null, MODEL);
+                try (DataFileReader<GenericRecord> reader = new DataFileReader<>(file.toFile(), datumReader)) {
+                    if (!projection.isEmpty()) datumReader.setExpected(project(reader.getSchema(), projection));
+                    GenericRecord record = null;
+                    while (reader.hasNext()) {
+                        record = reader.next(record);
+                        read++;
+                        Instant date = (Instant) record.get(ArchivedEvent.DATE);
+                        if ((from != null && date.isBefore(from)) || (to != null && !date.isBefore(to))) continue;
+                        consumer.accept(record);
+                        // The record instance is reused by the next read
+                        record = null;
+                        if (++matched == limit) return new Scan(files, read, matched, (System.nanoTime() - start) / 1_000_000);
+                    }
+                }
+            }
+        }
+        return new Scan(files, read, matched, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private List<Path> days(Path directory, Instant from, Instant to) throws IOException {
+        LocalDate first = from == null ? LocalDate.MIN : LocalDate.ofInstant(from, ZoneOffset.UTC);
+        LocalDate last = to == null ? LocalDate.MAX : LocalDate.ofInstant(to.minusNanos(1), ZoneOffset.UTC);
+        try (Stream<Path> days = Files.list(directory)) {
+            return days.filter(day -> Files.isDirectory(day) && day.getFileName().toString().startsWith(EventArchive.DAY_PREFIX))
+                    .filter(day -> {
+                        LocalDate date = EventArchive.dayOf(day);
+                        return !date.isBefore(first) && !date.isAfter(last);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * @return The writer schema reduced to the given fields, a record field is kept whole when its own path is given
+     */
+    static Schema project(Schema schema, Set<String> paths) {
+        Set<String> found = new HashSet<>();
+        Schema projected = project(schema, paths, "", found);
+        if (!found.containsAll(paths)) {
+            Set<String> unknown = new LinkedHashSet<>(paths);
+            unknown.removeAll(found);
+            throw new IllegalArgumentException("Unknown field(s) " + unknown + " in " + schema.getFullName());
+        }
+        return projected;
+    }
+
+    private static Schema project(Schema schema, Set<String> paths, String prefix, Set<String> found) {
+        switch (schema.getType()) {
+            case RECORD: {
+                List<Schema.Field> fields = new ArrayList<>();
+                for (Schema.Field field : schema.getFields()) {
+                    String path = prefix + field.name();
+                    if (paths.contains(path)) {
+                        found.add(path);
+                        fields.add(new Schema.Field(field, field.schema()));
+                    } else if (paths.stream().anyMatch(p -> p.startsWith(path + "."))) {
+                        fields.add(new Schema.Field(field, project(field.schema(), paths, path + ".", found)));
+                    }
+                }
+                return Schema.createRecord(schema.getName(), schema.getDoc(), schema.getNamespace(), schema.isError(), fields);
+            }
+            case UNION: {
+                List<Schema> types = new ArrayList<>();
+                for (Schema type : schema.getTypes())
+                    types.add(type.getType() == Schema.Type.RECORD ? project(type, paths, prefix, found) : type);
+                return Schema.createUnion(types);
+            }
+            default:
+                return schema;
+        }
+    }
+
+    /**
+     * @param read Records decoded, including the ones of the first and last days outside the range
+     */
+    public record Scan(int files, long read, long matched, long millis) {
+
+        @Override
+        public String toString() {
+            return this.matched + " record(s) matched, " + this.read + " read from " + this.files + " file(s) in " + this.millis + " ms";
+        }
+    }
+}
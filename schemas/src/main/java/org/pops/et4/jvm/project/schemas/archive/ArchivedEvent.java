@@ -0,0 +1,42 @@
+package org.pops.et4.jvm.project.schemas.archive;
+
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.specific.SpecificRecord;
+import org.pops.et4.jvm.project.schemas.events.ConsumeLog;
+
+import java.time.Instant;
+
+/**
+ * One archived event, with where and when it came from.
+ * Stored as an {@code Archived<Event>} record wrapping the schema of the event itself, so the archive reuses the generated schemas.
+ * @param source Consumer that processed the event, or table the row was archived from
+ * @param date Consume date, or date of the row (e.g. report date); the archive is partitioned by its UTC day
+ * @param key Record key, or id of the row
+ */
+public record ArchivedEvent<E extends SpecificRecord>(String source, Instant date, String key, E event) {
+
+    public static final String NAMESPACE = "org.pops.et4.jvm.project.schemas.archive";
+    public static final String SOURCE = "source";
+    public static final String DATE = "date";
+    public static final String KEY = "key";
+    public static final String EVENT = "event";
+
+    public static <E extends SpecificRecord> ArchivedEvent<E> of(ConsumeLog<? extends E> log) {
+        return new ArchivedEvent<>(log.consumerId(), log.consumeDate(), log.key(), log.event());
+    }
+
+    /**
+     * @return Schema of the archived records of an event
+     */
+    public static Schema schemaOf(Schema eventSchema) {
+        return SchemaBuilder.record("Archived" + eventSchema.getName()).namespace(NAMESPACE)
+                .fields()
+                .requiredString(SOURCE)
+                .name(DATE).type(LogicalTypes.timestampMicros().addToSchema(Schema.create(Schema.Type.LONG))).noDefault()
+                .optionalString(KEY)
+                .name(EVENT).type(eventSchema).noDefault()
+                .endRecord();
+    }
+}
@@ -0,0 +1,92 @@
+package org.pops.et4.jvm.project.schemas.archive;
+
+import org.pops.et4.jvm.project.schemas.events.ConsumeLog;
+import org.pops.et4.jvm.project.schemas.events.KafkaEvent;
+import org.pops.et4.jvm.project.schemas.logging.EventLog;
+import org.pops.et4.jvm.project.schemas.logging.EventLogger;
+import org.pops.et4.jvm.project.schemas.warmup.EventSamples;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Drive loops of the archive services, which only give their queries.
+ * <ul>
+ *     <li>consume logs: one dataset per topic ({@code consume-logs/<topic>}), removed from memory once their files are published</li>
+ *     <li>expired partitions: read with a cursor in the transaction of their drop, and written by a writer named after the partition.
+ *     The files are published before the drop commits: if it fails, the partition is archived again on the next run
+ *     and its files are replaced instead of duplicated</li>
+ * </ul>
+ */
+public class Archiver {
+
+    public static final String CONSUME_LOGS_DATASET = "consume-logs/";
+
+    private static final EventLogger LOG = EventLog.logger("Archive");
+
+    private static final int FETCH_SIZE = 10_000;
+
+    private final EventArchive archive;
+
+    public Archiver(EventArchive archive) {
+        this.archive = archive;
+    }
+
+    /**
+     * Writes consume logs to the archive, they are left untouched if they cannot be written.
+     * @param onArchived Called with the logs once written, to remove them from memory
+     * @return Number of archived logs
+     */
+    public int archiveConsumeLogs(List<ConsumeLog<? extends KafkaEvent>> logs, Consumer<List<ConsumeLog<? extends KafkaEvent>>> onArchived) {
+        if (logs.isEmpty()) return 0;
+        try (EventArchive.Writer writer = this.archive.writer()) {
+            for (ConsumeLog<? extends KafkaEvent> log : logs)
+                writer.append(CONSUME_LOGS_DATASET + EventSamples.topicOf(log.event().getClass()), ArchivedEvent.of(log));
+            writer.commit();
+        } catch (IOException e) {
+            LOG.error("Failed to archive {} consume log(s): {}", logs.size(), e.getMessage());
+            return 0;
+        }
+        onArchived.accept(logs);
+        LOG.info("Archived {} consume log(s)", logs.size());
+        return logs.size();
+    }
+
+    /**
+     * Streams the rows of a partition to a dataset, under the name of the partition.
+     * @param query Select of the rows, reading from the partition
+     * @param rows Maps the current row of the cursor to its archived event
+     * @return Number of archived rows
+     */
+    public long archivePartition(Connection connection, String partition, String dataset, String query, RowReader rows) throws SQLException, IOException {
+        long start = System.nanoTime();
+        long count = 0;
+        try (EventArchive.Writer writer = this.archive.writer(partition);
+             Statement statement = connection.createStatement()) {
+            // Read with a cursor, the drop runs in a transaction
+            statement.setFetchSize(FETCH_SIZE);
+            try (ResultSet row = statement.executeQuery(query)) {
+                while (row.next()) {
+                    writer.append(dataset, rows.read(row));
+                    count++;
+                }
+            }
+            writer.commit();
+        }
+        LOG.info("Archived {} row(s) of {} to {} in {} ms", count, partition, dataset, (System.nanoTime() - start) / 1_000_000);
+        return count;
+    }
+
+    /**
+     * Reads the archived event of the current row of a cursor.
+     */
+    @FunctionalInterface
+    public interface RowReader {
+        ArchivedEvent<?> read(ResultSet row) throws SQLException;
+    }
+}
@@ -0,0 +1,219 @@
+package org.pops.et4.jvm.project.schemas.archive;
+
+import org.apache.avro.Schema;
+import org.apache.avro.data.TimeConversions;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.specific.SpecificData;
+import org.apache.avro.specific.SpecificDatumWriter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Cold tier of the events and rows aged out of the hot tables and lists: Avro object container files on the local disk.
+ * <ul>
+ *     <li>layout {@code <root>/<dataset>/date=YYYY-MM-DD/part-<millis>-<n>.avro}: one directory per UTC day of the archived dates,
+ *     so a scan only opens the days of its range (see {@link ArchiveReader})</li>
+ *     <li>a named writer writes {@code part-<name>-<event>.avro} instead: writing the same name again replaces its files,
+ *     e.g. a partition archived again after its drop failed is not duplicated</li>
+ *     <li>one file per event type, compressed block by block with the configured codec ({@code deflate}, {@code zstandard}...)</li>
+ *     <li>a file is written under a temporary name and only renamed once complete, readers never see a partial file</li>
+ * </ul>
+ */
+public class EventArchive {
+
+    public static final String EXTENSION = ".avro";
+    public static final String DAY_PREFIX = "date=";
+
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private static final SpecificData MODEL = new SpecificData();
+
+    static {
+        MODEL.addLogicalTypeConversion(new TimeConversions.TimestampMicrosConversion());
+    }
+
+    private final Path root;
+    private final CodecFactory codec;
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * @param codec Name of an Avro codec, e.g. {@code deflate}, {@code zstandard}, {@code snappy} or {@code null}
+     */
+    public EventArchive(Path root, String codec) {
+        this.root = root;
+        this.codec = CodecFactory.fromString(codec);
+    }
+
+    public Path getRoot() {
+        return this.root;
+    }
+
+    public Path directoryOf(String dataset) {
+        return this.root.resolve(dataset);
+    }
+
+    /**
+     * Opens files on demand, the events appended are only visible once the writer is committed.
+     */
+    public Writer writer() {
+        return new Writer(null);
+    }
+
+    /**
+     * Opens files named after {@code name} and the event type: committing the same name again replaces them instead of adding new ones.
+     * @param name Identity of what is archived, e.g. a partition, made of letters, digits and {@code _}
+     */
+    public Writer writer(String name) {
+        if (!name.matches("[A-Za-z0-9_]+")) throw new IllegalArgumentException("Invalid archive file name: " + name);
+        return new Writer(name);
+    }
+
+    /**
+     * @return Number of written events
+     */
+    public int write(String dataset, Collection<? extends ArchivedEvent<?>> events) throws IOException {
+        if (events.isEmpty()) return 0;
+        try (Writer writer = this.writer()) {
+            for (ArchivedEvent<?> event : events) writer.append(dataset, event);
+            writer.commit();
+            return events.size();
+        }
+    }
+
+    /**
+     * @return Every dataset with its days, files and size, by name
+     */
+    public List<Dataset> datasets() throws IOException {
+        if (!Files.isDirectory(this.root)) return List.of();
+        Map<Path, List<Path>> days = new TreeMap<>();
+        try (Stream<Path> paths = Files.walk(this.root)) {
+            paths.filter(path -> Files.isDirectory(path) && path.getFileName().toString().startsWith(DAY_PREFIX))
+                    .forEach(day -> days.computeIfAbsent(day.getParent(), key -> new ArrayList<>()).add(day));
+        }
+
+        List<Dataset> datasets = new ArrayList<>();
+        for (Map.Entry<Path, List<Path>> entry : days.entrySet()) {
+            TreeSet<LocalDate> dates = new TreeSet<>();
+            long files = 0;
+            long bytes = 0;
+            for (Path day : entry.getValue()) {
+                dates.add(dayOf(day));
+                for (Path file : files(day)) {
+                    files++;
+                    bytes += Files.size(file);
+                }
+            }
+            String name = this.root.relativize(entry.getKey()).toString().replace('\\', '/');
+            datasets.add(new Dataset(name, dates.first(), dates.last(), files, bytes));
+        }
+        return datasets;
+    }
+
+    static LocalDate dayOf(Path directory) {
+        return LocalDate.parse(directory.getFileName().toString().substring(DAY_PREFIX.length()));
+    }
+
+    /**
+     * @return Complete files of a day directory, in writing order
+     */
+    static List<Path> files(Path day) throws IOException {
+        try (Stream<Path> files = Files.list(day)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(EXTENSION)).sorted().toList();
+        }
+    }
+
+    /**
+     * Files being written, one per dataset, UTC day and event type.
+     */
+    public final class Writer implements AutoCloseable {
+
+        private final String name;
+        private final Map<PartKey, Part> parts = new LinkedHashMap<>();
+        private boolean committed;
+
+        private Writer(String name) {
+            this.name = name;
+        }
+
+        public void append(String dataset, ArchivedEvent<?> event) throws IOException {
+            PartKey key = new PartKey(dataset, LocalDate.ofInstant(event.date(), ZoneOffset.UTC), event.event().getSchema());
+            Part part = this.parts.get(key);
+            if (part == null) {
+                part = this.open(key);
+                this.parts.put(key, part);
+            }
+
+            GenericRecord record = new GenericData.Record(part.schema);
+            record.put(ArchivedEvent.SOURCE, event.source());
+            record.put(ArchivedEvent.DATE, event.date());
+            record.put(ArchivedEvent.KEY, event.key());
+            record.put(ArchivedEvent.EVENT, event.event());
+            part.writer.append(record);
+        }
+
+        /**
+         * Closes the files and gives them their final name, replacing the files of the same name if any.
+         */
+        public void commit() throws IOException {
+            for (Part part : this.parts.values()) part.writer.close();
+            for (Part part : this.parts.values())
+                Files.move(part.temporary, part.target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            this.committed = true;
+        }
+
+        /**
+         * Deletes the files of a writer that was not committed.
+         */
+        @Override
+        public void close() throws IOException {
+            if (this.committed) return;
+            for (Part part : this.parts.values()) {
+                part.writer.close();
+                Files.deleteIfExists(part.temporary);
+            }
+        }
+
+        private Part open(PartKey key) throws IOException {
+            Path directory = EventArchive.this.directoryOf(key.dataset()).resolve(DAY_PREFIX + key.day());
+            Files.createDirectories(directory);
+            String name = this.name != null
+                    ? "part-" + this.name + "-" + key.eventSchema().getName() + EXTENSION
+                    : "part-" + System.currentTimeMillis() + "-" + EventArchive.this.sequence.incrementAndGet() + EXTENSION;
+            Path target = directory.resolve(name);
+            Path temporary = directory.resolve(name + TEMPORARY_SUFFIX);
+
+            Schema schema = ArchivedEvent.schemaOf(key.eventSchema());
+            DataFileWriter<GenericRecord> writer = new DataFileWriter<>(new SpecificDatumWriter<GenericRecord>(schema, MODEL));
+            writer.setCodec(EventArchive.this.codec);
+            writer.create(schema, temporary.toFile());
+            return new Part(schema, writer, temporary, target);
+        }
+    }
+
+    private record PartKey(String dataset, LocalDate day, Schema eventSchema) {}
+
+    private record Part(Schema schema, DataFileWriter<GenericRecord> writer, Path temporary, Path target) {}
+
+    /**
+     * @param first First archived day
+     * @param last Last archived day
+     */
+    public record Dataset(String name, LocalDate first, LocalDate last, long files, long bytes) {
+
+        @Override
+        public String toString() {
+            return this.name + ": " + this.first + " to " + this.last + ", " + this.files + " file(s), " + this.bytes + " bytes";
+        }
+    }
+}
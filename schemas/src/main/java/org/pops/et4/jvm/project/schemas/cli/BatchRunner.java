@@ -0,0 +1,243 @@
+package org.pops.et4.jvm.project.schemas.cli;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a script of CLI commands, without the pauses of the interactive mode.
+ * <ul>
+ *     <li>one command per line, blank lines and lines starting with {@code #} are skipped</li>
+ *     <li>the commands between two {@value #WAIT} lines are independent: up to {@code parallelism} of them run at the same time,
+ *     a {@value #WAIT} line waits for every running command</li>
+ *     <li>{@code exit}/{@code quit} ends the script once the running commands are done</li>
+ *     <li>the output of a command is buffered and printed in one piece when it ends, so concurrent commands do not interleave</li>
+ *     <li>a command fails if it throws or writes to {@code System.err}</li>
+ * </ul>
+ * {@code System.out} and {@code System.err} are replaced while the script runs, output from other threads goes through unchanged.
+ */
+public class BatchRunner {
+
+    public static final String WAIT = "wait";
+
+    /**
+     * Executes one command, the same way as the interactive mode.
+     */
+    @FunctionalInterface
+    public interface Handler {
+        /**
+         * @param cmd The command name, then its arguments
+         */
+        void execute(String[] cmd) throws Exception;
+    }
+
+    private final Handler handler;
+    private final int parallelism;
+    private final boolean echo;
+
+    /**
+     * @param parallelism Maximum number of commands running at the same time
+     * @param echo Whether to print the output of the successful commands, the output of failed ones is always printed
+     */
+    public BatchRunner(Handler handler, int parallelism, boolean echo) {
+        if (parallelism < 1) throw new IllegalArgumentException("parallelism must be at least 1");
+        this.handler = handler;
+        this.parallelism = parallelism;
+        this.echo = echo;
+    }
+
+    /**
+     * @param path Script file, {@code -} for stdin
+     */
+    public Summary run(String path) throws IOException, InterruptedException {
+        if (path.equals("-")) return this.run(new InputStreamReader(System.in));
+        try (Reader reader = new FileReader(path)) {
+            return this.run(reader);
+        }
+    }
+
+    public Summary run(Reader script) throws IOException, InterruptedException {
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        ThreadLocal<Capture> capture = new ThreadLocal<>();
+        System.setOut(new PrintStream(new RoutingOutputStream(out, capture, false), true, out.charset()));
+        System.setErr(new PrintStream(new RoutingOutputStream(err, capture, true), true, err.charset()));
+
+        Summary summary = new Summary(this.parallelism);
+        Semaphore slots = new Semaphore(this.parallelism);
+        ExecutorService executor = Executors.newFixedThreadPool(this.parallelism, Thread.ofPlatform().name("cli-batch-", 0).daemon(true).factory());
+        long start = System.nanoTime();
+        try {
+            BufferedReader lines = new BufferedReader(script);
+            String line;
+            int number = 0;
+            while ((line = lines.readLine()) != null) {
+                number++;
+                String input = line.trim();
+                if (input.isEmpty() || input.startsWith("#")) continue;
+                if (input.equals("exit") || input.equals("quit")) break;
+                if (input.equals(WAIT)) {
+                    slots.acquire(this.parallelism);
+                    slots.release(this.parallelism);
+                    continue;
+                }
+
+                int lineNumber = number;
+                slots.acquire();
+                executor.execute(() -> {
+                    try {
+                        this.execute(lineNumber, input, capture, out, summary);
+                    } finally {
+                        slots.release();
+                    }
+                });
+            }
+            slots.acquire(this.parallelism);
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+            System.setOut(out);
+            System.setErr(err);
+        }
+        summary.wallNanos = System.nanoTime() - start;
+        return summary;
+    }
+
+    private void execute(int lineNumber, String input, ThreadLocal<Capture> capture, PrintStream out, Summary summary) {
+        String[] cmd = input.split("\\s+");
+        Capture output = new Capture();
+        capture.set(output);
+        long start = System.nanoTime();
+        Exception failure = null;
+        try {
+            this.handler.execute(cmd);
+        } catch (Exception e) {
+            failure = e;
+        } finally {
+            capture.remove();
+        }
+        long nanos = System.nanoTime() - start;
+        boolean failed = failure != null || output.wroteError;
+        summary.record(cmd[0], nanos, failed);
+
+        if (!failed && !this.echo) return;
+        synchronized (out) {
+            out.printf("#%d %s (%.3f ms)%s%n", lineNumber, input, nanos / 1e6, failed ? " FAILED" : "");
+            out.write(output.bytes.toByteArray(), 0, output.bytes.size());
+            if (failure != null) out.println("Error executing command: " + failure);
+            out.flush();
+        }
+    }
+
+    /**
+     * Counts and timings per command name.
+     */
+    public static class Summary {
+
+        private final int parallelism;
+        private final Map<String, Stats> byCommand = new TreeMap<>();
+        private final AtomicInteger failed = new AtomicInteger();
+        private long wallNanos;
+
+        private Summary(int parallelism) {
+            this.parallelism = parallelism;
+        }
+
+        public int getCount() {
+            synchronized (this.byCommand) {
+                return this.byCommand.values().stream().mapToInt(stats -> stats.nanos.size()).sum();
+            }
+        }
+
+        public int getFailed() {
+            return this.failed.get();
+        }
+
+        public long getWallNanos() {
+            return this.wallNanos;
+        }
+
+        private void record(String command, long nanos, boolean failed) {
+            if (failed) this.failed.incrementAndGet();
+            synchronized (this.byCommand) {
+                Stats stats = this.byCommand.computeIfAbsent(command, key -> new Stats());
+                stats.nanos.add(nanos);
+                if (failed) stats.failed++;
+            }
+        }
+
+        @Override
+        public String toString() {
+            int count = this.getCount();
+            StringBuilder text = new StringBuilder(String.format(
+                    "%d command(s), %d failed, in %.1f ms with parallelism %d (%.0f command(s)/s)%n",
+                    count, this.getFailed(), this.wallNanos / 1e6, this.parallelism,
+                    this.wallNanos == 0 ? 0.0 : count * 1e9 / this.wallNanos));
+            text.append(String.format("%-24s %8s %8s %10s %10s %10s %10s%n", "command", "count", "failed", "mean ms", "p50 ms", "p99 ms", "max ms"));
+            synchronized (this.byCommand) {
+                this.byCommand.forEach((command, stats) -> {
+                    long[] sorted = stats.nanos.stream().mapToLong(Long::longValue).sorted().toArray();
+                    text.append(String.format("%-24s %8d %8d %10.3f %10.3f %10.3f %10.3f%n", command, sorted.length, stats.failed,
+                            Arrays.stream(sorted).average().orElse(0) / 1e6,
+                            percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6, sorted[sorted.length - 1] / 1e6));
+                });
+            }
+            return text.toString();
+        }
+
+        private static double percentile(long[] sorted, double rank) {
+            return sorted[(int) Math.min(sorted.length - 1, Math.ceil(rank * sorted.length) - 1)];
+        }
+
+        private static class Stats {
+            private final List<Long> nanos = new ArrayList<>();
+            private int failed;
+        }
+    }
+
+    private static class Capture {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private volatile boolean wroteError;
+    }
+
+    /**
+     * Sends the bytes written by a command thread to its capture, and the others to the original stream.
+     */
+    private static class RoutingOutputStream extends OutputStream {
+
+        private final PrintStream original;
+        private final ThreadLocal<Capture> capture;
+        private final boolean error;
+
+        private RoutingOutputStream(PrintStream original, ThreadLocal<Capture> capture, boolean error) {
+            this.original = original;
+            this.capture = capture;
+            this.error = error;
+        }
+
+        @Override
+        public void write(int b) {
+            this.write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            Capture current = this.capture.get();
+            if (current == null) {
+                this.original.write(bytes, offset, length);
+                return;
+            }
+            if (this.error) current.wroteError = true;
+            current.bytes.write(bytes, offset, length);
+        }
+
+        @Override
+        public void flush() {
+            if (this.capture.get() == null) this.original.flush();
+        }
+    }
+}
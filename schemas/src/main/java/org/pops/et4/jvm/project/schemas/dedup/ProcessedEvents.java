@@ -0,0 +1,103 @@
+package org.pops.et4.jvm.project.schemas.dedup;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.pops.et4.jvm.project.schemas.kafka.EventIds;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Deduplicates consumed events by their event id.
+ * <ul>
+ *     <li>ids are stored in the ProcessedEvents table of the service, in the transaction of the listener</li>
+ *     <li>a bloom filter answers the usual "never seen" case without querying the table</li>
+ *     <li>ids older than the retention window are forgotten by both</li>
+ * </ul>
+ * The caller runs {@link #load} in a transaction of the service database, {@link #markProcessed} in the one of the listener
+ * and {@link #purgeExpired} in its own.
+ */
+public class ProcessedEvents {
+
+    private final Store store;
+    private final Duration retention;
+    private final RotatingBloomFilter seen;
+
+    private final LongAdder checked = new LongAdder();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder purged = new LongAdder();
+
+    /**
+     * @param retention Time an event id is remembered
+     * @param generations Generations of the bloom filter, see {@link RotatingBloomFilter}
+     */
+    public ProcessedEvents(Store store, Duration retention, int generations, int initialCapacity, double falsePositiveRate) {
+        this.store = store;
+        this.retention = retention;
+        this.seen = new RotatingBloomFilter(retention, generations, initialCapacity, falsePositiveRate);
+    }
+
+    /**
+     * Fills the bloom filter with the ids still in the retention window, before the listeners start.
+     */
+    public void load() {
+        try (Stream<String> eventIds = this.store.streamEventIdsSince(Instant.now().minus(this.retention))) {
+            eventIds.forEach(this.seen::put);
+        }
+    }
+
+    /**
+     * Records the event as processed by the given consumer.
+     * @return false if the event was already processed and must be skipped
+     */
+    public boolean markProcessed(ConsumerRecord<?, ?> record, String consumer) {
+        String eventId = EventIds.of(record);
+        this.checked.increment();
+
+        if (this.seen.mightContain(eventId)) {
+            this.lookups.increment();
+            if (this.store.existsById(eventId)) {
+                this.duplicates.increment();
+                return false;
+            }
+        }
+
+        this.store.insert(eventId, consumer, Instant.now());
+        this.seen.put(eventId);
+        return true;
+    }
+
+    /**
+     * @return Number of ids deleted from the table, the bloom filter forgets them by itself
+     */
+    public int purgeExpired() {
+        int count = this.store.deleteProcessedBefore(Instant.now().minus(this.retention));
+        this.purged.add(count);
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "checked=" + this.checked.sum() + ", dbLookups=" + this.lookups.sum() + ", duplicates=" + this.duplicates.sum()
+                + ", purged=" + this.purged.sum() + ", bloom={" + this.seen + "}";
+    }
+
+    /**
+     * ProcessedEvents table of a service, implemented by its repository.
+     */
+    public interface Store {
+
+        boolean existsById(String eventId);
+
+        /**
+         * Plain insert, fails on commit if a concurrent consumer already inserted the same id.
+         */
+        int insert(String eventId, String consumer, Instant processedAt);
+
+        Stream<String> streamEventIdsSince(Instant since);
+
+        int deleteProcessedBefore(Instant before);
+    }
+}
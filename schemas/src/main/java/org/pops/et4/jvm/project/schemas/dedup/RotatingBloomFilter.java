@@ -0,0 +1,75 @@
+package org.pops.et4.jvm.project.schemas.dedup;
+
+import java.time.Duration;
+
+/**
+ * Bloom filter whose ids expire after a retention window.
+ * Ids go to the current generation, the oldest generation is dropped every {@code retention / (generations - 1)},
+ * so an id is remembered at least {@code retention} and at most {@code retention * generations / (generations - 1)}.
+ */
+public class RotatingBloomFilter {
+
+    private final int initialCapacity;
+    private final double falsePositiveRate;
+    private final long rotationIntervalMs;
+    private volatile ScalableBloomFilter[] generations;
+    private volatile long nextRotationMs;
+
+    /**
+     * @param retention Minimum time an id is remembered
+     * @param generations Number of generations kept, at least 2
+     * @param initialCapacity Initial capacity of each generation
+     * @param falsePositiveRate False positive rate of each generation
+     */
+    public RotatingBloomFilter(Duration retention, int generations, int initialCapacity, double falsePositiveRate) {
+        if (generations < 2) throw new IllegalArgumentException("At least 2 generations are required");
+
+        this.initialCapacity = initialCapacity;
+        this.falsePositiveRate = falsePositiveRate;
+        this.rotationIntervalMs = Math.max(1, retention.toMillis() / (generations - 1));
+        this.generations = new ScalableBloomFilter[generations];
+        for (int i = 0; i < generations; i++)
+            this.generations[i] = new ScalableBloomFilter(initialCapacity, falsePositiveRate);
+        this.nextRotationMs = System.currentTimeMillis() + this.rotationIntervalMs;
+    }
+
+    /**
+     * @return false if the id was not added during the retention window, true if it probably was
+     */
+    public boolean mightContain(String id) {
+        this.rotateIfDue();
+        for (ScalableBloomFilter generation : this.generations)
+            if (generation.mightContain(id)) return true;
+        return false;
+    }
+
+    public void put(String id) {
+        this.rotateIfDue();
+        this.generations[0].put(id);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("rotationInterval=").append(this.rotationIntervalMs).append("ms");
+        ScalableBloomFilter[] current = this.generations;
+        for (int i = 0; i < current.length; i++)
+            sb.append(", gen").append(i).append("={").append(current[i]).append('}');
+        return sb.toString();
+    }
+
+    private void rotateIfDue() {
+        if (System.currentTimeMillis() < this.nextRotationMs) return;
+
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            while (now >= this.nextRotationMs) {
+                ScalableBloomFilter[] current = this.generations;
+                ScalableBloomFilter[] rotated = new ScalableBloomFilter[current.length];
+                rotated[0] = new ScalableBloomFilter(this.initialCapacity, this.falsePositiveRate);
+                System.arraycopy(current, 0, rotated, 1, current.length - 1);
+                this.generations = rotated;
+                this.nextRotationMs += this.rotationIntervalMs;
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package org.pops.et4.jvm.project.schemas.dedup;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter that grows with the number of ids instead of saturating.
+ * <ul>
+ *     <li>ids are added to the last slice, a new slice twice as large is appended when it is full</li>
+ *     <li>each new slice halves its false positive rate, so the whole filter stays under the requested rate</li>
+ *     <li>reads and writes are lock-free, only growing takes a lock</li>
+ * </ul>
+ */
+public class ScalableBloomFilter {
+
+    private static final int GROWTH = 2;
+    private static final double TIGHTENING = 0.5;
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+
+    private final int initialCapacity;
+    private final double falsePositiveRate;
+    private volatile Slice[] slices;
+
+    /**
+     * @param initialCapacity Number of ids of the first slice
+     * @param falsePositiveRate Upper bound of the false positive rate of the whole filter
+     */
+    public ScalableBloomFilter(int initialCapacity, double falsePositiveRate) {
+        if (initialCapacity <= 0) throw new IllegalArgumentException("initialCapacity must be positive");
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) throw new IllegalArgumentException("falsePositiveRate must be in ]0, 1[");
+
+        this.initialCapacity = initialCapacity;
+        this.falsePositiveRate = falsePositiveRate;
+        this.slices = new Slice[] { new Slice(initialCapacity, falsePositiveRate * (1 - TIGHTENING)) };
+    }
+
+    /**
+     * @return false if the id was never added, true if it probably was
+     */
+    public boolean mightContain(String id) {
+        long h1 = hash(id);
+        long h2 = fmix(h1 ^ SEED) | 1;
+        for (Slice slice : this.slices)
+            if (slice.mightContain(h1, h2)) return true;
+        return false;
+    }
+
+    public void put(String id) {
+        long h1 = hash(id);
+        long h2 = fmix(h1 ^ SEED) | 1;
+
+        Slice[] current = this.slices;
+        for (Slice slice : current)
+            if (slice.mightContain(h1, h2)) return;
+
+        Slice last = current[current.length - 1];
+        if (last.put(h1, h2) && last.isFull()) this.grow(last);
+    }
+
+    /**
+     * @return Approximate number of distinct ids added
+     */
+    public long size() {
+        long size = 0;
+        for (Slice slice : this.slices) size += slice.count.get();
+        return size;
+    }
+
+    /**
+     * @return Memory used by the bit sets, in bytes
+     */
+    public long sizeInBytes() {
+        long bytes = 0;
+        for (Slice slice : this.slices) bytes += (long) slice.bits.length() * Long.BYTES;
+        return bytes;
+    }
+
+    public int sliceCount() {
+        return this.slices.length;
+    }
+
+    @Override
+    public String toString() {
+        return "ids=" + this.size() + ", slices=" + this.sliceCount() + ", bytes=" + this.sizeInBytes()
+                + ", initialCapacity=" + this.initialCapacity + ", fpp=" + this.falsePositiveRate;
+    }
+
+    private synchronized void grow(Slice full) {
+        Slice[] current = this.slices;
+        if (current[current.length - 1] != full) return;
+
+        Slice[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = new Slice(full.capacity * GROWTH, full.falsePositiveRate * TIGHTENING);
+        this.slices = grown;
+    }
+
+    private static long hash(String id) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            h ^= id.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        return fmix(h);
+    }
+
+    private static long fmix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Fixed size bloom filter, bit positions are derived from two hashes (Kirsch-Mitzenmacher).
+     */
+    private static final class Slice {
+        private final long capacity;
+        private final double falsePositiveRate;
+        private final long bitSize;
+        private final int hashes;
+        private final AtomicLongArray bits;
+        private final AtomicInteger count = new AtomicInteger();
+
+        private Slice(long capacity, double falsePositiveRate) {
+            this.capacity = capacity;
+            this.falsePositiveRate = falsePositiveRate;
+            long words = Math.max(1, (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)) / Long.SIZE));
+            this.bits = new AtomicLongArray(Math.toIntExact(words));
+            this.bitSize = words * Long.SIZE;
+            this.hashes = Math.max(1, (int) Math.ceil(-Math.log(falsePositiveRate) / Math.log(2)));
+        }
+
+        private boolean mightContain(long h1, long h2) {
+            for (int i = 0; i < this.hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, this.bitSize);
+                if ((this.bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+            }
+            return true;
+        }
+
+        /**
+         * @return true if at least one bit was set, i.e. the id was not already present
+         */
+        private boolean put(long h1, long h2) {
+            boolean changed = false;
+            for (int i = 0; i < this.hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, this.bitSize);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long previous = this.bits.getAndAccumulate(word, mask, (value, m) -> value | m);
+                if ((previous & mask) == 0) changed = true;
+            }
+            if (changed) this.count.incrementAndGet();
+            return changed;
+        }
+
+        private boolean isFull() {
+            return this.count.get() >= this.capacity;
+        }
+    }
+}
@@ -1,4 +1,9 @@
 package org.pops.et4.jvm.project.schemas.events;
 
 public abstract class KafkaEvent extends org.apache.avro.specific.SpecificRecordBase implements org.apache.avro.specific.SpecificRecord {
+
+    /**
+     * Record header carrying the id of the event, kept as-is when the event is sent again.
+     */
+    public static final String EVENT_ID_HEADER = "event-id";
 }
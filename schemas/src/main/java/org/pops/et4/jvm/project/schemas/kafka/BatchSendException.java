@@ -0,0 +1,24 @@
+package org.pops.et4.jvm.project.schemas.kafka;
+
+/**
+ * Raised by {@link ProducerPipeline#sendBatch} when at least one record of the batch was not acknowledged.
+ */
+public class BatchSendException extends RuntimeException {
+
+    private final int sent;
+    private final int failed;
+
+    public BatchSendException(int sent, int failed, Throwable firstCause) {
+        super(failed + " of " + (sent + failed) + " records failed: " + (firstCause != null ? firstCause.getMessage() : "unknown"), firstCause);
+        this.sent = sent;
+        this.failed = failed;
+    }
+
+    public int getSent() {
+        return sent;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+}
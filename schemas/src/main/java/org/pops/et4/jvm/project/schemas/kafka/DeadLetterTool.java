@@ -0,0 +1,162 @@
+package org.pops.et4.jvm.project.schemas.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.springframework.kafka.support.KafkaHeaders;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Inspects and re-drives the records of a dead-letter topic.
+ * Records already re-driven are tracked by the offsets of a dedicated consumer group,
+ * so {@link #list} only shows the records still waiting.
+ */
+public class DeadLetterTool {
+
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+    private static final long SEND_TIMEOUT_MS = 30_000;
+
+    private final Map<String, Object> consumerConfig;
+    private final ProducerPipeline pipeline;
+
+    /**
+     * @param consumerConfig Consumer configuration of the service, the group id is replaced
+     * @param pipeline Pipeline used to send the records back to their original topic
+     * @param redriveGroupId Consumer group remembering the re-driven records
+     */
+    public DeadLetterTool(Map<String, Object> consumerConfig, ProducerPipeline pipeline, String redriveGroupId) {
+        this.consumerConfig = new HashMap<>(consumerConfig);
+        this.consumerConfig.put(ConsumerConfig.GROUP_ID_CONFIG, redriveGroupId);
+        this.consumerConfig.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        this.consumerConfig.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        this.pipeline = pipeline;
+    }
+
+    /**
+     * @param dltTopic Dead-letter topic, e.g. {@code purchase-game-dlt}
+     * @param max Maximum number of records
+     * @return The records not re-driven yet, oldest first per partition
+     */
+    public List<DeadLetter> list(String dltTopic, int max) {
+        try (KafkaConsumer<String, Object> consumer = new KafkaConsumer<>(this.consumerConfig)) {
+            return this.read(consumer, dltTopic, max).stream().map(DeadLetter::of).toList();
+        }
+    }
+
+    /**
+     * Sends the waiting records back to their original topic, with their event id, then commits them.
+     * @param dltTopic Dead-letter topic, e.g. {@code purchase-game-dlt}
+     * @param max Maximum number of records
+     * @return Number of re-driven records
+     */
+    public int redrive(String dltTopic, int max) {
+        try (KafkaConsumer<String, Object> consumer = new KafkaConsumer<>(this.consumerConfig)) {
+            List<ConsumerRecord<String, Object>> records = this.read(consumer, dltTopic, max);
+            if (records.isEmpty()) return 0;
+
+            List<ProducerRecord<String, Object>> resent = new ArrayList<>(records.size());
+            Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+            for (ConsumerRecord<String, Object> record : records) {
+                resent.add(new ProducerRecord<>(originalTopicOf(record), null, record.key(), record.value(), applicationHeaders(record.headers())));
+                offsets.put(new TopicPartition(record.topic(), record.partition()), new OffsetAndMetadata(record.offset() + 1));
+            }
+
+            this.pipeline.sendBatch(resent).get(SEND_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            consumer.commitSync(offsets);
+            return records.size();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Re-drive of " + dltTopic + " failed: " + e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Re-drive of " + dltTopic + " not acknowledged after " + SEND_TIMEOUT_MS + " ms", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while re-driving " + dltTopic, e);
+        }
+    }
+
+    private List<ConsumerRecord<String, Object>> read(KafkaConsumer<String, Object> consumer, String dltTopic, int max) {
+        List<PartitionInfo> infos = consumer.partitionsFor(dltTopic);
+        if (infos == null || infos.isEmpty()) return List.of();
+
+        List<TopicPartition> partitions = infos.stream().map(info -> new TopicPartition(dltTopic, info.partition())).toList();
+        consumer.assign(partitions);
+        Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+
+        List<ConsumerRecord<String, Object>> records = new ArrayList<>();
+        while (records.size() < max && !reachedEnd(consumer, endOffsets)) {
+            for (ConsumerRecord<String, Object> record : consumer.poll(POLL_TIMEOUT)) {
+                TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+                if (record.offset() < endOffsets.get(partition)) records.add(record);
+                if (records.size() == max) break;
+            }
+        }
+        return records;
+    }
+
+    private static boolean reachedEnd(KafkaConsumer<?, ?> consumer, Map<TopicPartition, Long> endOffsets) {
+        for (Map.Entry<TopicPartition, Long> end : endOffsets.entrySet())
+            if (consumer.position(end.getKey()) < end.getValue()) return false;
+        return true;
+    }
+
+    private static String originalTopicOf(ConsumerRecord<?, ?> record) {
+        String originalTopic = headerOf(record.headers(), KafkaHeaders.DLT_ORIGINAL_TOPIC);
+        if (originalTopic != null) return originalTopic;
+        return record.topic().endsWith(RetryTopics.DLT_SUFFIX)
+                ? record.topic().substring(0, record.topic().length() - RetryTopics.DLT_SUFFIX.length())
+                : record.topic();
+    }
+
+    /**
+     * @return The headers of the record without the ones added by the retry and dead-letter machinery
+     */
+    private static List<Header> applicationHeaders(Headers headers) {
+        List<Header> kept = new ArrayList<>();
+        for (Header header : headers)
+            if (!header.key().startsWith(KafkaHeaders.PREFIX) && !header.key().startsWith("retry_topic-")) kept.add(header);
+        return kept;
+    }
+
+    private static String headerOf(Headers headers, String key) {
+        Header header = headers.lastHeader(key);
+        return header != null ? new String(header.value(), StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * Summary of a dead-letter record.
+     */
+    public record DeadLetter(int partition, long offset, Instant timestamp, String key, String eventId, String originalTopic, String exception, Object value) {
+
+        private static DeadLetter of(ConsumerRecord<String, Object> record) {
+            return new DeadLetter(
+                    record.partition(),
+                    record.offset(),
+                    Instant.ofEpochMilli(record.timestamp()),
+                    record.key(),
+                    EventIds.of(record.headers()),
+                    originalTopicOf(record),
+                    headerOf(record.headers(), KafkaHeaders.DLT_EXCEPTION_MESSAGE),
+                    record.value()
+            );
+        }
+
+        @Override
+        public String toString() {
+            return "#" + partition + "@" + offset + " " + timestamp + " " + originalTopic + "(" + key + ")"
+                    + " eventId=" + eventId + " error=" + exception + "\n    " + value;
+        }
+    }
+}
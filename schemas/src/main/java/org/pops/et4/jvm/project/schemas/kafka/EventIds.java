@@ -0,0 +1,52 @@
+package org.pops.et4.jvm.project.schemas.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.pops.et4.jvm.project.schemas.events.KafkaEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Reads and writes the {@link KafkaEvent#EVENT_ID_HEADER} header.
+ */
+public final class EventIds {
+
+    private EventIds() {}
+
+    public static String newId() {
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * @return Headers holding only the given event id
+     */
+    public static List<Header> headers(String eventId) {
+        return List.of(new RecordHeader(KafkaEvent.EVENT_ID_HEADER, eventId.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Gives a new id to a record that does not carry one yet.
+     */
+    public static void stamp(ProducerRecord<?, ?> record) {
+        if (record.headers().lastHeader(KafkaEvent.EVENT_ID_HEADER) == null)
+            record.headers().add(KafkaEvent.EVENT_ID_HEADER, newId().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return The id of the event, or its topic-partition@offset when it was sent without id
+     */
+    public static String of(ConsumerRecord<?, ?> record) {
+        String eventId = of(record.headers());
+        return eventId != null ? eventId : record.topic() + "-" + record.partition() + "@" + record.offset();
+    }
+
+    public static String of(Headers headers) {
+        Header header = headers.lastHeader(KafkaEvent.EVENT_ID_HEADER);
+        return header != null ? new String(header.value(), StandardCharsets.UTF_8) : null;
+    }
+}
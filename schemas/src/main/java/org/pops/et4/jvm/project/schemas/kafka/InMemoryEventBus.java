@@ -0,0 +1,220 @@
+package org.pops.et4.jvm.project.schemas.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.pops.et4.jvm.project.schemas.logging.EventLog;
+import org.pops.et4.jvm.project.schemas.logging.EventLogger;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.GenericMessageListener;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.SendResult;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Event bus standing in for Kafka when the services run in one JVM ({@code kafka.in-memory=true}).
+ * <ul>
+ *     <li>records sent through {@link #template()} keep their topic, key, headers and value, nothing is serialized</li>
+ *     <li>every {@code @KafkaListener} bound with {@link #bind} receives the records of its topics, like a consumer group</li>
+ *     <li>each listener has its own thread: records are delivered in order, after the send returned, outside of the sender transaction</li>
+ *     <li>a stopped listener keeps its records and gets them when started again</li>
+ * </ul>
+ * One bus is shared by every application context of the JVM, see {@link #shared()}.
+ */
+public class InMemoryEventBus {
+
+    private static final EventLogger LOG = EventLog.logger("Bus");
+    private static final InMemoryEventBus SHARED = new InMemoryEventBus();
+
+    private final ConcurrentMap<String, List<Subscription>> subscriptionsByTopic = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Subscription> subscriptionsById = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> offsets = new ConcurrentHashMap<>();
+    private final KafkaTemplate<String, Object> template = new InMemoryKafkaTemplate(this);
+
+    public static InMemoryEventBus shared() {
+        return SHARED;
+    }
+
+    /**
+     * @return A template publishing to this bus, usable wherever a Kafka template is
+     */
+    public KafkaTemplate<String, Object> template() {
+        return this.template;
+    }
+
+    /**
+     * Subscribes the listener of every container of the registry, except the retry and dead-letter ones.
+     * The containers themselves are never started.
+     * @return Number of subscribed listeners
+     */
+    @SuppressWarnings("unchecked")
+    public int bind(KafkaListenerEndpointRegistry registry) {
+        int bound = 0;
+        for (String listenerId : registry.getListenerContainerIds()) {
+            MessageListenerContainer container = registry.getListenerContainer(listenerId);
+            String[] topics = container.getContainerProperties().getTopics();
+            if (topics == null || !(container.getContainerProperties().getMessageListener() instanceof GenericMessageListener<?> listener)) continue;
+
+            List<String> mainTopics = Arrays.stream(topics).filter(RetryTopics::isMainTopic).toList();
+            if (mainTopics.isEmpty()) continue;
+
+            this.subscribe(listenerId, mainTopics, (GenericMessageListener<ConsumerRecord<String, Object>>) listener);
+            bound++;
+        }
+        return bound;
+    }
+
+    public void subscribe(String listenerId, Collection<String> topics, GenericMessageListener<ConsumerRecord<String, Object>> listener) {
+        Subscription subscription = new Subscription(listenerId, listener);
+        if (this.subscriptionsById.putIfAbsent(listenerId, subscription) != null)
+            throw new IllegalStateException("Listener " + listenerId + " already subscribed");
+
+        for (String topic : topics)
+            this.subscriptionsByTopic.computeIfAbsent(topic, t -> new CopyOnWriteArrayList<>()).add(subscription);
+    }
+
+    /**
+     * @return false if no listener has this id
+     */
+    public boolean pause(String listenerId) {
+        Subscription subscription = this.subscriptionsById.get(listenerId);
+        if (subscription == null) return false;
+        subscription.pause();
+        return true;
+    }
+
+    /**
+     * Delivers the records received while paused, then the new ones.
+     * @return false if no listener has this id
+     */
+    public boolean resume(String listenerId) {
+        Subscription subscription = this.subscriptionsById.get(listenerId);
+        if (subscription == null) return false;
+        subscription.resume();
+        return true;
+    }
+
+    public boolean isPaused(String listenerId) {
+        Subscription subscription = this.subscriptionsById.get(listenerId);
+        return subscription != null && subscription.paused;
+    }
+
+    /**
+     * Hands the record to every listener of its topic.
+     * @return An already completed future, the offset is the position of the record in its topic
+     */
+    public CompletableFuture<SendResult<String, Object>> publish(ProducerRecord<String, Object> record) {
+        long offset = this.offsets.computeIfAbsent(record.topic(), t -> new AtomicLong()).getAndIncrement();
+        long timestamp = record.timestamp() != null ? record.timestamp() : System.currentTimeMillis();
+
+        for (Subscription subscription : this.subscriptionsByTopic.getOrDefault(record.topic(), List.of())) {
+            subscription.deliver(new ConsumerRecord<>(
+                    record.topic(), 0, offset, timestamp, TimestampType.CREATE_TIME, -1, -1,
+                    record.key(), record.value(), new RecordHeaders(record.headers().toArray()), Optional.empty()
+            ));
+        }
+
+        RecordMetadata metadata = new RecordMetadata(new TopicPartition(record.topic(), 0), offset, 0, timestamp, -1, -1);
+        return CompletableFuture.completedFuture(new SendResult<>(record, metadata));
+    }
+
+    /**
+     * @return Statistics per listener, in listener id order
+     */
+    public SortedMap<String, String> getStats() {
+        SortedMap<String, String> stats = new TreeMap<>();
+        this.subscriptionsById.forEach((id, subscription) -> stats.put(id, subscription.toString()));
+        return stats;
+    }
+
+    private static class Subscription {
+        private final String listenerId;
+        private final GenericMessageListener<ConsumerRecord<String, Object>> listener;
+        private final ExecutorService executor;
+        private final Deque<ConsumerRecord<String, Object>> pending = new ArrayDeque<>();
+        private volatile boolean paused;
+
+        private final LongAdder delivered = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+
+        private Subscription(String listenerId, GenericMessageListener<ConsumerRecord<String, Object>> listener) {
+            this.listenerId = listenerId;
+            this.listener = listener;
+            this.executor = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("bus-" + listenerId).daemon(true).factory());
+        }
+
+        private synchronized void deliver(ConsumerRecord<String, Object> record) {
+            if (this.paused) this.pending.add(record);
+            else this.executor.execute(() -> this.consume(record));
+        }
+
+        private synchronized void pause() {
+            this.paused = true;
+        }
+
+        private synchronized void resume() {
+            this.paused = false;
+            ConsumerRecord<String, Object> record;
+            while ((record = this.pending.poll()) != null) {
+                ConsumerRecord<String, Object> next = record;
+                this.executor.execute(() -> this.consume(next));
+            }
+        }
+
+        private void consume(ConsumerRecord<String, Object> record) {
+            try {
+                this.listener.onMessage(record, null, null);
+                this.delivered.increment();
+            } catch (RuntimeException e) {
+                this.failed.increment();
+                LOG.error("{}({}) failed in {}: {}", record.topic(), record.key(), this.listenerId, e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "delivered=" + this.delivered.sum() + ", failed=" + this.failed.sum()
+                    + ", pending=" + this.pending.size() + (this.paused ? ", paused" : "");
+        }
+    }
+
+    /**
+     * Template whose sends go to the bus, its producer factory is never used.
+     */
+    private static class InMemoryKafkaTemplate extends KafkaTemplate<String, Object> {
+        private final InMemoryEventBus bus;
+
+        private InMemoryKafkaTemplate(InMemoryEventBus bus) {
+            super(new DefaultKafkaProducerFactory<>(Map.of()));
+            this.bus = bus;
+        }
+
+        @Override
+        public CompletableFuture<SendResult<String, Object>> send(ProducerRecord<String, Object> record) {
+            return this.bus.publish(record);
+        }
+
+        @Override
+        public CompletableFuture<SendResult<String, Object>> send(String topic, String key, Object data) {
+            return this.send(new ProducerRecord<>(topic, key, data));
+        }
+
+        @Override
+        public CompletableFuture<SendResult<String, Object>> send(String topic, Object data) {
+            return this.send(new ProducerRecord<>(topic, data));
+        }
+
+        @Override
+        public void flush() {
+        }
+    }
+}
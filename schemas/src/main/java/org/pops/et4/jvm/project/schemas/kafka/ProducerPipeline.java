@@ -0,0 +1,290 @@
+package org.pops.et4.jvm.project.schemas.kafka;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous producer shared by the services.
+ * <ul>
+ *     <li>at most {@code maxInFlight} records are waiting for an acknowledgement, callers block when the window is full</li>
+ *     <li>each topic is sent through the producer of its {@link ProducerProfile}</li>
+ *     <li>acknowledgements and failures are counted per topic instead of being printed</li>
+ *     <li>with a callback executor, the stages chained on the returned futures run on it instead of the producer I/O thread</li>
+ * </ul>
+ */
+public class ProducerPipeline {
+
+    private final KafkaTemplate<String, Object> defaultTemplate;
+    private final Map<String, KafkaTemplate<String, Object>> templatesByTopic;
+    private final Collection<KafkaTemplate<String, Object>> templates;
+    private final Semaphore window;
+    private final int maxInFlight;
+    private final long acquireTimeoutMs;
+    private final Executor callbackExecutor;
+    private final ConcurrentMap<String, TopicStats> stats = new ConcurrentHashMap<>();
+
+    private ProducerPipeline(Builder builder) {
+        Map<ProducerProfile, KafkaTemplate<String, Object>> templatesByProfile = new HashMap<>();
+        this.defaultTemplate = builder.templateFactory.apply(builder.defaultProfile);
+        templatesByProfile.put(builder.defaultProfile, this.defaultTemplate);
+
+        this.templatesByTopic = new HashMap<>();
+        builder.profilesByTopic.forEach((topic, profile) -> this.templatesByTopic.put(
+                topic,
+                templatesByProfile.computeIfAbsent(profile, builder.templateFactory::apply)
+        ));
+        this.templates = List.copyOf(templatesByProfile.values());
+
+        this.maxInFlight = builder.maxInFlight;
+        this.window = new Semaphore(builder.maxInFlight);
+        this.acquireTimeoutMs = builder.acquireTimeoutMs;
+        this.callbackExecutor = builder.callbackExecutor;
+    }
+
+    /**
+     * Starts a pipeline whose producers are created from a shared configuration.
+     * @param baseConfig Producer configuration shared by every profile
+     * @return A builder of pipeline
+     */
+    public static Builder builder(Map<String, Object> baseConfig) {
+        return new Builder(profile -> new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(profile.apply(baseConfig))));
+    }
+
+    /**
+     * Starts a pipeline whose producers get their value serializer from a supplier,
+     * e.g. to share a Schema Registry client already warmed up.
+     * @param baseConfig Producer configuration shared by every profile
+     * @param valueSerializer Creates the value serializer of each producer
+     * @return A builder of pipeline
+     */
+    public static Builder builder(Map<String, Object> baseConfig, Supplier<Serializer<Object>> valueSerializer) {
+        return new Builder(profile -> new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(profile.apply(baseConfig), StringSerializer::new, valueSerializer)));
+    }
+
+    /**
+     * Starts a pipeline sending to an in-memory bus, the profiles only keep their topic grouping.
+     * @param bus Bus receiving every record
+     * @return A builder of pipeline
+     */
+    public static Builder builder(InMemoryEventBus bus) {
+        return new Builder(profile -> bus.template());
+    }
+
+    /**
+     * Sends one record, blocking while the in-flight window is full.
+     * @return The future of the acknowledgement
+     */
+    public CompletableFuture<SendResult<String, Object>> send(String topic, String key, Object value) {
+        return this.send(new ProducerRecord<>(topic, key, value));
+    }
+
+    /**
+     * Sends one record, blocking while the in-flight window is full.
+     * A new event id is added to records sent without one.
+     * @return The future of the acknowledgement
+     */
+    public CompletableFuture<SendResult<String, Object>> send(ProducerRecord<String, Object> record) {
+        EventIds.stamp(record);
+        TopicStats topicStats = this.statsOf(record.topic());
+        this.acquire(record.topic());
+
+        CompletableFuture<SendResult<String, Object>> future;
+        try {
+            future = this.templateOf(record.topic()).send(record);
+        } catch (RuntimeException e) {
+            this.window.release();
+            topicStats.onFailure(e);
+            throw e;
+        }
+
+        topicStats.inFlight.increment();
+        CompletableFuture<SendResult<String, Object>> acknowledged = future.whenComplete((result, ex) -> {
+            this.window.release();
+            topicStats.inFlight.decrement();
+            if (ex == null) topicStats.acked.increment();
+            else topicStats.onFailure(ex);
+        });
+        // The window is released on the I/O thread, only the callers' stages are handed off
+        if (this.callbackExecutor == null) return acknowledged;
+        return acknowledged.whenCompleteAsync((result, ex) -> {}, this.callbackExecutor);
+    }
+
+    /**
+     * Sends a group of records and aggregates their acknowledgements.
+     * Records are handed to the producers in order, the caller is throttled by the in-flight window.
+     * @param records Records to send
+     * @return A future completed with the batch result, or exceptionally with a {@link BatchSendException}
+     */
+    public CompletableFuture<BatchResult> sendBatch(List<ProducerRecord<String, Object>> records) {
+        CompletableFuture<BatchResult> aggregated = new CompletableFuture<>();
+        if (records.isEmpty()) {
+            aggregated.complete(new BatchResult(0));
+            return aggregated;
+        }
+
+        AtomicInteger remaining = new AtomicInteger(records.size());
+        AtomicInteger failed = new AtomicInteger();
+        AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+
+        for (ProducerRecord<String, Object> record : records) {
+            CompletableFuture<SendResult<String, Object>> future;
+            try {
+                future = this.send(record);
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+
+            future.whenComplete((result, ex) -> {
+                if (ex != null) {
+                    failed.incrementAndGet();
+                    firstFailure.compareAndSet(null, ex);
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    if (failed.get() == 0) aggregated.complete(new BatchResult(records.size()));
+                    else aggregated.completeExceptionally(new BatchSendException(records.size() - failed.get(), failed.get(), firstFailure.get()));
+                }
+            });
+        }
+
+        return aggregated;
+    }
+
+    /**
+     * Pushes every pending batch to the brokers.
+     */
+    public void flush() {
+        this.templates.forEach(KafkaTemplate::flush);
+    }
+
+    /**
+     * @return Number of records waiting for an acknowledgement
+     */
+    public int getInFlight() {
+        return this.maxInFlight - this.window.availablePermits();
+    }
+
+    /**
+     * @return Statistics per topic, in topic order
+     */
+    public SortedMap<String, TopicStats> getStats() {
+        return Collections.unmodifiableSortedMap(new TreeMap<>(this.stats));
+    }
+
+    private void acquire(String topic) {
+        try {
+            if (!this.window.tryAcquire(this.acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("Producer window full (" + this.maxInFlight + " in flight), cannot send to " + topic);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the producer window", e);
+        }
+    }
+
+    private KafkaTemplate<String, Object> templateOf(String topic) {
+        return this.templatesByTopic.getOrDefault(topic, this.defaultTemplate);
+    }
+
+    private TopicStats statsOf(String topic) {
+        return this.stats.computeIfAbsent(topic, t -> new TopicStats());
+    }
+
+    /**
+     * Result of a fully acknowledged batch.
+     * @param sent Number of acknowledged records
+     */
+    public record BatchResult(int sent) {}
+
+    /**
+     * Counters of one topic.
+     */
+    public static class TopicStats {
+        private final LongAdder acked = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder inFlight = new LongAdder();
+        private volatile String lastError;
+
+        private void onFailure(Throwable ex) {
+            this.failed.increment();
+            this.lastError = ex.getMessage();
+        }
+
+        public long getAcked() {
+            return acked.sum();
+        }
+
+        public long getFailed() {
+            return failed.sum();
+        }
+
+        public long getInFlight() {
+            return inFlight.sum();
+        }
+
+        public String getLastError() {
+            return lastError;
+        }
+
+        @Override
+        public String toString() {
+            return "acked=" + this.getAcked() + ", failed=" + this.getFailed() + ", inFlight=" + this.getInFlight()
+                    + (this.lastError != null ? ", lastError=" + this.lastError : "");
+        }
+    }
+
+    public static class Builder {
+        private final java.util.function.Function<ProducerProfile, KafkaTemplate<String, Object>> templateFactory;
+        private final Map<String, ProducerProfile> profilesByTopic = new HashMap<>();
+        private ProducerProfile defaultProfile = ProducerProfile.LOW_LATENCY;
+        private int maxInFlight = 10_000;
+        private long acquireTimeoutMs = 30_000;
+        private Executor callbackExecutor;
+
+        private Builder(java.util.function.Function<ProducerProfile, KafkaTemplate<String, Object>> templateFactory) {
+            this.templateFactory = templateFactory;
+        }
+
+        public Builder defaultProfile(ProducerProfile profile) {
+            this.defaultProfile = profile;
+            return this;
+        }
+
+        public Builder profile(ProducerProfile profile, String... topics) {
+            for (String topic : topics) this.profilesByTopic.put(topic, profile);
+            return this;
+        }
+
+        public Builder maxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        public Builder acquireTimeoutMs(long acquireTimeoutMs) {
+            this.acquireTimeoutMs = acquireTimeoutMs;
+            return this;
+        }
+
+        /**
+         * @param callbackExecutor Runs the stages chained on the futures of {@link #send}, null to run them on the producer I/O thread
+         */
+        public Builder callbackExecutor(Executor callbackExecutor) {
+            this.callbackExecutor = callbackExecutor;
+            return this;
+        }
+
+        public ProducerPipeline build() {
+            return new ProducerPipeline(this);
+        }
+    }
+}
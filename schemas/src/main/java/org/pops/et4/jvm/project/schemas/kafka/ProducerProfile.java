@@ -0,0 +1,37 @@
+package org.pops.et4.jvm.project.schemas.kafka;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+
+import java.util.Map;
+
+/**
+ * Producer tuning applied to a group of topics.
+ * @param name Name of the profile, used in statistics
+ * @param lingerMs Time the producer waits to fill a batch
+ * @param batchSize Maximum size of a batch in bytes
+ * @param compressionType Compression codec of the batches (none, gzip, snappy, lz4, zstd)
+ */
+public record ProducerProfile(String name, int lingerMs, int batchSize, String compressionType) {
+
+    /** Player commands and single replies: sent as soon as possible. */
+    public static final ProducerProfile LOW_LATENCY = new ProducerProfile("low-latency", 0, 16 * 1024, "none");
+
+    /** Fan-out notifications (one event per distributor or per player): large compressed batches. */
+    public static final ProducerProfile FAN_OUT = new ProducerProfile("fan-out", 20, 256 * 1024, "lz4");
+
+    /** Page responses made of arrays of similar records. */
+    public static final ProducerProfile PAGES = new ProducerProfile("pages", 10, 64 * 1024, "zstd");
+
+    /**
+     * Copies the producer configuration and applies this profile on top of it.
+     * @param baseConfig Shared producer configuration (servers, serializers, registry)
+     * @return The configuration of a producer using this profile
+     */
+    public Map<String, Object> apply(Map<String, Object> baseConfig) {
+        Map<String, Object> config = new java.util.HashMap<>(baseConfig);
+        config.put(ProducerConfig.LINGER_MS_CONFIG, this.lingerMs);
+        config.put(ProducerConfig.BATCH_SIZE_CONFIG, this.batchSize);
+        config.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, this.compressionType);
+        return config;
+    }
+}
@@ -0,0 +1,69 @@
+package org.pops.et4.jvm.project.schemas.kafka;
+
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.retrytopic.RetryTopicConfiguration;
+import org.springframework.kafka.retrytopic.RetryTopicConfigurationBuilder;
+import org.springframework.kafka.retrytopic.TopicSuffixingStrategy;
+
+import java.util.regex.Pattern;
+
+/**
+ * Naming and configuration of the non-blocking retries shared by the services.
+ * A record that fails on {@code topic} is forwarded to {@code topic-retry-0}, {@code topic-retry-1}... with growing delays,
+ * then to {@code topic-dlt}. The main partition keeps consuming in the meantime.
+ */
+public final class RetryTopics {
+
+    public static final String RETRY_SUFFIX = "-retry";
+    public static final String DLT_SUFFIX = "-dlt";
+
+    private static final Pattern RETRY_TOPIC = Pattern.compile(".*" + Pattern.quote(RETRY_SUFFIX) + "(-\\d+)?");
+
+    private RetryTopics() {}
+
+    /**
+     * @param template Template used to forward failed records
+     * @param listenerFactory Bean name of the container factory of the retry listeners
+     * @param maxAttempts Number of attempts, the first one included
+     * @param initialIntervalMs Delay before the first retry
+     * @param multiplier Growth of the delay between two retries
+     * @param maxIntervalMs Upper bound of the delay
+     */
+    public static RetryTopicConfiguration configuration(
+            KafkaTemplate<?, ?> template,
+            String listenerFactory,
+            int maxAttempts,
+            long initialIntervalMs,
+            double multiplier,
+            long maxIntervalMs
+    ) {
+        return RetryTopicConfigurationBuilder.newInstance()
+                .maxAttempts(maxAttempts)
+                .exponentialBackoff(initialIntervalMs, multiplier, maxIntervalMs)
+                .retryTopicSuffix(RETRY_SUFFIX)
+                .dltSuffix(DLT_SUFFIX)
+                .setTopicSuffixingStrategy(TopicSuffixingStrategy.SUFFIX_WITH_INDEX_VALUE)
+                .listenerFactory(listenerFactory)
+                .create(template);
+    }
+
+    public static String dltOf(String topic) {
+        return topic + DLT_SUFFIX;
+    }
+
+    /**
+     * @return The topic a retry or dead-letter topic belongs to, the topic itself for a main topic
+     */
+    public static String mainTopicOf(String topic) {
+        if (topic.endsWith(DLT_SUFFIX)) return topic.substring(0, topic.length() - DLT_SUFFIX.length());
+        if (!RETRY_TOPIC.matcher(topic).matches()) return topic;
+        return topic.substring(0, topic.lastIndexOf(RETRY_SUFFIX));
+    }
+
+    /**
+     * @return false for the retry and dead-letter topics
+     */
+    public static boolean isMainTopic(String topic) {
+        return !topic.endsWith(DLT_SUFFIX) && !RETRY_TOPIC.matcher(topic).matches();
+    }
+}
@@ -0,0 +1,167 @@
+package org.pops.et4.jvm.project.schemas.logging;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Logging channel shared by the services.
+ * <ul>
+ *     <li>callers only push the pattern and its arguments to a lock-free queue, formatting happens on the writer thread</li>
+ *     <li>the writer drains the queue in batches, one write to stdout / stderr per batch</li>
+ *     <li>when the queue is full, lines are dropped and counted instead of blocking the caller</li>
+ * </ul>
+ * Configured with system properties:
+ * <ul>
+ *     <li>{@code eventlog.level} and {@code eventlog.level.<category>}: minimum {@link Level}, INFO by default</li>
+ *     <li>{@code eventlog.sample} and {@code eventlog.sample.<category>}: per-event lines allowed per second, 1000 by default</li>
+ *     <li>{@code eventlog.capacity}: maximum number of queued lines, 65536 by default</li>
+ * </ul>
+ * Arguments are formatted later: pass values, not objects that are modified right after the call.
+ */
+public final class EventLog {
+
+    private static final int CAPACITY = Integer.getInteger("eventlog.capacity", 65_536);
+    private static final int BATCH_SIZE = 512;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private static final ConcurrentLinkedQueue<Entry> QUEUE = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger SIZE = new AtomicInteger();
+    private static final LongAdder DROPPED = new LongAdder();
+    private static final ConcurrentMap<String, EventLogger> LOGGERS = new ConcurrentHashMap<>();
+
+    private static final Object DRAIN_LOCK = new Object();
+    private static final StringBuilder OUT = new StringBuilder(16 * 1024);
+    private static final StringBuilder ERR = new StringBuilder(1024);
+
+    private static final Thread WRITER = Thread.ofPlatform().name("event-log-writer").daemon(true).unstarted(EventLog::writeLoop);
+    private static volatile boolean writerParked;
+
+    static {
+        WRITER.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(EventLog::flush, "event-log-flush"));
+    }
+
+    private EventLog() {}
+
+    /**
+     * @param category Name printed in front of each line, e.g. {@code Consumer}
+     * @return The logger of the category, created on first use
+     */
+    public static EventLogger logger(String category) {
+        return LOGGERS.computeIfAbsent(category, EventLogger::new);
+    }
+
+    /**
+     * Changes the level of a category at runtime.
+     */
+    public static void setLevel(String category, Level level) {
+        logger(category).setLevel(level);
+    }
+
+    /**
+     * Writes every queued line before returning.
+     */
+    public static void flush() {
+        drain();
+    }
+
+    /**
+     * @return Number of lines waiting to be written
+     */
+    public static int getQueued() {
+        return SIZE.get();
+    }
+
+    static void enqueue(Entry entry) {
+        if (SIZE.incrementAndGet() > CAPACITY) {
+            SIZE.decrementAndGet();
+            DROPPED.increment();
+            return;
+        }
+
+        QUEUE.offer(entry);
+        if (writerParked) LockSupport.unpark(WRITER);
+    }
+
+    private static void writeLoop() {
+        while (true) {
+            if (QUEUE.isEmpty()) {
+                writerParked = true;
+                if (QUEUE.isEmpty()) LockSupport.parkNanos(IDLE_PARK_NANOS);
+                writerParked = false;
+            }
+            try {
+                drain();
+            } catch (RuntimeException e) {
+                System.err.println("[EventLog] Writer failure: " + e);
+            }
+        }
+    }
+
+    private static void drain() {
+        synchronized (DRAIN_LOCK) {
+            int batched = 0;
+            Entry entry;
+            while ((entry = QUEUE.poll()) != null) {
+                SIZE.decrementAndGet();
+                entry.appendTo(entry.level().compareTo(Level.WARN) >= 0 ? ERR : OUT);
+                if (++batched == BATCH_SIZE) {
+                    write();
+                    batched = 0;
+                }
+            }
+
+            long dropped = DROPPED.sumThenReset();
+            if (dropped > 0) ERR.append("[EventLog] ").append(dropped).append(" line(s) dropped, queue full").append(System.lineSeparator());
+            write();
+        }
+    }
+
+    private static void write() {
+        write(System.out, OUT);
+        write(System.err, ERR);
+    }
+
+    private static void write(PrintStream stream, StringBuilder buffer) {
+        if (buffer.isEmpty()) return;
+        stream.print(buffer);
+        stream.flush();
+        buffer.setLength(0);
+    }
+
+    /**
+     * One queued line, formatted by the writer thread.
+     */
+    record Entry(Level level, String category, String pattern, Object[] args) {
+
+        void appendTo(StringBuilder sb) {
+            sb.append('[').append(this.category).append("] ");
+
+            int argIndex = 0;
+            int from = 0;
+            int placeholder;
+            while ((placeholder = this.pattern.indexOf("{}", from)) >= 0) {
+                sb.append(this.pattern, from, placeholder);
+                if (argIndex < this.args.length) sb.append(this.args[argIndex++]);
+                else sb.append("{}");
+                from = placeholder + 2;
+            }
+            sb.append(this.pattern, from, this.pattern.length());
+
+            if (argIndex < this.args.length && this.args[this.args.length - 1] instanceof Throwable throwable) {
+                StringWriter trace = new StringWriter();
+                throwable.printStackTrace(new PrintWriter(trace));
+                sb.append(System.lineSeparator()).append(trace.toString().stripTrailing());
+            }
+            sb.append(System.lineSeparator());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.pops.et4.jvm.project.schemas.logging;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logger of one category, obtained with {@link EventLog#logger(String)}.
+ * Patterns use {@code {}} placeholders, a trailing {@link Throwable} argument is printed with its stack trace.
+ * Disabled or sampled-out calls return before allocating anything but the varargs array.
+ */
+public final class EventLogger {
+
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private final String category;
+    private volatile Level level;
+    private final int samplePerSecond;
+
+    private final AtomicLong sampleWindow = new AtomicLong();
+    private final AtomicInteger sampledInWindow = new AtomicInteger();
+    private final AtomicInteger suppressed = new AtomicInteger();
+
+    EventLogger(String category) {
+        String key = category.toLowerCase();
+        this.category = category;
+        this.level = Level.parse(
+                System.getProperty("eventlog.level." + key),
+                Level.parse(System.getProperty("eventlog.level"), Level.INFO)
+        );
+        this.samplePerSecond = Integer.getInteger("eventlog.sample." + key, Integer.getInteger("eventlog.sample", 1000));
+    }
+
+    public boolean isEnabled(Level level) {
+        return level.compareTo(this.level) >= 0 && this.level != Level.OFF;
+    }
+
+    public Level getLevel() {
+        return this.level;
+    }
+
+    void setLevel(Level level) {
+        this.level = level;
+    }
+
+    public void debug(String pattern, Object... args) {
+        this.log(Level.DEBUG, pattern, args);
+    }
+
+    public void info(String pattern, Object... args) {
+        this.log(Level.INFO, pattern, args);
+    }
+
+    public void warn(String pattern, Object... args) {
+        this.log(Level.WARN, pattern, args);
+    }
+
+    public void error(String pattern, Object... args) {
+        this.log(Level.ERROR, pattern, args);
+    }
+
+    /**
+     * Per-event INFO line, sampled: at most {@code eventlog.sample.<category>} lines per second are kept,
+     * the number of dropped lines is reported at the start of the next second.
+     */
+    public void event(String pattern, Object arg1, Object arg2) {
+        if (this.isEnabled(Level.INFO) && this.sample()) EventLog.enqueue(new EventLog.Entry(Level.INFO, this.category, pattern, new Object[] { arg1, arg2 }));
+    }
+
+    /**
+     * @see #event(String, Object, Object)
+     */
+    public void event(String pattern, Object arg1, Object arg2, Object arg3) {
+        if (this.isEnabled(Level.INFO) && this.sample()) EventLog.enqueue(new EventLog.Entry(Level.INFO, this.category, pattern, new Object[] { arg1, arg2, arg3 }));
+    }
+
+    /**
+     * @see #event(String, Object, Object)
+     */
+    public void event(String pattern, Object... args) {
+        if (this.isEnabled(Level.INFO) && this.sample()) EventLog.enqueue(new EventLog.Entry(Level.INFO, this.category, pattern, args != null ? args : NO_ARGS));
+    }
+
+    private void log(Level level, String pattern, Object[] args) {
+        if (this.isEnabled(level)) EventLog.enqueue(new EventLog.Entry(level, this.category, pattern, args != null ? args : NO_ARGS));
+    }
+
+    private boolean sample() {
+        long second = System.nanoTime() / 1_000_000_000L;
+        long window = this.sampleWindow.get();
+        if (second != window && this.sampleWindow.compareAndSet(window, second)) {
+            this.sampledInWindow.set(0);
+            int dropped = this.suppressed.getAndSet(0);
+            if (dropped > 0) EventLog.enqueue(new EventLog.Entry(Level.INFO, this.category, "{} similar line(s) suppressed by sampling", new Object[] { dropped }));
+        }
+
+        if (this.sampledInWindow.incrementAndGet() <= this.samplePerSecond) return true;
+        this.suppressed.incrementAndGet();
+        return false;
+    }
+}
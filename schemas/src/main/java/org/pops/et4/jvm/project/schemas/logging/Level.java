@@ -0,0 +1,22 @@
+package org.pops.et4.jvm.project.schemas.logging;
+
+/**
+ * Severity of a log line, {@link #WARN} and above go to stderr.
+ */
+public enum Level {
+    TRACE,
+    DEBUG,
+    INFO,
+    WARN,
+    ERROR,
+    OFF;
+
+    static Level parse(String value, Level fallback) {
+        if (value == null || value.isBlank()) return fallback;
+        try {
+            return Level.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return fallback;
+        }
+    }
+}
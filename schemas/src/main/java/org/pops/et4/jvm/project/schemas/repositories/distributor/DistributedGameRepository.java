@@ -1,11 +1,14 @@
 package org.pops.et4.jvm.project.schemas.repositories.distributor;
 
 import org.pops.et4.jvm.project.schemas.models.distributor.DistributedGame;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository(DistributedGameRepository.BEAN_NAME)
@@ -14,4 +17,19 @@ public interface DistributedGameRepository extends JpaRepository<DistributedGame
     
     @Query("SELECT dg FROM DistributedGame dg WHERE dg.distributor.id = :distributorId AND dg.gameId = :gameId")
     Optional<DistributedGame> findByDistributorIdAndGameId(@Param("distributorId") Long distributorId, @Param("gameId") Long gameId);
+
+    /**
+     * Every distribution of a game with its distributor, in one join.
+     */
+    @Query("SELECT dg FROM DistributedGame dg JOIN FETCH dg.distributor WHERE dg.gameId = :gameId")
+    List<DistributedGame> findByGameIdWithDistributor(@Param("gameId") Long gameId);
+
+    @Query("SELECT dg.gameName FROM DistributedGame dg WHERE dg.gameId = :gameId ORDER BY dg.distributor.id")
+    List<String> findGameNamesByGameId(@Param("gameId") Long gameId, Pageable pageable);
+
+    @Query("SELECT dg FROM DistributedGame dg WHERE dg.distributor.id = :distributorId ORDER BY dg.gameId")
+    List<DistributedGame> findByDistributorId(@Param("distributorId") Long distributorId);
+
+    @Query("SELECT dg FROM DistributedGame dg WHERE dg.distributor.id = :distributorId AND dg.gameId IN :gameIds")
+    List<DistributedGame> findByDistributorIdAndGameIdIn(@Param("distributorId") Long distributorId, @Param("gameIds") Collection<Long> gameIds);
 }
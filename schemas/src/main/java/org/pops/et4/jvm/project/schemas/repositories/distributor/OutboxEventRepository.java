@@ -0,0 +1,50 @@
+package org.pops.et4.jvm.project.schemas.repositories.distributor;
+
+import org.pops.et4.jvm.project.schemas.models.distributor.OutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+@Repository(OutboxEventRepository.BEAN_NAME)
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+    public static final String BEAN_NAME = "distributorDbOutboxEventRepository";
+
+    /**
+     * Locks the oldest unclaimed events of a shard for the current transaction, skipping the rows another relay is claiming.
+     * Events whose claim expired count as unclaimed.
+     * @param shard Shard of the relay, the events whose key hash modulo {@code shards} equals it
+     * @param shards Number of shards
+     * @param now Current time, compared to the claims
+     * @param limit Maximum number of events
+     * @return The locked events, in relay order
+     */
+    @Query(value = "SELECT * FROM outbox_events WHERE MOD(COALESCE(key_hash, 0), :shards) = :shard AND (claimed_until IS NULL OR claimed_until < :now) ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<OutboxEvent> lockNextBatch(@Param("shard") int shard, @Param("shards") int shards, @Param("now") Instant now, @Param("limit") int limit);
+
+    /**
+     * @return Id of the oldest event of a shard, claimed or not
+     */
+    @Query(value = "SELECT MIN(id) FROM outbox_events WHERE MOD(COALESCE(key_hash, 0), :shards) = :shard", nativeQuery = true)
+    Optional<Long> findHeadOfShard(@Param("shard") int shard, @Param("shards") int shards);
+
+    @Modifying
+    @Query("UPDATE OutboxEvent o SET o.claimedUntil = :until WHERE o.id IN :ids")
+    int claim(@Param("ids") List<Long> ids, @Param("until") Instant until);
+
+    /**
+     * Releases a claim, unless it expired and another relay claimed the events again.
+     * @param until End of the claim to release
+     */
+    @Modifying
+    @Query("UPDATE OutboxEvent o SET o.claimedUntil = NULL WHERE o.id IN :ids AND o.claimedUntil = :until")
+    int release(@Param("ids") List<Long> ids, @Param("until") Instant until);
+
+    @Query("SELECT MIN(o.createdAt) FROM OutboxEvent o")
+    Optional<Instant> findOldestCreatedAt();
+}
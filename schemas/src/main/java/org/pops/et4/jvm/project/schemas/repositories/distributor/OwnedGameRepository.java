@@ -1,11 +1,16 @@
 package org.pops.et4.jvm.project.schemas.repositories.distributor;
 
 import org.pops.et4.jvm.project.schemas.models.distributor.OwnedGame;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository(OwnedGameRepository.BEAN_NAME)
@@ -14,4 +19,103 @@ public interface OwnedGameRepository extends JpaRepository<OwnedGame, Long> {
     
     @Query("SELECT og FROM OwnedGame og WHERE og.player.id = :playerId AND og.gameId = :gameId")
     Optional<OwnedGame> findByPlayerIdAndGameId(@Param("playerId") Long playerId, @Param("gameId") Long gameId);
+
+    /**
+     * Owned game with its player, whose distributor id is read without another select.
+     */
+    @EntityGraph(attributePaths = "player")
+    @Query("SELECT og FROM OwnedGame og WHERE og.player.id = :playerId AND og.gameId = :gameId")
+    Optional<OwnedGame> findWithPlayerByPlayerIdAndGameId(@Param("playerId") Long playerId, @Param("gameId") Long gameId);
+
+    @Query("SELECT og.player.id AS playerId, COUNT(og) AS ownedGames, COALESCE(SUM(og.playTime), 0) AS totalPlayTime " +
+           "FROM OwnedGame og WHERE og.player.distributor.id = :distributorId GROUP BY og.player.id")
+    List<LibraryStats> findLibraryStatsByDistributorId(@Param("distributorId") Long distributorId);
+
+    /**
+     * Owned games of a player among the given ones, with the version distributed by the player's distributor, in one join.
+     */
+    @Query("SELECT og.gameId AS gameId, dg.gameName AS gameName, dg.version AS latestVersion, p.pseudo AS playerName " +
+           "FROM OwnedGame og JOIN og.player p " +
+           "JOIN DistributedGame dg ON dg.distributor = p.distributor AND dg.gameId = og.gameId " +
+           "WHERE p.id = :playerId AND og.gameId IN :gameIds")
+    List<OwnedGameVersion> findOwnedGameVersions(@Param("playerId") Long playerId, @Param("gameIds") Collection<Long> gameIds);
+
+    /**
+     * Owners and total play time of every game of every distributor, read once to build the leaderboards.
+     */
+    @Query("SELECT og.player.distributor.id AS distributorId, og.gameId AS gameId, COUNT(og) AS owners, COALESCE(SUM(og.playTime), 0) AS totalPlayTime " +
+           "FROM OwnedGame og GROUP BY og.player.distributor.id, og.gameId")
+    List<GameOwnership> findGameOwnership();
+
+    @Query("SELECT og.player.distributor.id AS distributorId, og.gameId AS gameId, og.purchaseDate AS date " +
+           "FROM OwnedGame og WHERE og.purchaseDate >= :since")
+    List<GameActivity> findPurchasesSince(@Param("since") Instant since);
+
+    @Query("SELECT og.gameId FROM OwnedGame og WHERE og.player.id = :playerId ORDER BY og.id DESC")
+    List<Long> findGameIdsByPlayerId(@Param("playerId") Long playerId);
+
+    /**
+     * Keyset pagination over the owned games in insertion order, for the recommendation model.
+     */
+    @Query("SELECT og.id AS ownedGameId, og.player.id AS playerId, og.player.distributor.id AS distributorId, og.gameId AS gameId " +
+           "FROM OwnedGame og WHERE og.id > :afterId ORDER BY og.id")
+    List<Ownership> findOwnershipsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT MAX(og.id) FROM OwnedGame og")
+    Optional<Long> findLastId();
+
+    @Query("SELECT COUNT(og) FROM OwnedGame og WHERE og.id <= :id")
+    long countUpTo(@Param("id") Long id);
+
+    @Query("SELECT og.id AS ownedGameId, og.player.id AS playerId, og.player.distributor.id AS distributorId, og.gameId AS gameId " +
+           "FROM OwnedGame og WHERE og.player.id IN :playerIds")
+    List<Ownership> findOwnershipsByPlayerIds(@Param("playerIds") Collection<Long> playerIds);
+
+    /**
+     * Per-player aggregate of the owned games of a distributor.
+     */
+    interface LibraryStats {
+        Long getPlayerId();
+        Long getOwnedGames();
+        Long getTotalPlayTime();
+    }
+
+    /**
+     * Owned game with the version distributed to its owner.
+     */
+    interface OwnedGameVersion {
+        Long getGameId();
+        String getGameName();
+        String getLatestVersion();
+        String getPlayerName();
+    }
+
+    /**
+     * Per-game aggregate of the owned games of a distributor.
+     */
+    interface GameOwnership {
+        Long getDistributorId();
+        Long getGameId();
+        Long getOwners();
+        Long getTotalPlayTime();
+    }
+
+    /**
+     * Flat view of an owned game row.
+     */
+    interface Ownership {
+        Long getOwnedGameId();
+        Long getPlayerId();
+        Long getDistributorId();
+        Long getGameId();
+    }
+
+    /**
+     * One dated event on a game of a distributor.
+     */
+    interface GameActivity {
+        Long getDistributorId();
+        Long getGameId();
+        Instant getDate();
+    }
 }
@@ -2,9 +2,16 @@ package org.pops.et4.jvm.project.schemas.repositories.distributor;
 
 import org.pops.et4.jvm.project.schemas.models.distributor.Player;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository(PlayerRepository.BEAN_NAME)
 public interface PlayerRepository extends JpaRepository<Player, Long> {
     public static final String BEAN_NAME = "distributorDbPlayerRepository";
+
+    @Query("SELECT p FROM Player p WHERE p.distributor.id = :distributorId ORDER BY p.id")
+    List<Player> findByDistributorId(@Param("distributorId") Long distributorId);
 }
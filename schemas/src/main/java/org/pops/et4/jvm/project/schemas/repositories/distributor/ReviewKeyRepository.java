@@ -0,0 +1,12 @@
+package org.pops.et4.jvm.project.schemas.repositories.distributor;
+
+import org.pops.et4.jvm.project.schemas.models.distributor.ReviewKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository(ReviewKeyRepository.BEAN_NAME)
+public interface ReviewKeyRepository extends JpaRepository<ReviewKey, Long> {
+    public static final String BEAN_NAME = "distributorDbReviewKeyRepository";
+
+    boolean existsByPlayerIdAndGameId(Long playerId, Long gameId);
+}
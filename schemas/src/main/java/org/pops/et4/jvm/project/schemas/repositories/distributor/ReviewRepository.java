@@ -1,10 +1,95 @@
 package org.pops.et4.jvm.project.schemas.repositories.distributor;
 
 import org.pops.et4.jvm.project.schemas.models.distributor.Review;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Reviews is partitioned by month of publication_date on PostgreSQL: the queries bounded by a date only read the partitions of their range.
+ * The other ones read every partition, each documents why.
+ */
 @Repository(ReviewRepository.BEAN_NAME)
 public interface ReviewRepository extends JpaRepository<Review, Long> {
     public static final String BEAN_NAME = "distributorDbReviewRepository";
+
+    /**
+     * Latest reviews of a game published since a date, for the reviews page.
+     */
+    @Query("SELECT r.id AS reviewId, r.rating AS rating, r.comment AS comment, r.publicationDate AS publicationDate, " +
+           "SIZE(r.positiveReactions) AS positiveReactions, SIZE(r.negativeReactions) AS negativeReactions " +
+           "FROM Review r WHERE r.gameId = :gameId AND r.publicationDate >= :since ORDER BY r.publicationDate DESC")
+    List<ReviewSummary> findSummariesByGameIdSince(@Param("gameId") Long gameId, @Param("since") Instant since, Pageable pageable);
+
+    /**
+     * Not bounded by date: the search hits come from the index with their id only, and they are few.
+     * Each partition answers from its (id, publication_date) primary key.
+     */
+    @Query("SELECT r.id AS reviewId, r.rating AS rating, r.comment AS comment, r.publicationDate AS publicationDate, " +
+           "SIZE(r.positiveReactions) AS positiveReactions, SIZE(r.negativeReactions) AS negativeReactions " +
+           "FROM Review r WHERE r.id IN :reviewIds")
+    List<ReviewSummary> findSummariesByIds(@Param("reviewIds") Collection<Long> reviewIds);
+
+    /**
+     * Review with its positive reactions, then {@link #fetchNegativeReactions} loads the negative ones in the same persistence context.
+     * Both are bags: fetching them in one join would fail.
+     * Not bounded by date, a reaction only carries the review id: one primary key lookup per partition.
+     */
+    @Query("SELECT r FROM Review r LEFT JOIN FETCH r.positiveReactions WHERE r.id = :reviewId")
+    Optional<Review> findWithPositiveReactionsById(@Param("reviewId") Long reviewId);
+
+    @Query("SELECT r FROM Review r LEFT JOIN FETCH r.negativeReactions WHERE r.id = :reviewId")
+    Optional<Review> fetchNegativeReactions(@Param("reviewId") Long reviewId);
+
+    /**
+     * Keyset pagination over the commented reviews, for the search index.
+     * Reads every partition on purpose: the index covers every review, and is only built at startup.
+     */
+    @Query("SELECT r.id AS reviewId, r.gameId AS gameId, r.comment AS comment " +
+           "FROM Review r WHERE r.id > :afterId AND r.comment IS NOT NULL ORDER BY r.id")
+    List<ReviewComment> findCommentsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Flat view of a review with its reaction counts, without loading the reacting players.
+     */
+    interface ReviewSummary {
+        Long getReviewId();
+        Integer getRating();
+        String getComment();
+        Instant getPublicationDate();
+        Integer getPositiveReactions();
+        Integer getNegativeReactions();
+    }
+
+    /**
+     * Number and sum of the ratings of every game of every distributor, read once to build the leaderboards.
+     * Reads every partition on purpose: the ratings are all-time, only read at startup and after partitions are dropped.
+     */
+    @Query("SELECT r.player.distributor.id AS distributorId, r.gameId AS gameId, COUNT(r) AS reviews, COALESCE(SUM(r.rating), 0) AS ratingSum " +
+           "FROM Review r GROUP BY r.player.distributor.id, r.gameId")
+    List<GameRatings> findGameRatings();
+
+    @Query("SELECT r.player.distributor.id AS distributorId, r.gameId AS gameId, r.publicationDate AS date " +
+           "FROM Review r WHERE r.publicationDate >= :since")
+    List<OwnedGameRepository.GameActivity> findPublicationsSince(@Param("since") Instant since);
+
+    interface GameRatings {
+        Long getDistributorId();
+        Long getGameId();
+        Long getReviews();
+        Long getRatingSum();
+    }
+
+    interface ReviewComment {
+        Long getReviewId();
+        Long getGameId();
+        String getComment();
+    }
 }
@@ -1,10 +1,45 @@
 package org.pops.et4.jvm.project.schemas.repositories.player;
 
 import org.pops.et4.jvm.project.schemas.models.player.InstalledGame;
+import org.pops.et4.jvm.project.schemas.models.player.Platform;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Lookups go through the unique (player_id, game_id, platform) index of the InstalledGames table.
+ */
 @Repository(InstalledGameRepository.BEAN_NAME)
 public interface InstalledGameRepository extends JpaRepository<InstalledGame, Long> {
     public static final String BEAN_NAME = "playerDbInstalledGameRepository";
+
+    Optional<InstalledGame> findByPlayerIdAndGameIdAndPlatform(Long playerId, Long gameId, Platform platform);
+
+    List<InstalledGame> findByPlayerIdOrderByGameId(Long playerId);
+
+    /**
+     * Inserts the installation, or sets its version if the player already has the game on this platform, in one statement.
+     * MERGE rather than ON CONFLICT so the in-memory H2 database runs it too;
+     * two concurrent first installs of the same game fail on the unique constraint instead of duplicating the row.
+     * @param platform Name of a {@link Platform}
+     * @return Number of inserted or updated rows
+     */
+    @Modifying
+    @Query(value = "MERGE INTO installed_games ig " +
+                   "USING (VALUES (CAST(:playerId AS BIGINT), CAST(:gameId AS BIGINT), CAST(:platform AS VARCHAR(255)), CAST(:installedVersion AS VARCHAR(255)))) " +
+                   "AS v (player_id, game_id, platform, installed_version) " +
+                   "ON ig.player_id = v.player_id AND ig.game_id = v.game_id AND ig.platform = v.platform " +
+                   "WHEN MATCHED THEN UPDATE SET installed_version = v.installed_version " +
+                   "WHEN NOT MATCHED THEN INSERT (player_id, game_id, platform, installed_version) " +
+                   "VALUES (v.player_id, v.game_id, v.platform, v.installed_version)", nativeQuery = true)
+    int upsert(@Param("playerId") Long playerId, @Param("gameId") Long gameId, @Param("platform") String platform, @Param("installedVersion") String installedVersion);
+
+    @Modifying
+    @Query("DELETE FROM InstalledGame ig WHERE ig.playerId = :playerId AND ig.gameId = :gameId AND ig.platform = :platform")
+    int deleteInstallation(@Param("playerId") Long playerId, @Param("gameId") Long gameId, @Param("platform") Platform platform);
 }
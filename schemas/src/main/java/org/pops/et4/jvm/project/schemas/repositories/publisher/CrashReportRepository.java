@@ -1,10 +1,46 @@
 package org.pops.et4.jvm.project.schemas.repositories.publisher;
 
 import org.pops.et4.jvm.project.schemas.models.publisher.CrashReport;
+import org.pops.et4.jvm.project.schemas.models.publisher.Platform;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.List;
+
 @Repository(CrashReportRepository.BEAN_NAME)
 public interface CrashReportRepository extends JpaRepository<CrashReport, Long> {
     public static final String BEAN_NAME = "publisherDbCrashReportRepository";
+
+    /**
+     * Keyset pagination over the crash reports in insertion order, for the crash analytics.
+     */
+    @Query("SELECT c.id AS id, c.game.id AS gameId, c.version AS version, c.platform AS platform, c.errorCode AS errorCode " +
+           "FROM CrashReport c WHERE c.id > :afterId ORDER BY c.id")
+    List<CrashSignatureRow> findSignaturesAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT COUNT(c) FROM CrashReport c WHERE c.game.id = :gameId AND c.version = :version " +
+           "AND c.platform = :platform AND c.errorCode = :errorCode")
+    long countSignature(@Param("gameId") Long gameId, @Param("version") String version,
+                        @Param("platform") Platform platform, @Param("errorCode") int errorCode);
+
+    /**
+     * Bounded by the report date, so only the partitions of the window are scanned on PostgreSQL.
+     */
+    @Query("SELECT COUNT(c) FROM CrashReport c WHERE c.game.id = :gameId AND c.reportDate >= :since")
+    long countByGameIdSince(@Param("gameId") Long gameId, @Param("since") Instant since);
+
+    /**
+     * Signature of a crash report, without its message.
+     */
+    interface CrashSignatureRow {
+        Long getId();
+        Long getGameId();
+        String getVersion();
+        Platform getPlatform();
+        Integer getErrorCode();
+    }
 }
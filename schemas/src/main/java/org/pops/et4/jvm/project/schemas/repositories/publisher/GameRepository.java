@@ -1,7 +1,10 @@
 package org.pops.et4.jvm.project.schemas.repositories.publisher;
 
 import org.pops.et4.jvm.project.schemas.models.publisher.Game;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -11,4 +14,12 @@ public interface GameRepository extends JpaRepository<Game, Long> {
     public static final String BEAN_NAME = "publisherDbGameRepository";
 
     Optional<Game> findFirstByName(String name);
+
+    /**
+     * Game with its publisher and platforms, for the GamePublished event.
+     * The genres are another bag: fetching both in one join would fail, they are loaded by a second select.
+     */
+    @EntityGraph(attributePaths = { "publisher", "platforms" })
+    @Query("SELECT g FROM Game g WHERE g.id = :id")
+    Optional<Game> findForPublicationById(@Param("id") Long id);
 }
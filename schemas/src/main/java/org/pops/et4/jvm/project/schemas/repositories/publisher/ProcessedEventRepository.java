@@ -0,0 +1,32 @@
+package org.pops.et4.jvm.project.schemas.repositories.publisher;
+
+import org.pops.et4.jvm.project.schemas.dedup.ProcessedEvents;
+import org.pops.et4.jvm.project.schemas.models.publisher.ProcessedEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.stream.Stream;
+
+@Repository(ProcessedEventRepository.BEAN_NAME)
+public interface ProcessedEventRepository extends JpaRepository<ProcessedEvent, String>, ProcessedEvents.Store {
+    public static final String BEAN_NAME = "publisherDbProcessedEventRepository";
+
+    /**
+     * Plain insert, without the select done by {@code save} for entities with an assigned id.
+     * Fails on commit if a concurrent consumer already inserted the same id.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO processed_events (event_id, consumer, processed_at) VALUES (:eventId, :consumer, :processedAt)", nativeQuery = true)
+    int insert(@Param("eventId") String eventId, @Param("consumer") String consumer, @Param("processedAt") Instant processedAt);
+
+    @Query("SELECT p.eventId FROM ProcessedEvent p WHERE p.processedAt >= :since")
+    Stream<String> streamEventIdsSince(@Param("since") Instant since);
+
+    @Modifying
+    @Query("DELETE FROM ProcessedEvent p WHERE p.processedAt < :before")
+    int deleteProcessedBefore(@Param("before") Instant before);
+}
@@ -2,9 +2,14 @@ package org.pops.et4.jvm.project.schemas.repositories.publisher;
 
 import org.pops.et4.jvm.project.schemas.models.publisher.Review;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository(ReviewRepository.BEAN_NAME)
 public interface ReviewRepository extends JpaRepository<Review, Long> {
     public static final String BEAN_NAME = "publisherDbReviewRepository";
+
+    @Query("SELECT COUNT(r) FROM Review r WHERE r.game.id = :gameId AND r.rating <= :maxRating")
+    long countByGameIdAndRatingAtMost(@Param("gameId") Long gameId, @Param("maxRating") int maxRating);
 }
@@ -0,0 +1,155 @@
+package org.pops.et4.jvm.project.schemas.sql;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.pops.et4.jvm.project.schemas.logging.EventLog;
+import org.pops.et4.jvm.project.schemas.logging.EventLogger;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the SQL statements run by each handler (e.g. one Kafka record), to catch the N+1 selects of lazy associations.
+ * <ul>
+ *     <li>registered as the Hibernate statement inspector of each persistence unit with {@link #STATEMENT_INSPECTOR_PROPERTY},
+ *     it counts every statement prepared on the thread of an open {@link Scope}, whichever session runs it</li>
+ *     <li>a scope over its budget logs its statements once closed, the same statement repeated many times is the N+1</li>
+ * </ul>
+ * It only reports: the budgets are enforced by the tests of each service, which run its handlers and assert their counts.
+ * Unlike the Hibernate statistics, shared by every thread of the session factory, the counts stay exact with concurrent handlers.
+ */
+public final class SqlBudget implements StatementInspector {
+
+    public static final SqlBudget INSTANCE = new SqlBudget();
+
+    public static final String STATEMENT_INSPECTOR_PROPERTY = "hibernate.session_factory.statement_inspector";
+
+    /**
+     * Budget of a handler that has none, e.g. one that fans out to every row of a table.
+     */
+    public static final int UNLIMITED = -1;
+
+    private static final EventLogger LOG = EventLog.logger("SqlBudget");
+    private static final int LOGGED_STATEMENTS = 5;
+    private static final int MAX_SQL_LENGTH = 200;
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private final ConcurrentMap<String, Stats> stats = new ConcurrentHashMap<>();
+
+    private SqlBudget() {}
+
+    /**
+     * Starts counting the statements of the current thread, until the scope is closed.
+     * @param handler Name of the handler, the statistics are grouped by it
+     * @param limit Maximum number of statements, {@link #UNLIMITED} to only count them
+     */
+    public Scope open(String handler, int limit) {
+        Scope scope = new Scope(handler, limit, CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        Scope scope = CURRENT.get();
+        if (scope != null) scope.count(sql);
+        return sql;
+    }
+
+    /**
+     * @return Runs, mean and maximum statements and runs over budget per handler, most statements first
+     */
+    public List<String> report() {
+        List<Map.Entry<String, Stats>> entries = new ArrayList<>(this.stats.entrySet());
+        entries.sort(Comparator.comparingLong((Map.Entry<String, Stats> entry) -> entry.getValue().max.get()).reversed());
+        List<String> lines = new ArrayList<>(entries.size());
+        for (Map.Entry<String, Stats> entry : entries) {
+            Stats stats = entry.getValue();
+            long runs = stats.runs.sum();
+            lines.add(String.format("%s: %d run(s), %.1f statement(s) on average, %d at most, %d over budget",
+                    entry.getKey(), runs, runs == 0 ? 0.0 : (double) stats.statements.sum() / runs, stats.max.get(), stats.overBudget.sum()));
+        }
+        return lines;
+    }
+
+    public void reset() {
+        this.stats.clear();
+    }
+
+    private void record(Scope scope) {
+        Stats stats = this.stats.computeIfAbsent(scope.handler, key -> new Stats());
+        stats.runs.increment();
+        stats.statements.add(scope.count);
+        stats.max.accumulateAndGet(scope.count, Math::max);
+        if (scope.isOverBudget()) stats.overBudget.increment();
+    }
+
+    /**
+     * Statements counted for one run of a handler. Scopes nest: closing one gives the thread back to the enclosing one.
+     */
+    public final class Scope implements AutoCloseable {
+
+        private final String handler;
+        private final int limit;
+        private final Scope enclosing;
+        // Same statement text, in order of first execution
+        private final Map<String, Integer> statements = new LinkedHashMap<>();
+        private int count;
+        private boolean closed;
+
+        private Scope(String handler, int limit, Scope enclosing) {
+            this.handler = handler;
+            this.limit = limit;
+            this.enclosing = enclosing;
+        }
+
+        public int getCount() {
+            return this.count;
+        }
+
+        public boolean isOverBudget() {
+            return this.limit != UNLIMITED && this.count > this.limit;
+        }
+
+        private void count(String sql) {
+            this.count++;
+            this.statements.merge(sql, 1, Integer::sum);
+            if (this.enclosing != null) this.enclosing.count(sql);
+        }
+
+        @Override
+        public void close() {
+            if (this.closed) return;
+            this.closed = true;
+            if (this.enclosing != null) CURRENT.set(this.enclosing);
+            else CURRENT.remove();
+
+            SqlBudget.this.record(this);
+            if (this.isOverBudget())
+                LOG.warn("{}: {} SQL statement(s) for a budget of {}, most repeated: {}", this.handler, this.count, this.limit, this.mostRepeated());
+        }
+
+        private String mostRepeated() {
+            List<Map.Entry<String, Integer>> entries = new ArrayList<>(this.statements.entrySet());
+            entries.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+            StringBuilder text = new StringBuilder();
+            for (Map.Entry<String, Integer> entry : entries.subList(0, Math.min(LOGGED_STATEMENTS, entries.size())))
+                text.append("\n  ").append(entry.getValue()).append("x ").append(abbreviate(entry.getKey()));
+            return text.toString();
+        }
+    }
+
+    private static String abbreviate(String sql) {
+        return sql.length() <= MAX_SQL_LENGTH ? sql : sql.substring(0, MAX_SQL_LENGTH) + "...";
+    }
+
+    private static class Stats {
+        private final LongAdder runs = new LongAdder();
+        private final LongAdder statements = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+        private final LongAdder overBudget = new LongAdder();
+    }
+}
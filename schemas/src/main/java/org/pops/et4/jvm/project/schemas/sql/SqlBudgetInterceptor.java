@@ -0,0 +1,63 @@
+package org.pops.et4.jvm.project.schemas.sql;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.pops.et4.jvm.project.schemas.kafka.RetryTopics;
+import org.springframework.core.env.Environment;
+import org.springframework.kafka.listener.RecordInterceptor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Opens one {@link SqlBudget.Scope} per consumed record, named after its topic.
+ * <ul>
+ *     <li>{@code sql.budget.default}: budget of every topic, {@value #DEFAULT_LIMIT} statements by default</li>
+ *     <li>{@code sql.budget.topics.<topic>}: budget of one topic, {@value SqlBudget#UNLIMITED} for no budget</li>
+ * </ul>
+ * The retries of a record share the budget of its main topic.
+ * Interceptors run on the consumer thread, around the listener and its transaction.
+ */
+public class SqlBudgetInterceptor<K, V> implements RecordInterceptor<K, V> {
+
+    public static final int DEFAULT_LIMIT = 25;
+
+    private static final String PROPERTY_PREFIX = "sql.budget.";
+
+    private final Environment environment;
+    private final int defaultLimit;
+    private final Map<String, Integer> limits = new ConcurrentHashMap<>();
+    private final ThreadLocal<SqlBudget.Scope> scope = new ThreadLocal<>();
+
+    public SqlBudgetInterceptor(Environment environment) {
+        this.environment = environment;
+        this.defaultLimit = environment.getProperty(PROPERTY_PREFIX + "default", Integer.class, DEFAULT_LIMIT);
+    }
+
+    /**
+     * @return The budget of the records of a topic
+     */
+    public int limitOf(String topic) {
+        return this.limits.computeIfAbsent(RetryTopics.mainTopicOf(topic),
+                main -> this.environment.getProperty(PROPERTY_PREFIX + "topics." + main, Integer.class, this.defaultLimit));
+    }
+
+    @Override
+    public ConsumerRecord<K, V> intercept(ConsumerRecord<K, V> record, Consumer<K, V> consumer) {
+        this.close();
+        this.scope.set(SqlBudget.INSTANCE.open(record.topic(), this.limitOf(record.topic())));
+        return record;
+    }
+
+    @Override
+    public void afterRecord(ConsumerRecord<K, V> record, Consumer<K, V> consumer) {
+        this.close();
+    }
+
+    private void close() {
+        SqlBudget.Scope current = this.scope.get();
+        if (current == null) return;
+        this.scope.remove();
+        current.close();
+    }
+}
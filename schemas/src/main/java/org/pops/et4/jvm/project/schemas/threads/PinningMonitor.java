@@ -0,0 +1,105 @@
+package org.pops.et4.jvm.project.schemas.threads;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.pops.et4.jvm.project.schemas.logging.EventLog;
+import org.pops.et4.jvm.project.schemas.logging.EventLogger;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reports the virtual threads pinned to their carrier, from the {@value #PINNED_EVENT} JFR event.
+ * <ul>
+ *     <li>a virtual thread blocking inside a {@code synchronized} block or method (e.g. a JDBC call under a monitor)
+ *     keeps its carrier thread, so the other virtual threads cannot use it</li>
+ *     <li>pinnings are grouped by the first frame of the project, or the top frame when the project is not on the stack</li>
+ *     <li>a site is logged the first time, then each time its count reaches a power of two</li>
+ * </ul>
+ */
+public class PinningMonitor implements AutoCloseable {
+
+    public static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private static final EventLogger LOG = EventLog.logger("Pinning");
+    private static final String PROJECT_PACKAGE = "org.pops.et4.jvm.project.";
+
+    private final RecordingStream stream;
+    private final ConcurrentMap<String, Site> sites = new ConcurrentHashMap<>();
+
+    private PinningMonitor(Duration threshold) {
+        this.stream = new RecordingStream();
+        this.stream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        this.stream.onEvent(PINNED_EVENT, this::onPinned);
+    }
+
+    /**
+     * @param threshold Shortest pinning reported
+     * @return A monitor already listening
+     */
+    public static PinningMonitor start(Duration threshold) {
+        PinningMonitor monitor = new PinningMonitor(threshold);
+        monitor.stream.startAsync();
+        LOG.info("Monitoring virtual thread pinning longer than {} ms", threshold.toMillis());
+        return monitor;
+    }
+
+    /**
+     * @return Number of pinnings and total pinned time per site, most pinned first
+     */
+    public List<String> report() {
+        List<Map.Entry<String, Site>> entries = new ArrayList<>(this.sites.entrySet());
+        entries.sort(Comparator.comparingLong((Map.Entry<String, Site> entry) -> entry.getValue().nanos.sum()).reversed());
+        List<String> lines = new ArrayList<>(entries.size());
+        for (Map.Entry<String, Site> entry : entries)
+            lines.add(entry.getKey() + ": " + entry.getValue().count.sum() + " pinning(s), " + entry.getValue().nanos.sum() / 1_000_000 + " ms");
+        return lines;
+    }
+
+    @Override
+    public void close() {
+        this.stream.close();
+    }
+
+    @Override
+    public String toString() {
+        long count = 0;
+        for (Site site : this.sites.values()) count += site.count.sum();
+        return count + " pinning(s) at " + this.sites.size() + " site(s)";
+    }
+
+    private void onPinned(RecordedEvent event) {
+        String site = siteOf(event.getStackTrace());
+        Site counters = this.sites.computeIfAbsent(site, key -> new Site());
+        counters.count.increment();
+        counters.nanos.add(event.getDuration().toNanos());
+
+        long count = counters.count.sum();
+        if (Long.bitCount(count) == 1)
+            LOG.warn("Virtual thread pinned for {} ms at {} ({} time(s))", event.getDuration().toMillis(), site, count);
+    }
+
+    private static String siteOf(RecordedStackTrace stackTrace) {
+        if (stackTrace == null || stackTrace.getFrames().isEmpty()) return "<unknown>";
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            if (!frame.isJavaFrame()) continue;
+            String type = frame.getMethod().getType().getName();
+            if (type.startsWith(PROJECT_PACKAGE)) return frameName(frame);
+        }
+        return frameName(stackTrace.getFrames().get(0));
+    }
+
+    private static String frameName(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+
+    private static class Site {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+    }
+}
@@ -0,0 +1,106 @@
+package org.pops.et4.jvm.project.schemas.threads;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the same blocking handler on a pool of platform threads, then on one virtual thread per handler,
+ * to compare how many handlers each mode keeps in flight.
+ * <ul>
+ *     <li>the platform pool has as many threads as a listener container or a web server would give the handlers</li>
+ *     <li>the virtual mode starts every handler at once, only the resources they wait for (e.g. the connection pool) limit them</li>
+ * </ul>
+ */
+public final class ThreadBenchmark {
+
+    /**
+     * One handler, e.g. a repository call.
+     */
+    @FunctionalInterface
+    public interface Handler {
+        void handle() throws Exception;
+    }
+
+    private ThreadBenchmark() {}
+
+    /**
+     * @param handlers Number of handlers run by each mode
+     * @param platformThreads Size of the platform pool
+     * @return The platform result, then the virtual result
+     */
+    public static List<Result> compare(int handlers, int platformThreads, Handler handler) throws InterruptedException {
+        List<Result> results = new ArrayList<>(2);
+        try (ExecutorService platform = Executors.newFixedThreadPool(platformThreads, Thread.ofPlatform().name("bench-platform-", 0).daemon(true).factory())) {
+            results.add(run("platform(" + platformThreads + ")", platform, handlers, handler));
+        }
+        try (ExecutorService virtual = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("bench-virtual-", 0).factory())) {
+            results.add(run("virtual", virtual, handlers, handler));
+        }
+        return results;
+    }
+
+    private static Result run(String mode, ExecutorService executor, int handlers, Handler handler) throws InterruptedException {
+        long[] latencies = new long[handlers];
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>(handlers);
+        for (int i = 0; i < handlers; i++) {
+            int index = i;
+            long submitted = System.nanoTime();
+            futures.add(executor.submit(() -> {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try {
+                    handler.handle();
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                } finally {
+                    inFlight.decrementAndGet();
+                    // From the submission: the time spent waiting for a thread counts
+                    latencies[index] = System.nanoTime() - submitted;
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (Exception ignored) {
+                // Counted by the handler wrapper
+            }
+        }
+        long wallNanos = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        return new Result(mode, handlers, failed.get(), wallNanos, maxInFlight.get(),
+                percentile(latencies, 0.50), percentile(latencies, 0.99), latencies[handlers - 1]);
+    }
+
+    private static long percentile(long[] sorted, double rank) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(rank * sorted.length) - 1)];
+    }
+
+    /**
+     * @param maxInFlight Most handlers running at the same time
+     * @param p50Nanos Latencies from the submission of the handler to its end
+     */
+    public record Result(String mode, int handlers, int failed, long wallNanos, int maxInFlight, long p50Nanos, long p99Nanos, long maxNanos) {
+
+        public double throughput() {
+            return this.wallNanos == 0 ? 0 : this.handlers * 1e9 / this.wallNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-14s %d handler(s), %d failed, %.1f ms, %.0f handler(s)/s, max in flight %d, p50 %.1f ms, p99 %.1f ms, max %.1f ms",
+                    this.mode, this.handlers, this.failed, this.wallNanos / 1e6, this.throughput(), this.maxInFlight,
+                    this.p50Nanos / 1e6, this.p99Nanos / 1e6, this.maxNanos / 1e6);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.pops.et4.jvm.project.schemas.threads;
+
+import java.time.Duration;
+
+/**
+ * Virtual-thread mode of a service, enabled by {@code spring.threads.virtual.enabled}:
+ * <ul>
+ *     <li>Spring Boot runs the web server requests and the scheduled tasks on virtual threads</li>
+ *     <li>the listener containers and the producer callbacks switch in the {@code KafkaConfig} of the service</li>
+ *     <li>this class watches for virtual threads pinned to their carrier, see {@link PinningMonitor}</li>
+ * </ul>
+ */
+public class VirtualThreads implements AutoCloseable {
+
+    private final boolean enabled;
+    private final PinningMonitor pinningMonitor;
+
+    /**
+     * @param enabled Whether the service runs on virtual threads
+     * @param pinningEnabled Whether to monitor the pinning, only when enabled
+     * @param pinningThreshold Shortest pinning reported
+     */
+    public VirtualThreads(boolean enabled, boolean pinningEnabled, Duration pinningThreshold) {
+        this.enabled = enabled;
+        this.pinningMonitor = enabled && pinningEnabled ? PinningMonitor.start(pinningThreshold) : null;
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * @return The pinning monitor, null when the virtual threads or the monitoring are disabled
+     */
+    public PinningMonitor getPinningMonitor() {
+        return this.pinningMonitor;
+    }
+
+    @Override
+    public void close() {
+        if (this.pinningMonitor != null) this.pinningMonitor.close();
+    }
+
+    @Override
+    public String toString() {
+        return "virtual=" + this.enabled + ", pinning=" + (this.pinningMonitor == null ? "off" : this.pinningMonitor);
+    }
+}
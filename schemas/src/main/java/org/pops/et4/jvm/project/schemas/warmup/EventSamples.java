@@ -0,0 +1,115 @@
+package org.pops.et4.jvm.project.schemas.warmup;
+
+import org.apache.avro.Conversion;
+import org.apache.avro.Conversions;
+import org.apache.avro.LogicalType;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.specific.SpecificData;
+import org.pops.et4.jvm.project.schemas.events.KafkaEvent;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Generated event classes and minimal, valid instances of them.
+ * Every field is filled (first symbol of enums, one element per array or map, first non-null branch of unions),
+ * so serializing a sample walks the same code paths as a real event.
+ */
+public final class EventSamples {
+
+    private static final String EVENTS_PACKAGE = KafkaEvent.class.getPackageName();
+    private static final int MAX_DEPTH = 8;
+
+    private EventSamples() {}
+
+    /**
+     * @return Every generated event class, loaded and initialised, sorted by name
+     */
+    public static List<Class<? extends KafkaEvent>> eventClasses() {
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+        scanner.addIncludeFilter(new AssignableTypeFilter(KafkaEvent.class));
+
+        List<Class<? extends KafkaEvent>> classes = new ArrayList<>();
+        for (BeanDefinition candidate : scanner.findCandidateComponents(EVENTS_PACKAGE)) {
+            try {
+                classes.add(Class.forName(candidate.getBeanClassName(), true, KafkaEvent.class.getClassLoader()).asSubclass(KafkaEvent.class));
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("Event class not loadable: " + candidate.getBeanClassName(), e);
+            }
+        }
+        classes.sort(Comparator.comparing(Class::getName));
+        return classes;
+    }
+
+    /**
+     * @return The value of the {@code TOPIC} constant of the event class
+     */
+    public static String topicOf(Class<? extends KafkaEvent> type) {
+        try {
+            return (String) type.getField("TOPIC").get(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(type.getName() + " has no TOPIC constant", e);
+        }
+    }
+
+    /**
+     * @return One sample per event class, by topic
+     */
+    public static Map<String, KafkaEvent> byTopic() {
+        Map<String, KafkaEvent> samples = new LinkedHashMap<>();
+        for (Class<? extends KafkaEvent> type : eventClasses())
+            samples.put(topicOf(type), sample(type));
+        return samples;
+    }
+
+    public static <T extends KafkaEvent> T sample(Class<T> type) {
+        SpecificData model = SpecificData.getForClass(type);
+        return type.cast(value(model, model.getSchema(type), 0));
+    }
+
+    private static Object value(SpecificData model, Schema schema, int depth) {
+        Object raw = switch (schema.getType()) {
+            case RECORD -> {
+                IndexedRecord record = (IndexedRecord) model.newRecord(null, schema);
+                for (Schema.Field field : schema.getFields())
+                    record.put(field.pos(), value(model, field.schema(), depth + 1));
+                yield record;
+            }
+            case UNION -> value(model, branchOf(schema, depth), depth);
+            case ARRAY -> new ArrayList<>(List.of(value(model, schema.getElementType(), depth + 1)));
+            case MAP -> new HashMap<>(Map.of("sample", value(model, schema.getValueType(), depth + 1)));
+            case ENUM -> model.createEnum(schema.getEnumSymbols().getFirst(), schema);
+            case FIXED -> model.createFixed(null, new byte[schema.getFixedSize()], schema);
+            case STRING -> "sample";
+            case BYTES -> ByteBuffer.allocate(0);
+            case INT -> 0;
+            case LONG -> 0L;
+            case FLOAT -> 0f;
+            case DOUBLE -> 0d;
+            case BOOLEAN -> false;
+            case NULL -> null;
+        };
+
+        LogicalType logicalType = schema.getLogicalType();
+        Conversion<?> conversion = logicalType != null ? model.getConversionFor(logicalType) : null;
+        return conversion != null ? Conversions.convertToLogicalType(raw, schema, logicalType, conversion) : raw;
+    }
+
+    /**
+     * First non-null branch, or the null branch once deep enough to stop recursive records.
+     */
+    private static Schema branchOf(Schema union, int depth) {
+        Schema nullBranch = null;
+        Schema valueBranch = null;
+        for (Schema branch : union.getTypes()) {
+            if (branch.getType() == Schema.Type.NULL) nullBranch = branch;
+            else if (valueBranch == null) valueBranch = branch;
+        }
+        if (valueBranch == null || (depth >= MAX_DEPTH && nullBranch != null)) return nullBranch;
+        return valueBranch;
+    }
+}
@@ -0,0 +1,125 @@
+package org.pops.et4.jvm.project.schemas.warmup;
+
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.pops.et4.jvm.project.schemas.events.KafkaEvent;
+import org.pops.et4.jvm.project.schemas.logging.EventLog;
+import org.pops.et4.jvm.project.schemas.logging.EventLogger;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+/**
+ * Startup warm-up shared by the services, run before the listeners start so the first records do not pay for:
+ * <ul>
+ *     <li>the Schema Registry lookup of their schema id</li>
+ *     <li>the lazy loading of the generated classes and of the Avro readers / writers</li>
+ *     <li>the opening of the database connections</li>
+ * </ul>
+ * A failed step is reported and skipped, it never prevents the service from starting.
+ */
+public class WarmUp {
+
+    private static final EventLogger LOG = EventLog.logger("WarmUp");
+
+    private final String service;
+    private final List<Step> steps = new ArrayList<>();
+
+    public WarmUp(String service) {
+        this.service = service;
+    }
+
+    /**
+     * Runs and times one step.
+     * @param describe Summary of the result, printed with the timing
+     * @return The result of the step, null if it failed
+     */
+    public <T> T step(String name, Callable<T> action, Function<T, String> describe) {
+        long start = System.nanoTime();
+        try {
+            T result = action.call();
+            this.steps.add(new Step(name, elapsedMs(start), true, describe.apply(result)));
+            return result;
+        } catch (Exception e) {
+            this.steps.add(new Step(name, elapsedMs(start), false, e.getClass().getSimpleName() + ": " + e.getMessage()));
+            return null;
+        }
+    }
+
+    /**
+     * Prints the timing of every step.
+     */
+    public void report() {
+        for (Step step : this.steps) {
+            if (step.ok()) LOG.info("{} {}: {} ms ({})", this.service, step.name(), step.elapsedMs(), step.detail());
+            else LOG.warn("{} {}: FAILED after {} ms ({})", this.service, step.name(), step.elapsedMs(), step.detail());
+        }
+        LOG.info("{} warm-up done in {} ms", this.service, this.getTotalMs());
+    }
+
+    public List<Step> getSteps() {
+        return List.copyOf(this.steps);
+    }
+
+    public long getTotalMs() {
+        return this.steps.stream().mapToLong(Step::elapsedMs).sum();
+    }
+
+    /**
+     * Serializes each sample once: registers its schema, or fetches its id, into the registry client cache.
+     * @return Number of schema ids now cached
+     */
+    public static int fetchSchemaIds(Serializer<Object> serializer, Map<String, KafkaEvent> samples) {
+        samples.forEach(serializer::serialize);
+        return samples.size();
+    }
+
+    /**
+     * Serializes then deserializes every sample several times, to load the readers / writers and let the JIT compile them.
+     * @return Number of round trips
+     */
+    public static int roundTrip(Serializer<Object> serializer, Deserializer<Object> deserializer, Map<String, KafkaEvent> samples, int iterations) {
+        int roundTrips = 0;
+        for (int i = 0; i < iterations; i++) {
+            for (Map.Entry<String, KafkaEvent> sample : samples.entrySet()) {
+                byte[] bytes = serializer.serialize(sample.getKey(), sample.getValue());
+                Object read = deserializer.deserialize(sample.getKey(), bytes);
+                if (!sample.getValue().getClass().isInstance(read))
+                    throw new IllegalStateException(sample.getKey() + " read back as " + (read != null ? read.getClass().getName() : "null"));
+                roundTrips++;
+            }
+        }
+        return roundTrips;
+    }
+
+    /**
+     * Borrows several connections at once so the pool opens them now, and checks each one.
+     * @return Number of valid connections
+     */
+    public static int primeDataSource(DataSource dataSource, int connections) throws SQLException {
+        List<Connection> borrowed = new ArrayList<>(connections);
+        try {
+            int valid = 0;
+            for (int i = 0; i < connections; i++) {
+                Connection connection = dataSource.getConnection();
+                borrowed.add(connection);
+                if (connection.isValid(2)) valid++;
+            }
+            return valid;
+        } finally {
+            for (Connection connection : borrowed) connection.close();
+        }
+    }
+
+    private static long elapsedMs(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    public record Step(String name, long elapsedMs, boolean ok, String detail) {}
+}